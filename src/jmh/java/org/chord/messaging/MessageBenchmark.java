@@ -0,0 +1,159 @@
+package org.chord.messaging;
+
+import org.chord.peer.Identifier;
+import org.chord.peer.LoadStats;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Message.marshal() and MessageFactory.createMessage for every MessageType, on a representative instance.
+ * Messages carrying file contents carry a FILE_SIZE byte Payload, which marshal() does not copy, but createMessage reads;
+ * batched lookups carry BATCH_SIZE ids.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageBenchmark {
+
+    private static final int FILE_SIZE = 64 * 1024;
+    private static final int BATCH_SIZE = 256;
+
+    @Param({
+            "REGISTER_PEER_REQUEST", "REGISTER_PEER_RESPONSE", "PEER_IDENTIFIER_MESSAGE", "GET_PREDECESSOR_REQUEST",
+            "GET_SUCCESSOR_REQUEST", "NETWORK_JOIN_NOTIFICATION", "NETWORK_EXIT_NOTIFICATION", "FIND_SUCCESSOR_REQUEST",
+            "PREDECESSOR_NOTIFICATION", "SUCCESSOR_NOTIFICATION", "STATUS_MESSAGE", "GET_RANDOM_PEER_REQUEST",
+            "GET_RANDOM_PEER_RESPONSE", "LOOKUP_REQUEST", "LOOKUP_RESPONSE", "STORE_FILE_REQUEST",
+            "STORE_FILE_RESPONSE", "MOVE_FILE_REQUEST", "MOVE_FILE_RESPONSE", "FIND_SUCCESSOR_REFERRAL",
+            "FIND_SUCCESSORS_REQUEST", "FIND_SUCCESSORS_RESPONSE", "FILE_TRANSFER_HEADER", "FILE_CHUNK",
+            "FILE_TRANSFER_COMMIT", "RETRIEVE_FILE_REQUEST", "RETRIEVE_FILE_RESPONSE",
+            "GET_SUCCESSOR_LIST_REQUEST", "SUCCESSOR_LIST_RESPONSE", "FIND_SUCCESSOR_RESPONSE",
+            "LOAD_GOSSIP_REQUEST", "LOAD_GOSSIP_RESPONSE"
+    })
+    public String type;
+
+    private Message message;
+    private byte[] marshaledBytes;
+
+    @Setup
+    public void setup() throws IOException {
+        this.message = createSample(Message.MessageType.valueOf(this.type));
+        this.marshaledBytes = received(this.message);
+    }
+
+    @Benchmark
+    public byte[] marshal() throws IOException {
+        this.message.marshal();
+        return this.message.getMarshaledBytes();
+    }
+
+    @Benchmark
+    public Message createMessage() throws IOException {
+        return MessageFactory.getInstance().createMessage(
+                new DataInputStream(new ByteArrayInputStream(this.marshaledBytes)));
+    }
+
+    /**
+     * @return The bytes of a Message as its receiver sees them: its marshaled bytes followed by any Payload
+     */
+    static byte[] received(Message message) throws IOException {
+        Payload payload = message.getPayload();
+        if (payload == null) {
+            return message.getMarshaledBytes();
+        }
+        ByteArrayOutputStream byteOutStream = new ByteArrayOutputStream();
+        byteOutStream.write(message.getMarshaledBytes());
+        payload.writeTo(byteOutStream);
+        return byteOutStream.toByteArray();
+    }
+
+    /**
+     * @return A self-marshaled Message of the given type
+     */
+    static Message createSample(Message.MessageType type) {
+        String hostname = "benchmark-host.cs.colostate.edu";
+        String ipAddress = "129.82.44.100";
+        Identifier peerId = new Identifier("peer-host.cs.colostate.edu", "a3f9");
+        byte[] fileBytes = new byte[FILE_SIZE];
+        switch (type) {
+            case REGISTER_PEER_REQUEST: return new RegisterPeerRequest(hostname, ipAddress, peerId);
+            case REGISTER_PEER_RESPONSE: return new RegisterPeerResponse(hostname, ipAddress, peerId, true);
+            case PEER_IDENTIFIER_MESSAGE: return new PeerIdentifierMessage(hostname, ipAddress, peerId);
+            case GET_PREDECESSOR_REQUEST: return new GetPredecessorRequest(hostname, ipAddress);
+            case GET_SUCCESSOR_REQUEST: return new GetSuccessorRequest(hostname, ipAddress);
+            case NETWORK_JOIN_NOTIFICATION: return new NetworkJoinNotification(hostname, ipAddress, peerId);
+            case NETWORK_EXIT_NOTIFICATION: return new NetworkExitNotification(hostname, ipAddress, peerId);
+            case FIND_SUCCESSOR_REQUEST: return new FindSuccessorRequest(hostname, ipAddress, "1714");
+            case PREDECESSOR_NOTIFICATION: return new PredecessorNotification(hostname, ipAddress, peerId);
+            case SUCCESSOR_NOTIFICATION: return new SuccessorNotification(hostname, ipAddress, peerId);
+            case STATUS_MESSAGE: return new StatusMessage(hostname, ipAddress, Message.Status.OK);
+            case GET_RANDOM_PEER_REQUEST: return new GetRandomPeerRequest(hostname, ipAddress);
+            case GET_RANDOM_PEER_RESPONSE: return new GetRandomPeerResponse(hostname, ipAddress, peerId);
+            case LOOKUP_REQUEST: return new LookupRequest(hostname, ipAddress, "1714", hostname, ipAddress);
+            case LOOKUP_RESPONSE: return new LookupResponse(hostname, ipAddress, peerId);
+            case STORE_FILE_REQUEST: return new StoreFileRequest(hostname, ipAddress, "1714", "img1.jpg", fileBytes);
+            case STORE_FILE_RESPONSE: return new StoreFileResponse(hostname, ipAddress, "1714", "img1.jpg");
+            case MOVE_FILE_REQUEST: return new MoveFileRequest(hostname, ipAddress, "1714", "img1.jpg", fileBytes);
+            case MOVE_FILE_RESPONSE: return new MoveFileResponse(hostname, ipAddress, "1714", "img1.jpg");
+            case FIND_SUCCESSOR_REFERRAL: return new FindSuccessorReferral(hostname, ipAddress, peerId);
+            case FIND_SUCCESSORS_REQUEST: return new FindSuccessorsRequest(hostname, ipAddress, batchIds());
+            case FIND_SUCCESSORS_RESPONSE: {
+                Map<String, Identifier> successors = new HashMap<>();
+                for (String id : batchIds()) {
+                    successors.put(id, peerId);
+                }
+                return new FindSuccessorsResponse(hostname, ipAddress, successors);
+            }
+            case FILE_TRANSFER_HEADER:
+                return new FileTransferHeader(hostname, ipAddress, 42L, "1714", "img1.jpg", 1L << 30, 1 << 20);
+            case FILE_CHUNK: return new FileChunk(hostname, ipAddress, 42L, 0L, Payload.of(fileBytes));
+            case FILE_TRANSFER_COMMIT: return new FileTransferCommit(hostname, ipAddress, 42L, 0x1234abcdL);
+            case RETRIEVE_FILE_REQUEST: return new RetrieveFileRequest(hostname, ipAddress, "1714");
+            case RETRIEVE_FILE_RESPONSE:
+                return new RetrieveFileResponse(hostname, ipAddress, "1714", "img1.jpg", Payload.of(fileBytes));
+            case GET_SUCCESSOR_LIST_REQUEST: return new GetSuccessorListRequest(hostname, ipAddress);
+            case SUCCESSOR_LIST_RESPONSE: return new SuccessorListResponse(hostname, ipAddress, List.of(peerId, peerId));
+            case FIND_SUCCESSOR_RESPONSE: return new FindSuccessorResponse(hostname, ipAddress, peerId, peerId, 3);
+            case LOAD_GOSSIP_REQUEST: return new LoadGossipRequest(hostname, ipAddress, loadSample(peerId));
+            case LOAD_GOSSIP_RESPONSE: return new LoadGossipResponse(hostname, ipAddress, loadSample(peerId));
+            default: throw new IllegalArgumentException("No sample Message for type " + type);
+        }
+    }
+
+    private static List<LoadStats> loadSample(Identifier peerId) {
+        List<LoadStats> stats = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            stats.add(new LoadStats(peerId, 1200, 1L << 30, 85.5, "1714", 4, System.currentTimeMillis()));
+        }
+        return stats;
+    }
+
+    private static List<String> batchIds() {
+        List<String> ids = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            ids.add(String.format("%04x", i * 251));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,149 @@
+package org.chord.peer;
+
+import org.chord.util.HashUtil;
+import org.chord.util.RingKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the primitive FingerTable against the original ListFingerTable on 16-bit rings of different sizes: the
+ * routing path of a FindSuccessorRequest (knowsFinalSuccessorOf, then successor or bestPredecessorOf), each of
+ * successor and bestPredecessorOf alone, and updateWithSuccessor. Both tables are filled from the same ring of peers,
+ * and queried with the same keys.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FingerTableBenchmark {
+
+    private static final int KEYS = 1024;
+
+    // ListFingerTable only knows the 16-bit id space
+    private static final int RING_SIZE = 1 << 16;
+
+    // Number of peers in the ring
+    @Param({"8", "64", "1024"})
+    public int peers;
+
+    private FingerTable fingerTable;
+    private ListFingerTable listFingerTable;
+    private Identifier[] ring;
+    private String[] keys;
+    private RingKey[] keyValues;
+    // Keys in (us, FT[0]], which successor can answer
+    private String[] ownedKeys;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        TreeSet<Integer> values = new TreeSet<>();
+        while (values.size() < this.peers) {
+            values.add(random.nextInt(RING_SIZE));
+        }
+        this.ring = values.stream()
+                .map(value -> new Identifier("peer" + value, HashUtil.intToHex(value)))
+                .toArray(Identifier[]::new);
+
+        Identifier us = this.ring[0];
+        this.fingerTable = new FingerTable(RingKey.bits(), us);
+        this.listFingerTable = new ListFingerTable(RingKey.bits(), us);
+        for (Identifier peerId : this.ring) {
+            this.fingerTable.updateWithSuccessor(peerId);
+            this.listFingerTable.updateWithSuccessor(peerId);
+        }
+
+        this.keys = new String[KEYS];
+        this.keyValues = new RingKey[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            this.keys[i] = HashUtil.intToHex(random.nextInt(RING_SIZE));
+            this.keyValues[i] = RingKey.fromHex(this.keys[i]);
+        }
+
+        this.ownedKeys = new String[KEYS];
+        int first = values.first();
+        int interval = Math.floorMod(values.higher(first) - first, RING_SIZE);
+        for (int i = 0; i < KEYS; i++) {
+            int k = (first + 1 + random.nextInt(interval)) % RING_SIZE;
+            this.ownedKeys[i] = HashUtil.intToHex(k);
+        }
+    }
+
+    private int nextKey() {
+        this.next = (this.next + 1) & (KEYS - 1);
+        return this.next;
+    }
+
+    @Benchmark
+    public Identifier routeList() {
+        String id = this.keys[nextKey()];
+        return this.listFingerTable.knowsFinalSuccessorOf(id)
+                ? this.listFingerTable.successor(id)
+                : this.listFingerTable.bestPredecessorOf(id);
+    }
+
+    @Benchmark
+    public Identifier routePrimitive() {
+        String id = this.keys[nextKey()];
+        return this.fingerTable.knowsFinalSuccessorOf(id)
+                ? this.fingerTable.successor(id)
+                : this.fingerTable.bestPredecessorOf(id);
+    }
+
+    @Benchmark
+    public Identifier routePrimitiveKey() {
+        RingKey k = this.keyValues[nextKey()];
+        return this.fingerTable.knowsFinalSuccessorOf(k)
+                ? this.fingerTable.successor(k)
+                : this.fingerTable.bestPredecessorOf(k);
+    }
+
+    @Benchmark
+    public Identifier successorList() {
+        return this.listFingerTable.successor(this.ownedKeys[nextKey()]);
+    }
+
+    @Benchmark
+    public Identifier successorPrimitive() {
+        return this.fingerTable.successor(this.ownedKeys[nextKey()]);
+    }
+
+    @Benchmark
+    public Identifier bestPredecessorOfList() {
+        return this.listFingerTable.bestPredecessorOf(this.keys[nextKey()]);
+    }
+
+    @Benchmark
+    public Identifier bestPredecessorOfPrimitive() {
+        return this.fingerTable.bestPredecessorOf(this.keys[nextKey()]);
+    }
+
+    @Benchmark
+    public void updateWithSuccessorList(Blackhole blackhole) {
+        this.listFingerTable.updateWithSuccessor(this.ring[nextKey() % this.ring.length]);
+        blackhole.consume(this.listFingerTable);
+    }
+
+    @Benchmark
+    public void updateWithSuccessorPrimitive(Blackhole blackhole) {
+        this.fingerTable.updateWithSuccessor(this.ring[nextKey() % this.ring.length]);
+        blackhole.consume(this.fingerTable);
+    }
+}
@@ -0,0 +1,236 @@
+package org.chord.peer;
+
+import org.chord.util.HashUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The original, List-of-Identifier FingerTable, kept unchanged as the baseline FingerTableBenchmark compares
+ * FingerTable against.
+ *
+ * Maintains information about log(N) successor nodes (clockwise) in the chord ring network.
+ * Let p be the numerical id of this node in the ring.
+ * At each index i in the peer table, we store the successor(p + 2^i) Identifier.
+ * Example: Where i = 0, we store the Identifier of the successor for the id 1 hop away (successor(p+1)),
+ * and where i = 1, we store the Identifier of the successor for the id 2 hops away (successor(p+2)),
+ * and where i = 2, we store the Identifier of the successor for the id 4 hops away (successor(p+4)).
+ *
+ * The successor of an id k (successor(k)) is defined by the node with the smallest id p, such that p >= k.
+ */
+public class ListFingerTable {
+
+    private static final Logger log = LoggerFactory.getLogger(ListFingerTable.class);
+
+    // The 16-bit id space the original table was written for
+    private static final int MAX_ID = 0xffff;
+
+    public Identifier identifier;
+    public List<Identifier> peerIds;
+
+    /**
+     * Initializes the Finger Table with 16 copies of our peer's Identifier.
+     * This is because at initialization time, we don't know about any other peers in the network.
+     * @param id Our peer's Identifier
+     */
+    public ListFingerTable(int size, Identifier id) {
+        this.identifier = id;
+        this.peerIds = new ArrayList<>(Collections.nCopies(size, id));
+    }
+
+    public ListFingerTable(Identifier id, List<Identifier> peerIds) {
+        this.identifier = id;
+        this.peerIds = peerIds;
+    }
+
+    public Identifier getIdentifier() {
+        return identifier;
+    }
+
+    public List<Identifier> getPeerIds() {
+        return peerIds;
+    }
+
+    public void set(int index, Identifier peerId) {
+        this.peerIds.set(index, peerId);
+    }
+
+    public int size() {
+        return this.peerIds.size();
+    }
+
+    /**
+     * Converts a number of hops to an exponential representation.
+     * @param i The number of hops we are making.
+     * @return The number of ids we cover with those hops, specifically 2^(i-1)
+     */
+    public int hopsAwayToDistance(int i) {
+        return (int) Math.pow(2, i-1);
+    }
+
+    /**
+     * Converts a finger table index to a position in the ring, based on hops away from our position.
+     * @param fingerTableIndex The finger table index value
+     * @return The ring position based on the table index
+     */
+    public int ringPositionOfIndex(int fingerTableIndex) {
+        int ourRingPosition = HashUtil.hexToInt(this.identifier.getId());
+        int ringPositionOfIndex = (ourRingPosition + hopsAwayToDistance(fingerTableIndex+1)) % (int) (Math.pow(2, this.peerIds.size()));
+        log.debug("ringPositionOfIndex({}): {}", fingerTableIndex, ringPositionOfIndex);
+        return ringPositionOfIndex;
+    }
+
+    /**
+     * Calculates the raw clockwise distance away from us to another id. Takes into account that the id space wraps back
+     * to 0.
+     * @param id The hex id we are trying to find the raw distance to, going clockwise around the ring.
+     * @return The distance to the hex id, going clockwise around the ring.
+     */
+    public int distanceTo(String id) {
+        int idValue = HashUtil.hexToInt(id);
+        int ourRingPosition = HashUtil.hexToInt(this.identifier.getId());
+        return distanceBetween(ourRingPosition, idValue);
+    }
+
+    /**
+     * Calculates raw clockwise distance between two positions on the chord ring.
+     * @param a First position
+     * @param b Second position
+     * @return Number of sequential hops between them, traveling clockwise
+     */
+    public int distanceBetween(int a, int b) {
+        return (b >= a) ? b - a : ((MAX_ID + 1) - a) + b;
+    }
+
+    /**
+     * Determines if we know the successor of id k:
+     * If our id p < k, and k <= the first entry in our
+     * finger table, then the first entry in our finger table is k's successor.
+     * @param id Hex representation of k
+     * @return True if we know k's successor, false if not
+     */
+    public boolean knowsFinalSuccessorOf(String id) {
+        int k = HashUtil.hexToInt(id);
+        int us = HashUtil.hexToInt(this.identifier.getId());
+        if (us == k) return true;
+
+        int firstSuccessor = HashUtil.hexToInt(this.peerIds.get(0).getId());
+        return (isSuccessorOf(firstSuccessor, k));
+    }
+
+    /**
+     * Tells if p is the successor of k, taking into account ring structure.
+     * @param p potential successor value
+     * @param k an id of a data item or node
+     * @return true if p is a successor of k, false if not
+     */
+    public boolean isSuccessorOf(int p, int k) {
+        int us = HashUtil.hexToInt(this.identifier.getId());
+        return p == k || isBetween(k, us, p);
+    }
+
+    /**
+     * Checks if, within a ring-based index structure, k is between range i and j.
+     * @param k Number we are checking
+     * @param i Beginning of range
+     * @param j End of range
+     * @return True if k is between i and j, false otherwise
+     */
+    public boolean isBetween(int k, int i, int j) {
+        if (i < j) {
+            return i < k && k < j;
+        } else {
+            return i < k || k < j;
+        }
+    }
+
+    /**
+     * Finds the successor of an identifier, using the information available in our finger table.
+     * The successor(k) is the
+     * @param id The String hex representation of k
+     * @return The Identifier of the successor for k, with respect to this peer p.
+     */
+    public Identifier successor(String id) {
+        int k = HashUtil.hexToInt(id);
+        int p = HashUtil.hexToInt(identifier.getId());
+        log.debug("successor({}): k: {}", id, k);
+        log.debug("successor({}): p: {}", id, p);
+
+        // If it's the same position as p, return our identifier
+        if (k == p) {
+            log.debug("successor({}): k == p, returning our own identifier", k);
+            return this.identifier;
+        } else if (isSuccessorOf(HashUtil.hexToInt(this.peerIds.get(0).getId()), k)) { // p < k < FT[0]
+            log.debug("successor({}): FT[0]={} is successor of k", k, HashUtil.hexToInt(this.peerIds.get(0).getId()));
+            return this.peerIds.get(0);
+        }
+        log.error("We don't know the final predecessor of k {} !", k);
+        return null;
+    }
+
+    /**
+     * Finds the closest predecessor of k.
+     * The closest predecessor is a peer node with the smallest id p, such that p <= k.
+     * @param id k
+     * @return Best predecessor of k
+     */
+    public Identifier bestPredecessorOf(String id) {
+        int k = HashUtil.hexToInt(id);
+
+        for (int i = 1; i < this.peerIds.size(); i++) {
+            Identifier peerId = this.peerIds.get(i);
+            int successor = HashUtil.hexToInt(peerId.getId());
+            if (isSuccessorOf(successor, k)) {
+                log.debug("bestPredecessorOf({}): found predecessor {} of k {}", id, successor, k);
+                return this.peerIds.get(i-1);
+            }
+        }
+        log.debug("bestPredecessorOf({}): did not find a suitable predecessor of k {}, returning last successor in finger table: {}",
+                id, k, this.peerIds.get(this.peerIds.size()-1));
+        return this.peerIds.get(this.peerIds.size()-1); // we didn't reach k, so return the closest point we can get to it
+    }
+
+    /**
+     * Iterates over finger table indices and updates their value with the new successor
+     * @param successorId Identifier of our new successor
+     */
+    public void updateWithSuccessor(Identifier successorId) {
+        int newSuccessor = HashUtil.hexToInt(successorId.getId());
+        for (int ftIndex = 0; ftIndex < this.peerIds.size(); ftIndex++) {
+            int k = ringPositionOfIndex(ftIndex);
+            int currentSuccessor = HashUtil.hexToInt(this.peerIds.get(ftIndex).getId());
+            if (k == newSuccessor || isBetween(newSuccessor, k, currentSuccessor)) {
+                this.peerIds.set(ftIndex, successorId);
+                log.info("Updated successor for finger table index={}, position={}, from {} to {}", ftIndex, k,
+                        currentSuccessor, newSuccessor);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("\nListFingerTable:\n");
+        sb.append(String.format("\tidentifier: %s\n", this.identifier));
+        sb.append("\tpeerIds: [\n");
+        int i = 0;
+        for (Identifier peerId: this.peerIds) {
+            sb.append(String.format("\t %d (%d) : %s\n", i, ringPositionOfIndex(i), peerId));
+            i++;
+        }
+        sb.append("\t]\n");
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null) return false;
+        if (this == o) return true;
+        if (!(o instanceof ListFingerTable)) return false;
+        ListFingerTable ftOther = (ListFingerTable) o;
+        return this.identifier.equals(ftOther.getIdentifier()) && this.peerIds.equals(ftOther.getPeerIds());
+    }
+
+}
@@ -0,0 +1,78 @@
+package org.chord.storage;
+
+import org.chord.messaging.Payload;
+import org.chord.util.Constants;
+import org.chord.util.HashUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Measures storing small objects with each StorageEngineType, from several threads at once as a Peer does when many
+ * clients store files. Objects are overwritten in turn across the whole 16-bit id space, so the storage stays bounded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class StorageEngineBenchmark {
+
+    @Param({"SEGMENT", "FILE"})
+    public StorageEngineType engineType;
+
+    // Size of an object in bytes: a small file and a typical thumbnail
+    @Param({"1024", "16384"})
+    public int objectSize;
+
+    private Path directory;
+    private StorageEngine storage;
+    private Payload payload;
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.directory = Files.createTempDirectory("storage-engine-benchmark");
+        this.storage = this.engineType.open(this.directory);
+        byte[] bytes = new byte[this.objectSize];
+        new Random(42).nextBytes(bytes);
+        this.payload = Payload.of(bytes);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        this.storage.close();
+        try (Stream<Path> paths = Files.walk(this.directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void put() throws IOException {
+        int id = this.next.getAndIncrement() & ((1 << Constants.ID_SIZE_BITS) - 1);
+        String fileId = HashUtil.intToHex(id);
+        this.storage.put(fileId, "img" + fileId + ".jpg", this.payload);
+    }
+}
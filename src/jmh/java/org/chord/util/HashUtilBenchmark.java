@@ -0,0 +1,80 @@
+package org.chord.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures HashUtil.hashFile on small and large payloads, and the hex conversions used for ids.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashUtilBenchmark {
+
+    private byte[] digest;
+    private String hexId;
+    private int intId;
+
+    /**
+     * Payload for hashFile, in its own State so that only hashFile is run for each payload size.
+     */
+    @State(Scope.Thread)
+    public static class Payload {
+
+        // Size of the payload in bytes: a small file, a typical image, and a large file
+        @Param({"1024", "262144", "16777216"})
+        public int payloadSize;
+
+        private byte[] bytes;
+
+        @Setup
+        public void setup() {
+            this.bytes = new byte[this.payloadSize];
+            new Random(42).nextBytes(this.bytes);
+        }
+    }
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        this.digest = new byte[20]; // SHA-1 digest length
+        random.nextBytes(this.digest);
+        this.intId = random.nextInt(1 << Constants.ID_SIZE_BITS);
+        this.hexId = HashUtil.intToHex(this.intId);
+    }
+
+    @Benchmark
+    public String hashFile(Payload payload) {
+        return HashUtil.hashFile(payload.bytes);
+    }
+
+    @Benchmark
+    public String bytesToHex() {
+        return HashUtil.bytesToHex(this.digest);
+    }
+
+    @Benchmark
+    public Integer hexToInt() {
+        return HashUtil.hexToInt(this.hexId);
+    }
+
+    @Benchmark
+    public String intToHex() {
+        return HashUtil.intToHex(this.intId);
+    }
+}
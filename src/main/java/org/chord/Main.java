@@ -3,11 +3,19 @@ package org.chord;
 import gnu.getopt.Getopt;
 import gnu.getopt.LongOpt;
 import org.chord.discovery.DiscoveryNode;
-import org.chord.peer.Identifier;
+import org.chord.networking.Server;
+import org.chord.networking.ServerMode;
+import org.chord.peer.LookupMode;
 import org.chord.peer.Peer;
+import org.chord.peer.Rebalancer;
+import org.chord.peer.Replicator;
+import org.chord.peer.Stabilizer;
+import org.chord.peer.SuccessorLookup;
+import org.chord.peer.VirtualNodes;
+import org.chord.storage.StorageEngineType;
 import org.chord.storedata.StoreData;
 import org.chord.util.Constants;
-import org.chord.util.Host;
+import org.chord.util.RingKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,27 +23,42 @@ public class Main {
 
     private static final Logger log = LoggerFactory.getLogger(Main.class);
 
+    // Virtual nodes started by --peer
+    private static int virtualNodes = 1;
+
     public static LongOpt[] generateValidOptions() {
-        LongOpt[] longOpts = new LongOpt[3];
+        LongOpt[] longOpts = new LongOpt[12];
         longOpts[0] = new LongOpt("discovery-node", LongOpt.NO_ARGUMENT, null, 'd');
         longOpts[1] = new LongOpt("peer", LongOpt.REQUIRED_ARGUMENT, null, 'p');
         longOpts[2] = new LongOpt("store-data", LongOpt.REQUIRED_ARGUMENT, null, 's');
+        longOpts[3] = new LongOpt("server-mode", LongOpt.REQUIRED_ARGUMENT, null, 'm');
+        longOpts[4] = new LongOpt("lookup-mode", LongOpt.REQUIRED_ARGUMENT, null, 'l');
+        longOpts[5] = new LongOpt("storage-engine", LongOpt.REQUIRED_ARGUMENT, null, 'e');
+        longOpts[6] = new LongOpt("replicas", LongOpt.REQUIRED_ARGUMENT, null, 'r');
+        longOpts[7] = new LongOpt("stabilize-interval", LongOpt.REQUIRED_ARGUMENT, null, 'i');
+        longOpts[8] = new LongOpt("id-bits", LongOpt.REQUIRED_ARGUMENT, null, 'b');
+        longOpts[9] = new LongOpt("vnodes", LongOpt.REQUIRED_ARGUMENT, null, 'v');
+        longOpts[10] = new LongOpt("rebalance-interval", LongOpt.REQUIRED_ARGUMENT, null, 'n');
+        longOpts[11] = new LongOpt("load-thresholds", LongOpt.REQUIRED_ARGUMENT, null, 't');
         return longOpts;
     }
 
     /**
-     * @param g Getopt object
+     * Collects the arguments of an option taking more than one: its own argument, then the positional arguments right
+     * after it, up to count in all, and moves Getopt past them so that the options that follow are still parsed.
+     * @param g Getopt object, having just returned the option
      * @param args Array of input args
-     * @return String array of args for peer
+     * @param count Number of arguments the option takes
+     * @return String array of the option's arguments, null for those missing
      */
-    public static String[] getPeerArgs(Getopt g, String[] args) {
-        String[] peerArgs = new String[2];
-        int index = g.getOptind() - 1;
-        for (int i = 0; index < args.length; i++) {
-            peerArgs[i] = args[index];
-            index++;
+    public static String[] getPeerArgs(Getopt g, String[] args, int count) {
+        String[] peerArgs = new String[count];
+        peerArgs[0] = g.getOptarg();
+        int index = g.getOptind();
+        for (int i = 1; i < count && index < args.length && !args[index].startsWith("-"); i++) {
+            peerArgs[i] = args[index++];
         }
-        g.setOptind(index - 1);
+        g.setOptind(index);
         return peerArgs;
     }
 
@@ -43,24 +66,156 @@ public class Main {
         log.info("Starting main...");
         Getopt g = new Getopt("Main.java", args, "", generateValidOptions(), true);
         int c;
+        // Options are collected first, so that settings like --server-mode and --lookup-mode apply regardless of their position
+        Runnable start = null;
         while ((c = g.getopt()) != -1) {
             switch (c) {
                 case 'd':
-                    startDiscoveryNode();
+                    start = Main::startDiscoveryNode;
                     break;
                 case 'p':
-                    String[] peerArgs = getPeerArgs(g, args);
-                    startPeer(peerArgs[0], peerArgs[1]);
+                    String[] peerArgs = getPeerArgs(g, args, 2);
+                    start = () -> startPeer(peerArgs[0], peerArgs[1]);
                     break;
                 case 's':
-                    String[] storeDataArgs = getPeerArgs(g, args);
-                    startStoreData(storeDataArgs[0]);
+                    String[] storeDataArgs = getPeerArgs(g, args, 1);
+                    start = () -> startStoreData(storeDataArgs[0]);
+                    break;
+                case 'm':
+                    setServerMode(g.getOptarg());
+                    break;
+                case 'l':
+                    setLookupMode(g.getOptarg());
+                    break;
+                case 'e':
+                    setStorageEngine(g.getOptarg());
+                    break;
+                case 'r':
+                    setReplicationFactor(g.getOptarg());
+                    break;
+                case 'i':
+                    setStabilizeInterval(g.getOptarg());
+                    break;
+                case 'b':
+                    setIdBits(g.getOptarg());
+                    break;
+                case 'v':
+                    setVirtualNodes(g.getOptarg());
+                    break;
+                case 'n':
+                    setRebalanceInterval(g.getOptarg());
+                    break;
+                case 't':
+                    setLoadThresholds(g.getOptarg());
                     break;
                 default:
                     printUsage();
                     System.exit(1);
             }
         }
+
+        if (start == null) {
+            printUsage();
+            System.exit(1);
+        }
+        start.run();
+    }
+
+    private static void setServerMode(String mode) {
+        try {
+            Server.setDefaultMode(ServerMode.fromString(mode));
+        } catch (IllegalArgumentException e) {
+            log.error("Unknown server mode '{}'", mode);
+            printUsage();
+            System.exit(1);
+        }
+    }
+
+    private static void setLookupMode(String mode) {
+        try {
+            SuccessorLookup.setDefaultMode(LookupMode.fromString(mode));
+        } catch (IllegalArgumentException e) {
+            log.error("Unknown lookup mode '{}'", mode);
+            printUsage();
+            System.exit(1);
+        }
+    }
+
+    private static void setStorageEngine(String type) {
+        try {
+            Peer.setDefaultStorageEngineType(StorageEngineType.fromString(type));
+        } catch (IllegalArgumentException e) {
+            log.error("Unknown storage engine '{}'", type);
+            printUsage();
+            System.exit(1);
+        }
+    }
+
+    private static void setReplicationFactor(String factor) {
+        try {
+            Replicator.setReplicationFactor(Integer.parseInt(factor));
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid replication factor '{}'", factor);
+            printUsage();
+            System.exit(1);
+        }
+    }
+
+    private static void setStabilizeInterval(String intervalMillis) {
+        try {
+            Stabilizer.setDefaultIntervalMillis(Long.parseLong(intervalMillis));
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid stabilization interval '{}'", intervalMillis);
+            printUsage();
+            System.exit(1);
+        }
+    }
+
+    private static void setIdBits(String bits) {
+        try {
+            RingKey.setBits(Integer.parseInt(bits));
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid id width '{}'", bits);
+            printUsage();
+            System.exit(1);
+        }
+    }
+
+    private static void setVirtualNodes(String count) {
+        try {
+            virtualNodes = Integer.parseInt(count);
+            if (virtualNodes < 1) {
+                throw new IllegalArgumentException();
+            }
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid number of virtual nodes '{}'", count);
+            printUsage();
+            System.exit(1);
+        }
+    }
+
+    private static void setRebalanceInterval(String intervalMillis) {
+        try {
+            Rebalancer.setDefaultIntervalMillis(Long.parseLong(intervalMillis));
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid rebalancing interval '{}'", intervalMillis);
+            printUsage();
+            System.exit(1);
+        }
+    }
+
+    private static void setLoadThresholds(String thresholds) {
+        try {
+            String[] factors = thresholds.split(",");
+            if (factors.length != 2) {
+                throw new IllegalArgumentException();
+            }
+            Rebalancer.setThresholds(Double.parseDouble(factors[0]), Double.parseDouble(factors[1]));
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid load thresholds '{}'", thresholds);
+            printUsage();
+            System.exit(1);
+        }
     }
 
     private static void startStoreData(String discoveryNodeHostname) {
@@ -69,16 +224,29 @@ public class Main {
     }
 
     private static void startPeer(String discoveryNodeHostname, String id) {
-        Peer peer = new Peer(discoveryNodeHostname, Constants.DiscoveryNode.PORT, new Identifier(Host.getHostname(), id));
-        peer.startServer();
-        peer.joinNetwork();
+        if (id == null || !RingKey.isValid(id)) {
+            log.error("Invalid ID {}: must be 1 to {} hex digits", id, RingKey.hexDigits());
+            System.exit(1);
+        }
+        // Even a single virtual node, so that the Rebalancer can move it
+        new VirtualNodes(discoveryNodeHostname, Constants.DiscoveryNode.PORT, id, virtualNodes).start();
     }
 
     private static void printUsage() {
         String usage = "Usage: Main [OPTIONS]\n\n" +
                 "\t--discovery-node\tstart discovery node for current machine\n" +
                 "\t--peer <discovery_node_hostname> <hex_identifier>\tstart peer node for current machine\n" +
-                "\t--store-data <discovery_node_hostname>\t start store data for current machine\n";
+                "\t--store-data <discovery_node_hostname>\t start store data for current machine\n" +
+                "\t--server-mode <blocking|nio|virtual>\tconnection handling for peer/discovery servers (default: blocking)\n" +
+                "\t--lookup-mode <recursive|iterative>\thow successor lookups are routed (default: recursive)\n" +
+                "\t--storage-engine <segment|file>\thow peers store files on disk (default: segment)\n" +
+                "\t--replicas <r>\tpeers every file is stored on, the same for all peers and store data (default: 3)\n" +
+                "\t--stabilize-interval <millis>\ttime between a peer's stabilization rounds (default: 1000)\n" +
+                "\t--id-bits <bits>\twidth of ids, a multiple of 4 up to 160, the same for all nodes (default: 16)\n" +
+                "\t--vnodes <n>\tvirtual nodes a peer runs, on ports 9001 to 9000 + n (default: 1)\n" +
+                "\t--rebalance-interval <millis>\ttime between a peer's rounds of load gossip, 0 for none (default: 10000)\n" +
+                "\t--load-thresholds <under>,<over>\tloads, relative to the mean, a peer is under/overloaded past " +
+                "(default: 0.75,1.5)\n";
         System.out.println(usage);
     }
 
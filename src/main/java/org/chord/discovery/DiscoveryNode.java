@@ -7,27 +7,20 @@ import org.chord.util.InteractiveCommandParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Random;
-import java.util.Vector;
-
 public class DiscoveryNode extends Node {
     private static final Logger log = LoggerFactory.getLogger(DiscoveryNode.class);
 
     // Hostname of the discovery server
     public String hostname;
 
-    // Set of all known registered peers in network
-    public Vector<Identifier> registeredPeers;
-
-    // For generating a sequence of pseudo-random numbers
-    public Random random;
+    // Set of all known registered peers in network, by ring position
+    public PeerRegistry registeredPeers;
 
     private InteractiveCommandParser commandParser;
 
     public DiscoveryNode() {
         this.hostname = Host.getHostname();
-        this.registeredPeers = new Vector<>();
-        this.random = new Random();
+        this.registeredPeers = new PeerRegistry();
         commandParser = new InteractiveCommandParser(this);
         log.info("Started Discovery Node on {}", this.hostname);
     }
@@ -36,26 +29,20 @@ public class DiscoveryNode extends Node {
         return hostname;
     }
 
-    public Vector<Identifier> getRegisteredPeers() {
+    public PeerRegistry getRegisteredPeers() {
         return registeredPeers;
     }
 
-    public Random getRandom() {
-        return random;
-    }
-
+    /**
+     * @param peerId Identifier of a peer that joined the network
+     * @return False if a peer is already registered at its ring position
+     */
     public boolean put(Identifier peerId) {
-        // Return val of put() is previous value there, or null if nothing there already
-        return this.registeredPeers.add(peerId);
+        return this.registeredPeers.put(peerId);
     }
 
     public boolean alreadyExists(Identifier peerId) {
-        for (Identifier registeredPeer : this.registeredPeers) {
-            if (registeredPeer.getId().equals(peerId.getId())) {
-                return true;
-            }
-        }
-        return false;
+        return this.registeredPeers.contains(peerId);
     }
 
     public boolean remove(Identifier peerId) {
@@ -67,9 +54,7 @@ public class DiscoveryNode extends Node {
     }
 
     public Identifier getRandomPeer() {
-        int randomIndex = this.random.nextInt(registeredPeers.size());
-        log.debug("Choosing random index {}", randomIndex);
-        return this.registeredPeers.get(randomIndex);
+        return this.registeredPeers.getRandomPeer();
     }
 
     public void startServer() {
@@ -51,7 +51,7 @@ public class DiscoveryNodeProcessor extends Processor {
         log.info("StoreData ({}) requesting random peer", message.hostname);
         Identifier randomPeer = discoveryNode.getRandomPeer();
         GetRandomPeerResponse response = new GetRandomPeerResponse(Host.getHostname(), Host.getIpAddress(), randomPeer);
-        sendResponse(this.socket, response);
+        sendResponse(message, response);
     }
 
     private void processPeerExitNotification(NetworkExitNotification message) {
@@ -76,11 +76,12 @@ public class DiscoveryNodeProcessor extends Processor {
         log.info("{} requesting registration", message.getPeerId());
 
         RegisterPeerResponse response;
-        if (this.discoveryNode.isEmpty()) {
+        Identifier randomPeer = this.discoveryNode.getRandomPeer();
+        if (randomPeer == null) {
             log.info("{} - First peer to join the network", message.getHostname());
             response = new RegisterPeerResponse(Host.getHostname(), Host.getIpAddress(), message.getPeerId(),
                     true);
-            sendResponse(this.socket, response);
+            sendResponse(message, response);
             return;
         }
 
@@ -92,9 +93,9 @@ public class DiscoveryNodeProcessor extends Processor {
             response = new RegisterPeerResponse(
                     Host.getHostname(),
                     Host.getIpAddress(),
-                    this.discoveryNode.getRandomPeer(),
+                    randomPeer,
                     true);
         }
-        sendResponse(this.socket, response);
+        sendResponse(message, response);
     }
 }
@@ -0,0 +1,181 @@
+package org.chord.discovery;
+
+import org.chord.peer.Identifier;
+import org.chord.util.Constants;
+import org.chord.util.RingKey;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The peers registered with a DiscoveryNode, by ring position, so that a registration storm of hundreds of peers
+ * starting at once doesn't queue up on a single monitor:
+ * - the registry is split into shards by ring position, each with a lock of its own that only writers take;
+ * - each shard keeps its peers in a dense array, with a map of ring position -> slot in it. A peer is removed by
+ *   moving the last peer of the array into its slot, so that the array stays dense and a peer is sampled in O(1),
+ *   by picking a slot at random;
+ * - id collision checks are a lookup in a ConcurrentHashMap, and sampling reads the array without locking: a reader
+ *   racing a removal may see the slot being emptied or swapped, and simply picks again.
+ */
+public class PeerRegistry {
+
+    private final Shard[] shards;
+
+    private static class Shard {
+        // Ring position of each peer -> its slot in peers; written with lock held, read without
+        final Map<RingKey, Integer> slots = new ConcurrentHashMap<>();
+
+        // Slots 0 to size - 1 hold the peers. Grown by copying into a larger array, published before size is
+        // raised, so that a reader that sees a size sees an array at least that large
+        volatile AtomicReferenceArray<Identifier> peers = new AtomicReferenceArray<>(16);
+        volatile int size;
+
+        // A Lock rather than a monitor, so that virtual threads don't pin
+        final Lock lock = new ReentrantLock();
+    }
+
+    public PeerRegistry() {
+        this(Constants.DiscoveryNode.REGISTRY_SHARDS);
+    }
+
+    PeerRegistry(int shardCount) {
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            this.shards[i] = new Shard();
+        }
+    }
+
+    /**
+     * Registers a peer, unless a peer is registered at the same ring position.
+     * @param peerId Identifier of the peer
+     * @return True if registered, false if its id collides with a registered peer's
+     */
+    public boolean put(Identifier peerId) {
+        Shard shard = shardOf(peerId.key());
+        shard.lock.lock();
+        try {
+            if (shard.slots.containsKey(peerId.key())) {
+                return false;
+            }
+            int slot = shard.size;
+            AtomicReferenceArray<Identifier> peers = shard.peers;
+            if (slot == peers.length()) {
+                AtomicReferenceArray<Identifier> grown = new AtomicReferenceArray<>(2 * slot);
+                for (int i = 0; i < slot; i++) {
+                    grown.set(i, peers.get(i));
+                }
+                shard.peers = peers = grown;
+            }
+            peers.set(slot, peerId);
+            shard.slots.put(peerId.key(), slot);
+            shard.size = slot + 1;
+            return true;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * @param peerId Identifier of a peer
+     * @return True if a peer, this one or another, is registered at its ring position
+     */
+    public boolean contains(Identifier peerId) {
+        return shardOf(peerId.key()).slots.containsKey(peerId.key());
+    }
+
+    /**
+     * Unregisters a peer. Another peer registered at the same ring position is left registered.
+     * @param peerId Identifier of the peer
+     * @return True if it was registered
+     */
+    public boolean remove(Identifier peerId) {
+        Shard shard = shardOf(peerId.key());
+        shard.lock.lock();
+        try {
+            Integer slot = shard.slots.get(peerId.key());
+            AtomicReferenceArray<Identifier> peers = shard.peers;
+            if (slot == null || !peers.get(slot).equals(peerId)) {
+                return false;
+            }
+            int last = shard.size - 1;
+            Identifier moved = peers.get(last);
+            peers.set(slot, moved);
+            shard.slots.put(moved.key(), slot);
+            shard.slots.remove(peerId.key());
+            peers.set(last, null);
+            shard.size = last;
+            return true;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of peers registered
+     */
+    public int size() {
+        int size = 0;
+        for (Shard shard : this.shards) {
+            size += shard.size;
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Picks a registered peer uniformly at random: a slot of the shards taken as one array, whose shard is found by
+     * walking the shard sizes.
+     * @return A registered peer, or null if there is none
+     */
+    public Identifier getRandomPeer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (true) {
+            int total = size();
+            if (total == 0) {
+                return null;
+            }
+            int index = random.nextInt(total);
+            for (Shard shard : this.shards) {
+                int size = shard.size;
+                if (index < size) {
+                    Identifier peerId = shard.peers.get(index);
+                    if (peerId != null) {
+                        return peerId;
+                    }
+                    break; // removed since we read the size; pick again
+                }
+                index -= size;
+            }
+        }
+    }
+
+    /**
+     * @return A copy of the registered peers, in no particular order
+     */
+    public List<Identifier> list() {
+        List<Identifier> all = new ArrayList<>();
+        for (Shard shard : this.shards) {
+            AtomicReferenceArray<Identifier> peers = shard.peers;
+            for (int i = 0; i < Math.min(shard.size, peers.length()); i++) {
+                Identifier peerId = peers.get(i);
+                if (peerId != null) {
+                    all.add(peerId);
+                }
+            }
+        }
+        return all;
+    }
+
+    private Shard shardOf(RingKey key) {
+        return this.shards[Math.floorMod(key.hashCode(), this.shards.length)];
+    }
+}
@@ -0,0 +1,84 @@
+package org.chord.messaging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * One fixed-size piece of a chunked file transfer started by a FileTransferHeader; only the last chunk may be
+ * shorter. The receiver writes it at its offset in the temporary file, so chunks may be processed in any order.
+ */
+public class FileChunk extends Message {
+
+    private static final Logger log = LoggerFactory.getLogger(FileChunk.class);
+
+    public long transferId;
+    public long offset;
+    public Payload payload; // chunk content
+
+    public FileChunk(String hostname, String ipAddress, long transferId, long offset, Payload payload) {
+        this.hostname = hostname;
+        this.ipAddress = ipAddress;
+        this.transferId = transferId;
+        this.offset = offset;
+        this.payload = payload;
+        try {
+            marshal();
+        } catch (IOException e) {
+            log.error("Unable to self-marshal: {}", e.getLocalizedMessage());
+        }
+    }
+
+    public FileChunk(DataInputStream dataInputStream) throws IOException {
+        this.unmarshal(dataInputStream);
+    }
+
+    @Override
+    public MessageType getType() {
+        return MessageType.FILE_CHUNK;
+    }
+
+    @Override
+    public Payload getPayload() {
+        return payload;
+    }
+
+    @Override
+    public void marshal(DataOutputStream dataOutputStream) throws IOException {
+        super.marshal(dataOutputStream);
+        writeLong(dataOutputStream, this.transferId);
+        writeLong(dataOutputStream, this.offset);
+        writePayloadLength(dataOutputStream, this.payload);
+    }
+
+    @Override
+    public void unmarshal(DataInputStream dataInputStream) throws IOException {
+        super.unmarshal(dataInputStream);
+        this.transferId = readLong(dataInputStream);
+        this.offset = readLong(dataInputStream);
+        this.payload = Payload.of(readByteArray(dataInputStream));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null) return false;
+        if (this == o) return true;
+        if (!(o instanceof FileChunk)) return false;
+        FileChunk fcOther = (FileChunk) o;
+        return this.transferId == fcOther.transferId &&
+                this.offset == fcOther.offset &&
+                Objects.equals(this.payload, fcOther.payload);
+    }
+
+    @Override
+    public String toString() {
+        return "\nFileChunk:\n" +
+                String.format("\ttransferId: %d\n", this.transferId) +
+                String.format("\toffset: %d\n", this.offset) +
+                String.format("\tlength: %d\n", this.payload.length());
+    }
+}
@@ -0,0 +1,71 @@
+package org.chord.messaging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Completes a chunked file transfer once every FileChunk has been acknowledged. The receiver checks the CRC-32C
+ * checksum of what it wrote against the sender's before storing the file, and answers with a StoreFileResponse.
+ */
+public class FileTransferCommit extends Message {
+
+    private static final Logger log = LoggerFactory.getLogger(FileTransferCommit.class);
+
+    public long transferId;
+    public long checksum; // CRC-32C of the whole file
+
+    public FileTransferCommit(String hostname, String ipAddress, long transferId, long checksum) {
+        this.hostname = hostname;
+        this.ipAddress = ipAddress;
+        this.transferId = transferId;
+        this.checksum = checksum;
+        try {
+            marshal();
+        } catch (IOException e) {
+            log.error("Unable to self-marshal: {}", e.getLocalizedMessage());
+        }
+    }
+
+    public FileTransferCommit(DataInputStream dataInputStream) throws IOException {
+        this.unmarshal(dataInputStream);
+    }
+
+    @Override
+    public MessageType getType() {
+        return MessageType.FILE_TRANSFER_COMMIT;
+    }
+
+    @Override
+    public void marshal(DataOutputStream dataOutputStream) throws IOException {
+        super.marshal(dataOutputStream);
+        writeLong(dataOutputStream, this.transferId);
+        writeLong(dataOutputStream, this.checksum);
+    }
+
+    @Override
+    public void unmarshal(DataInputStream dataInputStream) throws IOException {
+        super.unmarshal(dataInputStream);
+        this.transferId = readLong(dataInputStream);
+        this.checksum = readLong(dataInputStream);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null) return false;
+        if (this == o) return true;
+        if (!(o instanceof FileTransferCommit)) return false;
+        FileTransferCommit ftcOther = (FileTransferCommit) o;
+        return this.transferId == ftcOther.transferId && this.checksum == ftcOther.checksum;
+    }
+
+    @Override
+    public String toString() {
+        return "\nFileTransferCommit:\n" +
+                String.format("\ttransferId: %d\n", this.transferId) +
+                String.format("\tchecksum: %08x\n", this.checksum);
+    }
+}
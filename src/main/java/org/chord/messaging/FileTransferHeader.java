@@ -0,0 +1,114 @@
+package org.chord.messaging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Starts a chunked file transfer: announces the file, its total length, and the size of the FileChunks that follow.
+ * The receiver opens a temporary file for it, and the transfer is completed by a FileTransferCommit.
+ */
+public class FileTransferHeader extends Message {
+
+    private static final Logger log = LoggerFactory.getLogger(FileTransferHeader.class);
+
+    // Chosen by the sender, identifies the transfer in its FileChunks and FileTransferCommit
+    public long transferId;
+    public String fileId; // 16-bit file digest
+    public String fileName;
+    public long length;
+    public int chunkSize;
+    public boolean replica; // a copy sent by the file's primary peer, which stores it without replicating it further
+    public boolean handoff; // a peer leaving the network handing off every file it stores, see FileHandoff
+
+    public FileTransferHeader(String hostname, String ipAddress, long transferId, String fileId, String fileName,
+                              long length, int chunkSize) {
+        this(hostname, ipAddress, transferId, fileId, fileName, length, chunkSize, false);
+    }
+
+    public FileTransferHeader(String hostname, String ipAddress, long transferId, String fileId, String fileName,
+                              long length, int chunkSize, boolean replica) {
+        this(hostname, ipAddress, transferId, fileId, fileName, length, chunkSize, replica, false);
+    }
+
+    public FileTransferHeader(String hostname, String ipAddress, long transferId, String fileId, String fileName,
+                              long length, int chunkSize, boolean replica, boolean handoff) {
+        this.hostname = hostname;
+        this.ipAddress = ipAddress;
+        this.transferId = transferId;
+        this.fileId = fileId;
+        this.fileName = fileName;
+        this.length = length;
+        this.chunkSize = chunkSize;
+        this.replica = replica;
+        this.handoff = handoff;
+        try {
+            marshal();
+        } catch (IOException e) {
+            log.error("Unable to self-marshal: {}", e.getLocalizedMessage());
+        }
+    }
+
+    public FileTransferHeader(DataInputStream dataInputStream) throws IOException {
+        this.unmarshal(dataInputStream);
+    }
+
+    @Override
+    public MessageType getType() {
+        return MessageType.FILE_TRANSFER_HEADER;
+    }
+
+    @Override
+    public void marshal(DataOutputStream dataOutputStream) throws IOException {
+        super.marshal(dataOutputStream);
+        writeLong(dataOutputStream, this.transferId);
+        writeString(dataOutputStream, this.fileId);
+        writeString(dataOutputStream, this.fileName);
+        writeLong(dataOutputStream, this.length);
+        writeInt(dataOutputStream, this.chunkSize);
+        writeBoolean(dataOutputStream, this.replica);
+        writeBoolean(dataOutputStream, this.handoff);
+    }
+
+    @Override
+    public void unmarshal(DataInputStream dataInputStream) throws IOException {
+        super.unmarshal(dataInputStream);
+        this.transferId = readLong(dataInputStream);
+        this.fileId = readString(dataInputStream);
+        this.fileName = readString(dataInputStream);
+        this.length = readLong(dataInputStream);
+        this.chunkSize = readInt(dataInputStream);
+        this.replica = readBoolean(dataInputStream);
+        this.handoff = readBoolean(dataInputStream);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null) return false;
+        if (this == o) return true;
+        if (!(o instanceof FileTransferHeader)) return false;
+        FileTransferHeader fthOther = (FileTransferHeader) o;
+        return this.transferId == fthOther.transferId &&
+                this.fileId.equals(fthOther.fileId) &&
+                this.fileName.equals(fthOther.fileName) &&
+                this.length == fthOther.length &&
+                this.chunkSize == fthOther.chunkSize &&
+                this.replica == fthOther.replica &&
+                this.handoff == fthOther.handoff;
+    }
+
+    @Override
+    public String toString() {
+        return "\nFileTransferHeader:\n" +
+                String.format("\ttransferId: %d\n", this.transferId) +
+                String.format("\tfileId: %s\n", this.fileId) +
+                String.format("\tfileName: %s\n", this.fileName) +
+                String.format("\tlength: %d\n", this.length) +
+                String.format("\tchunkSize: %d\n", this.chunkSize) +
+                String.format("\treplica: %b\n", this.replica) +
+                String.format("\thandoff: %b\n", this.handoff);
+    }
+}
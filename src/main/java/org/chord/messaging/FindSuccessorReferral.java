@@ -0,0 +1,46 @@
+package org.chord.messaging;
+
+import org.chord.peer.Identifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * Response to an iterative FindSuccessorRequest, from a peer that doesn't know the final successor of the id.
+ * Identifies the next hop (the best predecessor of the id that the peer knows of), to which the originator
+ * should send the request next.
+ */
+public class FindSuccessorReferral extends PeerIdentifierMessage {
+
+    private static final Logger log = LoggerFactory.getLogger(FindSuccessorReferral.class);
+
+    public FindSuccessorReferral(String hostname, String ipAddress, Identifier nextHop) {
+        super(hostname, ipAddress, nextHop);
+    }
+
+    public FindSuccessorReferral(DataInputStream dataInputStream) throws IOException {
+        super(dataInputStream);
+    }
+
+    @Override
+    public MessageType getType() {
+        return MessageType.FIND_SUCCESSOR_REFERRAL;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null) return false;
+        if (this == o) return true;
+        if (!(o instanceof FindSuccessorReferral)) return false;
+        FindSuccessorReferral fsrOther = (FindSuccessorReferral) o;
+        return this.peerId.equals(fsrOther.peerId);
+    }
+
+    @Override
+    public String toString() {
+        return "\nFindSuccessorReferral:\n" +
+                String.format("\tnextHop: %s\n", this.peerId);
+    }
+}
@@ -18,11 +18,20 @@ public class FindSuccessorRequest extends Message {
     // Number of hops a lookup request has taken so far
     public Integer currentHops;
 
+    // If true, a peer that doesn't know the final successor answers with a FindSuccessorReferral to the next hop,
+    // instead of forwarding the request itself
+    public boolean iterative;
+
     public FindSuccessorRequest(String hostname, String ipAddress, String id) {
+        this(hostname, ipAddress, id, false);
+    }
+
+    public FindSuccessorRequest(String hostname, String ipAddress, String id, boolean iterative) {
         this.hostname = hostname;
         this.ipAddress = ipAddress;
         this.id = id;
         this.currentHops = 0;
+        this.iterative = iterative;
         try {
             marshal();
         } catch (IOException e) {
@@ -51,18 +60,24 @@ public class FindSuccessorRequest extends Message {
         this.currentHops++;
     }
 
+    public boolean isIterative() {
+        return iterative;
+    }
+
     @Override
     public void marshal(DataOutputStream dataOutputStream) throws IOException {
         super.marshal(dataOutputStream);
         writeString(dataOutputStream, this.id);
         writeInt(dataOutputStream, this.currentHops);
+        writeBoolean(dataOutputStream, this.iterative);
     }
 
     @Override
     public void unmarshal(DataInputStream dataInputStream) throws IOException {
         super.unmarshal(dataInputStream);
-        this.id = readString(dataInputStream);
+        this.id = readRingId(dataInputStream);
         this.currentHops = readInt(dataInputStream);
+        this.iterative = readBoolean(dataInputStream);
     }
 
     @Override
@@ -78,6 +93,7 @@ public class FindSuccessorRequest extends Message {
     public String toString() {
         return "\nFindSuccessorRequest:\n" +
                 String.format("\tid: %s\n", this.id) +
-                String.format("\tcurrentHops: %s\n", this.currentHops);
+                String.format("\tcurrentHops: %s\n", this.currentHops) +
+                String.format("\titerative: %b\n", this.iterative);
     }
 }
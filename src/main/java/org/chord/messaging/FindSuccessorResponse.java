@@ -0,0 +1,93 @@
+package org.chord.messaging;
+
+import org.chord.peer.Identifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Final response to a FindSuccessorRequest: the successor of the id, along with the whole interval of the ring the
+ * successor owns as the answering peer knows it, (predecessor, successor], so that the originator can cache the
+ * answer for every id in the interval. Also carries the number of hops the lookup took.
+ */
+public class FindSuccessorResponse extends Message {
+
+    private static final Logger log = LoggerFactory.getLogger(FindSuccessorResponse.class);
+
+    public Identifier peerId; // the successor of the id
+    public Identifier predecessor; // the successor's predecessor; the interval it owns starts just after it
+    public int hops;
+
+    public FindSuccessorResponse(String hostname, String ipAddress, Identifier peerId, Identifier predecessor,
+                                 int hops) {
+        this.hostname = hostname;
+        this.ipAddress = ipAddress;
+        this.peerId = peerId;
+        this.predecessor = predecessor;
+        this.hops = hops;
+        try {
+            marshal();
+        } catch (IOException e) {
+            log.error("Unable to self-marshal: {}", e.getLocalizedMessage());
+        }
+    }
+
+    public FindSuccessorResponse(DataInputStream dataInputStream) throws IOException {
+        this.unmarshal(dataInputStream);
+    }
+
+    @Override
+    public MessageType getType() {
+        return MessageType.FIND_SUCCESSOR_RESPONSE;
+    }
+
+    public Identifier getPeerId() {
+        return peerId;
+    }
+
+    public Identifier getPredecessor() {
+        return predecessor;
+    }
+
+    public int getHops() {
+        return hops;
+    }
+
+    @Override
+    public void marshal(DataOutputStream dataOutputStream) throws IOException {
+        super.marshal(dataOutputStream);
+        writeIdentifier(dataOutputStream, this.peerId);
+        writeIdentifier(dataOutputStream, this.predecessor);
+        writeInt(dataOutputStream, this.hops);
+    }
+
+    @Override
+    public void unmarshal(DataInputStream dataInputStream) throws IOException {
+        super.unmarshal(dataInputStream);
+        this.peerId = readIdentifier(dataInputStream);
+        this.predecessor = readIdentifier(dataInputStream);
+        this.hops = readInt(dataInputStream);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null) return false;
+        if (this == o) return true;
+        if (!(o instanceof FindSuccessorResponse)) return false;
+        FindSuccessorResponse fsrOther = (FindSuccessorResponse) o;
+        return this.peerId.equals(fsrOther.peerId) &&
+                this.predecessor.equals(fsrOther.predecessor) &&
+                this.hops == fsrOther.hops;
+    }
+
+    @Override
+    public String toString() {
+        return "\nFindSuccessorResponse:\n" +
+                String.format("\tpeerId: %s\n", this.peerId) +
+                String.format("\tpredecessor: %s\n", this.predecessor) +
+                String.format("\thops: %d\n", this.hops);
+    }
+}
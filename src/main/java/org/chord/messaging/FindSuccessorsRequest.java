@@ -0,0 +1,91 @@
+package org.chord.messaging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Batched FindSuccessorRequest: asks for the successors of many ids at once, and is answered with a single
+ * FindSuccessorsResponse mapping each id to its successor.
+ */
+public class FindSuccessorsRequest extends Message {
+
+    private static final Logger log = LoggerFactory.getLogger(FindSuccessorsRequest.class);
+
+    // Ids of data items or nodes we want the successors of
+    public List<String> ids;
+
+    // Number of hops the request has taken so far
+    public Integer currentHops;
+
+    public FindSuccessorsRequest(String hostname, String ipAddress, List<String> ids) {
+        this(hostname, ipAddress, ids, 0);
+    }
+
+    public FindSuccessorsRequest(String hostname, String ipAddress, List<String> ids, Integer currentHops) {
+        this.hostname = hostname;
+        this.ipAddress = ipAddress;
+        this.ids = ids;
+        this.currentHops = currentHops;
+        try {
+            marshal();
+        } catch (IOException e) {
+            log.error("Unable to self-marshal: {}", e.getLocalizedMessage());
+        }
+    }
+
+    public FindSuccessorsRequest(DataInputStream dataInputStream) throws IOException {
+        this.unmarshal(dataInputStream);
+    }
+
+    @Override
+    public MessageType getType() {
+        return MessageType.FIND_SUCCESSORS_REQUEST;
+    }
+
+    public List<String> getIds() {
+        return ids;
+    }
+
+    public Integer getCurrentHops() {
+        return currentHops;
+    }
+
+    public void incrementHops() {
+        this.currentHops++;
+    }
+
+    @Override
+    public void marshal(DataOutputStream dataOutputStream) throws IOException {
+        super.marshal(dataOutputStream);
+        writeStringList(dataOutputStream, this.ids);
+        writeInt(dataOutputStream, this.currentHops);
+    }
+
+    @Override
+    public void unmarshal(DataInputStream dataInputStream) throws IOException {
+        super.unmarshal(dataInputStream);
+        this.ids = readRingIdList(dataInputStream);
+        this.currentHops = readInt(dataInputStream);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null) return false;
+        if (this == o) return true;
+        if (!(o instanceof FindSuccessorsRequest)) return false;
+        FindSuccessorsRequest fsrOther = (FindSuccessorsRequest) o;
+        return this.ids.equals(fsrOther.getIds());
+    }
+
+    @Override
+    public String toString() {
+        return "\nFindSuccessorsRequest:\n" +
+                String.format("\tids: %d\n", this.ids.size()) +
+                String.format("\tcurrentHops: %s\n", this.currentHops);
+    }
+}
@@ -0,0 +1,90 @@
+package org.chord.messaging;
+
+import org.chord.peer.Identifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Response to a FindSuccessorsRequest, mapping each requested id to the Identifier of its successor.
+ */
+public class FindSuccessorsResponse extends Message {
+
+    private static final Logger log = LoggerFactory.getLogger(FindSuccessorsResponse.class);
+
+    // id -> successor(id)
+    public Map<String, Identifier> successors;
+
+    public FindSuccessorsResponse(String hostname, String ipAddress, Map<String, Identifier> successors) {
+        this.hostname = hostname;
+        this.ipAddress = ipAddress;
+        this.successors = successors;
+        try {
+            marshal();
+        } catch (IOException e) {
+            log.error("Unable to self-marshal: {}", e.getLocalizedMessage());
+        }
+    }
+
+    public FindSuccessorsResponse(DataInputStream dataInputStream) throws IOException {
+        this.unmarshal(dataInputStream);
+    }
+
+    @Override
+    public MessageType getType() {
+        return MessageType.FIND_SUCCESSORS_RESPONSE;
+    }
+
+    public Map<String, Identifier> getSuccessors() {
+        return successors;
+    }
+
+    /**
+     * Written as a List of ids, followed by the List of their successors in the same order.
+     */
+    @Override
+    public void marshal(DataOutputStream dataOutputStream) throws IOException {
+        super.marshal(dataOutputStream);
+        List<String> ids = new ArrayList<>(this.successors.size());
+        List<Identifier> peerIds = new ArrayList<>(this.successors.size());
+        for (Map.Entry<String, Identifier> entry : this.successors.entrySet()) {
+            ids.add(entry.getKey());
+            peerIds.add(entry.getValue());
+        }
+        writeStringList(dataOutputStream, ids);
+        writeIdentifierList(dataOutputStream, peerIds);
+    }
+
+    @Override
+    public void unmarshal(DataInputStream dataInputStream) throws IOException {
+        super.unmarshal(dataInputStream);
+        List<String> ids = readStringList(dataInputStream);
+        List<Identifier> peerIds = readIdentifierList(dataInputStream);
+        this.successors = new HashMap<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            this.successors.put(ids.get(i), peerIds.get(i));
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null) return false;
+        if (this == o) return true;
+        if (!(o instanceof FindSuccessorsResponse)) return false;
+        FindSuccessorsResponse fsrOther = (FindSuccessorsResponse) o;
+        return this.successors.equals(fsrOther.getSuccessors());
+    }
+
+    @Override
+    public String toString() {
+        return "\nFindSuccessorsResponse:\n" +
+                String.format("\tsuccessors: %s\n", this.successors);
+    }
+}
@@ -0,0 +1,49 @@
+package org.chord.messaging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * Asks a Peer for its successor list, i.e. the peers that hold replicas of the files it stores.
+ * Answered with a SuccessorListResponse.
+ */
+public class GetSuccessorListRequest extends Message {
+
+    private static final Logger log = LoggerFactory.getLogger(GetSuccessorListRequest.class);
+
+    public GetSuccessorListRequest(String hostname, String ipAddress) {
+        this.hostname = hostname;
+        this.ipAddress = ipAddress;
+        try {
+            marshal();
+        } catch (IOException e) {
+            log.error("Unable to self-marshal: {}", e.getLocalizedMessage());
+        }
+    }
+
+    public GetSuccessorListRequest(DataInputStream dataInputStream) throws IOException {
+        this.unmarshal(dataInputStream);
+    }
+
+    @Override
+    public MessageType getType() {
+        return MessageType.GET_SUCCESSOR_LIST_REQUEST;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null) return false;
+        if (this == o) return true;
+        if (!(o instanceof GetSuccessorListRequest)) return false;
+        GetSuccessorListRequest gslrOther = (GetSuccessorListRequest) o;
+        return this.hostname.equals(gslrOther.getHostname());
+    }
+
+    @Override
+    public String toString() {
+        return "\nGetSuccessorListRequest\n";
+    }
+}
@@ -0,0 +1,72 @@
+package org.chord.messaging;
+
+import org.chord.peer.LoadStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Response to a LoadGossipRequest: the LoadStats of every peer the responder heard of recently, its own included,
+ * once it merged those of the request.
+ */
+public class LoadGossipResponse extends Message {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadGossipResponse.class);
+
+    public List<LoadStats> stats;
+
+    public LoadGossipResponse(String hostname, String ipAddress, List<LoadStats> stats) {
+        this.hostname = hostname;
+        this.ipAddress = ipAddress;
+        this.stats = stats;
+        try {
+            marshal();
+        } catch (IOException e) {
+            log.error("Unable to self-marshal: {}", e.getLocalizedMessage());
+        }
+    }
+
+    public LoadGossipResponse(DataInputStream dataInputStream) throws IOException {
+        this.unmarshal(dataInputStream);
+    }
+
+    @Override
+    public MessageType getType() {
+        return MessageType.LOAD_GOSSIP_RESPONSE;
+    }
+
+    public List<LoadStats> getStats() {
+        return stats;
+    }
+
+    @Override
+    public void marshal(DataOutputStream dataOutputStream) throws IOException {
+        super.marshal(dataOutputStream);
+        writeLoadStatsList(dataOutputStream, this.stats);
+    }
+
+    @Override
+    public void unmarshal(DataInputStream dataInputStream) throws IOException {
+        super.unmarshal(dataInputStream);
+        this.stats = readLoadStatsList(dataInputStream);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null) return false;
+        if (this == o) return true;
+        if (!(o instanceof LoadGossipResponse)) return false;
+        LoadGossipResponse lgrsOther = (LoadGossipResponse) o;
+        return this.stats.equals(lgrsOther.stats);
+    }
+
+    @Override
+    public String toString() {
+        return "\nLoadGossipResponse:\n" +
+                String.format("\tstats: %s\n", this.stats);
+    }
+}
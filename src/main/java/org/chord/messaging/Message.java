@@ -1,10 +1,11 @@
 package org.chord.messaging;
 
 import org.chord.peer.Identifier;
+import org.chord.peer.LoadStats;
+import org.chord.util.RingKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -18,19 +19,31 @@ public abstract class Message {
 
     private static final Logger log = LoggerFactory.getLogger(Message.class);
 
+    // Buffers of at most this size are kept by their thread for the next marshal()
+    private static final int MARSHAL_BUFFER_RETAINED_SIZE = 64 * 1024;
+    private static final ThreadLocal<ByteArrayOutputStream> marshalBuffer =
+            ThreadLocal.withInitial(() -> new ByteArrayOutputStream(1024));
+
     public String hostname, ipAddress;
     public byte[] marshaledBytes;
 
+    // Id of the request/response exchange this Message belongs to; carried by the frame, not the marshaled bytes
+    public int requestId;
+
     public enum MessageType {
         REGISTER_PEER_REQUEST, REGISTER_PEER_RESPONSE, PEER_IDENTIFIER_MESSAGE, GET_PREDECESSOR_REQUEST,
         GET_SUCCESSOR_REQUEST, NETWORK_JOIN_NOTIFICATION, NETWORK_EXIT_NOTIFICATION, FIND_SUCCESSOR_REQUEST,
         PREDECESSOR_NOTIFICATION, SUCCESSOR_NOTIFICATION, STATUS_MESSAGE, GET_RANDOM_PEER_REQUEST,
         GET_RANDOM_PEER_RESPONSE, LOOKUP_REQUEST, LOOKUP_RESPONSE, STORE_FILE_REQUEST, STORE_FILE_RESPONSE,
-        MOVE_FILE_REQUEST, MOVE_FILE_RESPONSE
+        MOVE_FILE_REQUEST, MOVE_FILE_RESPONSE, FIND_SUCCESSOR_REFERRAL, FIND_SUCCESSORS_REQUEST,
+        FIND_SUCCESSORS_RESPONSE, FILE_TRANSFER_HEADER, FILE_CHUNK, FILE_TRANSFER_COMMIT,
+        RETRIEVE_FILE_REQUEST, RETRIEVE_FILE_RESPONSE, GET_SUCCESSOR_LIST_REQUEST, SUCCESSOR_LIST_RESPONSE,
+        FIND_SUCCESSOR_RESPONSE, LOAD_GOSSIP_REQUEST, LOAD_GOSSIP_RESPONSE
     }
 
     public enum Status {
-        OK, WARNING, ERROR
+        OK, WARNING, ERROR,
+        NOT_OWNER // a store was sent to a peer that doesn't own its id, i.e. after a stale lookup
     }
 
     public abstract MessageType getType();
@@ -47,6 +60,25 @@ public abstract class Message {
         return marshaledBytes;
     }
 
+    /**
+     * Messages carrying bulk content, like a file, return it here instead of marshaling it: the marshaled bytes end
+     * with its length (see writePayloadLength()), and a Frame writes the Payload itself straight after them.
+     * On the wire this is the same as writeByteArray(), so the receiving side reads it with readByteArray().
+     *
+     * @return The Payload following the marshaled bytes, or null if this Message has none
+     */
+    public Payload getPayload() {
+        return null;
+    }
+
+    public int getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(int requestId) {
+        this.requestId = requestId;
+    }
+
     /**
      * Writes an integer to the output stream.
      *
@@ -69,6 +101,50 @@ public abstract class Message {
         return dataInputStream.readInt();
     }
 
+    /**
+     * Writes a long to the output stream.
+     *
+     * @param dataOutputStream The DataOutputStream we are writing to.
+     * @param value            The long we are writing.
+     * @throws IOException If fails to write to the DataOutputStream
+     */
+    public static void writeLong(DataOutputStream dataOutputStream, long value) throws IOException {
+        dataOutputStream.writeLong(value);
+    }
+
+    /**
+     * Reads and returns a long from the input stream.
+     *
+     * @param dataInputStream The DataInputStream we are reading from.
+     * @return The long we read.
+     * @throws IOException If fails to read from the DataInputStream
+     */
+    public static long readLong(DataInputStream dataInputStream) throws IOException {
+        return dataInputStream.readLong();
+    }
+
+    /**
+     * Writes a double to the output stream.
+     *
+     * @param dataOutputStream The DataOutputStream we are writing to.
+     * @param value            The double we are writing.
+     * @throws IOException If fails to write to the DataOutputStream
+     */
+    public static void writeDouble(DataOutputStream dataOutputStream, double value) throws IOException {
+        dataOutputStream.writeDouble(value);
+    }
+
+    /**
+     * Reads and returns a double from the input stream.
+     *
+     * @param dataInputStream The DataInputStream we are reading from.
+     * @return The double we read.
+     * @throws IOException If fails to read from the DataInputStream
+     */
+    public static double readDouble(DataInputStream dataInputStream) throws IOException {
+        return dataInputStream.readDouble();
+    }
+
     /**
      * Writes a boolean to the output stream.
      *
@@ -160,6 +236,17 @@ public abstract class Message {
         dataOutputStream.write(bytes);
     }
 
+    /**
+     * Writes the length of a Payload as the last marshaled field of a Message; see getPayload().
+     *
+     * @param dataOutputStream The DataOutputStream we are writing to.
+     * @param payload          The Payload that follows the marshaled bytes.
+     * @throws IOException If fails to write to DataOutputStream
+     */
+    public static void writePayloadLength(DataOutputStream dataOutputStream, Payload payload) throws IOException {
+        writeInt(dataOutputStream, (int) payload.length());
+    }
+
     public static byte[] readByteArray(DataInputStream dataInputStream) throws IOException {
         int length = dataInputStream.readInt();
         byte[] bytes =  new byte[length];
@@ -234,24 +321,61 @@ public abstract class Message {
     /**
      * Writes a peer Identifier object to the DataOutputStream
      * @param dataOutputStream The DataOutputStream we are writing to.
-     * @param value Peer Identifier object containing id and hostname
+     * @param value Peer Identifier object containing id, hostname and port
      * @throws IOException If fails to write to DataOutputStream
      */
     public static void writeIdentifier(DataOutputStream dataOutputStream, Identifier value) throws IOException {
         writeString(dataOutputStream, value.getId());
         writeString(dataOutputStream, value.getHostname());
+        writeInt(dataOutputStream, value.getPort());
     }
 
     /**
      * Reads a peer Identifier object from the DataInputStream
      * @param dataInputStream The DataInputStream we are reading from.
-     * @return A peer's Identifier object, containing id and hostname
+     * @return A peer's Identifier object, containing id, hostname and port
      * @throws IOException If fails to read from the DataInputStream
      */
     public static Identifier readIdentifier(DataInputStream dataInputStream) throws IOException {
         String peerId = readString(dataInputStream);
         String peerHostname = readString(dataInputStream);
-        return new Identifier(peerHostname, peerId);
+        int peerPort = readInt(dataInputStream);
+        try {
+            return new Identifier(peerHostname, peerId, peerPort);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(String.format("Invalid peer id '%s': %s", peerId, e.getMessage()));
+        }
+    }
+
+    /**
+     * Reads a hex id of the ring, i.e. one being looked up, failing on a malformed one here rather than in whoever
+     * parses it later
+     * @param dataInputStream The DataInputStream we are reading from.
+     * @return The id, as sent
+     * @throws IOException If fails to read from the DataInputStream, or the id isn't valid
+     */
+    public static String readRingId(DataInputStream dataInputStream) throws IOException {
+        String id = readString(dataInputStream);
+        if (!RingKey.isValid(id)) {
+            throw new IOException(String.format("Invalid id '%s': must be 1 to %d hex digits", id,
+                    RingKey.hexDigits()));
+        }
+        return id;
+    }
+
+    /**
+     * Reads a List of hex ids of the ring, see readRingId()
+     * @param dataInputStream The DataInputStream we are reading from.
+     * @return The ids, as sent
+     * @throws IOException If fails to read from the DataInputStream, or an id isn't valid
+     */
+    public static List<String> readRingIdList(DataInputStream dataInputStream) throws IOException {
+        int count = readInt(dataInputStream);
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(readRingId(dataInputStream));
+        }
+        return ids;
     }
 
     /**
@@ -283,6 +407,73 @@ public abstract class Message {
         return values;
     }
 
+    /**
+     * Writes the LoadStats of a peer to the DataOutputStream. Its age is written rather than the time it was
+     * measured at, so that the clocks of peers need not agree.
+     * @param dataOutputStream The DataOutputStream we are writing to.
+     * @param value LoadStats of a peer
+     * @throws IOException If fails to write to DataOutputStream
+     */
+    public static void writeLoadStats(DataOutputStream dataOutputStream, LoadStats value) throws IOException {
+        writeIdentifier(dataOutputStream, value.peerId);
+        writeInt(dataOutputStream, value.keys);
+        writeLong(dataOutputStream, value.bytes);
+        writeDouble(dataOutputStream, value.requestRate);
+        writeString(dataOutputStream, value.splitId);
+        writeInt(dataOutputStream, value.hostWeight);
+        writeLong(dataOutputStream, Math.max(0, System.currentTimeMillis() - value.measuredAtMillis));
+    }
+
+    /**
+     * Reads the LoadStats of a peer from the DataInputStream
+     * @param dataInputStream The DataInputStream we are reading from.
+     * @return LoadStats of a peer, measured at the time its age tells by our clock
+     * @throws IOException If fails to read from the DataInputStream
+     */
+    public static LoadStats readLoadStats(DataInputStream dataInputStream) throws IOException {
+        Identifier peerId = readIdentifier(dataInputStream);
+        int keys = readInt(dataInputStream);
+        long bytes = readLong(dataInputStream);
+        double requestRate = readDouble(dataInputStream);
+        String splitId = readString(dataInputStream);
+        if (!splitId.isEmpty() && !RingKey.isValid(splitId)) { // empty if the peer can't be split
+            throw new IOException(String.format("Invalid split id '%s' of %s", splitId, peerId));
+        }
+        int hostWeight = readInt(dataInputStream);
+        long ageMillis = readLong(dataInputStream);
+        return new LoadStats(peerId, keys, bytes, requestRate, splitId, hostWeight,
+                System.currentTimeMillis() - ageMillis);
+    }
+
+    /**
+     * Writes a List of LoadStats to the DataOutputStream
+     * @param dataOutputStream The DataOutputStream we are writing to.
+     * @param values LoadStats of peers
+     * @throws IOException If fails to write to DataOutputStream
+     */
+    public static void writeLoadStatsList(DataOutputStream dataOutputStream, List<LoadStats> values)
+            throws IOException {
+        writeInt(dataOutputStream, values.size());
+        for (LoadStats value: values) {
+            writeLoadStats(dataOutputStream, value);
+        }
+    }
+
+    /**
+     * Reads a List of LoadStats from the DataInputStream
+     * @param dataInputStream The DataInputStream we are reading from.
+     * @return LoadStats of peers
+     * @throws IOException If fails to read from the DataInputStream
+     */
+    public static List<LoadStats> readLoadStatsList(DataInputStream dataInputStream) throws IOException {
+        int count = readInt(dataInputStream);
+        List<LoadStats> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readLoadStats(dataInputStream));
+        }
+        return values;
+    }
+
     /**
      * Converts an integer to a MessageType enum
      *
@@ -310,6 +501,19 @@ public abstract class Message {
             case 16: return MessageType.STORE_FILE_RESPONSE;
             case 17: return MessageType.MOVE_FILE_REQUEST;
             case 18: return MessageType.MOVE_FILE_RESPONSE;
+            case 19: return MessageType.FIND_SUCCESSOR_REFERRAL;
+            case 20: return MessageType.FIND_SUCCESSORS_REQUEST;
+            case 21: return MessageType.FIND_SUCCESSORS_RESPONSE;
+            case 22: return MessageType.FILE_TRANSFER_HEADER;
+            case 23: return MessageType.FILE_CHUNK;
+            case 24: return MessageType.FILE_TRANSFER_COMMIT;
+            case 25: return MessageType.RETRIEVE_FILE_REQUEST;
+            case 26: return MessageType.RETRIEVE_FILE_RESPONSE;
+            case 27: return MessageType.GET_SUCCESSOR_LIST_REQUEST;
+            case 28: return MessageType.SUCCESSOR_LIST_RESPONSE;
+            case 29: return MessageType.FIND_SUCCESSOR_RESPONSE;
+            case 30: return MessageType.LOAD_GOSSIP_REQUEST;
+            case 31: return MessageType.LOAD_GOSSIP_RESPONSE;
             default: return null;
         }
     }
@@ -344,6 +548,19 @@ public abstract class Message {
             case STORE_FILE_RESPONSE: return 16;
             case MOVE_FILE_REQUEST: return 17;
             case MOVE_FILE_RESPONSE: return 18;
+            case FIND_SUCCESSOR_REFERRAL: return 19;
+            case FIND_SUCCESSORS_REQUEST: return 20;
+            case FIND_SUCCESSORS_RESPONSE: return 21;
+            case FILE_TRANSFER_HEADER: return 22;
+            case FILE_CHUNK: return 23;
+            case FILE_TRANSFER_COMMIT: return 24;
+            case RETRIEVE_FILE_REQUEST: return 25;
+            case RETRIEVE_FILE_RESPONSE: return 26;
+            case GET_SUCCESSOR_LIST_REQUEST: return 27;
+            case SUCCESSOR_LIST_RESPONSE: return 28;
+            case FIND_SUCCESSOR_RESPONSE: return 29;
+            case LOAD_GOSSIP_REQUEST: return 30;
+            case LOAD_GOSSIP_RESPONSE: return 31;
             default: return -1;
         }
     }
@@ -383,12 +600,15 @@ public abstract class Message {
      * @throws IOException If unable to write to the output stream
      */
     public void marshal() throws IOException {
-        ByteArrayOutputStream byteOutStream = new ByteArrayOutputStream();
-        DataOutputStream dataOutStream = new DataOutputStream(new BufferedOutputStream(byteOutStream));
+        // Written in a single pass into a reused, per-thread buffer, then copied out once at its exact size
+        ByteArrayOutputStream byteOutStream = marshalBuffer.get();
+        byteOutStream.reset();
+        DataOutputStream dataOutStream = new DataOutputStream(byteOutStream);
         marshal(dataOutStream);
         collectByteStream(dataOutStream, byteOutStream);
-        dataOutStream.close();
-        byteOutStream.close();
+        if (byteOutStream.size() > MARSHAL_BUFFER_RETAINED_SIZE) {
+            marshalBuffer.remove(); // don't hold on to an unusually large buffer
+        }
     }
 
     /**
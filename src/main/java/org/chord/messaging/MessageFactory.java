@@ -46,27 +46,45 @@ public class MessageFactory {
         // Create concrete Message using type in byte message
         Message.MessageType type = Message.typeFromInteger(integerType);
         if (type != null) {
-            switch (type) {
-                case REGISTER_PEER_REQUEST: return new RegisterPeerRequest(dataInputStream);
-                case REGISTER_PEER_RESPONSE: return new RegisterPeerResponse(dataInputStream);
-                case PEER_IDENTIFIER_MESSAGE: return new PeerIdentifierMessage(dataInputStream);
-                case GET_PREDECESSOR_REQUEST: return new GetPredecessorRequest(dataInputStream);
-                case GET_SUCCESSOR_REQUEST: return new GetSuccessorRequest(dataInputStream);
-                case NETWORK_JOIN_NOTIFICATION: return new NetworkJoinNotification(dataInputStream);
-                case NETWORK_EXIT_NOTIFICATION: return new NetworkExitNotification(dataInputStream);
-                case FIND_SUCCESSOR_REQUEST: return new FindSuccessorRequest(dataInputStream);
-                case PREDECESSOR_NOTIFICATION: return new PredecessorNotification(dataInputStream);
-                case SUCCESSOR_NOTIFICATION: return new SuccessorNotification(dataInputStream);
-                case STATUS_MESSAGE: return new StatusMessage(dataInputStream);
-                case GET_RANDOM_PEER_REQUEST: return new GetRandomPeerRequest(dataInputStream);
-                case GET_RANDOM_PEER_RESPONSE: return new GetRandomPeerResponse(dataInputStream);
-                case LOOKUP_REQUEST: return new LookupRequest(dataInputStream);
-                case LOOKUP_RESPONSE: return new LookupResponse(dataInputStream);
-                case STORE_FILE_REQUEST: return new StoreFileRequest(dataInputStream);
-                case STORE_FILE_RESPONSE: return new StoreFileResponse(dataInputStream);
-                case MOVE_FILE_REQUEST: return new MoveFileRequest(dataInputStream);
-                case MOVE_FILE_RESPONSE: return new MoveFileResponse(dataInputStream);
-                default: return null;
+            // A malformed field, i.e. an unknown status, fails as a bad message rather than on the reader's thread
+            try {
+                switch (type) {
+                    case REGISTER_PEER_REQUEST: return new RegisterPeerRequest(dataInputStream);
+                    case REGISTER_PEER_RESPONSE: return new RegisterPeerResponse(dataInputStream);
+                    case PEER_IDENTIFIER_MESSAGE: return new PeerIdentifierMessage(dataInputStream);
+                    case GET_PREDECESSOR_REQUEST: return new GetPredecessorRequest(dataInputStream);
+                    case GET_SUCCESSOR_REQUEST: return new GetSuccessorRequest(dataInputStream);
+                    case NETWORK_JOIN_NOTIFICATION: return new NetworkJoinNotification(dataInputStream);
+                    case NETWORK_EXIT_NOTIFICATION: return new NetworkExitNotification(dataInputStream);
+                    case FIND_SUCCESSOR_REQUEST: return new FindSuccessorRequest(dataInputStream);
+                    case PREDECESSOR_NOTIFICATION: return new PredecessorNotification(dataInputStream);
+                    case SUCCESSOR_NOTIFICATION: return new SuccessorNotification(dataInputStream);
+                    case STATUS_MESSAGE: return new StatusMessage(dataInputStream);
+                    case GET_RANDOM_PEER_REQUEST: return new GetRandomPeerRequest(dataInputStream);
+                    case GET_RANDOM_PEER_RESPONSE: return new GetRandomPeerResponse(dataInputStream);
+                    case LOOKUP_REQUEST: return new LookupRequest(dataInputStream);
+                    case LOOKUP_RESPONSE: return new LookupResponse(dataInputStream);
+                    case STORE_FILE_REQUEST: return new StoreFileRequest(dataInputStream);
+                    case STORE_FILE_RESPONSE: return new StoreFileResponse(dataInputStream);
+                    case MOVE_FILE_REQUEST: return new MoveFileRequest(dataInputStream);
+                    case MOVE_FILE_RESPONSE: return new MoveFileResponse(dataInputStream);
+                    case FIND_SUCCESSOR_REFERRAL: return new FindSuccessorReferral(dataInputStream);
+                    case FIND_SUCCESSORS_REQUEST: return new FindSuccessorsRequest(dataInputStream);
+                    case FIND_SUCCESSORS_RESPONSE: return new FindSuccessorsResponse(dataInputStream);
+                    case FILE_TRANSFER_HEADER: return new FileTransferHeader(dataInputStream);
+                    case FILE_CHUNK: return new FileChunk(dataInputStream);
+                    case FILE_TRANSFER_COMMIT: return new FileTransferCommit(dataInputStream);
+                    case RETRIEVE_FILE_REQUEST: return new RetrieveFileRequest(dataInputStream);
+                    case RETRIEVE_FILE_RESPONSE: return new RetrieveFileResponse(dataInputStream);
+                    case GET_SUCCESSOR_LIST_REQUEST: return new GetSuccessorListRequest(dataInputStream);
+                    case SUCCESSOR_LIST_RESPONSE: return new SuccessorListResponse(dataInputStream);
+                    case FIND_SUCCESSOR_RESPONSE: return new FindSuccessorResponse(dataInputStream);
+                    case LOAD_GOSSIP_REQUEST: return new LoadGossipRequest(dataInputStream);
+                    case LOAD_GOSSIP_RESPONSE: return new LoadGossipResponse(dataInputStream);
+                    default: return null;
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IOException(String.format("Malformed %s: %s", type, e.getMessage()), e);
             }
         } else {
             throw new IOException("Unable to determine MessageType for integer " + integerType);
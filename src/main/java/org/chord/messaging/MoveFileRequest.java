@@ -6,7 +6,7 @@ import org.slf4j.LoggerFactory;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.Arrays;
+import java.util.Objects;
 
 /**
  * Utilized by Peers to move stored files when the finger tables get updated.
@@ -16,14 +16,21 @@ public class MoveFileRequest extends Message {
 
     public String fileId; // 16-bit file digest
     public String fileName;
-    public byte[] fileBytes; // file content
+    public Payload payload; // file content
 
     public MoveFileRequest(String hostname, String ipAddress, String fileId, String fileName, byte[] fileBytes) {
+        this(hostname, ipAddress, fileId, fileName, Payload.of(fileBytes));
+    }
+
+    /**
+     * @param payload File content, which is written straight from its source when sent, not copied into the message
+     */
+    public MoveFileRequest(String hostname, String ipAddress, String fileId, String fileName, Payload payload) {
         this.hostname = hostname;
         this.ipAddress = ipAddress;
         this.fileId = fileId;
         this.fileName = fileName;
-        this.fileBytes = fileBytes;
+        this.payload = payload;
         try {
             marshal();
         } catch (IOException e) {
@@ -40,7 +47,7 @@ public class MoveFileRequest extends Message {
         super.marshal(dataOutputStream);
         writeString(dataOutputStream, this.fileId);
         writeString(dataOutputStream, this.fileName);
-        writeByteArray(dataOutputStream, this.fileBytes);
+        writePayloadLength(dataOutputStream, this.payload);
     }
 
     @Override
@@ -48,7 +55,7 @@ public class MoveFileRequest extends Message {
         super.unmarshal(dataInputStream);
         this.fileId = readString(dataInputStream);
         this.fileName = readString(dataInputStream);
-        this.fileBytes = readByteArray(dataInputStream);
+        this.payload = Payload.of(readByteArray(dataInputStream));
     }
 
     @Override
@@ -59,7 +66,7 @@ public class MoveFileRequest extends Message {
         MoveFileRequest mfrOther = (MoveFileRequest) o;
         return this.fileId.equals(mfrOther.fileId) &&
                 this.fileName.equals(mfrOther.fileName) &&
-                Arrays.equals(this.fileBytes, mfrOther.fileBytes);
+                Objects.equals(this.payload, mfrOther.payload);
     }
 
     @Override
@@ -69,6 +76,11 @@ public class MoveFileRequest extends Message {
                 String.format("\tfileName: %s\n", this.fileName);
     }
 
+    @Override
+    public Payload getPayload() {
+        return payload;
+    }
+
     @Override
     public MessageType getType() {
         return MessageType.MOVE_FILE_REQUEST;
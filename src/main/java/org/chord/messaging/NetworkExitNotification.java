@@ -5,18 +5,42 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 
-public class NetworkExitNotification extends PeerIdentifierMessage {
+/**
+ * Announces that a peer left the network gracefully. The discovery node stops tracking it, and peers splice its
+ * predecessor and successor together: every pointer to the departed peer is replaced with its successor, which took
+ * over its keys, and its successor's predecessor becomes the departed peer's predecessor.
+ */
+public class NetworkExitNotification extends Message {
 
     private static final Logger log = LoggerFactory.getLogger(NetworkExitNotification.class);
 
+    public Identifier peerId;
+    public Identifier predecessor; // the departed peer's predecessor
+    public Identifier successor; // the departed peer's successor
+
     public NetworkExitNotification(String hostname, String ipAddress, Identifier peerId) {
-        super(hostname, ipAddress, peerId);
+        this(hostname, ipAddress, peerId, peerId, peerId);
+    }
+
+    public NetworkExitNotification(String hostname, String ipAddress, Identifier peerId, Identifier predecessor,
+                                   Identifier successor) {
+        this.hostname = hostname;
+        this.ipAddress = ipAddress;
+        this.peerId = peerId;
+        this.predecessor = predecessor;
+        this.successor = successor;
+        try {
+            marshal();
+        } catch (IOException e) {
+            log.error("Unable to self-marshal: {}", e.getLocalizedMessage());
+        }
     }
 
     public NetworkExitNotification(DataInputStream dataInputStream) throws IOException {
-        super(dataInputStream);
+        this.unmarshal(dataInputStream);
     }
 
     @Override
@@ -24,18 +48,42 @@ public class NetworkExitNotification extends PeerIdentifierMessage {
         return MessageType.NETWORK_EXIT_NOTIFICATION;
     }
 
+    public Identifier getPeerId() {
+        return peerId;
+    }
+
+    @Override
+    public void marshal(DataOutputStream dataOutputStream) throws IOException {
+        super.marshal(dataOutputStream);
+        writeIdentifier(dataOutputStream, this.peerId);
+        writeIdentifier(dataOutputStream, this.predecessor);
+        writeIdentifier(dataOutputStream, this.successor);
+    }
+
+    @Override
+    public void unmarshal(DataInputStream dataInputStream) throws IOException {
+        super.unmarshal(dataInputStream);
+        this.peerId = readIdentifier(dataInputStream);
+        this.predecessor = readIdentifier(dataInputStream);
+        this.successor = readIdentifier(dataInputStream);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == null) return false;
         if (this == o) return true;
         if (!(o instanceof NetworkExitNotification)) return false;
         NetworkExitNotification nenOther = (NetworkExitNotification) o;
-        return this.peerId.equals(nenOther.peerId);
+        return this.peerId.equals(nenOther.peerId) &&
+                this.predecessor.equals(nenOther.predecessor) &&
+                this.successor.equals(nenOther.successor);
     }
 
     @Override
     public String toString() {
         return "\nNetworkExitNotification:\n" +
-                String.format("\tpeerId: %s\n", this.peerId);
+                String.format("\tpeerId: %s\n", this.peerId) +
+                String.format("\tpredecessor: %s\n", this.predecessor) +
+                String.format("\tsuccessor: %s\n", this.successor);
     }
 }
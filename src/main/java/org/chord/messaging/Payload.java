@@ -0,0 +1,214 @@
+package org.chord.messaging;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Bulk content carried by a Message after its marshaled fields, such as the contents of a file.
+ * A Payload is never copied into the Message's marshaled bytes: Frames write it straight from its source, which is
+ * either a buffer already in memory (i.e. a received Message, or a memory-mapped storage segment), or a file on disk
+ * that is not read into heap at all. A file-backed Payload may be a region of a larger file, i.e. an object in a
+ * storage segment.
+ */
+public class Payload {
+
+    private final ByteBuffer buffer;
+    private final Path path;
+    private final long offset;
+    private final long length;
+
+    private Payload(ByteBuffer buffer, Path path, long offset, long length) {
+        this.buffer = buffer;
+        this.path = path;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * @param bytes Content already in heap
+     * @return A Payload backed by the byte array, which is not copied
+     */
+    public static Payload of(byte[] bytes) {
+        return of(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * @param buffer Content already in memory between the buffer's position and limit, i.e. a slice of a
+     *               MappedByteBuffer; its position and limit are not changed by the Payload
+     * @return A Payload backed by the buffer, which is not copied
+     */
+    public static Payload of(ByteBuffer buffer) {
+        return new Payload(buffer.slice(), null, 0, buffer.remaining());
+    }
+
+    /**
+     * @param path File whose content is the Payload
+     * @return A Payload backed by the file, which is only read when the Payload is written
+     * @throws IOException If unable to determine the size of the file, or it is too large for a single Frame
+     */
+    public static Payload of(Path path) throws IOException {
+        long size = Files.size(path);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException(String.format("%s is too large to send (%d bytes)", path, size));
+        }
+        return of(path, 0, size);
+    }
+
+    /**
+     * @param path   File containing the Payload
+     * @param offset Position of the Payload in the file
+     * @param length Length of the Payload
+     * @return A Payload backed by a region of the file, which is only read when the Payload is written
+     * @throws IOException If the region is too large for a single Frame
+     */
+    public static Payload of(Path path, long offset, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException(String.format("%s is too large to send (%d bytes)", path, length));
+        }
+        return new Payload(null, path, offset, length);
+    }
+
+    /**
+     * @param from   Position in this Payload the slice starts at
+     * @param length Length of the slice
+     * @return A Payload backed by part of this one, without copying it
+     */
+    public Payload slice(long from, long length) {
+        if (from < 0 || length < 0 || from + length > this.length) {
+            throw new IndexOutOfBoundsException(String.format("Slice [%d, %d) of %s", from, from + length, this));
+        }
+        if (isFile()) {
+            return new Payload(null, this.path, this.offset + from, length);
+        }
+        ByteBuffer slice = this.buffer.duplicate();
+        slice.position((int) from).limit((int) (from + length));
+        return of(slice);
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public boolean isFile() {
+        return this.path != null;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return The content as a byte array; copies it into heap unless the Payload wraps a whole byte array
+     * @throws IOException If unable to read the file
+     */
+    public byte[] toByteArray() throws IOException {
+        if (!isFile()) {
+            if (this.buffer.hasArray() && this.buffer.arrayOffset() == 0 &&
+                    this.buffer.array().length == this.length) {
+                return this.buffer.array();
+            }
+            byte[] bytes = new byte[(int) this.length];
+            this.buffer.duplicate().get(bytes);
+            return bytes;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) this.length);
+        try (FileChannel fileChannel = FileChannel.open(this.path, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (fileChannel.read(buffer, this.offset + buffer.position()) == -1) {
+                    throw new EOFException(String.format("%s is shorter than expected", this.path));
+                }
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @return The content as a ByteBuffer of its own, sharing the Payload's buffer or memory-mapping the file,
+     *         without copying it
+     * @throws IOException If unable to map the file
+     */
+    public ByteBuffer toByteBuffer() throws IOException {
+        if (!isFile()) {
+            return this.buffer.duplicate();
+        }
+        try (FileChannel fileChannel = FileChannel.open(this.path, StandardOpenOption.READ)) {
+            return fileChannel.map(FileChannel.MapMode.READ_ONLY, this.offset, this.length);
+        }
+    }
+
+    /**
+     * Writes the content to a stream; a file is streamed through a small buffer rather than read whole.
+     *
+     * @param outputStream The OutputStream we are writing to.
+     * @throws IOException If unable to read the file, or write to the stream
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        if (!isFile()) {
+            if (this.buffer.hasArray()) {
+                outputStream.write(this.buffer.array(), this.buffer.arrayOffset(), (int) this.length);
+            } else {
+                writeTo(Channels.newChannel(outputStream));
+            }
+        } else if (this.offset == 0 && this.length == Files.size(this.path)) {
+            Files.copy(this.path, outputStream);
+        } else {
+            writeTo(Channels.newChannel(outputStream));
+        }
+    }
+
+    /**
+     * Writes the content to a channel; a file is transferred with FileChannel.transferTo, which lets the OS copy it
+     * from disk to the socket without it passing through heap.
+     *
+     * @param channel The channel we are writing to, in blocking mode
+     * @throws IOException If unable to read the file, or write to the channel
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        if (!isFile()) {
+            ByteBuffer buffer = this.buffer.duplicate();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            return;
+        }
+        try (FileChannel fileChannel = FileChannel.open(this.path, StandardOpenOption.READ)) {
+            long position = 0;
+            while (position < this.length) {
+                long transferred = fileChannel.transferTo(this.offset + position, this.length - position, channel);
+                if (transferred == 0 && this.offset + position >= fileChannel.size()) {
+                    throw new IOException(String.format("%s was truncated while being sent", this.path));
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null) return false;
+        if (this == o) return true;
+        if (!(o instanceof Payload)) return false;
+        Payload pOther = (Payload) o;
+        try {
+            return this.length == pOther.length && Arrays.equals(toByteArray(), pOther.toByteArray());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return isFile()
+                ? String.format("Payload{ file: %s, offset: %d, length: %d }", this.path, this.offset, this.length)
+                : String.format("Payload{ length: %d }", this.length);
+    }
+}
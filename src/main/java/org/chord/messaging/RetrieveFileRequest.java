@@ -0,0 +1,75 @@
+package org.chord.messaging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Sent by StoreData to the successor of a file id, asking for the content of the file stored under it, from an
+ * offset on. Answered with a RetrieveFileResponse holding at most a chunk of the file, so that a large file is read
+ * in several requests rather than in a single frame.
+ */
+public class RetrieveFileRequest extends Message {
+    private static final Logger log = LoggerFactory.getLogger(RetrieveFileRequest.class);
+
+    public String fileId; // 16-bit file digest
+    public long offset; // position in the file the content starts at
+
+    public RetrieveFileRequest(String hostname, String ipAddress, String fileId) {
+        this(hostname, ipAddress, fileId, 0);
+    }
+
+    public RetrieveFileRequest(String hostname, String ipAddress, String fileId, long offset) {
+        this.hostname = hostname;
+        this.ipAddress = ipAddress;
+        this.fileId = fileId;
+        this.offset = offset;
+        try {
+            marshal();
+        } catch (IOException e) {
+            log.error("Unable to self-marshal: {}", e.getLocalizedMessage());
+        }
+    }
+
+    public RetrieveFileRequest(DataInputStream dataInputStream) throws IOException {
+        this.unmarshal(dataInputStream);
+    }
+
+    @Override
+    public void marshal(DataOutputStream dataOutputStream) throws IOException {
+        super.marshal(dataOutputStream);
+        writeString(dataOutputStream, this.fileId);
+        writeLong(dataOutputStream, this.offset);
+    }
+
+    @Override
+    public void unmarshal(DataInputStream dataInputStream) throws IOException {
+        super.unmarshal(dataInputStream);
+        this.fileId = readString(dataInputStream);
+        this.offset = readLong(dataInputStream);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null) return false;
+        if (this == o) return true;
+        if (!(o instanceof RetrieveFileRequest)) return false;
+        RetrieveFileRequest rfrOther = (RetrieveFileRequest) o;
+        return this.fileId.equals(rfrOther.fileId) && this.offset == rfrOther.offset;
+    }
+
+    @Override
+    public String toString() {
+        return "\nRetrieveFileRequest:\n" +
+                String.format("\tfileId: %s\n", this.fileId) +
+                String.format("\toffset: %d\n", this.offset);
+    }
+
+    @Override
+    public MessageType getType() {
+        return MessageType.RETRIEVE_FILE_REQUEST;
+    }
+}
@@ -0,0 +1,119 @@
+package org.chord.messaging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Answers a RetrieveFileRequest with the name, length and content of the stored file from the requested offset, at
+ * most a chunk of it, or with found = false if the Peer doesn't store a file under the requested id.
+ */
+public class RetrieveFileResponse extends Message {
+    private static final Logger log = LoggerFactory.getLogger(RetrieveFileResponse.class);
+
+    public String fileId; // 16-bit file digest
+    public boolean found;
+    public String fileName; // empty if not found
+    public long fileLength; // length of the whole file, 0 if not found
+    public Payload payload; // file content from the requested offset, empty if not found
+
+    /**
+     * @param payload The whole file content, which is written straight from its source when sent, not copied into
+     *                the message
+     */
+    public RetrieveFileResponse(String hostname, String ipAddress, String fileId, String fileName, Payload payload) {
+        this(hostname, ipAddress, fileId, true, fileName, payload.length(), payload);
+    }
+
+    /**
+     * @param fileLength Length of the whole file
+     * @param payload    Part of the file content, written straight from its source when sent
+     */
+    public RetrieveFileResponse(String hostname, String ipAddress, String fileId, String fileName, long fileLength,
+                                Payload payload) {
+        this(hostname, ipAddress, fileId, true, fileName, fileLength, payload);
+    }
+
+    private RetrieveFileResponse(String hostname, String ipAddress, String fileId, boolean found, String fileName,
+                                 long fileLength, Payload payload) {
+        this.hostname = hostname;
+        this.ipAddress = ipAddress;
+        this.fileId = fileId;
+        this.found = found;
+        this.fileName = fileName;
+        this.fileLength = fileLength;
+        this.payload = payload;
+        try {
+            marshal();
+        } catch (IOException e) {
+            log.error("Unable to self-marshal: {}", e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * @return A RetrieveFileResponse telling the requester that no file is stored under fileId
+     */
+    public static RetrieveFileResponse notFound(String hostname, String ipAddress, String fileId) {
+        return new RetrieveFileResponse(hostname, ipAddress, fileId, false, "", 0, Payload.of(new byte[0]));
+    }
+
+    public RetrieveFileResponse(DataInputStream dataInputStream) throws IOException {
+        this.unmarshal(dataInputStream);
+    }
+
+    @Override
+    public void marshal(DataOutputStream dataOutputStream) throws IOException {
+        super.marshal(dataOutputStream);
+        writeString(dataOutputStream, this.fileId);
+        writeBoolean(dataOutputStream, this.found);
+        writeString(dataOutputStream, this.fileName);
+        writeLong(dataOutputStream, this.fileLength);
+        writePayloadLength(dataOutputStream, this.payload);
+    }
+
+    @Override
+    public void unmarshal(DataInputStream dataInputStream) throws IOException {
+        super.unmarshal(dataInputStream);
+        this.fileId = readString(dataInputStream);
+        this.found = readBoolean(dataInputStream);
+        this.fileName = readString(dataInputStream);
+        this.fileLength = readLong(dataInputStream);
+        this.payload = Payload.of(readByteArray(dataInputStream));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null) return false;
+        if (this == o) return true;
+        if (!(o instanceof RetrieveFileResponse)) return false;
+        RetrieveFileResponse rfrOther = (RetrieveFileResponse) o;
+        return this.fileId.equals(rfrOther.fileId) &&
+                this.found == rfrOther.found &&
+                this.fileName.equals(rfrOther.fileName) &&
+                this.fileLength == rfrOther.fileLength &&
+                Objects.equals(this.payload, rfrOther.payload);
+    }
+
+    @Override
+    public String toString() {
+        return "\nRetrieveFileResponse:\n" +
+                String.format("\tfileId: %s\n", this.fileId) +
+                String.format("\tfound: %b\n", this.found) +
+                String.format("\tfileName: %s\n", this.fileName) +
+                String.format("\tfileLength: %d\n", this.fileLength);
+    }
+
+    @Override
+    public Payload getPayload() {
+        return payload;
+    }
+
+    @Override
+    public MessageType getType() {
+        return MessageType.RETRIEVE_FILE_RESPONSE;
+    }
+}
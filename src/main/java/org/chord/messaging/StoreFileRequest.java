@@ -6,21 +6,39 @@ import org.slf4j.LoggerFactory;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.Arrays;
+import java.util.Objects;
 
 public class StoreFileRequest extends Message {
     private static final Logger log = LoggerFactory.getLogger(StoreFileRequest.class);
 
     public String fileId; // 16-bit file digest
     public String fileName;
-    public byte[] bytes; // file content
+    public Payload payload; // file content
+    public boolean replica; // a copy sent by the file's primary peer, which stores it without replicating it further
 
     public StoreFileRequest(String hostname, String ipAddress, String fileId, String fileName, byte[] bytes) {
+        this(hostname, ipAddress, fileId, fileName, Payload.of(bytes));
+    }
+
+    /**
+     * @param payload File content, which is written straight from its source when sent, not copied into the message
+     */
+    public StoreFileRequest(String hostname, String ipAddress, String fileId, String fileName, Payload payload) {
+        this(hostname, ipAddress, fileId, fileName, payload, false);
+    }
+
+    /**
+     * @param payload File content, which is written straight from its source when sent, not copied into the message
+     * @param replica True if sent by the file's primary peer to one of its replicas
+     */
+    public StoreFileRequest(String hostname, String ipAddress, String fileId, String fileName, Payload payload,
+                            boolean replica) {
         this.hostname = hostname;
         this.ipAddress = ipAddress;
         this.fileId = fileId;
         this.fileName = fileName;
-        this.bytes = bytes;
+        this.payload = payload;
+        this.replica = replica;
         try {
             marshal();
         } catch (IOException e) {
@@ -37,7 +55,8 @@ public class StoreFileRequest extends Message {
         super.marshal(dataOutputStream);
         writeString(dataOutputStream, this.fileId);
         writeString(dataOutputStream, this.fileName);
-        writeByteArray(dataOutputStream, bytes);
+        writeBoolean(dataOutputStream, this.replica);
+        writePayloadLength(dataOutputStream, this.payload);
     }
 
     @Override
@@ -45,14 +64,16 @@ public class StoreFileRequest extends Message {
         super.unmarshal(dataInputStream);
         fileId = readString(dataInputStream);
         fileName = readString(dataInputStream);
-        bytes = readByteArray(dataInputStream);
+        replica = readBoolean(dataInputStream);
+        payload = Payload.of(readByteArray(dataInputStream));
     }
 
     @Override
     public String toString() {
         return "\nStoreFileRequest:\n" +
                 String.format("\tfileId: %s\n", fileId) +
-                String.format("\tfileName: %s\n", fileName);
+                String.format("\tfileName: %s\n", fileName) +
+                String.format("\treplica: %b\n", replica);
     }
 
     @Override
@@ -63,7 +84,13 @@ public class StoreFileRequest extends Message {
         StoreFileRequest sfrOther = (StoreFileRequest) o;
         return this.fileId.equals(sfrOther.fileId) &&
                 this.fileName.equals(sfrOther.fileName) &&
-                Arrays.equals(this.bytes, sfrOther.bytes);
+                this.replica == sfrOther.replica &&
+                Objects.equals(this.payload, sfrOther.payload);
+    }
+
+    @Override
+    public Payload getPayload() {
+        return payload;
     }
 
     @Override
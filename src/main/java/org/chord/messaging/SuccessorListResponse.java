@@ -0,0 +1,71 @@
+package org.chord.messaging;
+
+import org.chord.peer.Identifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Response to a GetSuccessorListRequest: the peers following the responder clockwise on the ring, nearest first.
+ */
+public class SuccessorListResponse extends Message {
+
+    private static final Logger log = LoggerFactory.getLogger(SuccessorListResponse.class);
+
+    public List<Identifier> successors;
+
+    public SuccessorListResponse(String hostname, String ipAddress, List<Identifier> successors) {
+        this.hostname = hostname;
+        this.ipAddress = ipAddress;
+        this.successors = successors;
+        try {
+            marshal();
+        } catch (IOException e) {
+            log.error("Unable to self-marshal: {}", e.getLocalizedMessage());
+        }
+    }
+
+    public SuccessorListResponse(DataInputStream dataInputStream) throws IOException {
+        this.unmarshal(dataInputStream);
+    }
+
+    @Override
+    public MessageType getType() {
+        return MessageType.SUCCESSOR_LIST_RESPONSE;
+    }
+
+    public List<Identifier> getSuccessors() {
+        return successors;
+    }
+
+    @Override
+    public void marshal(DataOutputStream dataOutputStream) throws IOException {
+        super.marshal(dataOutputStream);
+        writeIdentifierList(dataOutputStream, this.successors);
+    }
+
+    @Override
+    public void unmarshal(DataInputStream dataInputStream) throws IOException {
+        super.unmarshal(dataInputStream);
+        this.successors = readIdentifierList(dataInputStream);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null) return false;
+        if (this == o) return true;
+        if (!(o instanceof SuccessorListResponse)) return false;
+        SuccessorListResponse slrOther = (SuccessorListResponse) o;
+        return this.successors.equals(slrOther.successors);
+    }
+
+    @Override
+    public String toString() {
+        return "\nSuccessorListResponse:\n" +
+                String.format("\tsuccessors: %s\n", this.successors);
+    }
+}
@@ -0,0 +1,168 @@
+package org.chord.networking;
+
+import org.chord.messaging.FileChunk;
+import org.chord.messaging.FileTransferCommit;
+import org.chord.messaging.FileTransferHeader;
+import org.chord.messaging.Message;
+import org.chord.messaging.Payload;
+import org.chord.messaging.StatusMessage;
+import org.chord.messaging.StoreFileResponse;
+import org.chord.util.Constants;
+import org.chord.util.Host;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32C;
+
+/**
+ * Sends a file too large for a single frame as a chunked transfer:
+ * 1. A FileTransferHeader, announcing the file and its length.
+ * 2. FileChunks of Constants.FileTransfer.CHUNK_SIZE bytes, mapped or read from disk as they are sent, with up to
+ *    Constants.FileTransfer.MAX_IN_FLIGHT_CHUNKS awaiting their acknowledgement at once.
+ * 3. A FileTransferCommit with the CRC-32C of the file, once every chunk has been acknowledged.
+ * Only the chunks in flight are ever held in memory, however large the file.
+ */
+public class ChunkedFileSender {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkedFileSender.class);
+
+    /**
+     * @param length Length of a file in bytes
+     * @return True if the file should be sent as a chunked transfer, false if it fits in a single frame
+     */
+    public static boolean isChunked(long length) {
+        return length > Constants.FileTransfer.CHUNK_SIZE;
+    }
+
+    /**
+     * Sends a file to a peer as a chunked transfer, and waits for it to be stored.
+     *
+     * @param hostname The String host name of the receiving peer
+     * @param port     The Integer port number of the receiving peer
+     * @param fileId   16-bit file digest
+     * @param fileName Name the file is stored under
+     * @param path     The file to send
+     * @return The StoreFileResponse of the receiving peer
+     * @throws IOException If unable to read the file, or the receiving peer failed or rejected the transfer
+     */
+    public static StoreFileResponse send(String hostname, int port, String fileId, String fileName, Path path)
+            throws IOException {
+        return send(hostname, port, fileId, fileName, Payload.of(path));
+    }
+
+    /**
+     * Sends stored content to a peer as a chunked transfer, i.e. an object read from a storage segment.
+     *
+     * @param hostname The String host name of the receiving peer
+     * @param port     The Integer port number of the receiving peer
+     * @param fileId   16-bit file digest
+     * @param fileName Name the file is stored under
+     * @param payload  The content to send; each chunk is read from it as it is sent
+     * @return The StoreFileResponse of the receiving peer
+     * @throws IOException If unable to read the content, or the receiving peer failed or rejected the transfer
+     */
+    public static StoreFileResponse send(String hostname, int port, String fileId, String fileName, Payload payload)
+            throws IOException {
+        return send(hostname, port, fileId, fileName, payload, false);
+    }
+
+    /**
+     * Sends stored content to a peer as a chunked transfer.
+     *
+     * @param hostname The String host name of the receiving peer
+     * @param port     The Integer port number of the receiving peer
+     * @param fileId   16-bit file digest
+     * @param fileName Name the file is stored under
+     * @param payload  The content to send; each chunk is read from it as it is sent
+     * @param replica  True if the receiving peer is a replica of the file, rather than its primary
+     * @return The StoreFileResponse of the receiving peer
+     * @throws IOException If unable to read the content, or the receiving peer failed or rejected the transfer
+     */
+    public static StoreFileResponse send(String hostname, int port, String fileId, String fileName, Payload payload,
+                                         boolean replica) throws IOException {
+        return send(hostname, port, fileId, fileName, payload, replica, false);
+    }
+
+    /**
+     * Sends a handoff archive of every file a peer stores to its successor as a single chunked transfer, however
+     * small, when the peer leaves the network; see FileHandoff.
+     *
+     * @param hostname The String host name of the receiving peer
+     * @param port     The Integer port number of the receiving peer
+     * @param peerId   Hex id of the leaving peer
+     * @param archive  The handoff archive
+     * @return The StoreFileResponse of the receiving peer, once it stored every file of the archive
+     * @throws IOException If unable to read the archive, or the receiving peer failed or rejected the transfer
+     */
+    public static StoreFileResponse sendHandoff(String hostname, int port, String peerId, Path archive)
+            throws IOException {
+        return send(hostname, port, peerId, "handoff-" + peerId, Payload.of(archive), false, true);
+    }
+
+    private static StoreFileResponse send(String hostname, int port, String fileId, String fileName, Payload payload,
+                                          boolean replica, boolean handoff) throws IOException {
+        long length = payload.length();
+        int chunkSize = Constants.FileTransfer.CHUNK_SIZE;
+        long transferId = ThreadLocalRandom.current().nextLong();
+        log.info("Sending {}({}, {} bytes) to {} in chunks of {} bytes", fileName, fileId, length, hostname, chunkSize);
+
+        FileTransferHeader header = new FileTransferHeader(Host.getHostname(), Host.getIpAddress(), transferId,
+                fileId, fileName, length, chunkSize, replica, handoff);
+        expectOk(Client.sendRpc(hostname, port, header), header);
+
+        CRC32C checksum = new CRC32C();
+        Semaphore inFlight = new Semaphore(Constants.FileTransfer.MAX_IN_FLIGHT_CHUNKS);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        try {
+            for (long offset = 0; offset < length && failure.get() == null; offset += chunkSize) {
+                // A slice of a mapped segment or a region of a file: the chunk is neither copied nor read into heap
+                Payload chunk = payload.slice(offset, Math.min(chunkSize, length - offset));
+                checksum.update(chunk.toByteBuffer());
+
+                inFlight.acquire();
+                FileChunk fileChunk = new FileChunk(Host.getHostname(), Host.getIpAddress(), transferId, offset,
+                        chunk);
+                Client.sendTransferAsync(hostname, port, fileChunk, chunk.length()).whenComplete((response, error) -> {
+                    if (error != null) {
+                        failure.compareAndSet(null, error);
+                    } else if (!isOk(response)) {
+                        failure.compareAndSet(null, new IOException(hostname + " rejected " + fileChunk));
+                    }
+                    inFlight.release();
+                });
+            }
+            // Wait for the chunks still in flight
+            inFlight.acquire(Constants.FileTransfer.MAX_IN_FLIGHT_CHUNKS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while sending " + fileName, e);
+        }
+        if (failure.get() != null) {
+            throw Client.asIOException(failure.get());
+        }
+
+        // The receiver stores, and unless this is a replica's copy replicates, the whole file before answering
+        Message response = Client.sendTransfer(hostname, port,
+                new FileTransferCommit(Host.getHostname(), Host.getIpAddress(), transferId, checksum.getValue()),
+                length);
+        if (!(response instanceof StoreFileResponse)) {
+            throw new IOException(String.format("%s rejected the transfer of %s", hostname, fileName));
+        }
+        return (StoreFileResponse) response;
+    }
+
+    private static boolean isOk(Message response) {
+        return response instanceof StatusMessage && ((StatusMessage) response).getStatus() == Message.Status.OK;
+    }
+
+    private static void expectOk(Message response, Message request) throws IOException {
+        if (!isOk(response)) {
+            throw new IOException(String.format("%s rejected %s", response.getHostname(), request));
+        }
+    }
+}
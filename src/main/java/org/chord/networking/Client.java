@@ -1,46 +1,275 @@
 package org.chord.networking;
 
 import org.chord.messaging.Message;
-import org.chord.messaging.MessageFactory;
 import org.chord.messaging.StatusMessage;
+import org.chord.util.Constants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.DataInputStream;
 import java.io.IOException;
-import java.net.Socket;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 
 public class Client {
     private static final Logger log = LoggerFactory.getLogger(Client.class);
 
     /**
-     * Opens a Socket to a hostname:port destination and sends a Message
+     * Sends a Message to a hostname:port destination over a pooled Connection, without waiting for a response.
      *
-     * @param hostname the String host name we are opening a Socket to
-     * @param port     the Integer port number we are opening a Socket to
+     * @param hostname the String host name of the destination
+     * @param port     the Integer port number of the destination
      * @param message  The Message to be sent, must have been previously marshaled
-     * @return The Socket we sent the Message on, and on which a response may be expected
+     * @throws IOException If unable to connect to, or write to the destination
      */
-    public static Socket sendMessage(String hostname, Integer port, Message message) throws IOException {
+    public static void sendMessage(String hostname, Integer port, Message message) throws IOException {
         log.info("Sending {} Message to {}", message.getType(), hostname);
-        Socket clientSocket = new Socket(hostname, port);
-        clientSocket.getOutputStream().write(message.getMarshaledBytes());
-        return clientSocket;
+        ConnectionPool pool = ConnectionPool.getInstance();
+        Connection connection = pool.getConnection(hostname, port);
+        try {
+            connection.send(message);
+        } catch (IOException e) {
+            // The pooled Connection may have gone stale since it was last used; retry once on a fresh one
+            log.info("Retrying {} Message to {} on a new connection: {}", message.getType(), hostname, e.getMessage());
+            pool.evict(connection);
+            pool.getConnection(hostname, port).send(message);
+        }
     }
 
     /**
-     * Waits for a response on a socket, and subsequently closes the socket.
-     * @param clientSocket The Socket object we are waiting on.
-     * @throws IOException If unable to read from the Socket.
+     * Sends a request Message to a hostname:port destination over a pooled Connection, and waits for its response.
+     *
+     * @param hostname the String host name of the destination
+     * @param port     the Integer port number of the destination
+     * @param message  The Message to be sent, must have been previously marshaled
+     * @return The response Message
+     * @throws IOException If unable to send the request, or the Connection fails before the response arrives
+     */
+    public static Message sendRequest(String hostname, Integer port, Message message) throws IOException {
+        return sendRequest(hostname, port, message, 0);
+    }
+
+    /**
+     * Sends a request Message to a hostname:port destination over a pooled Connection, and waits at most
+     * timeoutMillis for its response.
+     *
+     * @param hostname      the String host name of the destination
+     * @param port          the Integer port number of the destination
+     * @param message       The Message to be sent, must have been previously marshaled
+     * @param timeoutMillis How long to wait for the response, or 0 to wait indefinitely
+     * @return The response Message
+     * @throws SocketTimeoutException If the response doesn't arrive in time
+     * @throws IOException If unable to send the request, or the Connection fails before the response arrives
+     */
+    public static Message sendRequest(String hostname, Integer port, Message message, long timeoutMillis)
+            throws IOException {
+        return await(sendRequestAsync(hostname, port, message, timeoutMillis));
+    }
+
+    /**
+     * Sends a request Message to a hostname:port destination over a pooled Connection, without waiting for
+     * its response.
+     *
+     * @param hostname the String host name of the destination
+     * @param port     the Integer port number of the destination
+     * @param message  The Message to be sent, must have been previously marshaled
+     * @return Future completed with the response Message, or exceptionally with an IOException
+     */
+    public static CompletableFuture<Message> sendRequestAsync(String hostname, Integer port, Message message) {
+        return sendRequestAsync(hostname, port, message, 0);
+    }
+
+    /**
+     * Sends a request Message to a hostname:port destination over a pooled Connection, without waiting for
+     * its response. Only connecting and writing the request happen on the calling thread; the response is matched
+     * to the request by its request id when it arrives, and completes the returned future on the Connection's
+     * reader thread, so dependent stages should not block.
+     *
+     * @param hostname      the String host name of the destination
+     * @param port          the Integer port number of the destination
+     * @param message       The Message to be sent, must have been previously marshaled
+     * @param timeoutMillis How long to wait for the response, or 0 to wait indefinitely
+     * @return Future completed with the response Message, or exceptionally with an IOException, or a
+     *         TimeoutException if the response doesn't arrive in time
+     */
+    public static CompletableFuture<Message> sendRequestAsync(String hostname, Integer port, Message message,
+                                                              long timeoutMillis) {
+        log.info("Sending {} request to {}", message.getType(), hostname);
+        ConnectionPool pool = ConnectionPool.getInstance();
+        CompletableFuture<Message> response;
+        try {
+            Connection connection = pool.getConnection(hostname, port);
+            try {
+                response = connection.request(message);
+            } catch (IOException e) {
+                // Nothing was written, so the request is safe to retry once on a fresh Connection
+                log.info("Retrying {} request to {} on a new connection: {}", message.getType(), hostname,
+                        e.getMessage());
+                pool.evict(connection);
+                response = pool.getConnection(hostname, port).request(message);
+            }
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (timeoutMillis > 0) {
+            // Timing out completes the future, which also drops the request from the Connection's pending requests
+            response.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).whenComplete((result, error) -> {
+                if (error instanceof TimeoutException) {
+                    log.warn("No {} response from {} within {} ms", message.getType(), hostname, timeoutMillis);
+                }
+            });
+        }
+        return response;
+    }
+
+    /**
+     * Sends a single-hop request Message to a hostname:port destination, and waits for its response within the
+     * FailureDetector's timeout for the destination.
+     *
+     * @param hostname the String host name of the destination
+     * @param port     the Integer port number of the destination
+     * @param message  The Message to be sent, must have been previously marshaled
+     * @return The response Message
+     * @throws SocketTimeoutException If the response doesn't arrive in time
+     * @throws IOException If unable to send the request, or the Connection fails before the response arrives
+     */
+    public static Message sendRpc(String hostname, Integer port, Message message) throws IOException {
+        return await(sendRpcAsync(hostname, port, message));
+    }
+
+    /**
+     * Sends a single-hop request Message to a hostname:port destination, without waiting for its response, which
+     * must arrive within the FailureDetector's timeout for the destination. The round-trip time of the request, or
+     * its failure, is recorded with the FailureDetector.
+     * Only for requests the destination answers itself: the time of a request it forwards on depends on other peers.
+     *
+     * @param hostname the String host name of the destination
+     * @param port     the Integer port number of the destination
+     * @param message  The Message to be sent, must have been previously marshaled
+     * @return Future completed with the response Message, or exceptionally with an IOException, or a
+     *         TimeoutException if the response doesn't arrive in time
+     */
+    public static CompletableFuture<Message> sendRpcAsync(String hostname, Integer port, Message message) {
+        FailureDetector detector = FailureDetector.getInstance();
+        long startNanos = System.nanoTime();
+        return sendRequestAsync(hostname, port, message, detector.timeoutMillis(hostname, port))
+                .whenComplete((response, error) -> {
+                    if (error == null) {
+                        detector.recordSuccess(hostname, port,
+                                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+                    } else {
+                        detector.recordFailure(hostname, port);
+                    }
+                });
+    }
+
+    /**
+     * Sends a request Message for file content to a hostname:port destination, and waits for its response within
+     * the time sendTransferAsync() allows it.
+     *
+     * @param hostname      the String host name of the destination
+     * @param port          the Integer port number of the destination
+     * @param message       The Message to be sent, must have been previously marshaled
+     * @param contentLength Bytes of file content the request sends, or has the destination send or store
+     * @return The response Message
+     * @throws SocketTimeoutException If the response doesn't arrive in time
+     * @throws IOException If unable to send the request, or the Connection fails before the response arrives
+     */
+    public static Message sendTransfer(String hostname, Integer port, Message message, long contentLength)
+            throws IOException {
+        return await(sendTransferAsync(hostname, port, message, contentLength));
+    }
+
+    /**
+     * Sends a request Message for file content to a hostname:port destination, without waiting for its response,
+     * which must arrive within the FailureDetector's timeout for the destination, plus
+     * Constants.FileTransfer.CHUNK_TIMEOUT_MILLIS for every chunk of the content, as the larger the content the
+     * longer it takes to send and store. Only a failure of the destination is recorded with the FailureDetector, as
+     * the time the request takes isn't a round-trip time.
+     *
+     * @param hostname      the String host name of the destination
+     * @param port          the Integer port number of the destination
+     * @param message       The Message to be sent, must have been previously marshaled
+     * @param contentLength Bytes of file content the request sends, or has the destination send or store
+     * @return Future completed with the response Message, or exceptionally with an IOException, or a
+     *         TimeoutException if the response doesn't arrive in time
+     */
+    public static CompletableFuture<Message> sendTransferAsync(String hostname, Integer port, Message message,
+                                                               long contentLength) {
+        FailureDetector detector = FailureDetector.getInstance();
+        long chunks = Math.max(1, (contentLength + Constants.FileTransfer.CHUNK_SIZE - 1)
+                / Constants.FileTransfer.CHUNK_SIZE);
+        long timeoutMillis = detector.timeoutMillis(hostname, port)
+                + chunks * Constants.FileTransfer.CHUNK_TIMEOUT_MILLIS;
+        return sendRequestAsync(hostname, port, message, timeoutMillis).whenComplete((response, error) -> {
+            if (error == null) {
+                return;
+            }
+            IOException failure = asIOException(error);
+            if (failure instanceof ConnectException || failure instanceof SocketTimeoutException) {
+                detector.recordFailure(hostname, port);
+            }
+        });
+    }
+
+    /**
+     * Sends a request Message to a hostname:port destination, and waits for its StatusMessage response.
+     *
+     * @param hostname the String host name of the destination
+     * @param port     the Integer port number of the destination
+     * @param message  The Message to be sent, must have been previously marshaled
+     * @return The StatusMessage response
+     * @throws IOException If unable to send the request, or receive the response
      */
-    public static void waitForStatusResponseAndClose(Socket clientSocket) throws IOException {
-        DataInputStream dataInputStream = new DataInputStream(clientSocket.getInputStream());
-        StatusMessage response = (StatusMessage) MessageFactory.getInstance().createMessage(dataInputStream);
+    public static StatusMessage sendAndWaitForStatus(String hostname, Integer port, Message message)
+            throws IOException {
+        StatusMessage response = (StatusMessage) sendRequest(hostname, port, message);
         log.info("Received {} response from {} with status {}", response.getType(), response.getHostname(),
                 response.getStatus());
-        dataInputStream.close();
-        clientSocket.close();
+        return response;
+    }
+
+    /**
+     * Waits for a future returned by the asynchronous API, translating its failure back into an IOException.
+     *
+     * @param future The future to wait for
+     * @return The result of the future
+     * @throws SocketTimeoutException If the future timed out
+     * @throws IOException If the future failed, or we were interrupted while waiting
+     */
+    public static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a response", e);
+        } catch (ExecutionException e) {
+            throw asIOException(e.getCause());
+        }
+    }
+
+    /**
+     * Unwraps the cause of a failed future into an IOException.
+     *
+     * @param error Throwable a future completed exceptionally with
+     * @return The equivalent IOException
+     */
+    public static IOException asIOException(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof IOException) {
+            return (IOException) error;
+        }
+        if (error instanceof TimeoutException) {
+            return new SocketTimeoutException("No response within the timeout");
+        }
+        return new IOException(error);
     }
 
 }
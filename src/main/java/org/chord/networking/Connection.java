@@ -0,0 +1,229 @@
+package org.chord.networking;
+
+import org.chord.messaging.Message;
+import org.chord.util.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A persistent, outbound connection to a single hostname:port destination.
+ * Requests are written as Frames tagged with a fresh request id, and any number of them may be in flight
+ * at once. A dedicated reader thread consumes response Frames and completes the pending request
+ * with the matching id, so responses may arrive in any order.
+ * Requests are written to the SocketChannel directly: see Frame.write(GatheringByteChannel, ...).
+ */
+public class Connection {
+
+    private static final Logger log = LoggerFactory.getLogger(Connection.class);
+
+    private final String hostname;
+    private final int port;
+    private final SocketChannel channel;
+    private final Socket socket;
+    private final DataInputStream dataInputStream;
+
+    // Reused for the start of every Frame written, guarded by the write lock
+    private final ByteBuffer headerBuffer;
+
+    // A Lock rather than a monitor, so that virtual threads writing requests don't pin their carrier
+    private final Lock writeLock;
+
+    // Requests that have been written, but not yet answered, keyed by request id
+    private final Map<Integer, CompletableFuture<Message>> pendingRequests;
+    private final AtomicInteger nextRequestId;
+
+    private volatile long lastUsedMillis;
+    private volatile boolean open;
+
+    /**
+     * Opens a Socket to the destination and starts the reader thread for responses.
+     *
+     * @param hostname the String host name we are opening a Socket to
+     * @param port     the Integer port number we are opening a Socket to
+     * @throws IOException If unable to connect to the destination
+     */
+    public Connection(String hostname, int port) throws IOException {
+        this(hostname, port, 0);
+    }
+
+    /**
+     * Opens a Socket to the destination, waiting at most connectTimeoutMillis for it to accept, and starts the
+     * reader thread for responses.
+     *
+     * @param hostname             the String host name we are opening a Socket to
+     * @param port                 the Integer port number we are opening a Socket to
+     * @param connectTimeoutMillis How long to wait for the destination to accept, or 0 to wait indefinitely
+     * @throws IOException If unable to connect to the destination, or it doesn't accept in time
+     */
+    public Connection(String hostname, int port, long connectTimeoutMillis) throws IOException {
+        this.hostname = hostname;
+        this.port = port;
+        this.channel = SocketChannel.open();
+        this.socket = this.channel.socket();
+        try {
+            this.socket.connect(new InetSocketAddress(hostname, port), (int) connectTimeoutMillis);
+        } catch (IOException e) {
+            this.channel.close();
+            throw e;
+        }
+        this.socket.setTcpNoDelay(true);
+        this.headerBuffer = ByteBuffer.allocateDirect(Constants.Networking.FRAME_HEADER_BUFFER_SIZE);
+        this.dataInputStream = new DataInputStream(new BufferedInputStream(this.socket.getInputStream()));
+        this.writeLock = new ReentrantLock();
+        this.pendingRequests = new ConcurrentHashMap<>();
+        this.nextRequestId = new AtomicInteger();
+        this.lastUsedMillis = System.currentTimeMillis();
+        this.open = true;
+
+        Thread reader = new Thread(this::readResponses, "Connection Reader " + getKey());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public String getHostname() {
+        return hostname;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getKey() {
+        return key(hostname, port);
+    }
+
+    public static String key(String hostname, int port) {
+        return hostname + ":" + port;
+    }
+
+    /**
+     * Sends a request Message, and returns a future completed with its response.
+     *
+     * @param message The Message to be sent, must have been previously marshaled
+     * @return Future completed with the response Message, or exceptionally if the connection fails
+     * @throws IOException If unable to write the request
+     */
+    public CompletableFuture<Message> request(Message message) throws IOException {
+        int requestId = this.nextRequestId.incrementAndGet();
+        CompletableFuture<Message> response = new CompletableFuture<>();
+        this.pendingRequests.put(requestId, response);
+        try {
+            write(requestId, message);
+        } catch (IOException e) {
+            this.pendingRequests.remove(requestId);
+            throw e;
+        }
+        // Forget requests abandoned by the caller, i.e. after a timeout
+        response.whenComplete((result, error) -> this.pendingRequests.remove(requestId));
+        return response;
+    }
+
+    /**
+     * Sends a Message for which no response is expected.
+     *
+     * @param message The Message to be sent, must have been previously marshaled
+     * @throws IOException If unable to write the Message
+     */
+    public void send(Message message) throws IOException {
+        write(this.nextRequestId.incrementAndGet(), message);
+    }
+
+    private void write(int requestId, Message message) throws IOException {
+        if (!this.open) {
+            throw new IOException("Connection to " + getKey() + " is closed");
+        }
+        this.lastUsedMillis = System.currentTimeMillis();
+        this.writeLock.lock();
+        try {
+            Frame.write(this.channel, this.headerBuffer, requestId, message);
+        } catch (IOException e) {
+            close();
+            throw e;
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    /**
+     * Executed by the reader thread; completes pending requests as their responses arrive, until the connection
+     * is closed by either side.
+     */
+    private void readResponses() {
+        try {
+            while (this.open) {
+                Message response = Frame.read(this.dataInputStream);
+                this.lastUsedMillis = System.currentTimeMillis();
+                CompletableFuture<Message> pending = this.pendingRequests.remove(response.getRequestId());
+                if (pending != null) {
+                    pending.complete(response);
+                } else {
+                    log.warn("Received {} from {} for unknown request id {}", response.getType(), getKey(),
+                            response.getRequestId());
+                }
+            }
+        } catch (IOException e) {
+            if (this.open) {
+                log.info("Connection to {} lost: {}", getKey(), e.getMessage());
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * A connection is healthy if it is open, and its Socket is still connected in both directions.
+     *
+     * @return True if the connection can be used for new requests, false otherwise
+     */
+    public boolean isHealthy() {
+        return this.open && this.socket.isConnected() && !this.socket.isClosed() && !this.socket.isInputShutdown()
+                && !this.socket.isOutputShutdown();
+    }
+
+    /**
+     * @param idleTimeoutMillis How long a connection may go unused
+     * @return True if there are no requests in flight, and the connection has not been used within the timeout
+     */
+    public boolean isIdle(long idleTimeoutMillis) {
+        return this.pendingRequests.isEmpty() &&
+                System.currentTimeMillis() - this.lastUsedMillis > idleTimeoutMillis;
+    }
+
+    /**
+     * Closes the Socket, failing any requests still waiting on a response.
+     */
+    public void close() {
+        this.open = false;
+        try {
+            this.socket.close();
+        } catch (IOException e) {
+            log.error("Unable to close connection to {}: {}", getKey(), e.getMessage());
+        }
+        for (Integer requestId : this.pendingRequests.keySet()) {
+            CompletableFuture<Message> pending = this.pendingRequests.remove(requestId);
+            if (pending != null) {
+                pending.completeExceptionally(new IOException("Connection to " + getKey() + " closed"));
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Connection{ %s, open: %b, pending: %d }", getKey(), this.open,
+                this.pendingRequests.size());
+    }
+}
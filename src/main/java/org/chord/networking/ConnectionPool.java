@@ -0,0 +1,161 @@
+package org.chord.networking;
+
+import org.chord.util.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Singleton pool of persistent Connections, keyed by hostname:port destination.
+ * A Connection is health-checked each time it is handed out, and replaced by a newly dialed one if it has
+ * failed. A background task periodically closes Connections that have failed, or have been idle for longer
+ * than Constants.Networking.IDLE_TIMEOUT_MILLIS.
+ * A Connection is dialed outside of the map: a caller installs a future of it as a placeholder, which others wanting
+ * the same destination wait on, so that a slow connect never holds a lock of the map other destinations need.
+ */
+public class ConnectionPool {
+
+    private static final Logger log = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private static ConnectionPool singletonInstance = null;
+
+    // hostname:port -> the Connection to it, or the future of one being dialed
+    private final Map<String, CompletableFuture<Connection>> connections;
+    private final ScheduledExecutorService evictionExecutor;
+
+    /**
+     * Note: this constructor can only be called from within the class.
+     */
+    private ConnectionPool() {
+        this.connections = new ConcurrentHashMap<>();
+        this.evictionExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread evictor = new Thread(runnable, "Connection Evictor");
+            evictor.setDaemon(true);
+            return evictor;
+        });
+        this.evictionExecutor.scheduleWithFixedDelay(this::evictIdleConnections,
+                Constants.Networking.EVICTION_INTERVAL_MILLIS, Constants.Networking.EVICTION_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets the singleton instance, instantiating it if it has not been already.
+     *
+     * @return Singleton ConnectionPool instance.
+     */
+    public static synchronized ConnectionPool getInstance() {
+        if (singletonInstance == null) {
+            singletonInstance = new ConnectionPool();
+        }
+        return singletonInstance;
+    }
+
+    /**
+     * Returns a healthy Connection to the destination, dialing a new one if none is pooled. A new Connection has the
+     * FailureDetector's timeout for the destination to be accepted, so an unreachable peer doesn't hold up the caller
+     * for the operating system's connect timeout.
+     *
+     * @param hostname the String host name of the destination
+     * @param port     the Integer port number of the destination
+     * @return A healthy Connection to hostname:port
+     * @throws IOException If unable to connect to the destination
+     */
+    public Connection getConnection(String hostname, int port) throws IOException {
+        String key = Connection.key(hostname, port);
+        while (true) {
+            CompletableFuture<Connection> pooled = this.connections.get(key);
+            if (pooled == null) {
+                CompletableFuture<Connection> dialing = new CompletableFuture<>();
+                pooled = this.connections.putIfAbsent(key, dialing);
+                if (pooled == null) {
+                    return dial(key, hostname, port, dialing);
+                }
+            }
+
+            Connection connection = Client.await(pooled); // fails if the caller dialing it failed to connect
+            if (connection.isHealthy()) {
+                return connection;
+            }
+            CompletableFuture<Connection> dialing = new CompletableFuture<>();
+            if (this.connections.replace(key, pooled, dialing)) {
+                log.info("Replacing unhealthy pooled {}", connection);
+                connection.close();
+                return dial(key, hostname, port, dialing);
+            }
+            // Another caller replaced it first: use theirs
+        }
+    }
+
+    /**
+     * Dials a Connection for the placeholder installed in the pool, completing it, or removing it on failure so that
+     * the next caller dials again.
+     */
+    private Connection dial(String key, String hostname, int port, CompletableFuture<Connection> dialing)
+            throws IOException {
+        try {
+            log.debug("Opening pooled connection to {}", key);
+            Connection connection = new Connection(hostname, port,
+                    FailureDetector.getInstance().timeoutMillis(hostname, port));
+            dialing.complete(connection);
+            return connection;
+        } catch (IOException | RuntimeException e) {
+            this.connections.remove(key, dialing);
+            dialing.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Removes a Connection from the pool and closes it, i.e. after it has been found to be stale.
+     *
+     * @param connection The Connection to evict
+     */
+    public void evict(Connection connection) {
+        this.connections.computeIfPresent(connection.getKey(),
+                (key, pooled) -> (established(pooled) == connection) ? null : pooled);
+        connection.close();
+    }
+
+    /**
+     * Closes and removes all Connections that have failed, or have been idle for too long.
+     */
+    private void evictIdleConnections() {
+        for (CompletableFuture<Connection> pooled : this.connections.values()) {
+            Connection connection = established(pooled);
+            if (connection != null && (!connection.isHealthy() || connection.isIdle(Constants.Networking.IDLE_TIMEOUT_MILLIS))) {
+                log.debug("Evicting pooled {}", connection);
+                evict(connection);
+            }
+        }
+    }
+
+    /**
+     * Closes and removes all pooled Connections.
+     */
+    public void closeAll() {
+        for (CompletableFuture<Connection> pooled : this.connections.values()) {
+            Connection connection = established(pooled);
+            if (connection != null) {
+                evict(connection);
+            }
+        }
+    }
+
+    public int size() {
+        return this.connections.size();
+    }
+
+    /**
+     * @return The Connection of a placeholder, or null while it is still being dialed, or if dialing it failed
+     */
+    private static Connection established(CompletableFuture<Connection> pooled) {
+        return (pooled.isDone() && !pooled.isCompletedExceptionally()) ? pooled.join() : null;
+    }
+}
@@ -0,0 +1,189 @@
+package org.chord.networking;
+
+import org.chord.util.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Singleton failure detector, keeping the round-trip times and failures of the requests sent to each hostname:port
+ * destination, from which it derives:
+ * - An adaptive timeout per destination, estimated from its round-trip times as in TCP's retransmission timer
+ *   (RFC 6298): smoothed RTT + 4 * RTT variance, clamped to [RPC_MIN_TIMEOUT_MILLIS, RPC_MAX_TIMEOUT_MILLIS], and
+ *   doubled for every consecutive failure, so a destination that stopped answering isn't waited on for long, yet
+ *   one that is merely slow isn't given up on too soon.
+ * - Suspicion: a destination is suspected after SUSPECT_AFTER_FAILURES consecutive failures, so routing can avoid it.
+ *   A suspicion expires after SUSPICION_TIMEOUT_MILLIS, so the destination is tried again, and a single success
+ *   clears it.
+ * Estimates are immutable, and replaced atomically per destination, so no lock is held while recording.
+ */
+public class FailureDetector {
+
+    private static final Logger log = LoggerFactory.getLogger(FailureDetector.class);
+
+    private static FailureDetector singletonInstance = null;
+
+    private final Map<String, Estimate> estimates;
+    private final LongSupplier clockMillis;
+
+    /**
+     * Note: this constructor can only be called from within the class, or by tests with their own clock.
+     */
+    FailureDetector(LongSupplier clockMillis) {
+        this.estimates = new ConcurrentHashMap<>();
+        this.clockMillis = clockMillis;
+    }
+
+    /**
+     * Gets the singleton instance, instantiating it if it has not been already.
+     *
+     * @return Singleton FailureDetector instance.
+     */
+    public static synchronized FailureDetector getInstance() {
+        if (singletonInstance == null) {
+            singletonInstance = new FailureDetector(System::currentTimeMillis);
+        }
+        return singletonInstance;
+    }
+
+    /**
+     * @param hostname the String host name of the destination
+     * @param port     the Integer port number of the destination
+     * @return How long to wait for the destination to accept a connection, or to answer a request
+     */
+    public long timeoutMillis(String hostname, int port) {
+        Estimate estimate = this.estimates.get(Connection.key(hostname, port));
+        return (estimate == null) ? Constants.Networking.RPC_INITIAL_TIMEOUT_MILLIS : estimate.timeoutMillis();
+    }
+
+    /**
+     * @param hostname the String host name of the destination
+     * @param port     the Integer port number of the destination
+     * @return The smoothed round-trip time to the destination, or -1 if it never answered a request
+     */
+    public long rttMillis(String hostname, int port) {
+        Estimate estimate = this.estimates.get(Connection.key(hostname, port));
+        return (estimate == null || estimate.srttMillis < 0) ? -1 : Math.round(estimate.srttMillis);
+    }
+
+    /**
+     * Records a request the destination answered.
+     *
+     * @param hostname   the String host name of the destination
+     * @param port       the Integer port number of the destination
+     * @param rttMillis  Milliseconds between sending the request and receiving its response
+     */
+    public void recordSuccess(String hostname, int port, long rttMillis) {
+        Estimate previous = this.estimates.get(Connection.key(hostname, port));
+        Estimate updated = this.estimates.compute(Connection.key(hostname, port),
+                (key, estimate) -> (estimate == null) ? Estimate.first(rttMillis) : estimate.withSample(rttMillis));
+        if (previous != null && previous.isSuspected(this.clockMillis.getAsLong())) {
+            log.info("{} is answering again, no longer suspected: {}", Connection.key(hostname, port), updated);
+        }
+    }
+
+    /**
+     * Records a request the destination didn't answer in time, or that couldn't be sent to it.
+     *
+     * @param hostname the String host name of the destination
+     * @param port     the Integer port number of the destination
+     */
+    public void recordFailure(String hostname, int port) {
+        long now = this.clockMillis.getAsLong();
+        Estimate updated = this.estimates.compute(Connection.key(hostname, port),
+                (key, estimate) -> ((estimate == null) ? Estimate.NONE : estimate).withFailure(now));
+        if (updated.failures == Constants.Networking.SUSPECT_AFTER_FAILURES) {
+            log.warn("Suspecting {} after {} consecutive failures", Connection.key(hostname, port), updated.failures);
+        }
+    }
+
+    /**
+     * @param hostname the String host name of the destination
+     * @param port     the Integer port number of the destination
+     * @return True if the destination failed repeatedly, and its suspicion hasn't expired yet
+     */
+    public boolean isSuspected(String hostname, int port) {
+        Estimate estimate = this.estimates.get(Connection.key(hostname, port));
+        return estimate != null && estimate.isSuspected(this.clockMillis.getAsLong());
+    }
+
+    /**
+     * @return A summary of the estimate of every destination, for printing
+     */
+    public String stats() {
+        StringBuilder sb = new StringBuilder("Failure detector:\n");
+        long now = this.clockMillis.getAsLong();
+        for (Map.Entry<String, Estimate> entry : new TreeMap<>(this.estimates).entrySet()) {
+            sb.append(String.format("\t%s: %s%s\n", entry.getKey(), entry.getValue(),
+                    entry.getValue().isSuspected(now) ? " SUSPECTED" : ""));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Round-trip time estimate and consecutive failures of a single destination.
+     */
+    private static class Estimate {
+
+        // No samples or failures yet
+        static final Estimate NONE = new Estimate(-1, 0, 0, 0);
+
+        final double srttMillis; // smoothed round-trip time, or negative before the first sample
+        final double rttVarMillis; // round-trip time variance
+        final int failures; // since the last success
+        final long lastFailureMillis;
+
+        Estimate(double srttMillis, double rttVarMillis, int failures, long lastFailureMillis) {
+            this.srttMillis = srttMillis;
+            this.rttVarMillis = rttVarMillis;
+            this.failures = failures;
+            this.lastFailureMillis = lastFailureMillis;
+        }
+
+        static Estimate first(long rttMillis) {
+            return new Estimate(rttMillis, rttMillis / 2.0, 0, 0);
+        }
+
+        /**
+         * RFC 6298 2.3: RTTVAR <- 3/4 * RTTVAR + 1/4 * |SRTT - R'|, then SRTT <- 7/8 * SRTT + 1/8 * R'
+         */
+        Estimate withSample(long rttMillis) {
+            if (this.srttMillis < 0) {
+                return first(rttMillis);
+            }
+            double rttVar = 0.75 * this.rttVarMillis + 0.25 * Math.abs(this.srttMillis - rttMillis);
+            double srtt = 0.875 * this.srttMillis + 0.125 * rttMillis;
+            return new Estimate(srtt, rttVar, 0, 0);
+        }
+
+        Estimate withFailure(long nowMillis) {
+            return new Estimate(this.srttMillis, this.rttVarMillis, this.failures + 1, nowMillis);
+        }
+
+        long timeoutMillis() {
+            double timeout = (this.srttMillis < 0)
+                    ? Constants.Networking.RPC_INITIAL_TIMEOUT_MILLIS
+                    : this.srttMillis + 4 * this.rttVarMillis;
+            timeout = Math.max(timeout, Constants.Networking.RPC_MIN_TIMEOUT_MILLIS);
+            timeout *= 1L << Math.min(this.failures, 16); // back off while the destination keeps failing
+            return (long) Math.min(timeout, Constants.Networking.RPC_MAX_TIMEOUT_MILLIS);
+        }
+
+        boolean isSuspected(long nowMillis) {
+            return this.failures >= Constants.Networking.SUSPECT_AFTER_FAILURES
+                    && nowMillis - this.lastFailureMillis < Constants.Networking.SUSPICION_TIMEOUT_MILLIS;
+        }
+
+        @Override
+        public String toString() {
+            return (this.srttMillis < 0)
+                    ? String.format("no samples, %d failures, timeout %d ms", this.failures, timeoutMillis())
+                    : String.format("srtt %.1f ms, rttvar %.1f ms, %d failures, timeout %d ms", this.srttMillis,
+                    this.rttVarMillis, this.failures, timeoutMillis());
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package org.chord.networking;
+
+import org.chord.messaging.Message;
+import org.chord.messaging.MessageFactory;
+import org.chord.messaging.Payload;
+import org.chord.util.Constants;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
+/**
+ * Length-prefixed framing for Messages exchanged over a persistent connection.
+ * Several requests may be in flight on the same connection at once, so every frame carries the id of the
+ * request it belongs to, and a response is always written with the same id as its request.
+ * A frame is represented as follows:
+ * - frame length (int 4 bytes), the number of bytes that follow this field
+ * - request id (int 4 bytes)
+ * - marshaled message bytes (byte[] n bytes)
+ * - payload bytes (byte[] m bytes), if the Message carries a Payload
+ * The payload is written from its own source rather than copied in with the message bytes, see Message.getPayload().
+ * Frames longer than Constants.Networking.MAX_FRAME_LENGTH are rejected when read, as file content larger than a
+ * chunk is sent in several frames.
+ */
+public class Frame {
+
+    // Size of the frame length field
+    public static final int LENGTH_SIZE = 4;
+
+    // Size of the request id field counted by the frame length
+    public static final int REQUEST_ID_SIZE = 4;
+
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+
+    /**
+     * Writes a single frame containing an already-marshaled Message. Callers sharing the output stream
+     * between threads are expected to synchronize on it.
+     *
+     * @param dataOutputStream The DataOutputStream we are writing to.
+     * @param requestId        The id correlating this frame with a request/response.
+     * @param message          The Message to be sent, must have been previously marshaled.
+     * @throws IOException If fails to write to the DataOutputStream, or to read the Message's Payload
+     */
+    public static void write(DataOutputStream dataOutputStream, int requestId, Message message) throws IOException {
+        byte[] messageBytes = message.getMarshaledBytes();
+        Payload payload = message.getPayload();
+        dataOutputStream.writeInt(frameLength(messageBytes, payload));
+        dataOutputStream.writeInt(requestId);
+        dataOutputStream.write(messageBytes);
+        if (payload != null) {
+            payload.writeTo(dataOutputStream);
+        }
+    }
+
+    /**
+     * Writes a single frame containing an already-marshaled Message to a channel in blocking mode. The length, request
+     * id and message bytes are put into the header buffer, which the caller owns and reuses between frames, then
+     * written together with the Payload in a single gathering write; a file Payload is instead transferred straight
+     * from disk after the header. Callers sharing the channel between threads are expected to synchronize on it.
+     *
+     * @param channel      The channel we are writing to.
+     * @param headerBuffer Scratch buffer for the start of the frame; message bytes that don't fit are not copied into it.
+     * @param requestId    The id correlating this frame with a request/response.
+     * @param message      The Message to be sent, must have been previously marshaled.
+     * @throws IOException If fails to write to the channel, or to read the Message's Payload
+     */
+    public static void write(GatheringByteChannel channel, ByteBuffer headerBuffer, int requestId, Message message)
+            throws IOException {
+        byte[] messageBytes = message.getMarshaledBytes();
+        Payload payload = message.getPayload();
+        headerBuffer.clear();
+        headerBuffer.putInt(frameLength(messageBytes, payload));
+        headerBuffer.putInt(requestId);
+        ByteBuffer messageBuffer;
+        if (headerBuffer.remaining() >= messageBytes.length) {
+            headerBuffer.put(messageBytes);
+            messageBuffer = EMPTY_BUFFER;
+        } else {
+            messageBuffer = ByteBuffer.wrap(messageBytes);
+        }
+        headerBuffer.flip();
+
+        ByteBuffer payloadBuffer = (payload != null && !payload.isFile()) ? payload.toByteBuffer() : EMPTY_BUFFER;
+        ByteBuffer[] buffers = {headerBuffer, messageBuffer, payloadBuffer};
+        while (payloadBuffer.hasRemaining() || messageBuffer.hasRemaining() || headerBuffer.hasRemaining()) {
+            channel.write(buffers);
+        }
+        if (payload != null && payload.isFile()) {
+            payload.writeTo(channel);
+        }
+    }
+
+    /**
+     * Encodes a single frame containing an already-marshaled Message into ByteBuffers, ready to be written to a
+     * channel with a gathering write. The Payload is wrapped or memory-mapped rather than copied.
+     *
+     * @param requestId The id correlating this frame with a request/response.
+     * @param message   The Message to be sent, must have been previously marshaled.
+     * @return The ByteBuffers making up the whole frame, in order, each positioned at its start
+     * @throws IOException If unable to map the Message's Payload
+     */
+    public static ByteBuffer[] encode(int requestId, Message message) throws IOException {
+        byte[] messageBytes = message.getMarshaledBytes();
+        Payload payload = message.getPayload();
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH_SIZE + REQUEST_ID_SIZE + messageBytes.length);
+        buffer.putInt(frameLength(messageBytes, payload));
+        buffer.putInt(requestId);
+        buffer.put(messageBytes);
+        buffer.flip();
+        return (payload != null)
+                ? new ByteBuffer[]{buffer, payload.toByteBuffer()}
+                : new ByteBuffer[]{buffer};
+    }
+
+    private static int frameLength(byte[] messageBytes, Payload payload) throws IOException {
+        long frameLength = REQUEST_ID_SIZE + messageBytes.length + ((payload != null) ? payload.length() : 0);
+        if (frameLength > Integer.MAX_VALUE) {
+            throw new IOException("Frame too large: " + frameLength + " bytes");
+        }
+        return (int) frameLength;
+    }
+
+    /**
+     * Determines how many bytes the next frame in a buffer occupies, without consuming anything.
+     *
+     * @param buffer A ByteBuffer in read mode, positioned at the start of a frame.
+     * @return The total size of the frame including its length field, or -1 if the length field is incomplete
+     * @throws IOException If the frame length is invalid, or longer than Constants.Networking.MAX_FRAME_LENGTH
+     */
+    public static int peekFrameSize(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < LENGTH_SIZE) {
+            return -1;
+        }
+        return LENGTH_SIZE + checkFrameLength(buffer.getInt(buffer.position()));
+    }
+
+    /**
+     * Decodes a single, complete frame from a buffer, consuming it.
+     *
+     * @param buffer A ByteBuffer in read mode, holding at least one complete frame (see peekFrameSize()).
+     * @return The Message contained in the frame
+     * @throws IOException If the frame is malformed
+     */
+    public static Message decode(ByteBuffer buffer) throws IOException {
+        int frameLength = buffer.getInt();
+        int requestId = buffer.getInt();
+        byte[] messageBytes = new byte[frameLength - REQUEST_ID_SIZE];
+        buffer.get(messageBytes);
+        return createMessage(requestId, messageBytes);
+    }
+
+    /**
+     * Reads a single frame, and creates the concrete Message it contains. The request id of the frame is
+     * recorded on the returned Message, so that a response can be correlated with it.
+     *
+     * @param dataInputStream The DataInputStream we are reading from.
+     * @return The Message contained in the frame
+     * @throws IOException If fails to read from the DataInputStream, or the frame is malformed or too long
+     */
+    public static Message read(DataInputStream dataInputStream) throws IOException {
+        int frameLength = checkFrameLength(dataInputStream.readInt());
+        int requestId = dataInputStream.readInt();
+        byte[] messageBytes = new byte[frameLength - REQUEST_ID_SIZE];
+        dataInputStream.readFully(messageBytes);
+        return createMessage(requestId, messageBytes);
+    }
+
+    private static int checkFrameLength(int frameLength) throws IOException {
+        if (frameLength < REQUEST_ID_SIZE) {
+            throw new IOException("Invalid frame length " + frameLength);
+        }
+        if (frameLength > Constants.Networking.MAX_FRAME_LENGTH) {
+            throw new IOException("Frame too large: " + frameLength + " bytes, at most "
+                    + Constants.Networking.MAX_FRAME_LENGTH + " are accepted");
+        }
+        return frameLength;
+    }
+
+    private static Message createMessage(int requestId, byte[] messageBytes) throws IOException {
+        Message message = MessageFactory.getInstance().createMessage(
+                new DataInputStream(new ByteArrayInputStream(messageBytes)));
+        if (message == null) {
+            throw new IOException("Unable to create Message from frame with request id " + requestId);
+        }
+        message.setRequestId(requestId);
+        return message;
+    }
+}
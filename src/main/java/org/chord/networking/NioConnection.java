@@ -0,0 +1,175 @@
+package org.chord.networking;
+
+import org.chord.messaging.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * State of a single non-blocking client connection, owned by one NioReactor.
+ * Incoming bytes are accumulated until one or more whole Frames are available, which are then decoded and
+ * dispatched to the connection's Processor. Responses written by request threads are queued, and flushed by
+ * the reactor thread once the channel is writable. A request the Processor's executor rejects is kept as stalled,
+ * and the reactor stops reading the connection until it has been dispatched by resume().
+ */
+public class NioConnection implements ResponseChannel {
+
+    private static final Logger log = LoggerFactory.getLogger(NioConnection.class);
+
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+
+    private final SocketChannel channel;
+    private final NioReactor reactor;
+    private final Processor processor;
+    private final Queue<ByteBuffer[]> pendingWrites;
+    private ByteBuffer readBuffer;
+    private SelectionKey selectionKey;
+
+    // A decoded request the executor had no room for; only used from the reactor thread
+    private Message stalled;
+
+    public NioConnection(SocketChannel channel, NioReactor reactor, Processor processor) {
+        this.channel = channel;
+        this.reactor = reactor;
+        this.processor = processor;
+        this.pendingWrites = new ConcurrentLinkedQueue<>();
+        this.readBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    }
+
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    public void setSelectionKey(SelectionKey selectionKey) {
+        this.selectionKey = selectionKey;
+    }
+
+    public SelectionKey getSelectionKey() {
+        return selectionKey;
+    }
+
+    /**
+     * Queues a response Frame, and asks the reactor to flush it. Called from request threads.
+     */
+    @Override
+    public void write(int requestId, Message message) throws IOException {
+        if (!this.channel.isOpen()) {
+            throw new IOException("Channel has been closed");
+        }
+        this.pendingWrites.add(Frame.encode(requestId, message));
+        this.reactor.requestFlush(this);
+    }
+
+    /**
+     * Reads whatever bytes are available, and dispatches every complete Frame. Called by the reactor thread.
+     *
+     * @return False if the client has closed the connection, true otherwise
+     * @throws IOException If unable to read from the channel, or a Frame is malformed or too long, in which case the
+     *                     connection is to be closed
+     */
+    public boolean onReadable() throws IOException {
+        int bytesRead = this.channel.read(this.readBuffer);
+        if (bytesRead == -1) {
+            return false;
+        }
+        dispatchBuffered();
+        return true;
+    }
+
+    /**
+     * Dispatches the stalled request, then the complete Frames already read. Called by the reactor thread, while
+     * reading the connection is paused.
+     *
+     * @return True if nothing is stalled any longer, false if the executor still has no room
+     * @throws IOException If a Frame is malformed or too long, in which case the connection is to be closed
+     */
+    public boolean resume() throws IOException {
+        if (!tryDispatch(this.stalled)) {
+            return false;
+        }
+        this.stalled = null;
+        dispatchBuffered();
+        return !isStalled();
+    }
+
+    /**
+     * @return True if a request is waiting for room in the executor, in which case reading should be paused
+     */
+    public boolean isStalled() {
+        return this.stalled != null;
+    }
+
+    /**
+     * Dispatches every complete Frame in the read buffer, stopping at the first request the executor rejects.
+     * The read buffer only grows up to Constants.Networking.MAX_FRAME_LENGTH, as Frame.peekFrameSize() rejects
+     * longer frames before they are allocated for.
+     */
+    private void dispatchBuffered() throws IOException {
+        this.readBuffer.flip();
+        int frameSize;
+        while ((frameSize = Frame.peekFrameSize(this.readBuffer)) != -1 && this.readBuffer.remaining() >= frameSize) {
+            Message request = Frame.decode(this.readBuffer);
+            if (!tryDispatch(request)) {
+                this.stalled = request;
+                break;
+            }
+        }
+        this.readBuffer.compact();
+
+        // Grow the buffer if the next frame can't fit in it; its size has been checked by peekFrameSize()
+        if (frameSize > this.readBuffer.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocate(frameSize);
+            this.readBuffer.flip();
+            larger.put(this.readBuffer);
+            this.readBuffer = larger;
+        }
+    }
+
+    private boolean tryDispatch(Message request) {
+        try {
+            this.processor.dispatch(request);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes as many queued responses as the channel accepts. Called by the reactor thread.
+     *
+     * @return True if every queued response has been written, false if the channel is full
+     * @throws IOException If unable to write to the channel
+     */
+    public boolean onWritable() throws IOException {
+        ByteBuffer[] next;
+        while ((next = this.pendingWrites.peek()) != null) {
+            this.channel.write(next);
+            if (next[next.length - 1].hasRemaining()) {
+                return false;
+            }
+            this.pendingWrites.poll();
+        }
+        return true;
+    }
+
+    public boolean hasPendingWrites() {
+        return !this.pendingWrites.isEmpty();
+    }
+
+    public void close() {
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            log.error("Unable to close channel: {}", e.getMessage());
+        }
+        this.pendingWrites.clear();
+        this.stalled = null;
+    }
+}
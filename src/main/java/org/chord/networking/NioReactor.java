@@ -0,0 +1,200 @@
+package org.chord.networking;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * An I/O thread multiplexing many NioConnections over a single Selector.
+ * Other threads never touch the Selector's keys directly; instead they queue new connections and flush
+ * requests, and wake the Selector up so that the reactor thread applies them.
+ * A connection whose request the worker pool rejected is stalled: it isn't read until the request has been
+ * dispatched, which is retried whenever a worker finishes a request, and at least every STALL_RETRY_MILLIS.
+ */
+public class NioReactor implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(NioReactor.class);
+
+    // Bounds how long a stalled connection waits should no worker wake us up
+    private static final long STALL_RETRY_MILLIS = 10;
+
+    private final Selector selector;
+    private final Queue<NioConnection> pendingRegistrations;
+    private final Queue<NioConnection> pendingFlushes;
+
+    // Connections not read until their stalled request is dispatched; only used from the reactor thread
+    private final List<NioConnection> stalledConnections;
+    private volatile boolean hasStalled;
+
+    public NioReactor() throws IOException {
+        this.selector = Selector.open();
+        this.pendingRegistrations = new ConcurrentLinkedQueue<>();
+        this.pendingFlushes = new ConcurrentLinkedQueue<>();
+        this.stalledConnections = new ArrayList<>();
+    }
+
+    /**
+     * Hands a newly accepted connection over to this reactor. Called by the accepting thread.
+     *
+     * @param connection Connection whose channel has been configured as non-blocking.
+     */
+    public void register(NioConnection connection) {
+        this.pendingRegistrations.add(connection);
+        this.selector.wakeup();
+    }
+
+    /**
+     * Asks the reactor to write a connection's queued responses. Called by request threads.
+     *
+     * @param connection Connection with queued responses.
+     */
+    public void requestFlush(NioConnection connection) {
+        this.pendingFlushes.add(connection);
+        this.selector.wakeup();
+    }
+
+    /**
+     * Wakes the reactor up to retry its stalled connections, if it has any. Called by workers when they finish a
+     * request.
+     */
+    public void wakeupIfStalled() {
+        if (this.hasStalled) {
+            this.selector.wakeup();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (this.selector.isOpen()) {
+            try {
+                if (this.stalledConnections.isEmpty()) {
+                    this.selector.select();
+                } else {
+                    this.selector.select(STALL_RETRY_MILLIS);
+                }
+                applyPendingRegistrations();
+                applyPendingFlushes();
+                resumeStalledConnections();
+
+                Iterator<SelectionKey> selectedKeys = this.selector.selectedKeys().iterator();
+                while (selectedKeys.hasNext()) {
+                    SelectionKey key = selectedKeys.next();
+                    selectedKeys.remove();
+                    handle(key);
+                }
+            } catch (ClosedSelectorException e) {
+                log.debug("Reactor shut down");
+                return;
+            } catch (IOException e) {
+                log.error("Selector failed: {}", e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void applyPendingRegistrations() {
+        NioConnection connection;
+        while ((connection = this.pendingRegistrations.poll()) != null) {
+            try {
+                SocketChannel channel = connection.getChannel();
+                connection.setSelectionKey(channel.register(this.selector, SelectionKey.OP_READ, connection));
+            } catch (IOException e) {
+                log.error("Unable to register channel: {}", e.getMessage());
+                connection.close();
+            }
+        }
+    }
+
+    private void applyPendingFlushes() {
+        NioConnection connection;
+        while ((connection = this.pendingFlushes.poll()) != null) {
+            SelectionKey key = connection.getSelectionKey();
+            if (key != null && key.isValid()) {
+                flush(connection, key);
+            }
+        }
+    }
+
+    private void resumeStalledConnections() {
+        Iterator<NioConnection> stalled = this.stalledConnections.iterator();
+        while (stalled.hasNext()) {
+            NioConnection connection = stalled.next();
+            SelectionKey key = connection.getSelectionKey();
+            try {
+                if (!key.isValid()) {
+                    stalled.remove();
+                } else if (connection.resume()) {
+                    stalled.remove();
+                    key.interestOps(interestOps(connection));
+                }
+            } catch (IOException | CancelledKeyException e) {
+                log.error("Closing connection after failure: {}", e.getMessage());
+                stalled.remove();
+                close(connection, key);
+            }
+        }
+        this.hasStalled = !this.stalledConnections.isEmpty();
+    }
+
+    private void handle(SelectionKey key) {
+        NioConnection connection = (NioConnection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                if (!connection.onReadable()) {
+                    log.debug("Client closed connection");
+                    close(connection, key);
+                    return;
+                }
+                if (connection.isStalled()) {
+                    this.stalledConnections.add(connection);
+                    this.hasStalled = true;
+                    key.interestOps(interestOps(connection));
+                }
+            }
+            if (key.isValid() && key.isWritable()) {
+                flush(connection, key);
+            }
+        } catch (IOException | CancelledKeyException e) {
+            log.error("Closing connection after failure: {}", e.getMessage());
+            close(connection, key);
+        }
+    }
+
+    private void flush(NioConnection connection, SelectionKey key) {
+        try {
+            connection.onWritable();
+            key.interestOps(interestOps(connection));
+        } catch (IOException | CancelledKeyException e) {
+            log.error("Unable to write responses: {}", e.getMessage());
+            close(connection, key);
+        }
+    }
+
+    /**
+     * @return Read unless stalled, and write while responses are queued
+     */
+    private static int interestOps(NioConnection connection) {
+        return (connection.isStalled() ? 0 : SelectionKey.OP_READ)
+                | (connection.hasPendingWrites() ? SelectionKey.OP_WRITE : 0);
+    }
+
+    private void close(NioConnection connection, SelectionKey key) {
+        key.cancel();
+        connection.close();
+    }
+
+    public void shutdown() throws IOException {
+        this.selector.close();
+    }
+}
@@ -0,0 +1,110 @@
+package org.chord.networking;
+
+import org.chord.util.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Selector-based transport for a Server running in ServerMode.NIO.
+ * The accepting thread hands each new connection to one of a small, fixed set of NioReactor I/O threads,
+ * round-robin. Requests decoded by the reactors are executed on a bounded worker pool, and never on a reactor
+ * thread: when its queue is full, the connection whose request was rejected stops being read until a worker frees
+ * up, see NioReactor, while the reactor goes on serving its other connections.
+ */
+public class NioServer {
+
+    private static final Logger log = LoggerFactory.getLogger(NioServer.class);
+
+    private final ServerSocketChannel serverChannel;
+    private final Function<SocketChannel, Processor> processorFactory;
+    private final NioReactor[] reactors;
+    private final ThreadPoolExecutor workerPool;
+    private int nextReactor;
+
+    /**
+     * @param serverChannel    A bound ServerSocketChannel.
+     * @param processorFactory Creates the Processor for each accepted connection.
+     * @throws IOException If unable to open the reactors' Selectors
+     */
+    public NioServer(ServerSocketChannel serverChannel, Function<SocketChannel, Processor> processorFactory)
+            throws IOException {
+        this(serverChannel, processorFactory, Constants.Networking.WORKER_THREADS,
+                Constants.Networking.WORKER_QUEUE_SIZE);
+    }
+
+    NioServer(ServerSocketChannel serverChannel, Function<SocketChannel, Processor> processorFactory,
+              int workerThreads, int workerQueueSize) throws IOException {
+        this.serverChannel = serverChannel;
+        this.processorFactory = processorFactory;
+        this.reactors = new NioReactor[Constants.Networking.IO_THREADS];
+        for (int i = 0; i < this.reactors.length; i++) {
+            this.reactors[i] = new NioReactor();
+            Thread reactorThread = new Thread(this.reactors[i], "Reactor Thread " + i);
+            reactorThread.setDaemon(true);
+            reactorThread.start();
+        }
+
+        AtomicInteger workerCount = new AtomicInteger();
+        // Rejects requests once the queue is full, and has the reactors retry theirs each time a request is done
+        this.workerPool = new ThreadPoolExecutor(
+                workerThreads,
+                workerThreads,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(workerQueueSize),
+                runnable -> new Thread(runnable, "Worker Thread " + workerCount.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy()
+        ) {
+            @Override
+            protected void afterExecute(Runnable request, Throwable error) {
+                for (NioReactor reactor : reactors) {
+                    reactor.wakeupIfStalled();
+                }
+            }
+        };
+    }
+
+    /**
+     * Accepts client connections until the ServerSocketChannel is closed, and assigns each to a reactor.
+     */
+    public void acceptConnections() {
+        while (this.serverChannel.isOpen()) {
+            try {
+                SocketChannel clientChannel = this.serverChannel.accept(); // blocking call, waits for connection
+                log.info("Received client connection from {}", clientChannel.getRemoteAddress());
+                clientChannel.configureBlocking(false);
+                clientChannel.socket().setTcpNoDelay(true);
+
+                Processor processor = this.processorFactory.apply(clientChannel);
+                NioReactor reactor = this.reactors[this.nextReactor];
+                this.nextReactor = (this.nextReactor + 1) % this.reactors.length;
+
+                NioConnection connection = new NioConnection(clientChannel, reactor, processor);
+                processor.attach(connection, this.workerPool);
+                reactor.register(connection);
+            } catch (IOException e) {
+                log.error("Unable to accept connection: {}", e.getMessage());
+            }
+        }
+        shutdown();
+    }
+
+    public void shutdown() {
+        for (NioReactor reactor : this.reactors) {
+            try {
+                reactor.shutdown();
+            } catch (IOException e) {
+                log.error("Unable to close reactor: {}", e.getMessage());
+            }
+        }
+        this.workerPool.shutdown();
+    }
+}
@@ -1,66 +1,143 @@
 package org.chord.networking;
 
 import org.chord.messaging.Message;
-import org.chord.messaging.MessageFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.net.Socket;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Processes Messages from a received Socket connection.
+ * Processes Messages from a received connection.
  * Contains common functions and abstractions, including a reference
- * to the Socket from which the Message is arriving and to which
- * we may need to respond. Runs as its own Thread, one thread per
- * current connection.
+ * to the Socket from which Messages are arriving and the ResponseChannel
+ * to which we may need to respond. The connection is persistent, and
+ * several requests on it may be in flight at once.
+ * In ServerMode.BLOCKING the Processor runs as its own Thread, one thread
+ * per current connection, and each request Message is processed on a new
+ * Thread. In ServerMode.NIO the Frames are read by the NioServer, and each
+ * request Message is processed on its bounded worker pool. In ServerMode.VIRTUAL
+ * the Processor and each request run on virtual threads.
  */
 public abstract class Processor implements Runnable {
     private static final Logger log = LoggerFactory.getLogger(Processor.class);
 
-    // The Socket connection containing the Message to process, and to which we respond
+    // The Socket connection containing the Messages to process
     public Socket socket;
 
+    // The connection to which we respond; shared by all request threads of this connection
+    private ResponseChannel responseChannel;
+
+    // Executes process() for each request; if null, a new Thread is started per request
+    private Executor requestExecutor;
+
     /**
-     * Sends a Message response on an already-established Socket connection.
+     * Attaches the connection to which we respond, and the Executor on which requests are processed.
+     * Used by transports which read Frames themselves, instead of invoking run().
      *
-     * @param socket  The Socket that has previously been established.
-     * @param message The Message containing the response.
+     * @param responseChannel The connection to which we respond.
+     * @param requestExecutor Executes process() for each request Message.
      */
-    public static void sendResponse(Socket socket, Message message) {
-        log.info("Sending {} response", message.getType());
-        if (socket != null && socket.isConnected()) {
-            try {
-                socket.getOutputStream().write(message.getMarshaledBytes());
-            } catch (IOException e) {
-                log.error("Failed to send response Message {}: {}", message.getType(), e.getMessage());
-            }
+    public void attach(ResponseChannel responseChannel, Executor requestExecutor) {
+        this.responseChannel = responseChannel;
+        this.requestExecutor = requestExecutor;
+    }
+
+    /**
+     * Sets the Executor on which requests are processed, for transports which still invoke run().
+     *
+     * @param requestExecutor Executes process() for each request Message.
+     */
+    public void setRequestExecutor(Executor requestExecutor) {
+        this.requestExecutor = requestExecutor;
+    }
+
+    /**
+     * Sends a Message response on our already-established connection, correlated with its request.
+     *
+     * @param request  The request Message we are responding to.
+     * @param response The Message containing the response.
+     */
+    public void sendResponse(Message request, Message response) {
+        log.info("Sending {} response", response.getType());
+        if (this.responseChannel == null) {
+            log.warn("No connection attached; aborting {} response", response.getType());
+            return;
+        }
+        try {
+            this.responseChannel.write(request.getRequestId(), response);
+        } catch (IOException e) {
+            log.error("Failed to send response Message {}: {}", response.getType(), e.getMessage());
+        }
+    }
+
+    /**
+     * Hands a fully constructed and unmarshaled request Message off to be processed, without waiting for it.
+     *
+     * @param message Message received over the connection.
+     */
+    public void dispatch(Message message) {
+        if (this.requestExecutor != null) {
+            this.requestExecutor.execute(() -> process(message));
         } else {
-            log.warn("Socket is null or has been disconnected; aborting {} response", message.getType());
+            Thread requestThread = new Thread(() -> process(message), "Request Thread");
+            requestThread.start();
         }
     }
 
     /**
-     * Executed by Thread.start() as its own Thread; invokes processMessage() with a fully constructed
-     * and unmarshaled Message from the MessageFactory.
+     * Executed by Thread.start() as its own Thread; reads Frames from the Socket until the connection is closed,
+     * and dispatches each fully constructed and unmarshaled Message to be processed.
      */
     @Override
     public void run() {
         try {
-            DataInputStream dataInputStream = new DataInputStream(this.socket.getInputStream());
-            Message message = MessageFactory.getInstance().createMessage(dataInputStream);
-            process(message);
+            DataOutputStream dataOutputStream = new DataOutputStream(new BufferedOutputStream(this.socket.getOutputStream()));
+            // A Lock rather than a monitor, so that virtual threads writing responses don't pin their carrier
+            Lock writeLock = new ReentrantLock();
+            this.responseChannel = (requestId, message) -> {
+                if (this.socket.isClosed()) {
+                    throw new IOException("Socket has been disconnected");
+                }
+                writeLock.lock();
+                try {
+                    Frame.write(dataOutputStream, requestId, message);
+                    dataOutputStream.flush();
+                } finally {
+                    writeLock.unlock();
+                }
+            };
+
+            DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(this.socket.getInputStream()));
+            while (!this.socket.isClosed()) {
+                dispatch(Frame.read(dataInputStream));
+            }
+        } catch (EOFException e) {
+            log.debug("Client closed connection");
         } catch (IOException e) {
-            log.error("Caught IOException!");
+            log.error("Caught IOException: {}", e.getMessage());
+        } finally {
+            try {
+                this.socket.close();
+            } catch (IOException e) {
+                log.error("Unable to close Socket: {}", e.getMessage());
+            }
         }
     }
 
     /**
-     * Fully processes a request Message, responding to the Socket member if necessary.
+     * Fully processes a request Message, responding to the connection if necessary.
      * Abstract and implemented by a concrete subclass.
      *
-     * @param message Message received over the Socket.
+     * @param message Message received over the connection.
      */
     public abstract void process(Message message);
 
@@ -0,0 +1,21 @@
+package org.chord.networking;
+
+import org.chord.messaging.Message;
+
+import java.io.IOException;
+
+/**
+ * The connection on which a Processor writes its responses. Implemented once per transport, so that the same
+ * Processor can serve both blocking Socket connections and non-blocking selector-driven channels.
+ */
+public interface ResponseChannel {
+
+    /**
+     * Writes a Frame containing a response Message. Safe to call from several request threads at once.
+     *
+     * @param requestId The id of the request we are responding to.
+     * @param message   The response Message, must have been previously marshaled.
+     * @throws IOException If the connection has failed or been closed
+     */
+    void write(int requestId, Message message) throws IOException;
+}
@@ -1,23 +1,52 @@
 package org.chord.networking;
 
+import org.chord.util.Constants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Listens on a port and accepts incoming client connections to the ServerSocket, which generates a Socket object.
- * Once a connection is received/accepted and its Socket has been captured, a Processor is spawned off as a Thread
- * to process any incoming Message from the captured Socket, and we immediately return to listening for new connections.
+ * How connections are then served depends on the ServerMode selected at startup:
+ * - BLOCKING: once a connection is received/accepted and its Socket has been captured, a Processor is spawned off
+ *   as a Thread to process any incoming Messages from the captured Socket, and we immediately return to listening
+ *   for new connections.
+ * - NIO: accepted connections are handed to a NioServer, which reads them with a few selector threads and
+ *   processes their Messages on a bounded worker pool.
+ * - VIRTUAL: as BLOCKING, but the Processor of each connection, and each of its requests, runs on a virtual thread.
  */
 public abstract class Server implements Runnable {
 
     public static Logger log = LoggerFactory.getLogger(Server.class);
 
+    // ServerMode used by Servers created from now on; selected at startup
+    private static ServerMode defaultMode = ServerMode.BLOCKING;
+
     public ServerSocket serverSocket;
+    public ServerSocketChannel serverChannel;
     public Integer port;
+    public final ServerMode mode;
+
+    // ServerMode.VIRTUAL: starts a virtual thread per connection and per request
+    private ExecutorService virtualThreadExecutor;
+
+    public Server() {
+        this.mode = defaultMode;
+    }
+
+    public static ServerMode getDefaultMode() {
+        return defaultMode;
+    }
+
+    public static void setDefaultMode(ServerMode mode) {
+        defaultMode = mode;
+    }
 
     public ServerSocket getServerSocket() {
         return serverSocket;
@@ -27,6 +56,10 @@ public abstract class Server implements Runnable {
         return port;
     }
 
+    public ServerMode getMode() {
+        return mode;
+    }
+
     /**
      * Binds our ServerSocket to the specified port. If unable to bind, exits the program with error code 1.
      *
@@ -34,18 +67,24 @@ public abstract class Server implements Runnable {
      */
     public void bindToPort(Integer port) {
         try {
-            this.serverSocket = new ServerSocket(port, 10);
+            if (this.mode == ServerMode.NIO) {
+                this.serverChannel = ServerSocketChannel.open();
+                this.serverChannel.bind(new InetSocketAddress(port), Constants.Networking.ACCEPT_BACKLOG);
+                this.serverSocket = this.serverChannel.socket();
+            } else {
+                this.serverSocket = new ServerSocket(port, Constants.Networking.ACCEPT_BACKLOG);
+            }
         } catch (IOException e) {
             log.error("Could not listen on port {}", port);
             e.printStackTrace();
         }
 
-        if (!this.serverSocket.isBound()) {
+        if (this.serverSocket == null || !this.serverSocket.isBound()) {
             log.error("ServerSocket unable to bind to port {}", port);
             System.exit(1);
         }
-        log.info("ServerSocket successfully bound to port {}", port);
-        this.port = port;
+        this.port = this.serverSocket.getLocalPort();
+        log.info("ServerSocket successfully bound to port {} in {} mode", this.port, this.mode);
     }
 
     /**
@@ -59,13 +98,24 @@ public abstract class Server implements Runnable {
                 log.info("Received client connection from host: {}, port: {}",
                         clientSocket.getInetAddress().getHostName(), clientSocket.getPort());
 
-                this.processConnection(clientSocket); // consume/process incoming message on new thread
+                this.processConnection(clientSocket); // consume/process incoming messages on new thread
             } catch (IOException e) {
                 System.out.println("Client disconnected.");
             }
         }
     }
 
+    /**
+     * Stops accepting connections; connections already accepted are served until their clients close them.
+     */
+    public void close() {
+        try {
+            this.serverSocket.close();
+        } catch (IOException e) {
+            log.warn("Unable to close ServerSocket on port {}: {}", this.port, e.getMessage());
+        }
+    }
+
     /**
      * Helper function for launching our run() function as its own Thread.
      */
@@ -79,14 +129,42 @@ public abstract class Server implements Runnable {
      */
     @Override
     public void run() {
-        acceptConnections();
+        if (this.mode == ServerMode.NIO) {
+            try {
+                new NioServer(this.serverChannel, channel -> createProcessor(channel.socket())).acceptConnections();
+            } catch (IOException e) {
+                log.error("Unable to start NioServer: {}", e.getMessage());
+            }
+        } else {
+            if (this.mode == ServerMode.VIRTUAL) {
+                this.virtualThreadExecutor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+            }
+            acceptConnections();
+        }
+    }
+
+    /**
+     * Processes a captured Socket from an incoming connection, by launching its Processor as a Thread, or as a
+     * virtual thread in ServerMode.VIRTUAL.
+     *
+     * @param clientSocket Socket captured from the incoming connection.
+     */
+    public void processConnection(Socket clientSocket) {
+        Processor processor = createProcessor(clientSocket);
+        if (this.virtualThreadExecutor != null) {
+            processor.setRequestExecutor(this.virtualThreadExecutor);
+            this.virtualThreadExecutor.execute(processor);
+        } else {
+            processor.launchAsThread();
+        }
     }
 
     /**
-     * Processes a captured Socket from an incoming connection. Implemented by a concrete subclass.
+     * Creates the Processor for Messages arriving on an incoming connection. Implemented by a concrete subclass.
      *
      * @param clientSocket Socket captured from the incoming connection.
+     * @return Processor for the connection's Messages
      */
-    public abstract void processConnection(Socket clientSocket);
+    public abstract Processor createProcessor(Socket clientSocket);
 
-}
\ No newline at end of file
+}
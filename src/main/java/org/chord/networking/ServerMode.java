@@ -0,0 +1,24 @@
+package org.chord.networking;
+
+/**
+ * How a Server accepts connections and executes requests; selected at startup.
+ * - BLOCKING: one thread per connection reads Frames, and one new thread is started per request.
+ * - NIO: a small fixed set of selector threads reads Frames from all connections, and requests are executed
+ *   on a bounded worker pool.
+ * - VIRTUAL: like BLOCKING, but each connection and each request runs on its own virtual thread (JDK 21+),
+ *   so requests blocked on a nested forward park instead of holding an OS thread.
+ */
+public enum ServerMode {
+    BLOCKING, NIO, VIRTUAL;
+
+    /**
+     * Converts a command-line value to a ServerMode, ignoring case.
+     *
+     * @param value i.e. "blocking", "nio" or "virtual"
+     * @return The matching ServerMode
+     * @throws IllegalArgumentException If value does not name a ServerMode
+     */
+    public static ServerMode fromString(String value) {
+        return ServerMode.valueOf(value.trim().toUpperCase());
+    }
+}
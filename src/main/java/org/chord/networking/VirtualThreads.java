@@ -0,0 +1,53 @@
+package org.chord.networking;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads (JDK 21+) while the project still compiles for older releases.
+ * The JDK's factory method is looked up reflectively; on a JVM without virtual threads, a cached pool of
+ * platform threads is used instead, which behaves like ServerMode.BLOCKING.
+ */
+public class VirtualThreads {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreads.class);
+
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findFactoryMethod();
+
+    private static Method findFactoryMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return True if the running JVM supports virtual threads, false otherwise
+     */
+    public static boolean isSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Creates an Executor that starts a new virtual thread for each task.
+     *
+     * @return A virtual-thread-per-task ExecutorService, or a cached platform thread pool if not supported
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (isSupported()) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                log.error("Unable to create virtual thread executor: {}", e.getMessage());
+            }
+        }
+        log.warn("Virtual threads require JDK 21 or later (running {}); using platform threads",
+                System.getProperty("java.version"));
+        return Executors.newCachedThreadPool();
+    }
+}
@@ -0,0 +1,216 @@
+package org.chord.peer;
+
+import org.chord.messaging.FileChunk;
+import org.chord.messaging.FileTransferCommit;
+import org.chord.messaging.FileTransferHeader;
+import org.chord.util.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/**
+ * Receiving side of chunked file transfers (see ChunkedFileSender). Each transfer is written to its own temporary
+ * file as its chunks arrive, so a transfer only ever holds the chunk being written in memory. On commit the
+ * checksum of the temporary file is verified, and it is handed back to be moved into place.
+ */
+public class ChunkedFileReceiver {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkedFileReceiver.class);
+
+    // Directory temporary files are created in; the same as the files' destination, so they can be moved atomically
+    private final Path directory;
+    private final long idleTimeoutMillis;
+
+    // Transfers that have been started, but not yet committed, keyed by transfer id
+    private final Map<Long, IncomingTransfer> transfers;
+
+    public ChunkedFileReceiver(Path directory) {
+        this(directory, Constants.FileTransfer.IDLE_TIMEOUT_MILLIS);
+    }
+
+    ChunkedFileReceiver(Path directory, long idleTimeoutMillis) {
+        this.directory = directory;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.transfers = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * A file whose transfer has been committed, and verified, but not yet moved into place.
+     */
+    public static class ReceivedFile {
+        public final String fileId;
+        public final String fileName;
+        public final Path tempFile;
+        public final boolean replica; // see FileTransferHeader.replica
+        public final boolean handoff; // see FileTransferHeader.handoff
+
+        ReceivedFile(String fileId, String fileName, Path tempFile, boolean replica, boolean handoff) {
+            this.fileId = fileId;
+            this.fileName = fileName;
+            this.tempFile = tempFile;
+            this.replica = replica;
+            this.handoff = handoff;
+        }
+    }
+
+    private static class IncomingTransfer {
+        final FileTransferHeader header;
+        final Path tempFile;
+        final FileChannel channel;
+        final AtomicLong bytesReceived = new AtomicLong();
+        volatile long lastActivityMillis = System.currentTimeMillis();
+
+        IncomingTransfer(FileTransferHeader header, Path tempFile, FileChannel channel) {
+            this.header = header;
+            this.tempFile = tempFile;
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * Starts a transfer, creating its temporary file. Transfers that have been idle for too long are discarded.
+     *
+     * @param header The FileTransferHeader announcing the transfer
+     * @throws IOException If the header is invalid, or unable to create the temporary file
+     */
+    public void begin(FileTransferHeader header) throws IOException {
+        discardIdleTransfers();
+        if (header.length < 0 || header.chunkSize <= 0) {
+            throw new IOException(String.format("Invalid transfer of %s: length %d, chunk size %d", header.fileName,
+                    header.length, header.chunkSize));
+        }
+        Path tempFile = Files.createTempFile(this.directory, ".transfer-", ".part");
+        FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE);
+        if (this.transfers.putIfAbsent(header.transferId, new IncomingTransfer(header, tempFile, channel)) != null) {
+            channel.close();
+            Files.deleteIfExists(tempFile);
+            throw new IOException("Duplicate transfer id " + header.transferId);
+        }
+        log.info("Receiving {}({}, {} bytes) from {}", header.fileName, header.fileId, header.length, header.hostname);
+    }
+
+    /**
+     * Writes a chunk at its offset in the transfer's temporary file. Chunks may be written in any order, and
+     * concurrently.
+     *
+     * @param chunk The FileChunk to write
+     * @throws IOException If the transfer is unknown, the chunk doesn't fit the file, or unable to write it
+     */
+    public void write(FileChunk chunk) throws IOException {
+        IncomingTransfer transfer = getTransfer(chunk.transferId);
+        long length = chunk.payload.length();
+        if (chunk.offset < 0 || chunk.offset % transfer.header.chunkSize != 0 ||
+                chunk.offset + length > transfer.header.length) {
+            abort(transfer);
+            throw new IOException(String.format("Chunk at offset %d (%d bytes) doesn't fit %s", chunk.offset, length,
+                    transfer.header.fileName));
+        }
+        ByteBuffer buffer = chunk.payload.toByteBuffer();
+        while (buffer.hasRemaining()) {
+            transfer.channel.write(buffer, chunk.offset + buffer.position());
+        }
+        transfer.bytesReceived.addAndGet(length);
+        transfer.lastActivityMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Completes a transfer, verifying that every byte was received, and that the checksum matches the sender's.
+     * A transfer that fails verification is discarded.
+     *
+     * @param commit The FileTransferCommit completing the transfer
+     * @return The received file, to be moved into place by the caller
+     * @throws IOException If the transfer is unknown or incomplete, or its checksum doesn't match
+     */
+    public ReceivedFile commit(FileTransferCommit commit) throws IOException {
+        IncomingTransfer transfer = getTransfer(commit.transferId);
+        this.transfers.remove(commit.transferId);
+        FileTransferHeader header = transfer.header;
+        try {
+            transfer.channel.force(false);
+            transfer.channel.close();
+            if (transfer.bytesReceived.get() != header.length) {
+                throw new IOException(String.format("Received %d of %d bytes of %s", transfer.bytesReceived.get(),
+                        header.length, header.fileName));
+            }
+            long checksum = checksum(transfer.tempFile);
+            if (checksum != commit.checksum) {
+                throw new IOException(String.format("Checksum mismatch for %s: expected %08x, got %08x",
+                        header.fileName, commit.checksum, checksum));
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(transfer.tempFile);
+            throw e;
+        }
+        return new ReceivedFile(header.fileId, header.fileName, transfer.tempFile, header.replica,
+                header.handoff);
+    }
+
+    /**
+     * @return The number of transfers that have been started, but not yet committed
+     */
+    public int pendingTransfers() {
+        return this.transfers.size();
+    }
+
+    private IncomingTransfer getTransfer(long transferId) throws IOException {
+        IncomingTransfer transfer = this.transfers.get(transferId);
+        if (transfer == null) {
+            throw new IOException("Unknown transfer id " + transferId);
+        }
+        return transfer;
+    }
+
+    private void discardIdleTransfers() {
+        long now = System.currentTimeMillis();
+        Iterator<IncomingTransfer> iterator = this.transfers.values().iterator();
+        while (iterator.hasNext()) {
+            IncomingTransfer transfer = iterator.next();
+            if (now - transfer.lastActivityMillis > this.idleTimeoutMillis) {
+                log.warn("Discarding idle transfer of {} from {}", transfer.header.fileName, transfer.header.hostname);
+                iterator.remove();
+                abort(transfer);
+            }
+        }
+    }
+
+    private void abort(IncomingTransfer transfer) {
+        this.transfers.remove(transfer.header.transferId);
+        try {
+            transfer.channel.close();
+            Files.deleteIfExists(transfer.tempFile);
+        } catch (IOException e) {
+            log.error("Unable to delete {}: {}", transfer.tempFile, e.getMessage());
+        }
+    }
+
+    /**
+     * Calculates the CRC-32C checksum of a file, reading it through a small buffer.
+     *
+     * @param path The file to checksum
+     * @return The checksum, as sent in a FileTransferCommit
+     * @throws IOException If unable to read the file
+     */
+    public static long checksum(Path path) throws IOException {
+        CRC32C crc = new CRC32C();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,122 @@
+package org.chord.peer;
+
+import org.chord.messaging.Payload;
+import org.chord.storage.StorageEngine;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Archive of every file a peer stores, handed off to its successor in a single chunked transfer when the peer leaves
+ * the network, rather than with a request per file. The archive is a sequence of records:
+ * [int header length][header: UTF fileId, UTF fileName, long content length][content]
+ * Contents are read back as regions of the archive, without passing through heap.
+ */
+public class FileHandoff {
+
+    /**
+     * Receives the files of an archive, in the order they were written.
+     */
+    public interface ArchivedFileConsumer {
+        void accept(String fileId, String fileName, Payload content) throws IOException;
+    }
+
+    /**
+     * Writes the content of stored files to an archive. Files deleted since they were listed are skipped.
+     *
+     * @param storage The storage holding the files
+     * @param files   fileId, fileName of the files to archive
+     * @param archive The archive to write, replaced if it exists
+     * @return The number of files archived
+     * @throws IOException If unable to read a file, or to write the archive
+     */
+    public static int write(StorageEngine storage, Map<String, String> files, Path archive) throws IOException {
+        int archived = 0;
+        try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(archive), 64 * 1024);
+             DataOutputStream dataOutputStream = new DataOutputStream(outputStream)) {
+            for (Map.Entry<String, String> file : files.entrySet()) {
+                Payload content = storage.get(file.getKey());
+                if (content == null) {
+                    continue;
+                }
+                byte[] header = header(file.getKey(), file.getValue(), content.length());
+                dataOutputStream.writeInt(header.length);
+                dataOutputStream.write(header);
+                content.writeTo(dataOutputStream);
+                archived++;
+            }
+        }
+        return archived;
+    }
+
+    /**
+     * Reads every file of an archive.
+     *
+     * @param archive  The archive to read
+     * @param consumer Called with each file; the content is only valid until the archive is deleted
+     * @return The number of files read
+     * @throws IOException If the archive is truncated or corrupt, or the consumer failed
+     */
+    public static int read(Path archive, ArchivedFileConsumer consumer) throws IOException {
+        int read = 0;
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+            long position = 0;
+            long size = channel.size();
+            while (position < size) {
+                ByteBuffer headerLength = readFully(channel, position, Integer.BYTES);
+                ByteBuffer header = readFully(channel, position + Integer.BYTES, headerLength.getInt());
+                DataInputStream headerStream = new DataInputStream(
+                        new ByteArrayInputStream(header.array(), 0, header.limit()));
+                String fileId = headerStream.readUTF();
+                String fileName = headerStream.readUTF();
+                long length = headerStream.readLong();
+
+                long contentPosition = position + Integer.BYTES + header.limit();
+                if (length < 0 || contentPosition + length > size) {
+                    throw new EOFException(String.format("Truncated handoff archive: %s(%s) needs %d bytes at %d",
+                            fileName, fileId, length, contentPosition));
+                }
+                consumer.accept(fileId, fileName, Payload.of(archive, contentPosition, length));
+                read++;
+                position = contentPosition + length;
+            }
+        }
+        return read;
+    }
+
+    private static byte[] header(String fileId, String fileName, long length) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        try (DataOutputStream dataOutputStream = new DataOutputStream(header)) {
+            dataOutputStream.writeUTF(fileId);
+            dataOutputStream.writeUTF(fileName);
+            dataOutputStream.writeLong(length);
+        }
+        return header.toByteArray();
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        if (length < 0) {
+            throw new EOFException("Corrupt handoff archive: negative header length at " + position);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Truncated handoff archive at " + (position + buffer.position()));
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,196 @@
+package org.chord.peer;
+
+import org.chord.messaging.MoveFileRequest;
+import org.chord.messaging.MoveFileResponse;
+import org.chord.messaging.Payload;
+import org.chord.networking.ChunkedFileSender;
+import org.chord.networking.Client;
+import org.chord.storage.StorageEngine;
+import org.chord.util.Constants;
+import org.chord.util.Host;
+import org.chord.util.RingKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Moves stored files to another peer as a pipeline, on a thread of its own so that the Peer is never locked while
+ * files are in transit:
+ * 1. The files to move are selected with a single range query on the stored files.
+ * 2. Files are sent over the pooled connection to the target, with up to Constants.Peer.MAX_IN_FLIGHT_MIGRATIONS
+ *    awaiting their acknowledgement at once.
+ * 3. Acknowledged files are deleted in batches of Constants.Peer.MIGRATION_BATCH_SIZE; a file whose transfer failed
+ *    is kept.
+ * Every transfer is bounded, and a target that acknowledges none of the transfers in flight within
+ * Constants.Peer.MIGRATION_ACK_TIMEOUT_MILLIS fails the migration: the files it hasn't acknowledged are kept, and the
+ * next migration isn't held up by it.
+ * Migrations run one at a time, in the order they were requested.
+ */
+public class FileMigrator {
+
+    private static final Logger log = LoggerFactory.getLogger(FileMigrator.class);
+
+    /**
+     * Sends a single stored file to the target of a migration.
+     */
+    interface FileTransfer {
+        CompletableFuture<?> send(Identifier target, String fileId, String fileName);
+    }
+
+    private final FileTransfer transfer;
+    // Deletes a batch of acknowledged files, by file id
+    private final Consumer<Collection<String>> remover;
+    private final int maxInFlight;
+    private final int batchSize;
+    private final long ackTimeoutMillis;
+    private final ExecutorService executor;
+
+    public FileMigrator(StorageEngine storage, Consumer<Collection<String>> remover) {
+        this((target, fileId, fileName) -> sendFile(storage, target, fileId, fileName), remover, Constants.Peer.MAX_IN_FLIGHT_MIGRATIONS,
+                Constants.Peer.MIGRATION_BATCH_SIZE, Constants.Peer.MIGRATION_ACK_TIMEOUT_MILLIS);
+    }
+
+    FileMigrator(FileTransfer transfer, Consumer<Collection<String>> remover, int maxInFlight, int batchSize,
+                 long ackTimeoutMillis) {
+        this.transfer = transfer;
+        this.remover = remover;
+        this.maxInFlight = maxInFlight;
+        this.batchSize = batchSize;
+        this.ackTimeoutMillis = ackTimeoutMillis;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread migrator = new Thread(runnable, "File Migrator");
+            migrator.setDaemon(true);
+            return migrator;
+        });
+    }
+
+    /**
+     * Selects the stored files whose keys now belong to a new predecessor, i.e. are no longer in
+     * (newPredecessor, us]: those are exactly the keys in (us, newPredecessor], found with a single range query.
+     *
+     * @param storedFiles    fileId (digest truncated to the ring's width), fileName of the files we store
+     * @param newPredecessor Ring position of our new predecessor
+     * @param us             Our own ring position
+     * @return fileId, fileName of the files to move
+     */
+    public static Map<String, String> selectFilesToMove(RingKeyIndex<String> storedFiles,
+                                                        RingKey newPredecessor, RingKey us) {
+        if (newPredecessor.equals(us)) {
+            return Collections.emptyMap(); // we are alone in the ring, and own every key
+        }
+        return storedFiles.range(us, newPredecessor);
+    }
+
+    /**
+     * Starts moving files to a peer, once any migration already in progress has finished.
+     *
+     * @param files  fileId, fileName of the files to move
+     * @param target The Identifier of the peer to move them to
+     * @return Future completed once every file has either been moved and deleted, or failed
+     */
+    public CompletableFuture<Void> migrate(Map<String, String> files, Identifier target) {
+        return CompletableFuture.runAsync(() -> run(files, target), this.executor);
+    }
+
+    private void run(Map<String, String> files, Identifier target) {
+        log.info("Moving {} files to {}", files.size(), target);
+        Semaphore inFlight = new Semaphore(this.maxInFlight);
+        Queue<String> acknowledged = new ConcurrentLinkedQueue<>();
+        int sent = 0;
+        int moved = 0;
+        try {
+            for (Map.Entry<String, String> entry : files.entrySet()) {
+                String fileId = entry.getKey();
+                String fileName = entry.getValue();
+                if (!inFlight.tryAcquire(this.ackTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    log.error("No file acknowledged by {} within {} ms, keeping the {} files not sent", target,
+                            this.ackTimeoutMillis, files.size() - sent);
+                    break;
+                }
+                sent++;
+                this.transfer.send(target, fileId, fileName).whenComplete((result, error) -> {
+                    if (error != null) {
+                        log.error("Unable to move file {}({}) to {}: {}", fileName, fileId, target.getHostname(),
+                                Client.asIOException(error).getMessage());
+                    } else {
+                        acknowledged.add(fileId);
+                    }
+                    inFlight.release();
+                });
+                if (acknowledged.size() >= this.batchSize) {
+                    moved += removeAcknowledged(acknowledged);
+                }
+            }
+            // Wait for the files still in flight
+            if (!inFlight.tryAcquire(this.maxInFlight, this.ackTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                log.error("Files in flight to {} not acknowledged within {} ms, keeping them", target,
+                        this.ackTimeoutMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while moving files to {}", target);
+        }
+        // Files acknowledged after this are kept, as well as stored on the target
+        moved += removeAcknowledged(acknowledged);
+        log.info("Moved {} of {} files to {}", moved, files.size(), target);
+    }
+
+    /**
+     * @return How many files were removed
+     */
+    private int removeAcknowledged(Queue<String> acknowledged) {
+        List<String> batch = new ArrayList<>();
+        String fileId;
+        while ((fileId = acknowledged.poll()) != null) {
+            batch.add(fileId);
+        }
+        if (!batch.isEmpty()) {
+            this.remover.accept(batch);
+        }
+        return batch.size();
+    }
+
+    /**
+     * Sends a stored file straight from storage, in chunks if it doesn't fit in a single frame.
+     */
+    private static CompletableFuture<?> sendFile(StorageEngine storage, Identifier target, String fileId,
+                                                 String fileName) {
+        try {
+            Payload payload = storage.get(fileId);
+            if (payload == null) {
+                throw new IOException(fileName + " is no longer stored");
+            }
+            if (ChunkedFileSender.isChunked(payload.length())) {
+                return CompletableFuture.completedFuture(ChunkedFileSender.send(target.getHostname(),
+                        target.getPort(), fileId, fileName, payload));
+            }
+            MoveFileRequest mfRequest = new MoveFileRequest(Host.getHostname(), Host.getIpAddress(), fileId,
+                    fileName, payload);
+            return Client.sendTransferAsync(target.getHostname(), target.getPort(), mfRequest, payload.length())
+                    .thenApply(response -> {
+                        if (!(response instanceof MoveFileResponse)) {
+                            throw new CompletionException(new IOException(
+                                    target.getHostname() + " rejected " + fileName));
+                        }
+                        return response;
+                    });
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
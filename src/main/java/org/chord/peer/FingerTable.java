@@ -1,14 +1,17 @@
 package org.chord.peer;
 
-import org.chord.util.HashUtil;
+import org.chord.util.Constants;
+import org.chord.util.RingKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-
-import static org.chord.util.Constants.MAX_ID;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
 
 /**
  * Maintains information about log(N) successor nodes (clockwise) in the chord ring network.
@@ -19,43 +22,138 @@ import static org.chord.util.Constants.MAX_ID;
  * and where i = 2, we store the Identifier of the successor for the id 4 hops away (successor(p+4)).
  *
  * The successor of an id k (successor(k)) is defined by the node with the smallest id p, such that p >= k.
+ *
+ * Entries are kept in parallel arrays: the ring position of each index, computed once, and the successor of each.
+ * Routing only compares the RingKeys of positions and of Identifiers, and never parses the hex ids of the entries.
+ * The table has one index per bit of the ids, see RingKey.bits().
+ *
+ * Any peer in [p + 2^i, p + 2^(i+1)) makes as much progress towards an id past that interval as successor(p + 2^i)
+ * does, so each index also keeps a few candidates from its interval: the successor first, then the next peers in the
+ * interval. Routing picks the candidate with the lowest round-trip time (proximity neighbor selection), which cuts
+ * the latency of each hop without adding any.
  */
 public class FingerTable {
 
     private static final Logger log = LoggerFactory.getLogger(FingerTable.class);
 
     public Identifier identifier;
-    public List<Identifier> peerIds;
+
+    // Our own position in the ring
+    private final RingKey ourRingPosition;
+
+    // At each index i: p + 2^i, and the successor of that position
+    private final RingKey[] ringPositions;
+    private final Identifier[] successors;
+
+    // At each index i: the successor, then up to Constants.Peer.FINGER_CANDIDATES - 1 more peers of the interval
+    // [p + 2^i, p + 2^(i+1)), in ring order. Each array is never modified once set, so copies may share them
+    private final Identifier[][] candidates;
 
     /**
-     * Initializes the Finger Table with 16 copies of our peer's Identifier.
+     * Initializes the Finger Table with copies of our peer's Identifier, one per bit of the ids.
      * This is because at initialization time, we don't know about any other peers in the network.
      * @param id Our peer's Identifier
      */
     public FingerTable(int size, Identifier id) {
-        this.identifier = id;
-        this.peerIds = new ArrayList<>(Collections.nCopies(size, id));
+        this(id, Collections.nCopies(size, id));
     }
 
     public FingerTable(Identifier id, List<Identifier> peerIds) {
         this.identifier = id;
-        this.peerIds = peerIds;
+        this.ourRingPosition = id.key();
+        int size = peerIds.size();
+        this.ringPositions = new RingKey[size];
+        this.successors = new Identifier[size];
+        this.candidates = new Identifier[size][];
+        for (int i = 0; i < size; i++) {
+            this.ringPositions[i] = this.ourRingPosition.plus(hopsAwayToDistance(i + 1));
+            set(i, peerIds.get(i));
+        }
+    }
+
+    private FingerTable(FingerTable other) {
+        this.identifier = other.identifier;
+        this.ourRingPosition = other.ourRingPosition;
+        this.ringPositions = other.ringPositions; // never modified, so may be shared
+        this.successors = other.successors.clone();
+        this.candidates = other.candidates.clone();
+    }
+
+    /**
+     * @return A FingerTable with the same entries, which may be modified without affecting this one
+     */
+    public FingerTable copy() {
+        return new FingerTable(this);
     }
 
     public Identifier getIdentifier() {
         return identifier;
     }
 
+    /**
+     * @return A read-only view of the successor Identifiers, in index order
+     */
     public List<Identifier> getPeerIds() {
-        return peerIds;
+        return Collections.unmodifiableList(Arrays.asList(this.successors));
     }
 
+    /**
+     * Sets the successor of an index, keeping the candidates that come after it in the index's interval.
+     * @param index  Finger table index
+     * @param peerId Identifier of the successor of the index's ring position
+     */
     public void set(int index, Identifier peerId) {
-        this.peerIds.set(index, peerId);
+        this.successors[index] = peerId;
+        Identifier[] current = this.candidates[index];
+        this.candidates[index] = candidatesOf(index, peerId, (current == null) ? List.of() : Arrays.asList(current));
+    }
+
+    /**
+     * @param index Finger table index
+     * @return The successor of the index, followed by the other candidates of its interval, in ring order
+     */
+    public List<Identifier> getCandidates(int index) {
+        return Collections.unmodifiableList(Arrays.asList(this.candidates[index]));
+    }
+
+    /**
+     * Replaces the candidates of an index other than its successor with the given peers that fall in its interval,
+     * i.e. the successor's successor list.
+     * @param index Finger table index
+     * @param peers Identifiers of peers that may be in the index's interval
+     */
+    public void setCandidates(int index, List<Identifier> peers) {
+        this.candidates[index] = candidatesOf(index, this.successors[index], peers);
+    }
+
+    /**
+     * @return The successor, followed by the peers that come after it within the interval of the index, in ring
+     * order, up to Constants.Peer.FINGER_CANDIDATES
+     */
+    private Identifier[] candidatesOf(int index, Identifier successor, List<Identifier> peers) {
+        RingKey start = this.ringPositions[index];
+        RingKey successorDistance = start.distanceTo(successor.key());
+        RingKey intervalSize = hopsAwayToDistance(index + 1);
+        List<Identifier> inInterval = new ArrayList<>();
+        for (Identifier peerId : peers) {
+            RingKey distance = start.distanceTo(peerId.key());
+            if (distance.compareTo(successorDistance) > 0 && distance.compareTo(intervalSize) < 0
+                    && !peerId.key().equals(this.ourRingPosition) && !inInterval.contains(peerId)) {
+                inInterval.add(peerId);
+            }
+        }
+        inInterval.sort(Comparator.comparing(peerId -> start.distanceTo(peerId.key())));
+        int size = Math.min(inInterval.size() + 1, Constants.Peer.FINGER_CANDIDATES);
+        Identifier[] result = new Identifier[size];
+        result[0] = successor;
+        for (int i = 1; i < size; i++) {
+            result[i] = inInterval.get(i - 1);
+        }
+        return result;
     }
 
     public int size() {
-        return this.peerIds.size();
+        return this.successors.length;
     }
 
     /**
@@ -63,8 +161,8 @@ public class FingerTable {
      * @param i The number of hops we are making.
      * @return The number of ids we cover with those hops, specifically 2^(i-1)
      */
-    public int hopsAwayToDistance(int i) {
-        return (int) Math.pow(2, i-1);
+    public RingKey hopsAwayToDistance(int i) {
+        return RingKey.powerOfTwo(i - 1);
     }
 
     /**
@@ -72,11 +170,8 @@ public class FingerTable {
      * @param fingerTableIndex The finger table index value
      * @return The ring position based on the table index
      */
-    public int ringPositionOfIndex(int fingerTableIndex) {
-        int ourRingPosition = HashUtil.hexToInt(this.identifier.getId());
-        int ringPositionOfIndex = (ourRingPosition + hopsAwayToDistance(fingerTableIndex+1)) % (int) (Math.pow(2, this.peerIds.size()));
-        log.debug("ringPositionOfIndex({}): {}", fingerTableIndex, ringPositionOfIndex);
-        return ringPositionOfIndex;
+    public RingKey ringPositionOfIndex(int fingerTableIndex) {
+        return this.ringPositions[fingerTableIndex];
     }
 
     /**
@@ -85,10 +180,8 @@ public class FingerTable {
      * @param id The hex id we are trying to find the raw distance to, going clockwise around the ring.
      * @return The distance to the hex id, going clockwise around the ring.
      */
-    public int distanceTo(String id) {
-        int idValue = HashUtil.hexToInt(id);
-        int ourRingPosition = HashUtil.hexToInt(this.identifier.getId());
-        return distanceBetween(ourRingPosition, idValue);
+    public RingKey distanceTo(String id) {
+        return distanceBetween(this.ourRingPosition, RingKey.fromHex(id));
     }
 
     /**
@@ -97,8 +190,8 @@ public class FingerTable {
      * @param b Second position
      * @return Number of sequential hops between them, traveling clockwise
      */
-    public int distanceBetween(int a, int b) {
-        return (b >= a) ? b - a : ((MAX_ID + 1) - a) + b;
+    public RingKey distanceBetween(RingKey a, RingKey b) {
+        return a.distanceTo(b);
     }
 
     /**
@@ -109,12 +202,15 @@ public class FingerTable {
      * @return True if we know k's successor, false if not
      */
     public boolean knowsFinalSuccessorOf(String id) {
-        int k = Identifier.valueOf(id);
-        int us = this.identifier.value();
-        if (us == k) return true;
+        return knowsFinalSuccessorOf(RingKey.fromHex(id));
+    }
 
-        int firstSuccessor = this.peerIds.get(0).value();
-        return (isSuccessorOf(firstSuccessor, k));
+    /**
+     * @param k Ring position of k
+     * @return True if we know k's successor, false if not
+     */
+    public boolean knowsFinalSuccessorOf(RingKey k) {
+        return this.ourRingPosition.equals(k) || isSuccessorOf(this.successors[0].key(), k);
     }
 
     /**
@@ -123,9 +219,8 @@ public class FingerTable {
      * @param k an id of a data item or node
      * @return true if p is a successor of k, false if not
      */
-    public boolean isSuccessorOf(int p, int k) {
-        int us = this.identifier.value();
-        return p == k || isBetween(k, us, p);
+    public boolean isSuccessorOf(RingKey p, RingKey k) {
+        return p.equals(k) || isBetween(k, this.ourRingPosition, p);
     }
 
     /**
@@ -135,33 +230,29 @@ public class FingerTable {
      * @param j End of range
      * @return True if k is between i and j, false otherwise
      */
-    public boolean isBetween(int k, int i, int j) {
-        if (i < j) {
-            return i < k && k < j;
-        } else {
-            return i < k || k < j;
-        }
+    public boolean isBetween(RingKey k, RingKey i, RingKey j) {
+        return k.isBetween(i, j);
     }
 
     /**
      * Finds the successor of an identifier, using the information available in our finger table.
-     * The successor(k) is the
      * @param id The String hex representation of k
-     * @return The Identifier of the successor for k, with respect to this peer p.
+     * @return The Identifier of the successor for k, with respect to this peer p, or null if we don't know it.
      */
     public Identifier successor(String id) {
-        int k = Identifier.valueOf(id);
-        int p = identifier.value();
-        log.debug("successor({}): k: {}", id, k);
-        log.debug("successor({}): p: {}", id, p);
+        return successor(RingKey.fromHex(id));
+    }
 
+    /**
+     * @param k Ring position of k
+     * @return The Identifier of the successor for k, with respect to this peer p, or null if we don't know it.
+     */
+    public Identifier successor(RingKey k) {
         // If it's the same position as p, return our identifier
-        if (k == p) {
-            log.debug("successor({}): k == p, returning our own identifier", k);
+        if (k.equals(this.ourRingPosition)) {
             return this.identifier;
-        } else if (isSuccessorOf(this.peerIds.get(0).value(), k)) { // p < k < FT[0]
-            log.debug("successor({}): FT[0]={} is successor of k", k, this.peerIds.get(0).value());
-            return this.peerIds.get(0);
+        } else if (isSuccessorOf(this.successors[0].key(), k)) { // p < k < FT[0]
+            return this.successors[0];
         }
         log.error("We don't know the final predecessor of k {} !", k);
         return null;
@@ -174,19 +265,72 @@ public class FingerTable {
      * @return Best predecessor of k
      */
     public Identifier bestPredecessorOf(String id) {
-        int k = Identifier.valueOf(id);
-
-        for (int i = 1; i < this.peerIds.size(); i++) {
-            Identifier peerId = this.peerIds.get(i);
-            int successor = peerId.value();
-            if (isSuccessorOf(successor, k)) {
-                log.debug("bestPredecessorOf({}): found predecessor {} of k {}", id, successor, k);
-                return this.peerIds.get(i-1);
+        return bestPredecessorOf(RingKey.fromHex(id));
+    }
+
+    /**
+     * @param k Ring position of k
+     * @return Best predecessor of k
+     */
+    public Identifier bestPredecessorOf(RingKey k) {
+        return this.successors[bestPredecessorIndexOf(k)];
+    }
+
+    /**
+     * Finds the closest predecessor of k that isn't to be avoided, i.e. because it is suspected to have failed:
+     * the next-best entry below the best predecessor, falling back to our successor if every one is avoided.
+     * @param k     Ring position of k
+     * @param avoid Tells which entries not to route through
+     * @return Best predecessor of k we may route through
+     */
+    public Identifier bestPredecessorOf(RingKey k, Predicate<Identifier> avoid) {
+        return bestPredecessorOf(k, avoid, peerId -> 0);
+    }
+
+    /**
+     * Finds the closest predecessor of k that isn't to be avoided, as above, picking the nearest of the candidates
+     * of its index: the one with the lowest round-trip time among those that still come before k. Ties, including
+     * candidates whose round-trip time is unknown, go to the one nearest the index's ring position.
+     * @param k       Ring position of k
+     * @param avoid   Tells which entries not to route through
+     * @param latency Round-trip time to a peer, Long.MAX_VALUE if unknown
+     * @return Best predecessor of k we may route through
+     */
+    public Identifier bestPredecessorOf(RingKey k, Predicate<Identifier> avoid, ToLongFunction<Identifier> latency) {
+        RingKey distanceToK = this.ourRingPosition.distanceTo(k);
+        for (int i = bestPredecessorIndexOf(k); i > 0; i--) {
+            Identifier nearest = null;
+            long nearestLatency = Long.MAX_VALUE;
+            Identifier[] indexCandidates = this.candidates[i];
+            for (int c = 0; c < indexCandidates.length; c++) {
+                Identifier candidate = indexCandidates[c];
+                if (avoid.test(candidate)) {
+                    continue;
+                }
+                // The successor always makes progress; an alternative further along mustn't overshoot k
+                if (c > 0 && this.ourRingPosition.distanceTo(candidate.key()).compareTo(distanceToK) >= 0) {
+                    break;
+                }
+                long candidateLatency = latency.applyAsLong(candidate);
+                if (nearest == null || candidateLatency < nearestLatency) {
+                    nearest = candidate;
+                    nearestLatency = candidateLatency;
+                }
+            }
+            if (nearest != null) {
+                return nearest;
+            }
+        }
+        return this.successors[0];
+    }
+
+    private int bestPredecessorIndexOf(RingKey k) {
+        for (int i = 1; i < this.successors.length; i++) {
+            if (isSuccessorOf(this.successors[i].key(), k)) {
+                return i - 1;
             }
         }
-        log.debug("bestPredecessorOf({}): did not find a suitable predecessor of k {}, returning last successor in finger table: {}",
-                id, k, this.peerIds.get(this.peerIds.size()-1));
-        return this.peerIds.get(this.peerIds.size()-1); // we didn't reach k, so return the closest point we can get to it
+        return this.successors.length - 1; // we didn't reach k, so return the closest point we can get to it
     }
 
     /**
@@ -194,14 +338,37 @@ public class FingerTable {
      * @param successorId Identifier of our new successor
      */
     public void updateWithSuccessor(Identifier successorId) {
-        int newSuccessor = successorId.value();
-        for (int ftIndex = 0; ftIndex < this.peerIds.size(); ftIndex++) {
-            int k = ringPositionOfIndex(ftIndex);
-            int currentSuccessor = this.peerIds.get(ftIndex).value();
-            if (k == newSuccessor || isBetween(newSuccessor, k, currentSuccessor)) {
-                this.peerIds.set(ftIndex, successorId);
+        RingKey newSuccessor = successorId.key();
+        for (int ftIndex = 0; ftIndex < this.ringPositions.length; ftIndex++) {
+            RingKey k = this.ringPositions[ftIndex];
+            RingKey currentSuccessor = this.successors[ftIndex].key();
+            if (k.equals(newSuccessor) || isBetween(newSuccessor, k, currentSuccessor)) {
+                // The successor it replaces is a candidate after it, if still in the interval
+                this.successors[ftIndex] = successorId;
+                this.candidates[ftIndex] = candidatesOf(ftIndex, successorId, Arrays.asList(this.candidates[ftIndex]));
                 log.info("Updated successor for finger table index={}, position={}, from {} to {}", ftIndex, k,
                         currentSuccessor, newSuccessor);
+            } else if (!successorId.equals(this.successors[ftIndex])) {
+                List<Identifier> peers = new ArrayList<>(Arrays.asList(this.candidates[ftIndex]));
+                peers.add(successorId);
+                this.candidates[ftIndex] = candidatesOf(ftIndex, this.successors[ftIndex], peers);
+            }
+        }
+    }
+
+    /**
+     * Replaces every entry pointing to a peer that left the ring with the peer that took over its keys
+     * @param departed    Identifier of the peer that left
+     * @param replacement Identifier of its successor
+     */
+    public void replace(Identifier departed, Identifier replacement) {
+        for (int ftIndex = 0; ftIndex < this.successors.length; ftIndex++) {
+            List<Identifier> remaining = new ArrayList<>(Arrays.asList(this.candidates[ftIndex]));
+            if (remaining.remove(departed)) {
+                this.candidates[ftIndex] = remaining.toArray(new Identifier[0]);
+            }
+            if (this.successors[ftIndex].equals(departed)) {
+                set(ftIndex, replacement);
             }
         }
     }
@@ -211,10 +378,11 @@ public class FingerTable {
         StringBuilder sb = new StringBuilder("\nFingerTable:\n");
         sb.append(String.format("\tidentifier: %s\n", this.identifier));
         sb.append("\tpeerIds: [\n");
-        int i = 0;
-        for (Identifier peerId: this.peerIds) {
-            sb.append(String.format("\t %d (%d) : %s\n", i, ringPositionOfIndex(i), peerId));
-            i++;
+        for (int i = 0; i < this.successors.length; i++) {
+            sb.append(String.format("\t %d (%s) : %s\n", i, this.ringPositions[i], this.successors[i]));
+            for (int c = 1; c < this.candidates[i].length; c++) {
+                sb.append(String.format("\t   or %s\n", this.candidates[i][c]));
+            }
         }
         sb.append("\t]\n");
         return sb.toString();
@@ -226,7 +394,7 @@ public class FingerTable {
         if (this == o) return true;
         if (!(o instanceof FingerTable)) return false;
         FingerTable ftOther = (FingerTable) o;
-        return this.identifier.equals(ftOther.getIdentifier()) && this.peerIds.equals(ftOther.getPeerIds());
+        return this.identifier.equals(ftOther.getIdentifier()) && Arrays.equals(this.successors, ftOther.successors);
     }
 
 }
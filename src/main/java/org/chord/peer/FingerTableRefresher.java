@@ -0,0 +1,114 @@
+package org.chord.peer;
+
+import org.chord.networking.Client;
+import org.chord.util.RingKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Rebuilds a FingerTable with the true successors of its ring positions, with as few lookups as possible:
+ * 1. Positions up to our successor are answered by our successor, without a lookup.
+ * 2. The remaining positions are grouped by the interval between the peers we already know that they fall in.
+ *    Groups are resolved in parallel.
+ * 3. Within a group, positions are resolved in order, and the answer successor(k) for one position k also answers
+ *    every later position in (k, successor(k)], so those are not looked up.
+ * The result is a new FingerTable; the snapshot it was built from is left untouched.
+ */
+public class FingerTableRefresher {
+
+    private static final Logger log = LoggerFactory.getLogger(FingerTableRefresher.class);
+
+    // (entry peer, hex id) -> successor(id)
+    private final BiFunction<Identifier, String, CompletableFuture<Identifier>> lookup;
+
+    public FingerTableRefresher() {
+        this(SuccessorLookup::findSuccessorAsync);
+    }
+
+    FingerTableRefresher(BiFunction<Identifier, String, CompletableFuture<Identifier>> lookup) {
+        this.lookup = lookup;
+    }
+
+    /**
+     * Starts refreshing a snapshot of a FingerTable, looking up positions through our successor.
+     *
+     * @param snapshot  The FingerTable to refresh
+     * @param successor The Identifier of our successor
+     * @return Future completed with the refreshed FingerTable. Entries whose lookup failed keep their old value.
+     */
+    public CompletableFuture<FingerTable> refresh(FingerTable snapshot, Identifier successor) {
+        Identifier[] refreshed = snapshot.getPeerIds().toArray(new Identifier[0]);
+
+        // Boundaries of the intervals we know of: every peer in the table, and our successor
+        TreeSet<RingKey> knownPeers = new TreeSet<>();
+        for (Identifier peerId : refreshed) {
+            knownPeers.add(peerId.key());
+        }
+        knownPeers.add(successor.key());
+
+        // Indices are visited in order of increasing distance from us, so each group is ordered the same way
+        Map<RingKey, List<Integer>> groups = new LinkedHashMap<>();
+        for (int ftIndex = 0; ftIndex < refreshed.length; ftIndex++) {
+            RingKey ringPosition = snapshot.ringPositionOfIndex(ftIndex);
+            if (snapshot.isSuccessorOf(successor.key(), ringPosition)) {
+                refreshed[ftIndex] = successor;
+            } else {
+                RingKey knownSuccessor = knownPeers.ceiling(ringPosition);
+                RingKey intervalEnd = (knownSuccessor != null) ? knownSuccessor : knownPeers.first();
+                groups.computeIfAbsent(intervalEnd, end -> new ArrayList<>()).add(ftIndex);
+            }
+        }
+
+        AtomicInteger lookups = new AtomicInteger();
+        List<CompletableFuture<Void>> groupResolutions = new ArrayList<>();
+        for (List<Integer> group : groups.values()) {
+            groupResolutions.add(resolveGroup(snapshot, successor, group, 0, refreshed, lookups));
+        }
+
+        return CompletableFuture.allOf(groupResolutions.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            log.info("Refreshed {} finger table entries with {} lookups", refreshed.length, lookups.get());
+            return new FingerTable(snapshot.getIdentifier(), new ArrayList<>(Arrays.asList(refreshed)));
+        });
+    }
+
+    /**
+     * Looks up the first unresolved position of a group, fills in every later position its answer also covers,
+     * then continues with the next position that is still unresolved.
+     */
+    private CompletableFuture<Void> resolveGroup(FingerTable snapshot, Identifier successor, List<Integer> group,
+                                                 int from, Identifier[] refreshed, AtomicInteger lookups) {
+        int ftIndex = group.get(from);
+        RingKey ringPosition = snapshot.ringPositionOfIndex(ftIndex);
+        String id = ringPosition.toHex();
+        lookups.incrementAndGet();
+        return this.lookup.apply(successor, id).handle((fingerSuccessor, error) -> {
+            int next = from + 1;
+            if (error != null) {
+                log.error("Unable to find successor of {} from {}: {}", id, successor,
+                        Client.asIOException(error).getMessage());
+            } else {
+                log.info("Successor of finger table index {}: {}", ftIndex, fingerSuccessor);
+                refreshed[ftIndex] = fingerSuccessor;
+                RingKey coveredDistance = snapshot.distanceBetween(ringPosition, fingerSuccessor.key());
+                while (next < group.size() && snapshot.distanceBetween(ringPosition,
+                        snapshot.ringPositionOfIndex(group.get(next))).compareTo(coveredDistance) <= 0) {
+                    refreshed[group.get(next++)] = fingerSuccessor;
+                }
+            }
+            return (next < group.size())
+                    ? resolveGroup(snapshot, successor, group, next, refreshed, lookups)
+                    : CompletableFuture.<Void>completedFuture(null);
+        }).thenCompose(Function.identity());
+    }
+}
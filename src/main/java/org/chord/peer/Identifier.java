@@ -1,18 +1,31 @@
 package org.chord.peer;
 
-import org.chord.util.HashUtil;
+import org.chord.util.Constants;
+import org.chord.util.RingKey;
 
 public class Identifier {
 
     // The hostname of the peer
     public String hostname;
 
-    // The hex identifier of the peer
+    // The hex identifier of the peer, padded to the width of ids, so that ids of the same ring position are equal
     public String id;
 
+    // The port the peer listens on; virtual nodes of one host differ by it
+    public int port;
+
+    // The ring position of the id, parsed once
+    private final RingKey key;
+
     public Identifier(String hostname, String id) {
+        this(hostname, id, Constants.Peer.PORT);
+    }
+
+    public Identifier(String hostname, String id, int port) {
         this.hostname = hostname;
-        this.id = id;
+        this.key = RingKey.fromHex(id);
+        this.id = this.key.toHex();
+        this.port = port;
     }
 
     public String getHostname() {
@@ -23,12 +36,12 @@ public class Identifier {
         return id;
     }
 
-    public int value() {
-        return HashUtil.hexToInt(this.id);
+    public int getPort() {
+        return port;
     }
 
-    public static int valueOf(String id) {
-        return HashUtil.hexToInt(id);
+    public RingKey key() {
+        return key;
     }
 
     @Override
@@ -37,11 +50,19 @@ public class Identifier {
         if (this == o) return true;
         if (!(o instanceof Identifier)) return false;
         Identifier idOther = (Identifier) o;
-        return this.hostname.equals(idOther.getHostname()) && this.id.equals(idOther.getId());
+        return this.hostname.equals(idOther.getHostname()) && this.port == idOther.getPort()
+                && this.id.equals(idOther.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return (this.hostname.hashCode() * 31 + this.port) * 31 + this.id.hashCode();
     }
 
     @Override
     public String toString() {
-        return String.format("{ hostname: \"%s\", id: \"%s\" (%d) }", this.hostname, this.id, this.value());
+        return (this.port == Constants.Peer.PORT)
+                ? String.format("{ hostname: \"%s\", id: \"%s\" }", this.hostname, this.id)
+                : String.format("{ hostname: \"%s\", port: %d, id: \"%s\" }", this.hostname, this.port, this.id);
     }
 }
@@ -0,0 +1,101 @@
+package org.chord.peer;
+
+import org.chord.util.Constants;
+
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * The load of a Peer at one point in time, as it measured it and gossiped it to the other peers: the files it stores,
+ * their total length, and the rate of lookups and file requests it answers. Immutable.
+ * A load is compared to the mean of the ring rather than in absolute terms, see loadRelativeTo(), so that the same
+ * thresholds hold for any ring.
+ */
+public class LoadStats {
+
+    public final Identifier peerId;
+    public final int keys;
+    public final long bytes;
+    public final double requestRate; // per second, over the last measurement interval
+    // Id a new peer would join at to take over half the keys the peer owns; empty if it owns fewer than two
+    public final String splitId;
+    // Virtual nodes its host was started with, i.e. the share of the ring's load the operator meant the host to take
+    public final int hostWeight;
+    public final long measuredAtMillis; // by our clock, see Message.readLoadStats()
+
+    public LoadStats(Identifier peerId, int keys, long bytes, double requestRate, String splitId, int hostWeight,
+                     long measuredAtMillis) {
+        this.peerId = peerId;
+        this.keys = keys;
+        this.bytes = bytes;
+        this.requestRate = requestRate;
+        this.splitId = splitId;
+        this.hostWeight = hostWeight;
+        this.measuredAtMillis = measuredAtMillis;
+    }
+
+    /**
+     * @param all The loads of the peers of the ring, not empty
+     * @return Their mean keys, bytes and request rate; its peerId is that of the first
+     */
+    public static LoadStats mean(Collection<LoadStats> all) {
+        long keys = 0, bytes = 0;
+        double requestRate = 0;
+        for (LoadStats stats : all) {
+            keys += stats.keys;
+            bytes += stats.bytes;
+            requestRate += stats.requestRate;
+        }
+        int n = all.size();
+        return new LoadStats(all.iterator().next().peerId, (int) (keys / n), bytes / n, requestRate / n, "", 1, 0);
+    }
+
+    /**
+     * The load of the peer as a multiple of the mean load of the ring: the largest of its keys, bytes and request
+     * rate, each relative to the mean. A dimension no peer has any of is left out, as is the request rate of a ring
+     * too idle for it to tell anything but noise, see Constants.Peer.MIN_LOAD_REQUEST_RATE.
+     * @param mean The mean load of the ring, see mean()
+     * @return 1 for a peer with exactly the mean load; 0 for an idle ring
+     */
+    public double loadRelativeTo(LoadStats mean) {
+        double load = 0;
+        if (mean.keys > 0) {
+            load = Math.max(load, (double) this.keys / mean.keys);
+        }
+        if (mean.bytes > 0) {
+            load = Math.max(load, (double) this.bytes / mean.bytes);
+        }
+        if (mean.requestRate >= Constants.Peer.MIN_LOAD_REQUEST_RATE) {
+            load = Math.max(load, this.requestRate / mean.requestRate);
+        }
+        return load;
+    }
+
+    /**
+     * @return True if the peer owns enough keys for its range to be split
+     */
+    public boolean canSplit() {
+        return !this.splitId.isEmpty();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LoadStats)) return false;
+        LoadStats other = (LoadStats) o;
+        return this.peerId.equals(other.peerId) && this.keys == other.keys && this.bytes == other.bytes
+                && this.requestRate == other.requestRate && this.splitId.equals(other.splitId)
+                && this.hostWeight == other.hostWeight;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.peerId.key(), this.keys, this.bytes);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d keys, %d bytes, %.1f requests/s", this.peerId, this.keys, this.bytes,
+                this.requestRate);
+    }
+}
@@ -0,0 +1,103 @@
+package org.chord.peer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * The latest LoadStats a Peer knows of each peer of the ring, measured by itself or heard of by gossip, which a
+ * Rebalancer decides from. Of two LoadStats of the same peer, the more recently measured one is kept; LoadStats older
+ * than the time to live are dropped, so that peers that failed are forgotten even though they never said so.
+ */
+public class LoadTable {
+
+    private final long ttlMillis;
+    private final LongSupplier clock;
+
+    // "hostname:port" of each peer -> its latest LoadStats; guarded by lock. Keyed by address rather than by
+    // Identifier, so that a peer restarted at the same address with another id replaces its old LoadStats.
+    // A Lock rather than a monitor, so that virtual threads don't pin
+    private final Map<String, LoadStats> stats;
+    private final Lock lock;
+
+    /**
+     * @param ttlMillis LoadStats are dropped once measured this long ago
+     */
+    public LoadTable(long ttlMillis) {
+        this(ttlMillis, System::currentTimeMillis);
+    }
+
+    LoadTable(long ttlMillis, LongSupplier clock) {
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.stats = new HashMap<>();
+        this.lock = new ReentrantLock();
+    }
+
+    /**
+     * Merges LoadStats heard of, keeping the more recently measured of each peer's.
+     * @param heard LoadStats of any peers
+     */
+    public void merge(Collection<LoadStats> heard) {
+        this.lock.lock();
+        try {
+            for (LoadStats candidate : heard) {
+                this.stats.merge(addressOf(candidate.peerId), candidate,
+                        (known, other) -> (other.measuredAtMillis > known.measuredAtMillis) ? other : known);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets a peer, i.e. once it left the network.
+     * @param peerId Identifier of the peer
+     */
+    public void remove(Identifier peerId) {
+        this.lock.lock();
+        try {
+            LoadStats known = this.stats.get(addressOf(peerId));
+            if (known != null && known.peerId.equals(peerId)) {
+                this.stats.remove(addressOf(peerId));
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return The LoadStats not yet expired, in ring order
+     */
+    public List<LoadStats> snapshot() {
+        long expiry = this.clock.getAsLong() - this.ttlMillis;
+        List<LoadStats> fresh = new ArrayList<>();
+        this.lock.lock();
+        try {
+            Iterator<LoadStats> iterator = this.stats.values().iterator();
+            while (iterator.hasNext()) {
+                LoadStats known = iterator.next();
+                if (known.measuredAtMillis < expiry) {
+                    iterator.remove();
+                } else {
+                    fresh.add(known);
+                }
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        fresh.sort(Comparator.comparing(known -> known.peerId.key()));
+        return fresh;
+    }
+
+    private static String addressOf(Identifier peerId) {
+        return peerId.getHostname() + ":" + peerId.getPort();
+    }
+}
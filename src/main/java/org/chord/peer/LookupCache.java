@@ -0,0 +1,211 @@
+package org.chord.peer;
+
+import org.chord.util.RingKey;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache of lookup results as intervals of the ring: (predecessor, successor] -> successor. A single lookup answers
+ * every id the successor owns, so later lookups of any id in the interval are answered without routing.
+ * Intervals never overlap: caching one drops any cached interval it overlaps, which is stale.
+ * An interval only changes when peers join or leave near it, so entries are invalidated:
+ * - by position, when a peer joins inside an interval, splitting it;
+ * - by peer, when a peer leaves or fails, or rejects a request for an id it doesn't own after all.
+ * Hits, misses, and the hops the hits saved are counted, see stats().
+ */
+public class LookupCache {
+
+    private final int capacity;
+
+    // End of each interval (the ring position of its successor) -> interval; guarded by lock.
+    // A Lock rather than a monitor, so that virtual threads don't pin
+    private final TreeMap<RingKey, Interval> intervals;
+    private final Lock lock;
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder hopsSaved;
+    private final LongAdder invalidations;
+
+    /**
+     * The ids after start, up to and including the position of the successor, that a lookup found the successor of.
+     */
+    private static class Interval {
+        final RingKey start; // exclusive; equal to the successor's own position if it owns the whole ring
+        final Identifier successor;
+        final int hops; // taken by the lookup that found it
+
+        Interval(RingKey start, Identifier successor, int hops) {
+            this.start = start;
+            this.successor = successor;
+            this.hops = hops;
+        }
+
+        boolean contains(RingKey k) {
+            RingKey end = this.successor.key();
+            return this.start.equals(end) || k.equals(end) || k.isBetween(this.start, end);
+        }
+    }
+
+    /**
+     * Point-in-time counters of a LookupCache.
+     */
+    public static class Stats {
+        public final long hits;
+        public final long misses;
+        public final long hopsSaved;
+        public final long invalidations;
+        public final int entries;
+
+        Stats(long hits, long misses, long hopsSaved, long invalidations, int entries) {
+            this.hits = hits;
+            this.misses = misses;
+            this.hopsSaved = hopsSaved;
+            this.invalidations = invalidations;
+            this.entries = entries;
+        }
+
+        /**
+         * @return The fraction of lookups that were hits, or 0 if there were none
+         */
+        public double hitRate() {
+            long lookups = this.hits + this.misses;
+            return (lookups == 0) ? 0 : (double) this.hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits: %d, misses: %d, hit rate: %.1f%%, hops saved: %d, invalidations: %d, " +
+                    "intervals: %d", this.hits, this.misses, 100 * hitRate(), this.hopsSaved, this.invalidations,
+                    this.entries);
+        }
+    }
+
+    /**
+     * @param capacity Most intervals cached at once; one per peer of the ring is enough to answer every lookup
+     */
+    public LookupCache(int capacity) {
+        this.capacity = capacity;
+        this.intervals = new TreeMap<>();
+        this.lock = new ReentrantLock();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.hopsSaved = new LongAdder();
+        this.invalidations = new LongAdder();
+    }
+
+    /**
+     * @param id The String hex representation of k
+     * @return The cached successor of k, or null if no cached interval contains k
+     */
+    public Identifier get(String id) {
+        RingKey k = RingKey.fromHex(id);
+        Interval interval;
+        this.lock.lock();
+        try {
+            interval = intervalContaining(k);
+        } finally {
+            this.lock.unlock();
+        }
+        if (interval == null) {
+            this.misses.increment();
+            return null;
+        }
+        this.hits.increment();
+        this.hopsSaved.add(interval.hops);
+        return interval.successor;
+    }
+
+    /**
+     * Caches the interval a successor owns, replacing any cached interval it overlaps.
+     *
+     * @param predecessor The successor's predecessor; the interval starts just after it
+     * @param successor   The successor, which owns the interval
+     * @param hops        Hops taken by the lookup that found the successor
+     */
+    public void put(Identifier predecessor, Identifier successor, int hops) {
+        Interval interval = new Interval(predecessor.key(), successor, hops);
+        this.lock.lock();
+        try {
+            // An interval that overlaps this one either ends inside it, or contains its end
+            this.intervals.values().removeIf(cached -> interval.contains(cached.successor.key()));
+            Interval containingEnd = intervalContaining(successor.key());
+            if (containingEnd != null) {
+                this.intervals.remove(containingEnd.successor.key());
+            }
+            if (this.intervals.size() >= this.capacity) {
+                this.intervals.pollFirstEntry();
+            }
+            this.intervals.put(successor.key(), interval);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the cached interval containing a ring position, i.e. after a peer joined there.
+     *
+     * @param position Ring position
+     */
+    public void invalidate(RingKey position) {
+        this.lock.lock();
+        try {
+            Interval interval = intervalContaining(position);
+            if (interval != null) {
+                this.intervals.remove(interval.successor.key());
+                this.invalidations.increment();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Drops every cached interval a peer owns or bounds, i.e. after it left, failed, or rejected a request for an id
+     * it doesn't own.
+     *
+     * @param peerId Identifier of the peer
+     */
+    public void invalidate(Identifier peerId) {
+        this.lock.lock();
+        try {
+            Iterator<Interval> iterator = this.intervals.values().iterator();
+            while (iterator.hasNext()) {
+                Interval interval = iterator.next();
+                if (interval.successor.equals(peerId) || interval.start.equals(peerId.key())) {
+                    iterator.remove();
+                    this.invalidations.increment();
+                }
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        this.lock.lock();
+        try {
+            return new Stats(this.hits.sum(), this.misses.sum(), this.hopsSaved.sum(), this.invalidations.sum(),
+                    this.intervals.size());
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Intervals don't overlap, so the only one that may contain k is the first to end at or after k, going
+     * clockwise. Must hold lock.
+     */
+    private Interval intervalContaining(RingKey k) {
+        Map.Entry<RingKey, Interval> entry = this.intervals.ceilingEntry(k);
+        if (entry == null) {
+            entry = this.intervals.firstEntry(); // wraps around past the top of the ring
+        }
+        return (entry != null && entry.getValue().contains(k)) ? entry.getValue() : null;
+    }
+}
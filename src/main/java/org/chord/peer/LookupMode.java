@@ -0,0 +1,23 @@
+package org.chord.peer;
+
+/**
+ * How the originator of a lookup resolves successor(k); selected at startup.
+ * - RECURSIVE: the request is forwarded from peer to peer, each one waiting on the next until the final successor
+ *   is found, and the answer travels back along the same chain.
+ * - ITERATIVE: each peer answers immediately, either with the final successor or with a referral to the next hop,
+ *   and the originator follows the referrals itself.
+ */
+public enum LookupMode {
+    RECURSIVE, ITERATIVE;
+
+    /**
+     * Converts a command-line value to a LookupMode, ignoring case.
+     *
+     * @param value i.e. "recursive" or "iterative"
+     * @return The matching LookupMode
+     * @throws IllegalArgumentException If value does not name a LookupMode
+     */
+    public static LookupMode fromString(String value) {
+        return LookupMode.valueOf(value.trim().toUpperCase());
+    }
+}
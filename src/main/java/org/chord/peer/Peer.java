@@ -1,35 +1,47 @@
 package org.chord.peer;
 
-import org.chord.messaging.FindSuccessorRequest;
 import org.chord.messaging.GetPredecessorRequest;
-import org.chord.messaging.MessageFactory;
-import org.chord.messaging.MoveFileRequest;
-import org.chord.messaging.MoveFileResponse;
+import org.chord.messaging.GetSuccessorRequest;
+import org.chord.messaging.Message;
 import org.chord.messaging.NetworkExitNotification;
 import org.chord.messaging.NetworkJoinNotification;
+import org.chord.messaging.Payload;
 import org.chord.messaging.PeerIdentifierMessage;
 import org.chord.messaging.PredecessorNotification;
 import org.chord.messaging.RegisterPeerRequest;
 import org.chord.messaging.RegisterPeerResponse;
+import org.chord.messaging.StatusMessage;
 import org.chord.messaging.SuccessorNotification;
+import org.chord.networking.ChunkedFileSender;
 import org.chord.networking.Client;
+import org.chord.networking.FailureDetector;
 import org.chord.networking.Node;
+import org.chord.storage.ObjectCache;
+import org.chord.storage.StorageEngine;
+import org.chord.storage.StorageEngineType;
 import org.chord.util.Constants;
-import org.chord.util.FileUtil;
 import org.chord.util.HashUtil;
 import org.chord.util.Host;
 import org.chord.util.InteractiveCommandParser;
+import org.chord.util.RingKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.DataInputStream;
-import java.io.File;
 import java.io.IOException;
-import java.net.Socket;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class Peer extends Node {
     private static final Logger log = LoggerFactory.getLogger(Peer.class);
@@ -37,25 +49,108 @@ public class Peer extends Node {
     private final String discoveryNodeHostname;
     private final int discoveryNodePort;
 
-    private FingerTable fingerTable;
+    // Never modified once published, so it can be read without locking; replaced under the Peer monitor
+    private volatile FingerTable fingerTable;
+    private final FingerTableRefresher fingerTableRefresher;
     private Identifier identifier;
-    private Identifier predecessor;
-    private Identifier successor;
+    // Replaced by joins, notifications and stabilization rounds; our own Identifier while unknown
+    private volatile Identifier predecessor;
+    private volatile Identifier successor;
 
-    // fileId (16-bit digest), fileName
-    private ConcurrentHashMap<String, String> storedFiles;
+    // The peers following us clockwise, nearest first, without us; never modified once published
+    private volatile List<Identifier> successorList = List.of();
+
+    // fileId (16-bit digest), fileName; sorted by position in the ring
+    private final RingKeyIndex<String> storedFiles;
+
+    // Chunked transfers of files into our storage that are still in progress
+    private final ChunkedFileReceiver chunkedFileReceiver;
+
+    // Moves files to other peers in the background
+    private final FileMigrator fileMigrator;
+
+    // Holds the content of the files we store
+    private final StorageEngine storage;
+
+    // Content of the files we served recently, so that repeated reads skip storage
+    private final ObjectCache cache;
+
+    // Copies the files we are the primary peer of to our successors
+    private final Replicator replicator;
+
+    // Repairs our successor, predecessor, successor list and fingers in the background once we joined
+    private final Stabilizer stabilizer;
+
+    // The intervals of the ring other peers own, as found by the lookups we ran for store-data
+    private final LookupCache lookupCache;
+
+    // Set once we start leaving the network: stores are refused, since they would not be handed off
+    private volatile boolean leaving;
+
+    // Lookups and file requests we answered, and the LoadStats of the ring heard of by gossip, see Rebalancer
+    private final LongAdder requests;
+    private final LoadTable loadTable;
+
+    // Request count and time of our last measureLoad(), to measure the request rate since; guarded by loadLock
+    private final Lock loadLock;
+    private long lastRequestCount;
+    private long lastMeasuredMillis;
+
+    private PeerServer server;
+
+    private static StorageEngineType defaultStorageEngineType = StorageEngineType.SEGMENT;
 
     private InteractiveCommandParser commandParser;
 
     public Peer(String discoveryNodeHostname, int discoveryNodePort, Identifier identifier) {
+        this(discoveryNodeHostname, discoveryNodePort, identifier, openStorage(defaultStorageEngineType, identifier));
+    }
+
+    public Peer(String discoveryNodeHostname, int discoveryNodePort, Identifier identifier, StorageEngine storage) {
         this.discoveryNodeHostname = discoveryNodeHostname;
         this.discoveryNodePort = discoveryNodePort;
         this.identifier = this.predecessor = this.successor = identifier; // init all known peers to our id
-        this.fingerTable = new FingerTable(Constants.FINGER_TABLE_SIZE, identifier);
-        storedFiles = new ConcurrentHashMap<>();
+        this.fingerTable = new FingerTable(RingKey.bits(), identifier);
+        this.fingerTableRefresher = new FingerTableRefresher();
+        this.storage = storage;
+        this.cache = new ObjectCache(Constants.Storage.CACHE_CAPACITY_BYTES, Constants.Storage.CACHE_MAX_OBJECT_BYTES);
+        storedFiles = new RingKeyIndex<>();
+        storage.list().forEach(storedFiles::put);
+        this.chunkedFileReceiver = new ChunkedFileReceiver(Paths.get(Constants.Peer.DATA_DIR));
+        this.fileMigrator = new FileMigrator(storage, this::releaseMovedFiles);
+        this.replicator = new Replicator(storage);
+        this.stabilizer = new Stabilizer(this);
+        this.lookupCache = new LookupCache(Constants.Peer.LOOKUP_CACHE_CAPACITY);
+        this.requests = new LongAdder();
+        this.loadTable = new LoadTable(Rebalancer.statsTimeToLiveMillis());
+        this.loadLock = new ReentrantLock();
+        this.lastMeasuredMillis = System.currentTimeMillis();
         commandParser = new InteractiveCommandParser(this);
     }
 
+    /**
+     * Sets the StorageEngineType opened by Peers created without a StorageEngine.
+     * @param type StorageEngineType.SEGMENT or StorageEngineType.FILE
+     */
+    public static void setDefaultStorageEngineType(StorageEngineType type) {
+        defaultStorageEngineType = type;
+    }
+
+    /**
+     * Opens the storage of a Peer: the segment log is kept in a directory of its own per peer id, so that it is
+     * recovered when a Peer with the same id restarts. So are the files of a virtual node, which shares its host.
+     */
+    private static StorageEngine openStorage(StorageEngineType type, Identifier identifier) {
+        Path directory = (type == StorageEngineType.SEGMENT || identifier.getPort() != Constants.Peer.PORT)
+                ? Paths.get(Constants.Peer.DATA_DIR, "chord-" + identifier.id)
+                : Paths.get(Constants.Peer.DATA_DIR);
+        try {
+            return type.open(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open storage in " + directory, e);
+        }
+    }
+
     public String getHostname() {
         return discoveryNodeHostname;
     }
@@ -72,24 +167,263 @@ public class Peer extends Node {
 
     public Identifier getSuccessor() { return successor; }
 
-    public void setSuccessor(Identifier successor) {
+    public synchronized void setSuccessor(Identifier successor) {
         this.successor = successor;
-        this.fingerTable.updateWithSuccessor(successor);
+        this.lookupCache.invalidate(successor.key()); // it may have joined inside a cached interval
+        FingerTable updated = this.fingerTable.copy();
+        updated.updateWithSuccessor(successor);
+        this.fingerTable = updated;
+    }
+
+    /**
+     * Chord's notify: a peer thinks it might be our predecessor. It becomes our predecessor if we don't know ours,
+     * or if it sits between our predecessor and us.
+     * @param candidate Identifier of the peer
+     * @return True if the candidate is our new predecessor
+     */
+    public synchronized boolean notifyPredecessor(Identifier candidate) {
+        Identifier current = this.predecessor;
+        if (candidate.equals(current) || candidate.equals(this.identifier)) {
+            return false;
+        }
+        if (current.equals(this.identifier)
+                || this.fingerTable.isBetween(candidate.key(), current.key(), this.identifier.key())) {
+            this.predecessor = candidate;
+            this.lookupCache.invalidate(candidate.key());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Forgets our predecessor after it failed, unless another peer replaced it in the meantime.
+     * @param failed Identifier of the predecessor that failed
+     */
+    synchronized void clearPredecessor(Identifier failed) {
+        if (this.predecessor.equals(failed)) {
+            this.predecessor = this.identifier;
+        }
+        this.lookupCache.invalidate(failed);
+    }
+
+    /**
+     * Removes a failed peer from our successor, successor list and finger table. Every finger that pointed to it
+     * now points to its replacement: the failed peer's own successor is the successor of all its positions.
+     * @param failed      Identifier of the peer that failed
+     * @param replacement Identifier of the next live peer after it, or our own if there is none
+     */
+    synchronized void replaceFailedPeer(Identifier failed, Identifier replacement) {
+        if (this.successor.equals(failed)) {
+            this.successor = replacement;
+        }
+        List<Identifier> remaining = new ArrayList<>(this.successorList);
+        remaining.remove(failed);
+        this.successorList = List.copyOf(remaining);
+        FingerTable updated = this.fingerTable.copy();
+        updated.replace(failed, replacement);
+        this.fingerTable = updated;
+        this.lookupCache.invalidate(failed);
+    }
+
+    /**
+     * Splices a peer that left the network gracefully out of our pointers: it is replaced everywhere with its
+     * successor, which took over its keys, and if it was our predecessor, its own predecessor becomes ours.
+     * @param departed    Identifier of the peer that left
+     * @param predecessor Identifier of its predecessor
+     * @param successor   Identifier of its successor
+     */
+    synchronized void removeDepartedPeer(Identifier departed, Identifier predecessor, Identifier successor) {
+        if (this.predecessor.equals(departed)) {
+            this.predecessor = predecessor.equals(departed) ? this.identifier : predecessor;
+        }
+        replaceFailedPeer(departed, successor.equals(departed) ? this.identifier : successor);
+        this.loadTable.remove(departed);
+    }
+
+    /**
+     * Sets one finger table entry to the successor of its ring position, as found by a lookup.
+     * @param ftIndex Finger table index
+     * @param peerId  Identifier of the successor of the index's ring position
+     */
+    synchronized void setFinger(int ftIndex, Identifier peerId) {
+        if (this.fingerTable.getPeerIds().get(ftIndex).equals(peerId)) {
+            return;
+        }
+        FingerTable updated = this.fingerTable.copy();
+        updated.set(ftIndex, peerId);
+        this.fingerTable = updated;
+        log.info("Updated finger table index {} to {}", ftIndex, peerId);
+    }
+
+    /**
+     * Sets the alternatives to one finger table entry's successor, unless the successor changed in the meantime.
+     * @param ftIndex   Finger table index
+     * @param successor Identifier of the successor the alternatives were found from
+     * @param peers     Identifiers of the peers after it, i.e. its successor list
+     */
+    synchronized void setFingerCandidates(int ftIndex, Identifier successor, List<Identifier> peers) {
+        if (!this.fingerTable.getPeerIds().get(ftIndex).equals(successor)) {
+            return;
+        }
+        FingerTable updated = this.fingerTable.copy();
+        updated.setCandidates(ftIndex, peers);
+        this.fingerTable = updated;
     }
 
     public Identifier getIdentifier() { return identifier; }
 
+    public RingKeyIndex<String> getStoredFiles() {
+        return storedFiles;
+    }
+
+    public ChunkedFileReceiver getChunkedFileReceiver() {
+        return chunkedFileReceiver;
+    }
+
+    public StorageEngine getStorage() {
+        return storage;
+    }
+
+    public ObjectCache getCache() {
+        return cache;
+    }
+
+    public LookupCache getLookupCache() {
+        return lookupCache;
+    }
+
+    public LoadTable getLoadTable() {
+        return loadTable;
+    }
+
+    /**
+     * Counts a lookup or file request we answered towards our request rate.
+     */
+    public void recordRequest() {
+        this.requests.increment();
+    }
+
+    /**
+     * Measures our load, and records it in our LoadTable for the next gossip exchange.
+     * @param hostWeight Virtual nodes our host was started with
+     * @return Our LoadStats, with the request rate since the last time we measured it
+     */
+    public LoadStats measureLoad(int hostWeight) {
+        long now = System.currentTimeMillis();
+        double requestRate;
+        this.loadLock.lock();
+        try {
+            long requestCount = this.requests.sum();
+            long elapsedMillis = now - this.lastMeasuredMillis;
+            requestRate = (elapsedMillis > 0) ? 1000.0 * (requestCount - this.lastRequestCount) / elapsedMillis : 0;
+            this.lastRequestCount = requestCount;
+            this.lastMeasuredMillis = now;
+        } finally {
+            this.loadLock.unlock();
+        }
+        LoadStats stats = new LoadStats(this.identifier, this.storedFiles.size(), this.storage.bytesStored(),
+                requestRate, splitId(), hostWeight, now);
+        this.loadTable.merge(List.of(stats));
+        return stats;
+    }
+
+    /**
+     * @return The id a new peer would join at to take over the first half of the keys we own, clockwise from our
+     *         predecessor, or "" if we own fewer than two
+     */
+    String splitId() {
+        List<String> owned = new ArrayList<>(
+                this.storedFiles.range(this.predecessor.key(), this.identifier.key()).keySet());
+        return (owned.size() < 2) ? "" : owned.get(owned.size() / 2 - 1);
+    }
+
+    /**
+     * Tells if we are the successor of an id, as far as we know: it is in (predecessor, us]. While we know of no
+     * predecessor, or it is suspected to have failed, we may own any id before us, so we claim them all.
+     * @param id The String hex representation of k
+     * @return True if we own k
+     */
+    public boolean owns(String id) {
+        Identifier predecessor = this.predecessor;
+        RingKey k = RingKey.fromHex(id);
+        return predecessor.equals(this.identifier) || isSuspected(predecessor) || k.equals(this.identifier.key())
+                || this.fingerTable.isBetween(k, predecessor.key(), this.identifier.key());
+    }
+
+    public Replicator getReplicator() {
+        return replicator;
+    }
+
+    public List<Identifier> getSuccessorList() {
+        return successorList;
+    }
+
+    void setSuccessorList(List<Identifier> successorList) {
+        this.successorList = List.copyOf(successorList);
+    }
+
+    /**
+     * @return How many peers a successor list holds: Constants.Peer.SUCCESSOR_LIST_SIZE, or enough for the
+     *         replication factor
+     */
+    static int successorListSize() {
+        return Math.max(Constants.Peer.SUCCESSOR_LIST_SIZE, Replicator.getReplicationFactor() - 1);
+    }
+
+    /**
+     * Rebuilds our successor list by following successor pointers from our successor, one GetSuccessorRequest per
+     * peer, until it holds Constants.Peer.SUCCESSOR_LIST_SIZE peers (or enough for the replication factor), or the
+     * walk comes back around to us. If a peer doesn't answer, the peers found before it are kept.
+     * @return Future completed with the new successor list once it is published
+     */
+    public CompletableFuture<List<Identifier>> refreshSuccessorList() {
+        int size = successorListSize();
+        List<Identifier> found = new ArrayList<>(size);
+        return walkSuccessors(this.successor, found, size)
+                .exceptionally(error -> {
+                    log.warn("Unable to walk our successors past {}: {}", found, Client.asIOException(error).getMessage());
+                    return found;
+                })
+                .thenApply(walked -> {
+                    this.successorList = List.copyOf(walked);
+                    log.info("Our successor list: {}", this.successorList);
+                    return this.successorList;
+                });
+    }
+
+    private CompletableFuture<List<Identifier>> walkSuccessors(Identifier next, List<Identifier> found, int size) {
+        if (next.equals(this.identifier) || found.contains(next) || found.size() >= size) {
+            return CompletableFuture.completedFuture(found);
+        }
+        found.add(next);
+        GetSuccessorRequest gsRequest = new GetSuccessorRequest(Host.getHostname(), Host.getIpAddress());
+        return Client.sendRpcAsync(next.getHostname(), next.getPort(), gsRequest)
+                .thenCompose(response -> walkSuccessors(((PeerIdentifierMessage) response).getPeerId(), found, size));
+    }
+
     /**
      * Joins the Peer to the Chord ring network:
      * 1. Sends a RegisterPeerRequest to the discovery node, with the proposed id of our peer
      * 2. Receives a RegisterPeerResponse from the discovery node, with:
      *     - If request accepted, the id and contact information of a random node in the network
      *     - If request rejected, we retry with a different proposed id
+     * Exits if our id is invalid, or taken by another peer, or if joining fails.
      */
     public void joinNetwork() {
+        if (!tryJoinNetwork()) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Joins the Peer to the Chord ring network as joinNetwork() does, but returns rather than exits if our id is
+     * invalid or taken, or joining fails, i.e. for a virtual node the Rebalancer moves. We only stabilize once joined.
+     * @return False if our id is invalid, the discovery node rejected it, or a peer of the ring couldn't be reached
+     */
+    public boolean tryJoinNetwork() {
         if (!HashUtil.isIdValid(this.identifier.id)) {
             log.warn("Invalid ID {}", this.identifier.id);
-            System.exit(1);
+            return false;
         }
 
         RegisterPeerRequest registerRequest = new RegisterPeerRequest(
@@ -107,16 +441,14 @@ public class Peer extends Node {
         try {
 
             // Send registration request to discovery node, wait for response
-            Socket clientSocket = Client.sendMessage(this.discoveryNodeHostname, this.discoveryNodePort, registerRequest);
-            DataInputStream dataInputStream = new DataInputStream(clientSocket.getInputStream());
-            RegisterPeerResponse rprResponse = (RegisterPeerResponse) MessageFactory.getInstance().createMessage(dataInputStream);
+            RegisterPeerResponse rprResponse = (RegisterPeerResponse)
+                    Client.sendRequest(this.discoveryNodeHostname, this.discoveryNodePort, registerRequest);
             if (!rprResponse.getIsValidRequest()) {
                 log.warn("A Peer with ID {} already exists in the network.", this.identifier.id);
-                System.exit(1);
+                return false;
             }
 
             log.info("Received {} Message: {}", rprResponse.getType(), rprResponse);
-            clientSocket.close(); // done talking to discovery server
             updateFingerTable(rprResponse.getRandomPeerId());
 
             // We are the first node in the network
@@ -126,8 +458,8 @@ public class Peer extends Node {
 
             } else { // There are other nodes in the network
 
-                String randomPeerHost = rprResponse.getRandomPeerId().getHostname();
-                log.info("There are other nodes in the network, contacting {} to find our successor", randomPeerHost);
+                Identifier randomPeer = rprResponse.getRandomPeerId();
+                log.info("There are other nodes in the network, contacting {} to find our successor", randomPeer);
 
                     /* TODO:
                         Contact random peer and get successor/predecessor node info.
@@ -137,19 +469,8 @@ public class Peer extends Node {
                      */
 
                 // Get Identifier of successor peer
-                FindSuccessorRequest successorRequest = new FindSuccessorRequest(
-                        Host.getHostname(),
-                        Host.getIpAddress(),
-                        this.identifier.getId()
-                );
-                Socket peerSocket = Client.sendMessage(randomPeerHost, Constants.Peer.PORT, successorRequest);
-                dataInputStream = new DataInputStream(peerSocket.getInputStream());
-                PeerIdentifierMessage pimResponse = (PeerIdentifierMessage) MessageFactory.getInstance()
-                        .createMessage(dataInputStream);
-                log.info("Received {} response for FindSuccessorRequest from {}: {}", pimResponse.getType(),
-                        pimResponse.getHostname(), pimResponse);
-                peerSocket.close();
-                this.successor = pimResponse.getPeerId();
+                this.successor = SuccessorLookup.findSuccessor(randomPeer, this.identifier.getId());
+                log.info("Found our successor: {}", this.successor);
                 updateFingerTable(this.successor);
 
                 // Now that we know our successor peer, we can directly query its known predecessor
@@ -158,81 +479,207 @@ public class Peer extends Node {
                         Host.getHostname(),
                         Host.getIpAddress()
                 );
-                peerSocket = Client.sendMessage(this.successor.getHostname(), Constants.Peer.PORT, gpRequest);
-                dataInputStream = new DataInputStream(peerSocket.getInputStream());
-                pimResponse = (PeerIdentifierMessage) MessageFactory.getInstance().createMessage(dataInputStream);
+                PeerIdentifierMessage pimResponse = (PeerIdentifierMessage)
+                        Client.sendRpc(this.successor.getHostname(), this.successor.getPort(), gpRequest);
                 log.info("Received {} response for GetPredecessorRequest from {}: {}", pimResponse.getHostname(),
                         pimResponse.getType(), pimResponse);
-                peerSocket.close();
                 this.predecessor = pimResponse.getPeerId();
                 updateFingerTable(this.predecessor);
 
-                // Notify our successor that we are its new predecessor
+                // Notify our successor that we are its new predecessor, and our predecessor that we are its new
+                // successor; the two are independent, so both are in flight at once
                 PredecessorNotification predecessorNotification = new PredecessorNotification(
                         Host.getHostname(),
                         Host.getIpAddress(),
                         this.identifier
                 );
-                log.info("Notifying our successor {} that we are its new predecessor", this.successor.getHostname());
-                Client.waitForStatusResponseAndClose(
-                        Client.sendMessage(this.successor.getHostname(), Constants.Peer.PORT, predecessorNotification)
-                );
-
-                // Notify our predecessor that we are its new successor
                 SuccessorNotification successorNotification = new SuccessorNotification(
                         Host.getHostname(),
                         Host.getIpAddress(),
                         this.identifier
                 );
-                log.info("Notifying our predecessor {} that we are its new successor", this.predecessor.getHostname());
-                Client.waitForStatusResponseAndClose(
-                        Client.sendMessage(this.predecessor.getHostname(), Constants.Peer.PORT, successorNotification)
-                );
+                log.info("Notifying our successor {} that we are its new predecessor, and our predecessor {} " +
+                        "that we are its new successor", this.successor.getHostname(), this.predecessor.getHostname());
+                CompletableFuture<Message> successorAck = Client.sendRpcAsync(
+                        this.successor.getHostname(), this.successor.getPort(), predecessorNotification);
+                CompletableFuture<Message> predecessorAck = Client.sendRpcAsync(
+                        this.predecessor.getHostname(), this.predecessor.getPort(), successorNotification);
+                Client.await(CompletableFuture.allOf(successorAck, predecessorAck));
+                log.info("Received {} from our successor and {} from our predecessor",
+                        ((StatusMessage) successorAck.join()).getStatus(),
+                        ((StatusMessage) predecessorAck.join()).getStatus());
 
                 updateFingerTable(); // updates our finger table with true successors of the finger table's indices
 
 
-                Client.sendMessage(this.successor.getHostname(), Constants.Peer.PORT, notification).close();
+                Client.sendMessage(this.successor.getHostname(), this.successor.getPort(), notification);
+                refreshSuccessorList().join();
             }
 
             // Notify discovery server of successful network join
             log.info("Notifying discovery server {} that we have fully joined the network", this.discoveryNodeHostname);
-            Client.sendMessage(this.discoveryNodeHostname, this.discoveryNodePort, notification).close();
+            Client.sendMessage(this.discoveryNodeHostname, this.discoveryNodePort, notification);
 
-        } catch (IOException e) {
-            log.error("Unable to send registration request: {}", e.getMessage());
+        } catch (IOException | CompletionException e) {
+            // Half joined at best: stabilization of the peers we reached repairs the ring around us
+            log.error("Unable to join the network: {}", Client.asIOException(e).getMessage());
+            return false;
         }
 
         log.info("After joining the network:\n{}", this); // log our state
+        this.stabilizer.start();
+        return true;
     }
 
     /**
-     * Sends a NetworkExitNotification Message to the Discovery node before exiting the network.
-     * This allows the Discovery node to remove us from the list of tracked peers.
+     * Leaves the network gracefully, so that no stored file is lost and no lookup stalls on us:
+     * 1. Stops stabilizing, and refuses any further store.
+     * 2. Sends a NetworkExitNotification to the Discovery node, so that it stops handing us out as an entry peer.
+     * 3. Hands off every file we store to our successor, in a single transfer; see FileHandoff.
+     * 4. Sends the NetworkExitNotification to our predecessor and successor, which splice themselves together.
+     *    Our successor then passes it on around the ring, so that every peer replaces its fingers to us.
      */
     public void leaveNetwork() {
+        this.stabilizer.stop();
+        this.leaving = true;
+        Identifier predecessor = this.predecessor;
+        Identifier successor = this.successor;
         NetworkExitNotification exitNotification = new NetworkExitNotification(Host.getHostname(), Host.getIpAddress(),
-                this.identifier);
+                this.identifier, predecessor, successor);
         try {
-            Socket clientSocket = Client.sendMessage(this.discoveryNodeHostname, this.discoveryNodePort, exitNotification);
-            clientSocket.close();
+            Client.sendMessage(this.discoveryNodeHostname, this.discoveryNodePort, exitNotification);
         } catch (IOException e) {
             log.error("Unable to send NetworkExitNotification: {}", e.getLocalizedMessage());
         }
+        if (successor.equals(this.identifier)) {
+            log.info("We were the last peer in the network");
+            return;
+        }
+
+        handOffFiles(successor);
+
+        log.info("Notifying our predecessor {} and successor {} that we are leaving", predecessor, successor);
+        List<CompletableFuture<Message>> acks = new ArrayList<>();
+        acks.add(Client.sendRpcAsync(successor.getHostname(), successor.getPort(), exitNotification));
+        if (!predecessor.equals(this.identifier) && !predecessor.equals(successor)) {
+            acks.add(Client.sendRpcAsync(predecessor.getHostname(), predecessor.getPort(), exitNotification));
+        }
+        try {
+            Client.await(CompletableFuture.allOf(acks.toArray(new CompletableFuture<?>[0])));
+            log.info("Left the network");
+        } catch (IOException e) {
+            // Their stabilization rounds will find out we are gone
+            log.warn("Unable to notify our neighbors that we are leaving: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Sends every file we store to our successor as one handoff archive. If the handoff fails, the files are still
+     * held by their replicas.
+     * @param successor Identifier of our successor
+     */
+    private void handOffFiles(Identifier successor) {
+        Map<String, String> files = storedFiles.asMap();
+        if (files.isEmpty()) {
+            log.info("No files to hand off to {}", successor);
+            return;
+        }
+        Path archive = null;
+        try {
+            archive = Files.createTempFile(Paths.get(Constants.Peer.DATA_DIR), ".handoff-", ".part");
+            int archived = FileHandoff.write(storage, files, archive);
+            log.info("Handing off {} files ({} bytes) to {}", archived, Files.size(archive), successor);
+            ChunkedFileSender.sendHandoff(successor.getHostname(), successor.getPort(), this.identifier.id, archive);
+            log.info("Handed off {} files to {}", archived, successor);
+        } catch (IOException e) {
+            log.error("Unable to hand off our files to {}: {}", successor, e.getMessage());
+        } finally {
+            deleteQuietly(archive);
+        }
     }
 
     /**
-     * Stores a new file in Peer's local storage and updates tracking info
+     * Stores every file of a handoff archive received from our departing predecessor.
+     * @param archive verified handoff archive, in the same directory as Peer's local storage; deleted once stored
+     * @return The number of files stored
+     */
+    public int acceptHandoff(Path archive) throws IOException {
+        try {
+            int stored = FileHandoff.read(archive, this::storeFile);
+            log.info("Stored {} handed off files", stored);
+            return stored;
+        } finally {
+            deleteQuietly(archive);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Unable to delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Stores a new file in Peer's local storage and updates tracking info. Not synchronized: concurrent stores
+     * share the storage engine's fsync rather than queueing on the Peer monitor.
      * @param fileId 16-bit digest file digest
      * @param fileName
-     * @param bytes file content as byte array
+     * @param payload file content
      */
-    public synchronized void storeFile(String fileId,  String fileName, byte[] bytes) throws IOException {
-        log.info("Writing {}(id={}, length={} bytes) to {}", fileName, fileId, bytes.length, Constants.Peer.DATA_DIR);
-        FileUtil.writeToFile(Constants.Peer.DATA_DIR + File.separator + fileName, bytes);
+    public void storeFile(String fileId,  String fileName, Payload payload) throws IOException {
+        checkNotLeaving();
+        log.info("Storing {}(id={}, length={} bytes)", fileName, fileId, payload.length());
+        storage.put(fileId, fileName, payload);
+        cache.invalidate(fileId);
         storedFiles.put(fileId, fileName);
     }
 
+    /**
+     * Stores a file received by a chunked transfer in Peer's local storage, and updates tracking info
+     * @param fileId 16-bit digest file digest
+     * @param fileName
+     * @param tempFile verified file content, in the same directory as Peer's local storage; consumed
+     */
+    public void storeFile(String fileId, String fileName, Path tempFile) throws IOException {
+        checkNotLeaving();
+        log.info("Storing {}(id={}, length={} bytes) from {}", fileName, fileId, Files.size(tempFile), tempFile);
+        storage.put(fileId, fileName, tempFile);
+        cache.invalidate(fileId);
+        storedFiles.put(fileId, fileName);
+    }
+
+    private void checkNotLeaving() throws IOException {
+        if (this.leaving) {
+            throw new IOException("Leaving the network");
+        }
+    }
+
+    /**
+     * Reads a file from Peer's local storage, through the cache of hot files: a small file is read into heap once,
+     * and then served from there until it is evicted; a large file is always sent straight from storage.
+     * @param fileId 16-bit file digest
+     * @return file content, or null if we don't store a file with this id
+     */
+    public Payload retrieveFile(String fileId) throws IOException {
+        byte[] cached = cache.get(fileId);
+        if (cached != null) {
+            return Payload.of(cached);
+        }
+        long stamp = cache.stamp();
+        Payload payload = storage.get(fileId);
+        if (payload == null || !cache.admits(payload.length())) {
+            return payload;
+        }
+        byte[] content = payload.toByteArray();
+        cache.put(fileId, content, stamp);
+        return Payload.of(content);
+    }
+
     /**
      * Removes specified file from Peer's local storage and updates tracking info
      * @param fileId 16-bit file digest
@@ -240,63 +687,134 @@ public class Peer extends Node {
     public synchronized void removeFile(String fileId) {
         if (storedFiles.containsKey(fileId)) {
             String fileName = storedFiles.get(fileId);
-            boolean success = FileUtil.deleteFile(Constants.Peer.DATA_DIR + File.separator + fileName);
-            if (success) {
+            try {
+                storage.delete(fileId);
+                cache.invalidate(fileId);
                 storedFiles.remove(fileId);
                 log.info("Removed file {} from {}", fileName, Host.getHostname());
-            } else {
-                log.warn("Unable to remove {}", fileName);
+            } catch (IOException e) {
+                log.warn("Unable to remove {}: {}", fileName, e.getMessage());
             }
         }
     }
 
+    /**
+     * Called with the files a migration moved to our new predecessor. With replication, they stay here: we are the
+     * first successor of the new predecessor, so our copies are now its first replicas.
+     * @param fileIds 16-bit file digests
+     */
+    private void releaseMovedFiles(Collection<String> fileIds) {
+        if (Replicator.getReplicationFactor() == 1) {
+            removeFiles(fileIds);
+        }
+    }
+
+    /**
+     * Removes a batch of files from Peer's local storage, taking the Peer monitor once for the whole batch
+     * @param fileIds 16-bit file digests
+     */
+    public synchronized void removeFiles(Collection<String> fileIds) {
+        for (String fileId : fileIds) {
+            removeFile(fileId);
+        }
+    }
+
     public synchronized void updateFingerTable(Identifier newPeer) {
         log.info("Updating our finger table with peer: {}", newPeer);
-        this.fingerTable.updateWithSuccessor(newPeer);
-        log.info("Our finger table after update: {}", this.fingerTable);
+        this.lookupCache.invalidate(newPeer.key()); // it took over part of the interval it joined inside
+        FingerTable updated = this.fingerTable.copy();
+        updated.updateWithSuccessor(newPeer);
+        this.fingerTable = updated;
+        log.info("Our finger table after update: {}", updated);
     }
 
-    public synchronized void updateFingerTable() {
-        log.info("Sending volley of queries to update our finger table...");
-        for (int ftIndex = 0; ftIndex < fingerTable.size(); ftIndex++) {
-            int ringPosition = fingerTable.ringPositionOfIndex(ftIndex);
-
-            if (!fingerTable.isBetween(ringPosition, identifier.value(), successor.value())) {
-                String id = HashUtil.intToHex(ringPosition);
-                FindSuccessorRequest request = new FindSuccessorRequest(
-                        Host.getHostname(),
-                        Host.getIpAddress(),
-                        id
-                );
+    /**
+     * Updates every finger table entry with the true successor of its ring position, using a FingerTableRefresher.
+     * The lookups run without holding the Peer monitor, and the refreshed table is published in one step.
+     */
+    public void updateFingerTable() {
+        log.info("Refreshing our finger table...");
+        FingerTable snapshot = this.fingerTable;
+        FingerTable refreshed = this.fingerTableRefresher.refresh(snapshot, this.successor).join();
+        publishRefreshedFingerTable(snapshot, refreshed);
+        log.info("Finished updating finger table: {}", this.fingerTable);
+    }
 
-                try {
-                    log.info("Requesting successor of finger table index {}, id={}, ringPosition={}, from {}",
-                            ftIndex, id, ringPosition, this.successor.getHostname());
-                    Socket peerSocket = Client.sendMessage(this.successor.getHostname(), Constants.Peer.PORT, request);
-                    DataInputStream dataInputStream = new DataInputStream(peerSocket.getInputStream());
-                    PeerIdentifierMessage pimResponse = (PeerIdentifierMessage) MessageFactory.getInstance()
-                            .createMessage(dataInputStream);
-                    log.info("Received {} response for FindSuccessorRequest from {}: {}", pimResponse.getHostname(),
-                            pimResponse.getType(), pimResponse);
-                    peerSocket.close();
-
-                    this.fingerTable.set(ftIndex, pimResponse.getPeerId());
-                } catch (IOException e) {
-                    log.error("Unable to send FindSuccessorRequest to {}: {}", this.successor.getHostname(), e.getMessage());
+    /**
+     * Publishes a refreshed FingerTable, keeping any peers our finger table learned of since the snapshot the
+     * refresh started from was taken.
+     *
+     * @param snapshot  The FingerTable the refresh started from
+     * @param refreshed The refreshed FingerTable
+     */
+    private synchronized void publishRefreshedFingerTable(FingerTable snapshot, FingerTable refreshed) {
+        FingerTable current = this.fingerTable;
+        if (current != snapshot) {
+            for (int ftIndex = 0; ftIndex < current.size(); ftIndex++) {
+                Identifier peerId = current.getPeerIds().get(ftIndex);
+                if (!peerId.equals(snapshot.getPeerIds().get(ftIndex))) {
+                    refreshed.updateWithSuccessor(peerId);
                 }
             }
-
         }
-        log.info("Finished updating finger table: {}", this.fingerTable);
+        this.fingerTable = refreshed;
     }
 
     public void printFingerTable() {
         StringBuilder sb = new StringBuilder();
         sb.append(String.format("Finger Table for %s:\n", Host.getHostname()));
-        List<Identifier> peerIds = this.fingerTable.peerIds;
-        for (int i = 0, peerIdsSize = peerIds.size(); i < peerIdsSize; i++) {
-            Identifier peerId = peerIds.get(i);
-            sb.append(String.format("%d: %s\n", i, peerId));
+        FingerTable fingerTable = this.fingerTable;
+        for (int i = 0; i < fingerTable.size(); i++) {
+            List<Identifier> candidates = fingerTable.getCandidates(i);
+            for (int c = 0; c < candidates.size(); c++) {
+                Identifier peerId = candidates.get(c);
+                long latency = latencyOf(peerId);
+                sb.append(String.format("%s %s%s%s\n", (c == 0) ? i + ":" : "   or", peerId,
+                        (latency == Long.MAX_VALUE) ? "" : String.format(" (%d ms)", latency),
+                        isSuspected(peerId) ? " (suspected)" : ""));
+            }
+        }
+        System.out.println(sb);
+    }
+
+    /**
+     * @param peerId Identifier of another peer
+     * @return True if the FailureDetector suspects the peer has failed, so requests shouldn't be routed through it
+     */
+    public boolean isSuspected(Identifier peerId) {
+        return !peerId.equals(this.identifier)
+                && FailureDetector.getInstance().isSuspected(peerId.getHostname(), peerId.getPort());
+    }
+
+    /**
+     * @param peerId Identifier of another peer
+     * @return The smoothed round-trip time to the peer as measured by the FailureDetector, or Long.MAX_VALUE if it
+     * never answered us, so that routing prefers the peers it knows to be near
+     */
+    public long latencyOf(Identifier peerId) {
+        long rtt = FailureDetector.getInstance().rttMillis(peerId.getHostname(), peerId.getPort());
+        return (rtt < 0) ? Long.MAX_VALUE : rtt;
+    }
+
+    public void printFailureDetectorStats() {
+        System.out.println(FailureDetector.getInstance().stats());
+    }
+
+    public void printLookupCacheStats() {
+        System.out.printf("Lookup cache on %s: %s\n", this.identifier, lookupCache.stats());
+    }
+
+    public void printLoad() {
+        List<LoadStats> ring = loadTable.snapshot();
+        if (ring.isEmpty()) {
+            System.out.println("No load heard of yet");
+            return;
+        }
+        LoadStats mean = LoadStats.mean(ring);
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Load of %d peers heard of by %s:\n", ring.size(), this.identifier));
+        for (LoadStats stats : ring) {
+            sb.append(String.format("\t%s (%.2f of the mean)\n", stats, stats.loadRelativeTo(mean)));
         }
         System.out.println(sb);
     }
@@ -306,13 +824,36 @@ public class Peer extends Node {
     }
 
     /**
-     * Launches the Peer server as a thread.
+     * Launches the Peer server as a thread, and the command parser.
      */
     public void startServer() {
-        new PeerServer(this).launchAsThread();
+        launchServer();
         commandParser.start();
     }
 
+    /**
+     * Launches the Peer server as a thread, on the port of our Identifier, without a command parser.
+     */
+    public void launchServer() {
+        this.server = new PeerServer(this);
+        this.server.launchAsThread();
+    }
+
+    /**
+     * Releases the port and the storage of a Peer that left the network, i.e. a virtual node that was moved.
+     */
+    public void close() {
+        this.stabilizer.stop();
+        if (this.server != null) {
+            this.server.close();
+        }
+        try {
+            this.storage.close();
+        } catch (IOException e) {
+            log.warn("Unable to close the storage of {}: {}", this.identifier, e.getMessage());
+        }
+    }
+
     @Override
     public String toString() {
         return "Peer:\n" +
@@ -323,68 +864,42 @@ public class Peer extends Node {
 
     public void printFiles() {
         StringBuilder sb = new StringBuilder();
-        sb.append(String.format("Files on %s:\n", Host.getHostname()));
-        for (Map.Entry<String, String> entry : storedFiles.entrySet()) {
+        sb.append(String.format("Files on %s:\n", this.identifier));
+        for (Map.Entry<String, String> entry : storedFiles.asMap().entrySet()) {
             sb.append(String.format("\t%s: %s\n", entry.getKey(), entry.getValue()));
         }
         System.out.println(sb);
     }
 
+    public void printCacheStats() {
+        System.out.printf("Cache on %s: %s\n", this.identifier, cache.stats());
+    }
+
     public void printSuccessor() {
         System.out.println(this.successor);
     }
 
+    public void printSuccessorList() {
+        System.out.println(this.successorList);
+    }
+
     public void printPredecessor() {
         System.out.println(this.predecessor);
     }
 
     /**
-     * Moves matching files to new predecessor
-     * Look through stored files initiate MoveFileRequests
+     * Moves the files whose keys now belong to our new predecessor, without holding the Peer monitor while they
+     * are in transit; see FileMigrator.
      * @param newPredecessorId
+     * @return Future completed once the migration has finished
      */
-    public synchronized void moveFilesToNewPredecessor(Identifier newPredecessorId) {
-        Socket predecessorSocket = null;
-        if (storedFiles.isEmpty()) {
-            log.info("No files available on {}", Host.getHostname());
-            return;
-        }
-        for (Map.Entry<String, String> entry : storedFiles.entrySet()) {
-            String fileId = entry.getKey();
-            String fileName = entry.getValue();
-            if (HashUtil.hexToInt(fileId) <= newPredecessorId.value()) {
-                log.info("Moving file {}({}) to new predecessor {}", fileName, fileId, newPredecessorId);
-                try {
-                    // read file from disk
-                    byte[] fileBytes = FileUtil.readFileAsBytes(
-                            Constants.Peer.DATA_DIR + File.separator + fileName);
-                    MoveFileRequest mfRequest = new MoveFileRequest(
-                            Host.getHostname(),
-                            Host.getIpAddress(),
-                            fileId,
-                            fileName,
-                            fileBytes
-                    );
-                    predecessorSocket = Client.sendMessage(newPredecessorId.hostname, Constants.Peer.PORT, mfRequest);
-                    DataInputStream dataInputStream = new DataInputStream(predecessorSocket.getInputStream());
-                    MoveFileResponse mfResponse =
-                            (MoveFileResponse) MessageFactory.getInstance().createMessage(dataInputStream);
-                    log.info("File {}({}) successfully moved to {}",
-                            mfResponse.fileName, mfResponse.fileId, mfResponse.hostname);
-                    // remove file from current peer
-                    removeFile(fileId);
-                } catch (IOException e) {
-                    log.error(e.getLocalizedMessage());
-                }
-            }
-        }
-
-        if (predecessorSocket != null) {
-            try {
-                predecessorSocket.close();
-            } catch (IOException e) {
-                log.error(e.getLocalizedMessage());
-            }
+    public CompletableFuture<Void> moveFilesToNewPredecessor(Identifier newPredecessorId) {
+        Map<String, String> filesToMove = FileMigrator.selectFilesToMove(storedFiles, newPredecessorId.key(),
+                this.identifier.key());
+        if (filesToMove.isEmpty()) {
+            log.info("No files to move to {}", newPredecessorId);
+            return CompletableFuture.completedFuture(null);
         }
+        return this.fileMigrator.migrate(filesToMove, newPredecessorId);
     }
 }
@@ -1,31 +1,54 @@
 package org.chord.peer;
 
+import org.chord.messaging.FileChunk;
+import org.chord.messaging.FileTransferCommit;
+import org.chord.messaging.FileTransferHeader;
+import org.chord.messaging.FindSuccessorReferral;
 import org.chord.messaging.FindSuccessorRequest;
+import org.chord.messaging.FindSuccessorResponse;
+import org.chord.messaging.FindSuccessorsRequest;
+import org.chord.messaging.FindSuccessorsResponse;
 import org.chord.messaging.GetPredecessorRequest;
+import org.chord.messaging.GetSuccessorListRequest;
 import org.chord.messaging.GetSuccessorRequest;
+import org.chord.messaging.LoadGossipRequest;
+import org.chord.messaging.LoadGossipResponse;
 import org.chord.messaging.LookupRequest;
 import org.chord.messaging.LookupResponse;
 import org.chord.messaging.Message;
-import org.chord.messaging.MessageFactory;
 import org.chord.messaging.MoveFileRequest;
 import org.chord.messaging.MoveFileResponse;
+import org.chord.messaging.NetworkExitNotification;
 import org.chord.messaging.NetworkJoinNotification;
+import org.chord.messaging.Payload;
 import org.chord.messaging.PeerIdentifierMessage;
 import org.chord.messaging.PredecessorNotification;
+import org.chord.messaging.RetrieveFileRequest;
+import org.chord.messaging.RetrieveFileResponse;
 import org.chord.messaging.StatusMessage;
 import org.chord.messaging.StoreFileRequest;
 import org.chord.messaging.StoreFileResponse;
+import org.chord.messaging.SuccessorListResponse;
 import org.chord.messaging.SuccessorNotification;
 import org.chord.networking.Client;
+import org.chord.networking.FailureDetector;
 import org.chord.networking.Processor;
 import org.chord.util.Constants;
 import org.chord.util.Host;
+import org.chord.util.RingKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 public class PeerProcessor extends Processor {
 
@@ -56,8 +79,12 @@ public class PeerProcessor extends Processor {
                     processGetSuccessorRequest((GetSuccessorRequest) message);
                     return;
                 case FIND_SUCCESSOR_REQUEST:
+                    this.peer.recordRequest();
                     processFindSuccessorRequest((FindSuccessorRequest) message);
                     return;
+                case FIND_SUCCESSORS_REQUEST:
+                    processFindSuccessorsRequest((FindSuccessorsRequest) message);
+                    return;
                 case PREDECESSOR_NOTIFICATION:
                     processPredecessorNotification((PredecessorNotification) message);
                     return;
@@ -67,15 +94,39 @@ public class PeerProcessor extends Processor {
                 case NETWORK_JOIN_NOTIFICATION:
                     processNetworkJoinNotification((NetworkJoinNotification) message);
                     return;
+                case NETWORK_EXIT_NOTIFICATION:
+                    processNetworkExitNotification((NetworkExitNotification) message);
+                    return;
                 case LOOKUP_REQUEST:
+                    this.peer.recordRequest();
                     processLookupRequest((LookupRequest) message);
                     break;
                 case STORE_FILE_REQUEST:
+                    this.peer.recordRequest();
                     processStoreFileRequest((StoreFileRequest) message);
                     break;
                 case MOVE_FILE_REQUEST:
                     processMoveFileRequest((MoveFileRequest) message);
                     break;
+                case FILE_TRANSFER_HEADER:
+                    processFileTransferHeader((FileTransferHeader) message);
+                    break;
+                case FILE_CHUNK:
+                    processFileChunk((FileChunk) message);
+                    break;
+                case FILE_TRANSFER_COMMIT:
+                    processFileTransferCommit((FileTransferCommit) message);
+                    break;
+                case RETRIEVE_FILE_REQUEST:
+                    this.peer.recordRequest();
+                    processRetrieveFileRequest((RetrieveFileRequest) message);
+                    break;
+                case GET_SUCCESSOR_LIST_REQUEST:
+                    processGetSuccessorListRequest((GetSuccessorListRequest) message);
+                    break;
+                case LOAD_GOSSIP_REQUEST:
+                    processLoadGossipRequest((LoadGossipRequest) message);
+                    break;
                 default:
                     log.error("Unimplemented processing support for message type {}", message.getType());
             }
@@ -87,36 +138,180 @@ public class PeerProcessor extends Processor {
 
     private void processMoveFileRequest(MoveFileRequest message) {
         try {
-            peer.storeFile(message.fileId, message.fileName, message.fileBytes);
+            peer.storeFile(message.fileId, message.fileName, message.payload);
             MoveFileResponse mfResponse = new MoveFileResponse(
                     Host.getHostname(),
                     Host.getIpAddress(),
                     message.fileId,
                     message.fileName
             );
-            sendResponse(this.socket, mfResponse);
+            sendResponse(message, mfResponse);
         } catch (IOException e) {
             log.error("Unable to store file {}({}): {}", message.fileName, message.fileId, e.getLocalizedMessage());
+            sendStatus(message, Message.Status.ERROR);
         }
     }
 
+    /**
+     * Processes a StoreFileRequest Message, by storing the file and, unless it is a replica's copy, replicating it
+     * to our successors. The StoreFileResponse is only sent once a majority of the copies are stored.
+     *
+     * @param message StoreFileRequest Message
+     */
     private void processStoreFileRequest(StoreFileRequest message) {
+        if (!message.replica && !this.peer.owns(message.fileId)) {
+            rejectNotOwned(message, message.fileId);
+            return;
+        }
         try {
-            this.peer.storeFile(message.fileId, message.fileName, message.bytes);
+            this.peer.storeFile(message.fileId, message.fileName, message.payload);
+            if (!message.replica) {
+                replicate(message.fileId, message.fileName);
+            }
             StoreFileResponse storeFileResponse = new StoreFileResponse(
                     Host.getHostname(),
                     Host.getIpAddress(),
                     message.fileId,
                     message.fileName
             );
-            sendResponse(this.socket, storeFileResponse);
+            sendResponse(message, storeFileResponse);
         } catch (IOException e) {
-            log.error(e.getLocalizedMessage());
+            log.error("Unable to store file {}({}): {}", message.fileName, message.fileId, e.getLocalizedMessage());
+            sendStatus(message, Message.Status.ERROR);
+        }
+    }
+
+    /**
+     * Replicates a file we just stored as its primary peer, waiting for a write quorum.
+     *
+     * @throws IOException If too few replicas stored the file within Constants.Peer.REPLICATION_TIMEOUT_MILLIS
+     */
+    private void replicate(String fileId, String fileName) throws IOException {
+        List<Identifier> replicas = Replicator.replicasOf(this.peer.getSuccessorList());
+        Client.await(this.peer.getReplicator().replicate(fileId, fileName, replicas)
+                .orTimeout(Constants.Peer.REPLICATION_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+    private void processFileTransferHeader(FileTransferHeader message) {
+        if (!message.replica && !message.handoff && !this.peer.owns(message.fileId)) {
+            rejectNotOwned(message, message.fileId);
+            return;
+        }
+        try {
+            this.peer.getChunkedFileReceiver().begin(message);
+            sendStatus(message, Message.Status.OK);
+        } catch (IOException e) {
+            log.error("Unable to start transfer of {}({}): {}", message.fileName, message.fileId, e.getMessage());
+            sendStatus(message, Message.Status.ERROR);
+        }
+    }
+
+    private void processFileChunk(FileChunk message) {
+        try {
+            this.peer.getChunkedFileReceiver().write(message);
+            sendStatus(message, Message.Status.OK);
+        } catch (IOException e) {
+            log.error("Unable to write chunk of transfer {}: {}", message.transferId, e.getMessage());
+            sendStatus(message, Message.Status.ERROR);
+        }
+    }
+
+    private void processFileTransferCommit(FileTransferCommit message) {
+        try {
+            ChunkedFileReceiver.ReceivedFile file = this.peer.getChunkedFileReceiver().commit(message);
+            if (file.handoff) {
+                this.peer.acceptHandoff(file.tempFile);
+            } else {
+                this.peer.storeFile(file.fileId, file.fileName, file.tempFile);
+                if (!file.replica) {
+                    replicate(file.fileId, file.fileName);
+                }
+            }
+            sendResponse(message, new StoreFileResponse(
+                    Host.getHostname(),
+                    Host.getIpAddress(),
+                    file.fileId,
+                    file.fileName
+            ));
+        } catch (IOException e) {
+            log.error("Unable to commit transfer {}: {}", message.transferId, e.getMessage());
+            sendStatus(message, Message.Status.ERROR);
         }
     }
 
     /**
-     * Processes a LookupRequest Message by finding the most suitable peer for given fileId k
+     * Processes a RetrieveFileRequest Message, by sending back the content of the file from the requested offset, at
+     * most Constants.FileTransfer.CHUNK_SIZE bytes of it, from our cache of hot files if it's there. A file we don't
+     * store is answered with a RetrieveFileResponse that isn't found, and a failure to read it, or an offset past
+     * its end, with an ERROR status.
+     *
+     * @param message RetrieveFileRequest Message
+     */
+    private void processRetrieveFileRequest(RetrieveFileRequest message) {
+        try {
+            Payload payload = this.peer.retrieveFile(message.fileId);
+            if (payload == null) {
+                log.info("No file with id {} to send to {}", message.fileId, message.getHostname());
+                sendResponse(message, RetrieveFileResponse.notFound(Host.getHostname(), Host.getIpAddress(),
+                        message.fileId));
+                return;
+            }
+            if (message.offset < 0 || message.offset > payload.length()) {
+                log.warn("Offset {} is past the end of file {} of {} bytes", message.offset, message.fileId,
+                        payload.length());
+                sendStatus(message, Message.Status.ERROR);
+                return;
+            }
+            String fileName = this.peer.getStoredFiles().get(message.fileId);
+            long length = Math.min(Constants.FileTransfer.CHUNK_SIZE, payload.length() - message.offset);
+            sendResponse(message, new RetrieveFileResponse(Host.getHostname(), Host.getIpAddress(), message.fileId,
+                    (fileName != null) ? fileName : message.fileId, payload.length(),
+                    payload.slice(message.offset, length)));
+        } catch (IOException e) {
+            log.error("Unable to read file {}: {}", message.fileId, e.getMessage());
+            sendStatus(message, Message.Status.ERROR);
+        }
+    }
+
+    /**
+     * Processes a GetSuccessorListRequest Message, by sending back our successor list
+     *
+     * @param message GetSuccessorListRequest Message
+     */
+    private void processGetSuccessorListRequest(GetSuccessorListRequest message) {
+        sendResponse(message, new SuccessorListResponse(Host.getHostname(), Host.getIpAddress(),
+                this.peer.getSuccessorList()));
+    }
+
+    /**
+     * Processes a LoadGossipRequest Message, by merging the LoadStats it carries into our LoadTable, and sending back
+     * every LoadStats we know of
+     *
+     * @param message LoadGossipRequest Message
+     */
+    private void processLoadGossipRequest(LoadGossipRequest message) {
+        LoadTable loadTable = this.peer.getLoadTable();
+        loadTable.merge(message.stats);
+        sendResponse(message, new LoadGossipResponse(Host.getHostname(), Host.getIpAddress(), loadTable.snapshot()));
+    }
+
+    /**
+     * Answers a store of a file we aren't the primary peer of with a NOT_OWNER status, so that the sender looks up
+     * its owner again: the lookup it used was stale, i.e. answered from a cached interval a peer has joined since.
+     */
+    private void rejectNotOwned(Message request, String fileId) {
+        log.warn("Refusing to store file {} from {}, which we don't own", fileId, request.getHostname());
+        sendStatus(request, Message.Status.NOT_OWNER);
+    }
+
+    private void sendStatus(Message request, Message.Status status) {
+        sendResponse(request, new StatusMessage(Host.getHostname(), Host.getIpAddress(), status));
+    }
+
+    /**
+     * Processes a LookupRequest Message by finding the most suitable peer for given fileId k. The answer comes from
+     * our LookupCache if an interval we cached contains k; otherwise the lookup routes from our successor, and the
+     * interval the matching peer owns is cached.
      *
      * @param message LookupRequest Message
      */
@@ -127,24 +322,15 @@ public class PeerProcessor extends Processor {
         String storeDataIpAddress = message.storeDataIpAddress;
         log.info("{} initiating lookup({})", hostname, k);
 
-        FindSuccessorRequest successorRequest = new FindSuccessorRequest(
-                Host.getHostname(),
-                Host.getIpAddress(),
-                k
-        );
-
-        // send successorRequest to the successor of current peer
+        // look up successor(k), starting at the successor of current peer
         try {
-            Socket peerSocket =
-                    Client.sendMessage(this.peer.getSuccessor().hostname, Constants.Peer.PORT, successorRequest);
-            DataInputStream dataInputStream = new DataInputStream(peerSocket.getInputStream());
-            PeerIdentifierMessage pimResponse =
-                    (PeerIdentifierMessage) MessageFactory.getInstance().createMessage(dataInputStream);
-            peerSocket.close();
-
             // matching peer for fileId k
-            Identifier matchingPeer = pimResponse.getPeerId();
-            log.info("Matching peer for file({}): {}, message received from {}", k, matchingPeer, pimResponse.hostname);
+            LookupCache lookupCache = this.peer.getLookupCache();
+            Identifier matchingPeer = lookupCache.get(k);
+            if (matchingPeer == null) {
+                matchingPeer = SuccessorLookup.findSuccessor(this.peer.getSuccessor(), k, lookupCache);
+            }
+            log.info("Matching peer for file({}): {}", k, matchingPeer);
 
             // send lookup response to store data
             LookupResponse lookupResponse = new LookupResponse(
@@ -152,7 +338,7 @@ public class PeerProcessor extends Processor {
                     Host.getIpAddress(),
                     matchingPeer
             );
-            sendResponse(this.socket, lookupResponse);
+            sendResponse(message, lookupResponse);
         } catch (IOException e) {
             log.error(e.getLocalizedMessage());
         }
@@ -172,7 +358,7 @@ public class PeerProcessor extends Processor {
         );
         log.info("Responding to GetPredecessorRequest from {} with {}: {}", message.getHostname(), pimResponse.getType(),
                 pimResponse);
-        sendResponse(this.socket, pimResponse);
+        sendResponse(message, pimResponse);
     }
 
     /**
@@ -189,7 +375,7 @@ public class PeerProcessor extends Processor {
         );
         log.info("Responding to GetSuccessorRequest from {} with {}: {}", message.getHostname(), pimResponse.getType(),
                 pimResponse);
-        sendResponse(this.socket, pimResponse);
+        sendResponse(message, pimResponse);
     }
 
     /**
@@ -198,6 +384,13 @@ public class PeerProcessor extends Processor {
      * - If we don't know the successor of k, we forward the message to the first successor p in our
      * finger table such that p is the smallest value >= k. This is the nextBestSuccessor.
      * The response from the forward recipient is then sent back to the requester.
+     * If the request is iterative, we don't forward it; instead we respond with a FindSuccessorReferral to
+     * the nextBestSuccessor, and the requester contacts it itself. Otherwise, the forward blocks this request's
+     * thread until the rest of the chain answers; in ServerMode.VIRTUAL that is a virtual thread, which parks
+     * instead of holding an OS thread.
+     * Of the candidates of the best finger, the one with the lowest round-trip time is picked, see FingerTable.
+     * Fingers the FailureDetector suspects are skipped for the next-best one. If a forward fails, it is retried
+     * through the next-best finger, and if every attempt fails the requester gets an ERROR StatusMessage.
      *
      * @param message FindSuccessorRequest Message containing k
      * @throws IOException If unable to read/write from streams/sockets
@@ -207,78 +400,211 @@ public class PeerProcessor extends Processor {
         log.info("Processing FindSuccessorRequest with {} hops", message.getCurrentHops());
         FingerTable ourFingerTable = this.peer.getFingerTable();
         String id = message.getId();
+        RingKey k = RingKey.fromHex(id); // parsed once for the finger table lookups
 
-        if (ourFingerTable.knowsFinalSuccessorOf(id)) {
+        if (ourFingerTable.knowsFinalSuccessorOf(k)) {
 
-            Identifier finalSuccessor = ourFingerTable.successor(id);
+            Identifier finalSuccessor = ourFingerTable.successor(k);
+            // The interval the final successor owns starts after its predecessor: ours if it is us, otherwise us
+            Identifier predecessor = finalSuccessor.equals(this.peer.getIdentifier())
+                    ? this.peer.getPredecessor()
+                    : this.peer.getIdentifier();
             log.info("The final successor of id {} is: {}", id, finalSuccessor);
-            PeerIdentifierMessage response = new PeerIdentifierMessage(
+            sendResponse(message, new FindSuccessorResponse(
                     Host.getHostname(),
                     Host.getIpAddress(),
-                    finalSuccessor
-            );
-            sendResponse(this.socket, response);
+                    finalSuccessor,
+                    predecessor,
+                    message.getCurrentHops()
+            ));
+
+        } else if (message.isIterative()) { // We don't know the final successor of k, so refer requester onwards
+
+            Identifier bestPredecessor = ourFingerTable.bestPredecessorOf(k, this.peer::isSuspected,
+                    this.peer::latencyOf);
+            log.info("Referring FindSuccessorRequest for id {} from {} to {}", id, message.getHostname(),
+                    bestPredecessor);
+            sendResponse(message, new FindSuccessorReferral(
+                    Host.getHostname(),
+                    Host.getIpAddress(),
+                    bestPredecessor
+            ));
 
         } else { // We don't know the final successor of k, so forward request to next best successor in finger table
 
-            Identifier bestPredecessor = ourFingerTable.bestPredecessorOf(id);
-            log.info("The best predecessor we know of {} is: {}", id, bestPredecessor);
-
-            try {
-                log.info("Forwarding FindSuccessorRequest message from {} to {}: {}", message.getHostname(),
-                        bestPredecessor.getHostname(), message);
+            // Change message's hostname/ip address to ours and re-marshal
+            String requesterHostname = message.getHostname();
+            message.hostname = Host.getHostname();
+            message.ipAddress = Host.getIpAddress();
+            message.marshal();
 
-                // Change message's hostname/ip address to ours and re-marshal
-                message.hostname = Host.getHostname();
-                message.ipAddress = Host.getIpAddress();
-                message.marshal();
-                if (this.socket.isClosed()) {
-                    log.error("Socket has been closed 0!!!");
+            // Fingers that failed to answer this request, skipped along with the ones already suspected
+            List<Identifier> failed = new ArrayList<>();
+            for (int attempt = 0; attempt <= Constants.Peer.LOOKUP_HOP_RETRIES; attempt++) {
+                Identifier bestPredecessor = ourFingerTable.bestPredecessorOf(k,
+                        peerId -> failed.contains(peerId) || this.peer.isSuspected(peerId), this.peer::latencyOf);
+                if (failed.contains(bestPredecessor)) {
+                    break; // every finger we could forward to has failed
                 }
+                log.info("Forwarding FindSuccessorRequest for id {} from {} to {}, the best predecessor we know of",
+                        id, requesterHostname, bestPredecessor);
+                try {
+                    // Request successor(k) from next best successor over a pooled connection, re-marshal response
+                    FindSuccessorResponse response = forwardFindSuccessorRequest(bestPredecessor, message);
+                    response.marshal(); // important! received message is not automatically marshaled
+
+                    // Return response to original requester
+                    log.info("Received final result of FindSuccessorRequest from {}: {}", response.getHostname(),
+                            response);
+                    sendResponse(message, response);
+                    return;
+                } catch (IOException e) {
+                    log.error("Failed to forward FindSuccessorRequest Message to {}: {}",
+                            bestPredecessor.getHostname(), e.getMessage());
+                    failed.add(bestPredecessor);
+                }
+            }
+            sendStatus(message, Message.Status.ERROR);
+        }
+    }
 
-                // Open Socket to next best successor, request successor(k), get response, re-marshal it
-                Socket successorSocket = Client.sendMessage(bestPredecessor.getHostname(), Constants.Peer.PORT, message);
-                DataInputStream dataInputStream = new DataInputStream(successorSocket.getInputStream());
-                PeerIdentifierMessage response = (PeerIdentifierMessage) MessageFactory.getInstance().
-                        createMessage(dataInputStream);
-                response.marshal(); // important! received message is not automatically marshaled
-                dataInputStream.close();
-                successorSocket.close(); // done talking with next best successor peer
-
-                // Return response to original requester
-                log.info("Received final result of FindSuccessorRequest from {}: {}", response.getHostname(), response);
-                sendResponse(this.socket, response);
-
-            } catch (IOException e) {
-                log.error("Failed to forward FindSuccessorRequest Message to {}: {}", bestPredecessor.getHostname(),
-                        e.getMessage());
+    /**
+     * Forwards a recursive FindSuccessorRequest to a finger, and waits for the rest of the chain to answer.
+     * Each of the hops the lookup has left gets the FailureDetector's timeout for the finger; only a finger that
+     * fails is recorded with the FailureDetector, as the time it took includes the hops after it.
+     *
+     * @param finger  The finger to forward to
+     * @param message The FindSuccessorRequest, marshaled with our hostname
+     * @return The final successor of the request's id
+     * @throws IOException If the finger, or a hop after it, fails to answer in time
+     */
+    private FindSuccessorResponse forwardFindSuccessorRequest(Identifier finger, FindSuccessorRequest message)
+            throws IOException {
+        int hopsLeft = SuccessorLookup.maxLookupHops() - message.getCurrentHops();
+        Message response = Client.await(SuccessorLookup.forwardAsync(finger, message, hopsLeft));
+        if (!(response instanceof FindSuccessorResponse)) {
+            throw new IOException("No successor found past " + finger.getHostname());
+        }
+        return (FindSuccessorResponse) response;
+    }
+
+    /**
+     * Processes a FindSuccessorsRequest, the batched form of a FindSuccessorRequest:
+     * - ids whose final successor we know are answered directly.
+     * - The remaining ids are partitioned by their best predecessor in our finger table, and each partition is
+     *   forwarded to its best predecessor as a smaller FindSuccessorsRequest. The partitions are forwarded
+     *   concurrently, each with the timeout forwardFindSuccessorRequest() gives a single id, and their answers
+     *   merged. The ids of a partition whose best predecessor fails are partitioned again without it, up to
+     *   LOOKUP_HOP_RETRIES times, as a single id is retried through the next-best finger.
+     * - Once the request has taken SuccessorLookup.maxLookupHops() hops, it isn't forwarded any further.
+     * A single FindSuccessorsResponse is then sent back to the requester. If a partition can't be resolved, its ids
+     * are left out of the response, so the requester can tell which ids failed.
+     *
+     * @param message FindSuccessorsRequest Message containing the ids
+     */
+    public void processFindSuccessorsRequest(FindSuccessorsRequest message) {
+        message.incrementHops();
+        FingerTable ourFingerTable = this.peer.getFingerTable();
+        Map<String, Identifier> successors = new HashMap<>();
+        List<String> unresolved = new ArrayList<>();
+        for (String id : message.getIds()) {
+            RingKey k = RingKey.fromHex(id);
+            if (ourFingerTable.knowsFinalSuccessorOf(k)) {
+                successors.put(id, ourFingerTable.successor(k));
+            } else {
+                unresolved.add(id);
             }
+        }
+        int hopsLeft = SuccessorLookup.maxLookupHops() - message.getCurrentHops();
+        log.info("Processing FindSuccessorsRequest for {} ids with {} hops: {} answered, {} to forward",
+                message.getIds().size(), message.getCurrentHops(), successors.size(), unresolved.size());
+        if (hopsLeft <= 0 && !unresolved.isEmpty()) {
+            log.warn("Not forwarding {} ids of a FindSuccessorsRequest past {} hops", unresolved.size(),
+                    message.getCurrentHops());
+            unresolved.clear();
+        }
 
+        // Fingers that failed to answer this request, skipped along with the ones already suspected
+        Set<Identifier> failed = new HashSet<>();
+        for (int attempt = 0; attempt <= Constants.Peer.LOOKUP_HOP_RETRIES && !unresolved.isEmpty(); attempt++) {
+            Map<Identifier, List<String>> partitions = new HashMap<>(); // best predecessor -> ids
+            for (String id : unresolved) {
+                Identifier bestPredecessor = ourFingerTable.bestPredecessorOf(RingKey.fromHex(id),
+                        peerId -> failed.contains(peerId) || this.peer.isSuspected(peerId), this.peer::latencyOf);
+                if (!failed.contains(bestPredecessor)) { // otherwise every finger we could forward it to failed
+                    partitions.computeIfAbsent(bestPredecessor, h -> new ArrayList<>()).add(id);
+                }
+            }
+            unresolved = new ArrayList<>();
+
+            Map<Identifier, CompletableFuture<Message>> forwards = new HashMap<>();
+            for (Map.Entry<Identifier, List<String>> partition : partitions.entrySet()) {
+                FindSuccessorsRequest forward = new FindSuccessorsRequest(
+                        Host.getHostname(),
+                        Host.getIpAddress(),
+                        partition.getValue(),
+                        message.getCurrentHops()
+                );
+                Identifier nextHop = partition.getKey();
+                forwards.put(nextHop, SuccessorLookup.forwardAsync(nextHop, forward, hopsLeft));
+            }
+            for (Map.Entry<Identifier, CompletableFuture<Message>> forward : forwards.entrySet()) {
+                List<String> ids = partitions.get(forward.getKey());
+                try {
+                    Message response = Client.await(forward.getValue());
+                    if (!(response instanceof FindSuccessorsResponse)) {
+                        throw new IOException("No successors found past " + forward.getKey().getHostname());
+                    }
+                    successors.putAll(((FindSuccessorsResponse) response).getSuccessors());
+                } catch (IOException e) {
+                    log.error("Failed to forward FindSuccessorsRequest for {} ids to {} (attempt {}): {}",
+                            ids.size(), forward.getKey(), attempt + 1, e.getMessage());
+                    failed.add(forward.getKey());
+                    unresolved.addAll(ids);
+                }
+            }
         }
+
+        sendResponse(message, new FindSuccessorsResponse(
+                Host.getHostname(),
+                Host.getIpAddress(),
+                successors
+        ));
     }
 
+    /**
+     * Processes a PredecessorNotification Message, sent by a joining peer and by our predecessor's stabilization
+     * rounds: the sender only becomes our predecessor, and takes its keys from us, if it is closer than our current one.
+     *
+     * @param message PredecessorNotification Message
+     */
     public void processPredecessorNotification(PredecessorNotification message) throws IOException {
-        this.peer.setPredecessor(message.getPeerId());
-        log.info("Updated predecessor to peer: {}", message.getPeerId());
-        this.peer.updateFingerTable(message.getPeerId());
-        sendResponse(this.socket, new StatusMessage(
+        boolean accepted = this.peer.notifyPredecessor(message.getPeerId());
+        if (accepted) {
+            log.info("Updated predecessor to peer: {}", message.getPeerId());
+            this.peer.updateFingerTable(message.getPeerId());
+        }
+        sendResponse(message, new StatusMessage(
                 Host.getHostname(),
                 Host.getIpAddress(),
                 Message.Status.OK
         ));
 
-        peer.moveFilesToNewPredecessor(peer.getPredecessor());
+        if (accepted) {
+            peer.moveFilesToNewPredecessor(message.getPeerId());
+        }
     }
 
     public void processSuccessorNotification(SuccessorNotification message) throws IOException {
         this.peer.setSuccessor(message.getPeerId());
         log.info("Updated successor to peer: {}", message.getPeerId());
         this.peer.updateFingerTable(message.getPeerId());
-        sendResponse(this.socket, new StatusMessage(
+        sendResponse(message, new StatusMessage(
                 Host.getHostname(),
                 Host.getIpAddress(),
                 Message.Status.OK
         ));
+        this.peer.refreshSuccessorList();
     }
 
     public void processNetworkJoinNotification(NetworkJoinNotification message) throws IOException {
@@ -287,7 +613,40 @@ public class PeerProcessor extends Processor {
             this.peer.updateFingerTable(message.getPeerId());
             log.debug("Forwarding NetworkJoinNotification Message to {}: {}", this.peer.getSuccessor(), message);
             message.marshal();
-            Client.sendMessage(this.peer.getSuccessor().getHostname(), Constants.Peer.PORT, message).close();
+            Identifier successor = this.peer.getSuccessor();
+            Client.sendMessage(successor.getHostname(), successor.getPort(), message);
+            // The new peer may be one of our next successors
+            this.peer.refreshSuccessorList();
         }
     }
+
+    /**
+     * Processes a NetworkExitNotification Message, sent by a peer leaving the network gracefully to its neighbors, and
+     * passed on around the ring from its successor: we splice the departed peer out of our pointers, then pass the
+     * notification on to our successor, until it reaches the departed peer's predecessor.
+     *
+     * @param message NetworkExitNotification Message
+     */
+    public void processNetworkExitNotification(NetworkExitNotification message) throws IOException {
+        this.peer.removeDepartedPeer(message.peerId, message.predecessor, message.successor);
+        log.info("Removed departed peer {} from our pointers", message.peerId);
+        sendResponse(message, new StatusMessage(
+                Host.getHostname(),
+                Host.getIpAddress(),
+                Message.Status.OK
+        ));
+
+        Identifier next = this.peer.getSuccessor();
+        if (this.peer.getIdentifier().equals(message.predecessor) || next.equals(message.successor)
+                || next.equals(this.peer.getIdentifier())) {
+            return; // it went around the ring
+        }
+        message.marshal();
+        Client.sendRequestAsync(next.getHostname(), next.getPort(), message).whenComplete((response, error) -> {
+            if (error != null) {
+                log.warn("Unable to pass on the exit of {} to {}: {}", message.peerId, next,
+                        Client.asIOException(error).getMessage());
+            }
+        });
+    }
 }
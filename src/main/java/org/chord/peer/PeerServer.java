@@ -3,7 +3,6 @@ package org.chord.peer;
 
 import org.chord.networking.Processor;
 import org.chord.networking.Server;
-import org.chord.util.Constants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,12 +15,11 @@ public class PeerServer extends Server {
 
     public PeerServer(Peer messagingNode) {
         this.peer = messagingNode;
-        this.bindToPort(Constants.Peer.PORT);
+        this.bindToPort(messagingNode.getIdentifier().getPort());
     }
 
     @Override
-    public void processConnection(Socket clientSocket) {
-        Processor peerProcessor = new PeerProcessor(clientSocket, this.peer);
-        peerProcessor.launchAsThread();
+    public Processor createProcessor(Socket clientSocket) {
+        return new PeerProcessor(clientSocket, this.peer);
     }
 }
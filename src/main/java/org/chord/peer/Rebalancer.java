@@ -0,0 +1,310 @@
+package org.chord.peer;
+
+import org.chord.messaging.LoadGossipRequest;
+import org.chord.messaging.LoadGossipResponse;
+import org.chord.networking.Client;
+import org.chord.util.Constants;
+import org.chord.util.Host;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evens out the load of the ring by moving the virtual nodes of a host, one round every interval:
+ * - gossip: each of our virtual nodes measures its LoadStats, then exchanges every LoadStats it knows of with a random
+ *   peer of its successor list and finger table, push-pull, so that every peer hears of every other within a few
+ *   rounds without any peer knowing the whole ring.
+ * - plan: from the LoadStats our virtual nodes heard of, decides on at most one move of one of them, see plan().
+ *   Every host plans from the same LoadStats, give or take a round of gossip, so that they rarely act on the same
+ *   overloaded peer at once.
+ * Moves reuse the bulk transfers of joins and leaves: a virtual node joining the ring takes over its keys from its
+ * successor through the FileMigrator, and one leaving hands off all of its files to its successor at once. After a
+ * move, the host skips a few rounds, so that the LoadStats it plans from catch up with the move.
+ */
+public class Rebalancer {
+
+    private static final Logger log = LoggerFactory.getLogger(Rebalancer.class);
+
+    private static volatile long defaultIntervalMillis = Constants.Peer.REBALANCE_INTERVAL_MILLIS;
+    private static volatile double overloadFactor = Constants.Peer.OVERLOAD_FACTOR;
+    private static volatile double underloadFactor = Constants.Peer.UNDERLOAD_FACTOR;
+
+    /**
+     * The gossip exchange of a round.
+     */
+    interface GossipRpc {
+        CompletableFuture<List<LoadStats>> exchange(Identifier peer, List<LoadStats> ours);
+    }
+
+    /**
+     * A move of one of our virtual nodes:
+     * - SPLIT: it leaves its position, and joins again at the split id of an overloaded peer, taking over half of the
+     *   keys that peer owns;
+     * - SHED: it leaves, and its host runs one virtual node fewer.
+     */
+    static class Action {
+        enum Kind { SPLIT, SHED }
+
+        final Kind kind;
+        final Identifier peerId; // our virtual node that moves
+        final String splitId; // SPLIT: where it joins again
+
+        private Action(Kind kind, Identifier peerId, String splitId) {
+            this.kind = kind;
+            this.peerId = peerId;
+            this.splitId = splitId;
+        }
+
+        static Action split(Identifier peerId, String splitId) {
+            return new Action(Kind.SPLIT, peerId, splitId);
+        }
+
+        static Action shed(Identifier peerId) {
+            return new Action(Kind.SHED, peerId, "");
+        }
+
+        @Override
+        public String toString() {
+            return (this.kind == Kind.SPLIT) ? String.format("move %s to %s", this.peerId, this.splitId)
+                    : String.format("shed %s", this.peerId);
+        }
+    }
+
+    private final VirtualNodes host;
+    private final GossipRpc rpc;
+    private final long intervalMillis;
+    private final Random random;
+    private ScheduledExecutorService scheduler;
+
+    // Rounds left to skip after a move; only used from the scheduler's thread
+    private int cooldownRounds;
+
+    public Rebalancer(VirtualNodes host) {
+        this(host, new MessagingRpc(), defaultIntervalMillis);
+    }
+
+    Rebalancer(VirtualNodes host, GossipRpc rpc, long intervalMillis) {
+        this.host = host;
+        this.rpc = rpc;
+        this.intervalMillis = intervalMillis;
+        this.random = new Random();
+    }
+
+    /**
+     * Sets the interval between the rebalancing rounds of hosts started afterwards.
+     * @param intervalMillis Milliseconds between the end of a round and the start of the next; 0 never rebalances
+     */
+    public static void setDefaultIntervalMillis(long intervalMillis) {
+        if (intervalMillis < 0) {
+            throw new IllegalArgumentException("Rebalancing interval must not be negative, not " + intervalMillis);
+        }
+        defaultIntervalMillis = intervalMillis;
+    }
+
+    /**
+     * Sets the loads, as multiples of the mean load of the ring, that rebalancing acts on.
+     * @param underload A peer below it is underloaded, and may move: from 0, below 1
+     * @param overload  A peer above it is overloaded, and is split: above 1
+     */
+    public static void setThresholds(double underload, double overload) {
+        if (!(underload >= 0 && underload < 1 && overload > 1)) {
+            throw new IllegalArgumentException(String.format(
+                    "Load thresholds must be 0 <= underload < 1 < overload, not %s and %s", underload, overload));
+        }
+        underloadFactor = underload;
+        overloadFactor = overload;
+    }
+
+    /**
+     * @return How long a LoadStats is kept after it was measured: a few rounds, so that gossip keeps it alive
+     *         while its peer is
+     */
+    static long statsTimeToLiveMillis() {
+        return Constants.Peer.LOAD_STATS_TTL_ROUNDS * defaultIntervalMillis;
+    }
+
+    /**
+     * Starts running rounds in the background, if not already started, and unless rebalancing is off.
+     */
+    public synchronized void start() {
+        if (this.scheduler != null || this.intervalMillis == 0) {
+            return;
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread rebalancer = new Thread(runnable, "Rebalancer");
+            rebalancer.setDaemon(true);
+            return rebalancer;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::round, this.intervalMillis, this.intervalMillis,
+                TimeUnit.MILLISECONDS);
+        log.info("Rebalancing every {} ms, underloaded below {} and overloaded above {} times the mean load",
+                this.intervalMillis, underloadFactor, overloadFactor);
+    }
+
+    /**
+     * Stops running rounds; a round in progress is left to finish.
+     */
+    public synchronized void stop() {
+        if (this.scheduler != null) {
+            this.scheduler.shutdown();
+            this.scheduler = null;
+        }
+    }
+
+    /**
+     * Runs one round. Never throws, so that a failed round doesn't cancel the ones after it.
+     */
+    void round() {
+        try {
+            List<Peer> peers = this.host.getPeers();
+            LoadTable view = new LoadTable(statsTimeToLiveMillis());
+            List<Identifier> ours = new ArrayList<>();
+            for (Peer peer : peers) {
+                peer.measureLoad(this.host.getWeight());
+                ours.add(peer.getIdentifier());
+            }
+            for (Peer peer : peers) {
+                gossip(peer);
+                view.merge(peer.getLoadTable().snapshot());
+            }
+            if (this.cooldownRounds > 0) {
+                this.cooldownRounds--;
+                return;
+            }
+            Action action = plan(ours, view.snapshot(), underloadFactor, overloadFactor);
+            if (action != null) {
+                log.info("Rebalancing: {}", action);
+                this.host.apply(action);
+                this.cooldownRounds = Constants.Peer.REBALANCE_COOLDOWN_ROUNDS;
+            }
+        } catch (RuntimeException e) {
+            log.error("Rebalancing round failed", e);
+        }
+    }
+
+    /**
+     * Exchanges the LoadStats a virtual node knows of with a random peer it knows of.
+     */
+    private void gossip(Peer peer) {
+        List<Identifier> known = new ArrayList<>(peer.getSuccessorList());
+        for (Identifier finger : peer.getFingerTable().getPeerIds()) {
+            if (!finger.equals(peer.getIdentifier()) && !known.contains(finger)) {
+                known.add(finger);
+            }
+        }
+        if (known.isEmpty()) {
+            return;
+        }
+        Identifier partner = known.get(this.random.nextInt(known.size()));
+        try {
+            peer.getLoadTable().merge(Client.await(this.rpc.exchange(partner, peer.getLoadTable().snapshot())));
+        } catch (IOException e) {
+            log.warn("Unable to exchange load with {}: {}", partner, e.getMessage());
+        }
+    }
+
+    /**
+     * Decides on a move of one of our virtual nodes, if the ring is unbalanced enough, as a function of the
+     * LoadStats heard of alone, so that it can be simulated. Loads are multiples of the mean load of the ring:
+     * 1. SPLIT: if the heaviest peer is overloaded, the lightest underloaded peer whose successor can take over its
+     *    keys without being overloaded in turn moves to the heaviest peer's split id, halving its load. Only the
+     *    host of that peer acts, so that hosts don't all move a virtual node to the same split id at once.
+     * 2. SHED: otherwise, if our host is overloaded, given the share of the ring's load its weight entitles it to,
+     *    and runs more than one virtual node, the lightest of them whose successor on another host can take over
+     *    its keys without being overloaded leaves.
+     *
+     * @param ours      Identifiers of our virtual nodes
+     * @param ring      LoadStats of the peers of the ring, ours included, in ring order
+     * @param underload Underloaded threshold
+     * @param overload  Overloaded threshold
+     * @return The move, or null if there is none to make
+     */
+    static Action plan(List<Identifier> ours, List<LoadStats> ring, double underload, double overload) {
+        int n = ring.size();
+        if (n < 2) {
+            return null;
+        }
+        LoadStats mean = LoadStats.mean(ring);
+        double[] load = new double[n];
+        int heaviest = 0;
+        for (int i = 0; i < n; i++) {
+            load[i] = ring.get(i).loadRelativeTo(mean);
+            if (load[i] > load[heaviest]) {
+                heaviest = i;
+            }
+        }
+
+        if (load[heaviest] > overload && ring.get(heaviest).canSplit()) {
+            int mover = -1;
+            for (int i = 0; i < n; i++) {
+                int successor = (i + 1) % n;
+                if (i != heaviest && successor != heaviest && load[i] < underload
+                        && load[i] + load[successor] <= overload && (mover < 0 || load[i] < load[mover])) {
+                    mover = i;
+                }
+            }
+            if (mover >= 0) {
+                Identifier moving = ring.get(mover).peerId;
+                return ours.contains(moving) ? Action.split(moving, ring.get(heaviest).splitId) : null;
+            }
+        }
+
+        // Load and weight of each host, by hostname
+        String us = ours.get(0).getHostname();
+        Map<String, double[]> hosts = new LinkedHashMap<>();
+        double totalLoad = 0;
+        for (int i = 0; i < n; i++) {
+            LoadStats stats = ring.get(i);
+            double[] host = hosts.computeIfAbsent(stats.peerId.getHostname(), hostname -> new double[2]);
+            host[0] += load[i];
+            host[1] = stats.hostWeight;
+            totalLoad += load[i];
+        }
+        double totalWeight = 0;
+        for (double[] host : hosts.values()) {
+            totalWeight += host[1];
+        }
+        double[] ourHost = hosts.get(us);
+        if (ourHost == null || hosts.size() < 2 || ourHost[0] <= overload * totalLoad * ourHost[1] / totalWeight) {
+            return null;
+        }
+        int shed = -1;
+        int ourPeers = 0;
+        for (int i = 0; i < n; i++) {
+            if (!ours.contains(ring.get(i).peerId)) {
+                continue;
+            }
+            ourPeers++;
+            int successor = (i + 1) % n;
+            if (!ring.get(successor).peerId.getHostname().equals(us) && load[i] + load[successor] <= overload
+                    && (shed < 0 || load[i] < load[shed])) {
+                shed = i;
+            }
+        }
+        return (ourPeers > 1 && shed >= 0) ? Action.shed(ring.get(shed).peerId) : null;
+    }
+
+    /**
+     * Sends the exchange as a LoadGossipRequest, failing if it isn't answered within the FailureDetector's timeout
+     * for the peer.
+     */
+    private static class MessagingRpc implements GossipRpc {
+
+        @Override
+        public CompletableFuture<List<LoadStats>> exchange(Identifier peer, List<LoadStats> ours) {
+            LoadGossipRequest request = new LoadGossipRequest(Host.getHostname(), Host.getIpAddress(), ours);
+            return Client.sendRpcAsync(peer.getHostname(), peer.getPort(), request)
+                    .thenApply(response -> ((LoadGossipResponse) response).getStats());
+        }
+    }
+}
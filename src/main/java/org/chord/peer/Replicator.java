@@ -0,0 +1,195 @@
+package org.chord.peer;
+
+import org.chord.messaging.Message;
+import org.chord.messaging.Payload;
+import org.chord.messaging.StoreFileRequest;
+import org.chord.messaging.StoreFileResponse;
+import org.chord.networking.ChunkedFileSender;
+import org.chord.networking.Client;
+import org.chord.storage.StorageEngine;
+import org.chord.util.Constants;
+import org.chord.util.Host;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Copies the files stored on their primary peer, the successor of their id, to the next peers on the ring:
+ * - A file is kept on r peers in all: its primary, and the first r - 1 peers of the primary's successor list.
+ * - The copies are sent to every replica at once, and a write is acknowledged once a majority of the r copies,
+ *   the primary's own included, are stored. The other copies complete in the background.
+ * - Any of the r peers may serve reads of the file.
+ */
+public class Replicator {
+
+    private static final Logger log = LoggerFactory.getLogger(Replicator.class);
+
+    private static volatile int replicationFactor = Constants.Peer.REPLICATION_FACTOR;
+
+    /**
+     * Sends a stored file to one of its replicas.
+     */
+    interface ReplicaTransfer {
+        CompletableFuture<?> send(Identifier replica, String fileId, String fileName);
+    }
+
+    private final ReplicaTransfer transfer;
+
+    public Replicator(StorageEngine storage) {
+        this(new StoredFileTransfer(storage));
+    }
+
+    Replicator(ReplicaTransfer transfer) {
+        this.transfer = transfer;
+    }
+
+    /**
+     * Sets the number of peers every file is stored on; must be the same on every peer and StoreData of the ring.
+     * @param factor 1 to disable replication
+     */
+    public static void setReplicationFactor(int factor) {
+        if (factor < 1) {
+            throw new IllegalArgumentException("Replication factor must be at least 1, not " + factor);
+        }
+        replicationFactor = factor;
+    }
+
+    public static int getReplicationFactor() {
+        return replicationFactor;
+    }
+
+    /**
+     * @param successorList The successor list of a file's primary peer, nearest first
+     * @return The peers holding the other copies of the file
+     */
+    public static List<Identifier> replicasOf(List<Identifier> successorList) {
+        return successorList.subList(0, Math.min(successorList.size(), replicationFactor - 1));
+    }
+
+    /**
+     * @param copies Number of peers a file is stored on
+     * @return The number of stored copies a write waits for: a majority of them
+     */
+    static int writeQuorum(int copies) {
+        return copies / 2 + 1;
+    }
+
+    /**
+     * Copies a file the primary just stored to its replicas.
+     *
+     * @param fileId   16-bit file digest
+     * @param fileName Name the file is stored under
+     * @param replicas The replicas, see replicasOf()
+     * @return Completes once a majority of the copies, the primary's included, are stored; completes exceptionally
+     *         once too many replicas failed for that to happen
+     */
+    public CompletableFuture<Void> replicate(String fileId, String fileName, List<Identifier> replicas) {
+        // The ring may have fewer peers than the replication factor
+        int copies = 1 + replicas.size();
+        int needed = writeQuorum(copies) - 1; // the primary's copy is already stored
+        List<CompletableFuture<?>> acks = new ArrayList<>(replicas.size());
+        for (Identifier replica : replicas) {
+            CompletableFuture<?> ack = this.transfer.send(replica, fileId, fileName);
+            ack.whenComplete((response, error) -> {
+                if (error != null) {
+                    log.warn("Unable to replicate {}({}) to {}: {}", fileName, fileId, replica.getHostname(),
+                            Client.asIOException(error).getMessage());
+                } else {
+                    log.info("Replicated {}({}) to {}", fileName, fileId, replica.getHostname());
+                }
+            });
+            acks.add(ack);
+        }
+        return awaitQuorum(acks, needed);
+    }
+
+    /**
+     * @param acks   Acknowledgements of the copies in flight
+     * @param needed How many of them must succeed
+     * @return Completes once needed acknowledgements succeeded, or exceptionally once that can no longer happen
+     */
+    static CompletableFuture<Void> awaitQuorum(List<CompletableFuture<?>> acks, int needed) {
+        CompletableFuture<Void> quorum = new CompletableFuture<>();
+        if (needed <= 0) {
+            quorum.complete(null);
+            return quorum;
+        }
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        int tolerated = acks.size() - needed;
+        for (CompletableFuture<?> ack : acks) {
+            ack.whenComplete((response, error) -> {
+                if (error == null) {
+                    if (succeeded.incrementAndGet() == needed) {
+                        quorum.complete(null);
+                    }
+                } else if (failed.incrementAndGet() == tolerated + 1) {
+                    quorum.completeExceptionally(new IOException(String.format(
+                            "Only %d of the %d replica acknowledgements needed", acks.size() - failed.get(), needed),
+                            Client.asIOException(error)));
+                }
+            });
+        }
+        return quorum;
+    }
+
+    /**
+     * Sends the copy straight from storage: in a single StoreFileRequest, or as a chunked transfer on a thread of
+     * its own if it doesn't fit in a single frame. Either way the replica is told not to replicate it further.
+     */
+    private static class StoredFileTransfer implements ReplicaTransfer {
+
+        private final StorageEngine storage;
+        private final ExecutorService chunkedTransfers;
+
+        StoredFileTransfer(StorageEngine storage) {
+            this.storage = storage;
+            this.chunkedTransfers = Executors.newCachedThreadPool(runnable -> {
+                Thread replicator = new Thread(runnable, "Replicator");
+                replicator.setDaemon(true);
+                return replicator;
+            });
+        }
+
+        @Override
+        public CompletableFuture<?> send(Identifier replica, String fileId, String fileName) {
+            try {
+                Payload payload = this.storage.get(fileId);
+                if (payload == null) {
+                    throw new IOException(fileName + " is no longer stored");
+                }
+                if (ChunkedFileSender.isChunked(payload.length())) {
+                    return CompletableFuture.supplyAsync(() -> {
+                        try {
+                            return ChunkedFileSender.send(replica.getHostname(), replica.getPort(), fileId,
+                                    fileName, payload, true);
+                        } catch (IOException e) {
+                            throw new CompletionException(e);
+                        }
+                    }, this.chunkedTransfers);
+                }
+                StoreFileRequest sfRequest = new StoreFileRequest(Host.getHostname(), Host.getIpAddress(), fileId,
+                        fileName, payload, true);
+                return Client.sendTransferAsync(replica.getHostname(), replica.getPort(), sfRequest, payload.length())
+                        .thenApply(response -> expectStored(response, replica, fileName));
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        private static Message expectStored(Message response, Identifier replica, String fileName) {
+            if (!(response instanceof StoreFileResponse)) {
+                throw new CompletionException(new IOException(replica.getHostname() + " rejected " + fileName));
+            }
+            return response;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.chord.peer;
+
+import org.chord.util.RingKey;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Index of the keys stored by a peer, sorted by their position in the ring, so that every key in a ring interval
+ * can be found in O(log n + k) rather than by scanning and parsing every key.
+ * Keys are the hex ids used throughout the ring, and are kept as RingKeys; intervals are taken clockwise and wrap back
+ * to 0 past the largest id. Safe for concurrent use: reads never block, and iterate over a weakly consistent view.
+ *
+ * @param <V> Type of the value stored under each key, i.e. a file name
+ */
+public class RingKeyIndex<V> {
+
+    private final ConcurrentSkipListMap<RingKey, V> entries;
+
+    public RingKeyIndex() {
+        this.entries = new ConcurrentSkipListMap<>();
+    }
+
+    public V put(String key, V value) {
+        return this.entries.put(RingKey.fromHex(key), value);
+    }
+
+    public V get(String key) {
+        return this.entries.get(RingKey.fromHex(key));
+    }
+
+    public V remove(String key) {
+        return this.entries.remove(RingKey.fromHex(key));
+    }
+
+    public boolean containsKey(String key) {
+        return this.entries.containsKey(RingKey.fromHex(key));
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    public boolean isEmpty() {
+        return this.entries.isEmpty();
+    }
+
+    /**
+     * Finds every key in the ring interval (start, end], going clockwise from start. If start == end, the interval
+     * is the whole ring.
+     *
+     * @param start Ring position the interval starts after
+     * @param end   Ring position the interval ends at, inclusive
+     * @return hex key, value of every entry in the interval, in clockwise order from start
+     */
+    public Map<String, V> range(RingKey start, RingKey end) {
+        Map<String, V> range = new LinkedHashMap<>();
+        if (start.compareTo(end) < 0) {
+            copyInto(range, this.entries.subMap(start, false, end, true));
+        } else {
+            copyInto(range, this.entries.tailMap(start, false));
+            copyInto(range, this.entries.headMap(end, true));
+        }
+        return range;
+    }
+
+    /**
+     * @return A read-only copy of every entry, keyed by hex key, in ring order from 0
+     */
+    public Map<String, V> asMap() {
+        Map<String, V> all = new LinkedHashMap<>();
+        copyInto(all, this.entries);
+        return Collections.unmodifiableMap(all);
+    }
+
+    private static <V> void copyInto(Map<String, V> target, NavigableMap<RingKey, V> source) {
+        for (Map.Entry<RingKey, V> entry : source.entrySet()) {
+            target.put(entry.getKey().toHex(), entry.getValue());
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package org.chord.peer;
+
+import org.chord.messaging.GetPredecessorRequest;
+import org.chord.messaging.GetSuccessorListRequest;
+import org.chord.messaging.PeerIdentifierMessage;
+import org.chord.messaging.PredecessorNotification;
+import org.chord.messaging.SuccessorListResponse;
+import org.chord.networking.Client;
+import org.chord.util.Constants;
+import org.chord.util.Host;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs Chord's periodic stabilization on a Peer, one round every interval, so that the ring repairs itself after
+ * joins and failures rather than relying on the notifications sent while joining:
+ * - stabilize: asks our successor for its predecessor, adopts it as our successor if it sits between us, copies our
+ *   successor's successor list, and notifies our successor that we may be its predecessor. If our successor doesn't
+ *   answer, the next peer of our successor list takes its place at once, so routing doesn't wait for a ring walk.
+ * - check_predecessor: forgets our predecessor if it doesn't answer, so that the next peer to notify us replaces it.
+ * - fix_fingers: looks up the true successor of one finger table index per round, in turn, then takes the peers
+ *   after it in its successor list that fall in the same interval of the ring as alternatives to route through, and
+ *   sends each of them a request, so that the FailureDetector measures their round-trip times.
+ */
+public class Stabilizer {
+
+    private static final Logger log = LoggerFactory.getLogger(Stabilizer.class);
+
+    private static volatile long defaultIntervalMillis = Constants.Peer.STABILIZE_INTERVAL_MILLIS;
+
+    /**
+     * The requests a round sends to other peers.
+     */
+    interface StabilizationRpc {
+        CompletableFuture<Identifier> getPredecessor(Identifier peer);
+
+        CompletableFuture<List<Identifier>> getSuccessorList(Identifier peer);
+
+        CompletableFuture<?> notifyPredecessor(Identifier peer, Identifier candidate);
+
+        CompletableFuture<Identifier> findSuccessor(Identifier entry, String id);
+    }
+
+    private final Peer peer;
+    private final StabilizationRpc rpc;
+    private final long intervalMillis;
+    private ScheduledExecutorService scheduler;
+
+    // Next finger table index fix_fingers refreshes; index 0 is our successor, which stabilize maintains.
+    // Only used from the scheduler's thread
+    private int nextFinger = 1;
+
+    public Stabilizer(Peer peer) {
+        this(peer, new MessagingRpc(), defaultIntervalMillis);
+    }
+
+    Stabilizer(Peer peer, StabilizationRpc rpc, long intervalMillis) {
+        this.peer = peer;
+        this.rpc = rpc;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Sets the interval between the stabilization rounds of Peers started afterwards.
+     * @param intervalMillis Milliseconds between the end of a round and the start of the next
+     */
+    public static void setDefaultIntervalMillis(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Stabilization interval must be positive, not " + intervalMillis);
+        }
+        defaultIntervalMillis = intervalMillis;
+    }
+
+    /**
+     * Starts running rounds in the background, if not already started.
+     */
+    public synchronized void start() {
+        if (this.scheduler != null) {
+            return;
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread stabilizer = new Thread(runnable, "Stabilizer");
+            stabilizer.setDaemon(true);
+            return stabilizer;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::round, this.intervalMillis, this.intervalMillis,
+                TimeUnit.MILLISECONDS);
+        log.info("Stabilizing every {} ms", this.intervalMillis);
+    }
+
+    /**
+     * Stops running rounds; a round in progress is left to finish.
+     */
+    public synchronized void stop() {
+        if (this.scheduler != null) {
+            this.scheduler.shutdown();
+            this.scheduler = null;
+        }
+    }
+
+    /**
+     * Runs one round. Never throws, so that a failed round doesn't cancel the ones after it.
+     */
+    void round() {
+        try {
+            stabilize();
+            checkPredecessor();
+            fixNextFinger();
+        } catch (RuntimeException e) {
+            log.error("Stabilization round failed", e);
+        }
+    }
+
+    void stabilize() {
+        Identifier us = this.peer.getIdentifier();
+        Identifier successor = this.peer.getSuccessor();
+        Identifier candidate;
+        if (successor.equals(us)) {
+            candidate = this.peer.getPredecessor(); // alone, unless a peer joined and notified us
+        } else {
+            try {
+                candidate = Client.await(this.rpc.getPredecessor(successor));
+            } catch (IOException e) {
+                log.warn("Our successor {} is unreachable: {}", successor, e.getMessage());
+                failOver(successor);
+                return;
+            }
+        }
+
+        // An empty interval (us, us) would be the whole ring: any other peer is closer than ourselves
+        if (!candidate.equals(us) && this.peer.getFingerTable().isBetween(candidate.key(), us.key(),
+                successor.key())) {
+            log.info("Adopting {}, the predecessor of our successor {}, as our successor", candidate, successor);
+            this.peer.setSuccessor(candidate);
+            successor = candidate;
+        }
+        if (successor.equals(us)) {
+            return;
+        }
+
+        try {
+            List<Identifier> theirs = Client.await(this.rpc.getSuccessorList(successor));
+            this.peer.setSuccessorList(successorListOf(us, successor, theirs, Peer.successorListSize()));
+            Client.await(this.rpc.notifyPredecessor(successor, us));
+        } catch (IOException e) {
+            log.warn("Unable to stabilize with our successor {}: {}", successor, e.getMessage());
+        }
+    }
+
+    void checkPredecessor() {
+        Identifier predecessor = this.peer.getPredecessor();
+        if (predecessor.equals(this.peer.getIdentifier())) {
+            return;
+        }
+        try {
+            Client.await(this.rpc.getPredecessor(predecessor));
+        } catch (IOException e) {
+            log.warn("Our predecessor {} is unreachable: {}", predecessor, e.getMessage());
+            this.peer.clearPredecessor(predecessor);
+        }
+    }
+
+    void fixNextFinger() {
+        Identifier successor = this.peer.getSuccessor();
+        FingerTable fingerTable = this.peer.getFingerTable();
+        int ftIndex = this.nextFinger;
+        this.nextFinger = (this.nextFinger % (fingerTable.size() - 1)) + 1;
+        if (successor.equals(this.peer.getIdentifier())) {
+            return;
+        }
+        String id = fingerTable.ringPositionOfIndex(ftIndex).toHex();
+        try {
+            Identifier fingerSuccessor = Client.await(this.rpc.findSuccessor(successor, id));
+            this.peer.setFinger(ftIndex, fingerSuccessor);
+            if (!fingerSuccessor.equals(this.peer.getIdentifier())) {
+                findFingerCandidates(ftIndex, fingerSuccessor);
+            }
+        } catch (IOException e) {
+            log.warn("Unable to find successor of finger table index {} ({}): {}", ftIndex, id, e.getMessage());
+        }
+    }
+
+    /**
+     * Sets the alternatives of a finger from its successor list, and measures the round-trip time to each of them:
+     * any answer will do, so each is asked for its predecessor.
+     */
+    private void findFingerCandidates(int ftIndex, Identifier fingerSuccessor) {
+        List<Identifier> peers;
+        try {
+            peers = Client.await(this.rpc.getSuccessorList(fingerSuccessor));
+        } catch (IOException e) {
+            log.warn("Unable to get successor list of finger {}: {}", fingerSuccessor, e.getMessage());
+            return;
+        }
+        this.peer.setFingerCandidates(ftIndex, fingerSuccessor, peers);
+        List<Identifier> candidates = this.peer.getFingerTable().getCandidates(ftIndex);
+        List<CompletableFuture<?>> probes = new ArrayList<>();
+        for (Identifier candidate : candidates.subList(1, candidates.size())) {
+            probes.add(this.rpc.getPredecessor(candidate));
+        }
+        // Failures are recorded by the FailureDetector, which routing consults in turn
+        CompletableFuture.allOf(probes.toArray(new CompletableFuture<?>[0])).exceptionally(error -> null).join();
+    }
+
+    /**
+     * Replaces a successor that failed with the next peer of our successor list, or with ourselves if there is none.
+     * If that peer failed too, the next round replaces it in turn.
+     */
+    private void failOver(Identifier failed) {
+        List<Identifier> remaining = new ArrayList<>(this.peer.getSuccessorList());
+        remaining.remove(failed);
+        Identifier replacement = remaining.isEmpty() ? this.peer.getIdentifier() : remaining.get(0);
+        log.info("Replacing our failed successor {} with {}", failed, replacement);
+        this.peer.replaceFailedPeer(failed, replacement);
+    }
+
+    /**
+     * Builds our successor list from our successor's: our successor, followed by as many of its successors as fit,
+     * stopping where the list comes back around to us.
+     *
+     * @param us        Our Identifier
+     * @param successor Our successor
+     * @param theirs    Our successor's successor list
+     * @param size      Most peers in the list
+     * @return Our new successor list, nearest first
+     */
+    static List<Identifier> successorListOf(Identifier us, Identifier successor, List<Identifier> theirs, int size) {
+        List<Identifier> list = new ArrayList<>(size);
+        list.add(successor);
+        for (Identifier peerId : theirs) {
+            if (list.size() >= size || peerId.equals(us) || list.contains(peerId)) {
+                break;
+            }
+            list.add(peerId);
+        }
+        return list;
+    }
+
+    /**
+     * Sends the requests of a round as Messages, each failing if it isn't answered within the FailureDetector's
+     * timeout for the peer, and a lookup if it isn't answered within Constants.Peer.LOOKUP_TIMEOUT_MILLIS.
+     */
+    private static class MessagingRpc implements StabilizationRpc {
+
+        @Override
+        public CompletableFuture<Identifier> getPredecessor(Identifier peer) {
+            GetPredecessorRequest gpRequest = new GetPredecessorRequest(Host.getHostname(), Host.getIpAddress());
+            return Client.sendRpcAsync(peer.getHostname(), peer.getPort(), gpRequest)
+                    .thenApply(response -> ((PeerIdentifierMessage) response).getPeerId());
+        }
+
+        @Override
+        public CompletableFuture<List<Identifier>> getSuccessorList(Identifier peer) {
+            GetSuccessorListRequest gslRequest = new GetSuccessorListRequest(Host.getHostname(), Host.getIpAddress());
+            return Client.sendRpcAsync(peer.getHostname(), peer.getPort(), gslRequest)
+                    .thenApply(response -> ((SuccessorListResponse) response).successors);
+        }
+
+        @Override
+        public CompletableFuture<?> notifyPredecessor(Identifier peer, Identifier candidate) {
+            PredecessorNotification notification = new PredecessorNotification(Host.getHostname(),
+                    Host.getIpAddress(), candidate);
+            return Client.sendRpcAsync(peer.getHostname(), peer.getPort(), notification);
+        }
+
+        @Override
+        public CompletableFuture<Identifier> findSuccessor(Identifier entry, String id) {
+            return SuccessorLookup.findSuccessorAsync(entry, id)
+                    .orTimeout(Constants.Peer.LOOKUP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+}
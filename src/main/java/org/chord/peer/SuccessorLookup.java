@@ -0,0 +1,229 @@
+package org.chord.peer;
+
+import org.chord.messaging.FindSuccessorReferral;
+import org.chord.messaging.FindSuccessorRequest;
+import org.chord.messaging.FindSuccessorResponse;
+import org.chord.messaging.FindSuccessorsRequest;
+import org.chord.messaging.FindSuccessorsResponse;
+import org.chord.messaging.Message;
+import org.chord.networking.Client;
+import org.chord.networking.FailureDetector;
+import org.chord.util.Constants;
+import org.chord.util.Host;
+import org.chord.util.RingKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Resolves successor(k) on behalf of the originator of a lookup, using the LookupMode selected at startup.
+ * In LookupMode.ITERATIVE the originator follows FindSuccessorReferrals from hop to hop, so no intermediate peer
+ * holds a thread or connection open for the duration of the lookup, and each hop gets its own timeout and retries.
+ * A hop's timeout adapts to the round-trip times of the peer, as estimated by the FailureDetector.
+ */
+public class SuccessorLookup {
+
+    private static final Logger log = LoggerFactory.getLogger(SuccessorLookup.class);
+
+    // LookupMode used by lookups from now on; selected at startup
+    private static LookupMode defaultMode = LookupMode.RECURSIVE;
+
+    public static LookupMode getDefaultMode() {
+        return defaultMode;
+    }
+
+    public static void setDefaultMode(LookupMode mode) {
+        defaultMode = mode;
+    }
+
+    /**
+     * @return The most hops a lookup may take: twice the number of fingers, which a lookup halves the distance with
+     */
+    public static int maxLookupHops() {
+        return 2 * RingKey.bits();
+    }
+
+    /**
+     * Finds the successor of an id, starting at an entry peer.
+     *
+     * @param entry         Identifier of the peer the lookup starts at
+     * @param id            The String hex representation of k
+     * @return The Identifier of the successor of k
+     * @throws IOException If the lookup fails
+     */
+    public static Identifier findSuccessor(Identifier entry, String id) throws IOException {
+        return Client.await(findSuccessorAsync(entry, id));
+    }
+
+    /**
+     * Finds the successor of an id, starting at an entry peer, and caches the interval of the ring it owns, so that
+     * lookups of other ids in the interval can be answered from the cache.
+     *
+     * @param entry         Identifier of the peer the lookup starts at
+     * @param id            The String hex representation of k
+     * @param cache         The LookupCache to add the successor's interval to
+     * @return The Identifier of the successor of k
+     * @throws IOException If the lookup fails
+     */
+    public static Identifier findSuccessor(Identifier entry, String id, LookupCache cache) throws IOException {
+        FindSuccessorResponse response = Client.await(lookUp(entry, id));
+        cache.put(response.getPredecessor(), response.getPeerId(), response.getHops());
+        return response.getPeerId();
+    }
+
+    /**
+     * Starts finding the successor of an id at an entry peer, without waiting for the result, so that several
+     * lookups may be in flight at once.
+     *
+     * @param entry         Identifier of the peer the lookup starts at
+     * @param id            The String hex representation of k
+     * @return Future completed with the Identifier of the successor of k, or exceptionally if the lookup fails
+     */
+    public static CompletableFuture<Identifier> findSuccessorAsync(Identifier entry, String id) {
+        return lookUp(entry, id).thenApply(FindSuccessorResponse::getPeerId);
+    }
+
+    private static CompletableFuture<FindSuccessorResponse> lookUp(Identifier entry, String id) {
+        return (defaultMode == LookupMode.ITERATIVE)
+                ? findSuccessorIteratively(entry, id)
+                : findSuccessorRecursively(entry, id);
+    }
+
+    /**
+     * Finds the successors of many ids at once with FindSuccessorsRequests of up to Constants.Peer.LOOKUP_BATCH_SIZE
+     * ids each to the entry peer, which partitions the ids by next hop and forwards them along the ring on our
+     * behalf. The entry peer has the FailureDetector's timeout for it for each hop a lookup may take to answer.
+     *
+     * @param entry         Identifier of the peer the lookup starts at
+     * @param ids           The String hex representations of the ids
+     * @return Map of id -> Identifier of its successor; ids that could not be resolved are absent
+     * @throws IOException If the lookup fails, or isn't answered in time
+     */
+    public static Map<String, Identifier> findSuccessors(Identifier entry, Collection<String> ids)
+            throws IOException {
+        List<String> allIds = new ArrayList<>(ids);
+        List<CompletableFuture<Message>> batches = new ArrayList<>();
+        for (int from = 0; from < allIds.size(); from += Constants.Peer.LOOKUP_BATCH_SIZE) {
+            List<String> batch = allIds.subList(from, Math.min(allIds.size(), from + Constants.Peer.LOOKUP_BATCH_SIZE));
+            FindSuccessorsRequest request = new FindSuccessorsRequest(Host.getHostname(), Host.getIpAddress(),
+                    new ArrayList<>(batch));
+            batches.add(forwardAsync(entry, request, maxLookupHops()));
+        }
+
+        Map<String, Identifier> successors = new HashMap<>();
+        for (CompletableFuture<Message> batch : batches) {
+            Message response = Client.await(batch);
+            if (!(response instanceof FindSuccessorsResponse)) {
+                throw new IOException("Lookup of " + ids.size() + " ids failed at " + entry);
+            }
+            successors.putAll(((FindSuccessorsResponse) response).getSuccessors());
+        }
+        return successors;
+    }
+
+    /**
+     * Sends a lookup request that is forwarded along the ring, without waiting for its response, which must arrive
+     * within the FailureDetector's timeout for the peer for each of the hops the lookup has left. Only a failure of
+     * the peer is recorded with the FailureDetector, as the time the request takes includes the hops after it.
+     *
+     * @param peer     The peer to send to
+     * @param request  The request, marshaled
+     * @param hopsLeft Hops the lookup may still take, at least 1
+     * @return Future completed with the response, or exceptionally if it doesn't arrive in time
+     */
+    static CompletableFuture<Message> forwardAsync(Identifier peer, Message request, int hopsLeft) {
+        FailureDetector detector = FailureDetector.getInstance();
+        long timeoutMillis = detector.timeoutMillis(peer.getHostname(), peer.getPort()) * Math.max(1, hopsLeft);
+        return Client.sendRequestAsync(peer.getHostname(), peer.getPort(), request, timeoutMillis)
+                .whenComplete((response, error) -> {
+                    if (error == null) {
+                        return;
+                    }
+                    IOException failure = Client.asIOException(error);
+                    if (failure instanceof ConnectException || failure instanceof SocketTimeoutException) {
+                        detector.recordFailure(peer.getHostname(), peer.getPort());
+                    }
+                });
+    }
+
+    /**
+     * Sends a single FindSuccessorRequest to the entry peer, which forwards it along the ring on our behalf, and has
+     * the FailureDetector's timeout for it for each hop a lookup may take to answer.
+     */
+    private static CompletableFuture<FindSuccessorResponse> findSuccessorRecursively(Identifier entry, String id) {
+        FindSuccessorRequest request = new FindSuccessorRequest(Host.getHostname(), Host.getIpAddress(), id);
+        return forwardAsync(entry, request, maxLookupHops()).thenApply(response -> {
+            if (!(response instanceof FindSuccessorResponse)) { // every peer a hop could be forwarded to failed
+                throw new CompletionException(new IOException(String.format(
+                        "Lookup of id %s failed along the ring from %s", id, entry)));
+            }
+            return (FindSuccessorResponse) response;
+        });
+    }
+
+    /**
+     * Sends an iterative FindSuccessorRequest to the entry peer, then to each next hop it is referred to, until a
+     * peer answers with the final successor.
+     */
+    private static CompletableFuture<FindSuccessorResponse> findSuccessorIteratively(Identifier entry, String id) {
+        FindSuccessorRequest request = new FindSuccessorRequest(Host.getHostname(), Host.getIpAddress(), id, true);
+        return followReferrals(request, entry, 1);
+    }
+
+    private static CompletableFuture<FindSuccessorResponse> followReferrals(FindSuccessorRequest request,
+                                                                            Identifier hop, int hopCount) {
+        // Composed asynchronously: the next hop may have to connect, which mustn't hold up a Connection reader
+        return sendWithRetries(hop, request, 0).thenComposeAsync(response -> {
+            if (response instanceof FindSuccessorResponse) {
+                FindSuccessorResponse fsResponse = (FindSuccessorResponse) response;
+                log.info("Found successor of id {} after {} hops: {}", request.getId(), hopCount,
+                        fsResponse.getPeerId());
+                fsResponse.hops = hopCount; // each peer only saw a single hop of the lookup
+                return CompletableFuture.completedFuture(fsResponse);
+            }
+            if (!(response instanceof FindSuccessorReferral)) {
+                return CompletableFuture.failedFuture(new IOException(String.format(
+                        "Lookup of id %s failed at %s", request.getId(), hop)));
+            }
+
+            Identifier nextHop = ((FindSuccessorReferral) response).getPeerId();
+            if (nextHop.equals(hop)) {
+                return CompletableFuture.failedFuture(new IOException(String.format(
+                        "Lookup of id %s made no progress at %s", request.getId(), hop)));
+            }
+            if (hopCount == maxLookupHops()) {
+                return CompletableFuture.failedFuture(new IOException(String.format(
+                        "Lookup of id %s did not finish within %d hops", request.getId(), hopCount)));
+            }
+            log.debug("Hop {} for id {}: {} referred us to {}", hopCount, request.getId(), hop, nextHop);
+            return followReferrals(request, nextHop, hopCount + 1);
+        });
+    }
+
+    private static CompletableFuture<Message> sendWithRetries(Identifier hop, FindSuccessorRequest request,
+                                                              int attempt) {
+        return Client.sendRpcAsync(hop.getHostname(), hop.getPort(), request).handleAsync((response, error) -> {
+            if (error == null) {
+                return CompletableFuture.completedFuture(response);
+            }
+            IOException failure = Client.asIOException(error);
+            log.warn("FindSuccessorRequest for id {} to {} failed (attempt {}): {}", request.getId(), hop,
+                    attempt + 1, failure.getMessage());
+            if (attempt == Constants.Peer.LOOKUP_HOP_RETRIES) {
+                return CompletableFuture.<Message>failedFuture(failure);
+            }
+            return sendWithRetries(hop, request, attempt + 1);
+        }).thenCompose(Function.identity());
+    }
+}
@@ -0,0 +1,146 @@
+package org.chord.peer;
+
+import org.chord.networking.Node;
+import org.chord.util.Constants;
+import org.chord.util.HashUtil;
+import org.chord.util.Host;
+import org.chord.util.InteractiveCommandParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The Peers one JVM runs as virtual nodes, each at a ring position and port of its own, so that a host owns several
+ * smaller intervals of the ring rather than one: keys spread more evenly across hosts, and a host with more capacity
+ * can take more of them by running more virtual nodes.
+ * Virtual node 0 has the given id and listens on Constants.Peer.PORT. Virtual node i has the id hashed from the given
+ * id and i, and listens on Constants.Peer.PORT + i; each is otherwise an independent Peer of the ring.
+ * A Rebalancer may then move virtual nodes to other ring positions, each on the next free port, or shed them.
+ */
+public class VirtualNodes extends Node {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualNodes.class);
+
+    private final String discoveryNodeHostname;
+    private final int discoveryNodePort;
+
+    // Replaced as the Rebalancer moves virtual nodes, while commands iterate over them
+    private final List<Peer> peers;
+
+    // Virtual nodes we were started with; rebalancing gives the host a share of the ring's load in proportion
+    private final int weight;
+
+    // Port the next virtual node the Rebalancer moves listens on; only used from the Rebalancer's thread
+    private int nextPort;
+
+    private final Rebalancer rebalancer;
+
+    private final InteractiveCommandParser commandParser;
+
+    /**
+     * @param discoveryNodeHostname Hostname of the discovery node
+     * @param discoveryNodePort     Port of the discovery node
+     * @param id                    Hex id of the first virtual node
+     * @param count                 Number of virtual nodes, at least 1
+     */
+    public VirtualNodes(String discoveryNodeHostname, int discoveryNodePort, String id, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("At least one virtual node is needed, not " + count);
+        }
+        this.discoveryNodeHostname = discoveryNodeHostname;
+        this.discoveryNodePort = discoveryNodePort;
+        this.peers = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Identifier identifier = new Identifier(Host.getHostname(), idOf(id, i), Constants.Peer.PORT + i);
+            this.peers.add(new Peer(discoveryNodeHostname, discoveryNodePort, identifier));
+        }
+        this.weight = count;
+        this.nextPort = Constants.Peer.PORT + count;
+        this.rebalancer = new Rebalancer(this);
+        this.commandParser = new InteractiveCommandParser(this);
+    }
+
+    /**
+     * @param id    Hex id of the first virtual node
+     * @param index Index of a virtual node
+     * @return The hex id of the virtual node: the given id for the first, a hash of the id and index for the others
+     */
+    public static String idOf(String id, int index) {
+        if (index == 0) {
+            return id;
+        }
+        return HashUtil.hashFile((id + "#" + index).getBytes());
+    }
+
+    /**
+     * @return A read-only view of the virtual nodes we run at the moment
+     */
+    public List<Peer> getPeers() {
+        return Collections.unmodifiableList(peers);
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Launches the server of every virtual node and a single command parser, then joins them to the network one at
+     * a time, so that each finds the ones before it in the ring, and starts rebalancing.
+     */
+    public void start() {
+        for (Peer peer : this.peers) {
+            peer.launchServer();
+        }
+        this.commandParser.start();
+        for (Peer peer : this.peers) {
+            log.info("Joining virtual node {} of {}: {}", this.peers.indexOf(peer) + 1, this.peers.size(),
+                    peer.getIdentifier());
+            peer.joinNetwork();
+        }
+        this.rebalancer.start();
+    }
+
+    /**
+     * Stops rebalancing, and leaves the network with every virtual node, in turn.
+     */
+    public void leaveNetwork() {
+        this.rebalancer.stop();
+        this.peers.forEach(Peer::leaveNetwork);
+    }
+
+    /**
+     * Moves one of our virtual nodes as the Rebalancer decided. A virtual node moved to a split id joins there, on a
+     * port of its own, before the one it replaces leaves, so that the host keeps its virtual nodes if the join is
+     * refused, i.e. because another host moved a virtual node to the same split id first.
+     * @param action The move
+     */
+    void apply(Rebalancer.Action action) {
+        Peer peer = null;
+        for (Peer candidate : this.peers) {
+            if (candidate.getIdentifier().equals(action.peerId)) {
+                peer = candidate;
+            }
+        }
+        if (peer == null) {
+            log.warn("No virtual node {} to {}", action.peerId, action);
+            return;
+        }
+        if (action.kind == Rebalancer.Action.Kind.SPLIT) {
+            Peer moved = new Peer(this.discoveryNodeHostname, this.discoveryNodePort,
+                    new Identifier(Host.getHostname(), action.splitId, this.nextPort++));
+            moved.launchServer();
+            if (!moved.tryJoinNetwork()) {
+                log.warn("Unable to move {} to {}", peer.getIdentifier(), action.splitId);
+                moved.close();
+                return;
+            }
+            this.peers.add(moved);
+        }
+        peer.leaveNetwork();
+        this.peers.remove(peer);
+        peer.close();
+    }
+}
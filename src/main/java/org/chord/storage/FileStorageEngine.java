@@ -0,0 +1,90 @@
+package org.chord.storage;
+
+import org.chord.messaging.Payload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The original storage layout: each object is written to its own file in the directory, under the name its client
+ * gave it, so files with the same name overwrite each other. Nothing is recovered after a restart.
+ */
+public class FileStorageEngine implements StorageEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(FileStorageEngine.class);
+
+    private final Path directory;
+
+    // fileId, fileName
+    private final Map<String, String> fileNames;
+
+    public FileStorageEngine(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.fileNames = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void put(String fileId, String fileName, Payload payload) throws IOException {
+        try (OutputStream outputStream = Files.newOutputStream(this.directory.resolve(fileName))) {
+            payload.writeTo(outputStream);
+        }
+        this.fileNames.put(fileId, fileName);
+    }
+
+    @Override
+    public void put(String fileId, String fileName, Path tempFile) throws IOException {
+        Files.move(tempFile, this.directory.resolve(fileName), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        this.fileNames.put(fileId, fileName);
+    }
+
+    @Override
+    public Payload get(String fileId) throws IOException {
+        String fileName = this.fileNames.get(fileId);
+        return (fileName != null) ? Payload.of(this.directory.resolve(fileName)) : null;
+    }
+
+    @Override
+    public boolean delete(String fileId) throws IOException {
+        String fileName = this.fileNames.remove(fileId);
+        if (fileName == null) {
+            return false;
+        }
+        boolean deleted = Files.deleteIfExists(this.directory.resolve(fileName));
+        if (!deleted) {
+            log.warn("{} was already gone", fileName);
+        }
+        return true;
+    }
+
+    @Override
+    public Map<String, String> list() {
+        return Collections.unmodifiableMap(new HashMap<>(this.fileNames));
+    }
+
+    @Override
+    public long bytesStored() {
+        long bytes = 0;
+        for (String fileName : this.fileNames.values()) {
+            try {
+                bytes += Files.size(this.directory.resolve(fileName));
+            } catch (IOException e) {
+                log.warn("Unable to size {}: {}", fileName, e.getMessage()); // deleted since listed
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,174 @@
+package org.chord.storage;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Least-recently-used cache of the content of hot objects, bounded by the total size of the content, so that
+ * repeated reads of the same files are served from heap rather than from disk.
+ * Objects larger than a maximum size are never cached: they would evict many small hot objects, and are sent
+ * straight from storage without passing through heap anyway.
+ * Hits, misses and evictions are counted, see stats().
+ */
+public class ObjectCache {
+
+    private final long capacityBytes;
+    private final long maxObjectBytes;
+
+    // Least recently used first; guarded by lock. A Lock rather than a monitor, so that virtual threads don't pin
+    private final LinkedHashMap<String, byte[]> entries;
+    private final Lock lock;
+    private long sizeBytes;
+
+    // Incremented by every invalidation, so that content read before an invalidation isn't cached after it
+    private final AtomicLong invalidations;
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+
+    /**
+     * Point-in-time counters of an ObjectCache.
+     */
+    public static class Stats {
+        public final long hits;
+        public final long misses;
+        public final long evictions;
+        public final int entries;
+        public final long sizeBytes;
+
+        Stats(long hits, long misses, long evictions, int entries, long sizeBytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.entries = entries;
+            this.sizeBytes = sizeBytes;
+        }
+
+        /**
+         * @return The fraction of lookups that were hits, or 0 if there were none
+         */
+        public double hitRate() {
+            long lookups = this.hits + this.misses;
+            return (lookups == 0) ? 0 : (double) this.hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits: %d, misses: %d, hit rate: %.1f%%, evictions: %d, entries: %d, size: %d bytes",
+                    this.hits, this.misses, 100 * hitRate(), this.evictions, this.entries, this.sizeBytes);
+        }
+    }
+
+    /**
+     * @param capacityBytes  Most bytes of content cached at once
+     * @param maxObjectBytes Largest object cached
+     */
+    public ObjectCache(long capacityBytes, long maxObjectBytes) {
+        this.capacityBytes = capacityBytes;
+        this.maxObjectBytes = Math.min(maxObjectBytes, capacityBytes);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.lock = new ReentrantLock();
+        this.invalidations = new AtomicLong();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+    }
+
+    /**
+     * @return A stamp to pass to put(), taken before reading the content to cache
+     */
+    public long stamp() {
+        return this.invalidations.get();
+    }
+
+    /**
+     * Looks up an object, counting a hit or a miss, and marks it as most recently used.
+     *
+     * @param key i.e. a file id
+     * @return The cached content, or null if the object isn't cached
+     */
+    public byte[] get(String key) {
+        byte[] content;
+        this.lock.lock();
+        try {
+            content = this.entries.get(key);
+        } finally {
+            this.lock.unlock();
+        }
+        (content != null ? this.hits : this.misses).increment();
+        return content;
+    }
+
+    /**
+     * @param length Length of an object in bytes
+     * @return True if an object of this length would be cached by put()
+     */
+    public boolean admits(long length) {
+        return length <= this.maxObjectBytes;
+    }
+
+    /**
+     * Caches the content of an object, evicting least recently used objects to make room for it. The content is
+     * dropped if it is too large, or if any object was invalidated since the stamp was taken, since it may be stale.
+     *
+     * @param key     i.e. a file id
+     * @param content Content of the object, which must not be modified afterwards
+     * @param stamp   Value of stamp() taken before the content was read
+     */
+    public void put(String key, byte[] content, long stamp) {
+        if (!admits(content.length)) {
+            return;
+        }
+        this.lock.lock();
+        try {
+            if (this.invalidations.get() != stamp) {
+                return;
+            }
+            byte[] replaced = this.entries.put(key, content);
+            this.sizeBytes += content.length - ((replaced != null) ? replaced.length : 0);
+            Iterator<Map.Entry<String, byte[]>> leastRecentlyUsed = this.entries.entrySet().iterator();
+            while (this.sizeBytes > this.capacityBytes) {
+                byte[] evicted = leastRecentlyUsed.next().getValue();
+                leastRecentlyUsed.remove();
+                this.sizeBytes -= evicted.length;
+                this.evictions.increment();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Removes an object whose content changed or was deleted.
+     *
+     * @param key i.e. a file id
+     */
+    public void invalidate(String key) {
+        this.lock.lock();
+        try {
+            this.invalidations.incrementAndGet();
+            byte[] removed = this.entries.remove(key);
+            if (removed != null) {
+                this.sizeBytes -= removed.length;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        this.lock.lock();
+        try {
+            return new Stats(this.hits.sum(), this.misses.sum(), this.evictions.sum(), this.entries.size(),
+                    this.sizeBytes);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,576 @@
+package org.chord.storage;
+
+import org.chord.messaging.Payload;
+import org.chord.util.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Log-structured StorageEngine: every put and delete is appended as a record to the active segment file, and a
+ * memory-resident index maps each file id to the segment, offset and length of its latest content.
+ * - Storing an object costs one append to an already open file, rather than a new file and inode.
+ * - Sealed segments are memory-mapped, and objects in them are read as slices of the mapping: serving or migrating
+ *   an object neither allocates nor copies it on the heap.
+ * - Appends are made durable with group commit: a writer forces the log once for every record appended so far,
+ *   so concurrent writers share a single fsync.
+ * - The active segment is sealed once it reaches Constants.Storage.SEGMENT_SIZE, and a new one is started.
+ * - In the background, the sealed segment with the least live data is compacted once less than
+ *   Constants.Storage.COMPACTION_THRESHOLD of it is live: its live records are copied to the active segment, and it
+ *   is retired. Retired segments are deleted after a grace period, so Payloads already handed out stay readable.
+ * On startup the index is rebuilt by replaying every segment in order; a torn record at the end of a segment, left
+ * by a crash mid-append, is truncated.
+ *
+ * A record is represented as follows:
+ * - magic (int 4 bytes)
+ * - header length (int 4 bytes)
+ * - header: type (byte), file id (UTF), file name (UTF), payload length (long 8 bytes)
+ * - payload (byte[] n bytes), for a PUT
+ */
+public class SegmentStorageEngine implements StorageEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentStorageEngine.class);
+
+    private static final int RECORD_MAGIC = 0x43484f52;
+    private static final int RECORD_PREFIX_SIZE = 8;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.log");
+
+    private final Path directory;
+    private final long segmentSize;
+    private final double compactionThreshold;
+    private final long retiredSegmentGraceMillis;
+
+    // fileId -> location of its latest content
+    private final Map<String, Location> index;
+
+    // Every segment on disk by id, including the active segment and retired segments not yet deleted
+    private final ConcurrentSkipListMap<Long, Segment> segments;
+
+    // Locks rather than monitors, so that virtual threads storing files don't pin their carrier
+    private final Lock appendLock;
+    private final Lock syncLock;
+    private volatile Segment active;
+
+    // Bytes appended and forced to disk since opening, across segments
+    private volatile long appendedBytes;
+    private volatile long syncedBytes;
+
+    private final ScheduledExecutorService compactor;
+
+    /**
+     * Where the content of an object is.
+     */
+    private static class Location {
+        final Segment segment;
+        final long offset;
+        final long length;
+        final String fileName;
+
+        Location(Segment segment, long offset, long length, String fileName) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.fileName = fileName;
+        }
+    }
+
+    private static class Segment {
+        final long id;
+        final Path path;
+        // Open for appending while this is the active segment, null once sealed
+        FileChannel channel;
+        // The whole segment mapped read-only once sealed, so objects are read without a system call or a copy;
+        // null while active, or if the segment is too large to map
+        volatile MappedByteBuffer mapped;
+        volatile long size;
+        final AtomicLong liveBytes = new AtomicLong();
+        volatile long retiredAtMillis = -1;
+
+        Segment(long id, Path path) {
+            this.id = id;
+            this.path = path;
+        }
+
+        boolean isRetired() {
+            return this.retiredAtMillis >= 0;
+        }
+    }
+
+    /**
+     * A record read back from a segment.
+     */
+    private static class Record {
+        final long start;
+        final byte type;
+        final String fileId;
+        final String fileName;
+        final long payloadOffset;
+        final long payloadLength;
+
+        Record(long start, byte type, String fileId, String fileName, long payloadOffset, long payloadLength) {
+            this.start = start;
+            this.type = type;
+            this.fileId = fileId;
+            this.fileName = fileName;
+            this.payloadOffset = payloadOffset;
+            this.payloadLength = payloadLength;
+        }
+
+        long end() {
+            return this.payloadOffset + this.payloadLength;
+        }
+    }
+
+    public SegmentStorageEngine(Path directory) throws IOException {
+        this(directory, Constants.Storage.SEGMENT_SIZE, Constants.Storage.COMPACTION_THRESHOLD,
+                Constants.Storage.RETIRED_SEGMENT_GRACE_MILLIS, Constants.Storage.COMPACTION_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param compactionIntervalMillis How often to look for a segment to compact, or 0 to only compact on compact()
+     */
+    SegmentStorageEngine(Path directory, long segmentSize, double compactionThreshold, long retiredSegmentGraceMillis,
+                         long compactionIntervalMillis) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        this.compactionThreshold = compactionThreshold;
+        this.retiredSegmentGraceMillis = retiredSegmentGraceMillis;
+        this.index = new ConcurrentHashMap<>();
+        this.segments = new ConcurrentSkipListMap<>();
+        this.appendLock = new ReentrantLock();
+        this.syncLock = new ReentrantLock();
+        recover();
+
+        this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread compactorThread = new Thread(runnable, "Segment Compactor " + directory.getFileName());
+            compactorThread.setDaemon(true);
+            return compactorThread;
+        });
+        if (compactionIntervalMillis > 0) {
+            this.compactor.scheduleWithFixedDelay(this::compactQuietly, compactionIntervalMillis,
+                    compactionIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void put(String fileId, String fileName, Payload payload) throws IOException {
+        long appended;
+        this.appendLock.lock();
+        try {
+            Location location = append(PUT, fileId, fileName, payload);
+            location.segment.liveBytes.addAndGet(location.length);
+            release(this.index.put(fileId, location));
+            appended = this.appendedBytes;
+        } finally {
+            this.appendLock.unlock();
+        }
+        sync(appended);
+    }
+
+    @Override
+    public void put(String fileId, String fileName, Path tempFile) throws IOException {
+        put(fileId, fileName, Payload.of(tempFile));
+        Files.delete(tempFile);
+    }
+
+    @Override
+    public Payload get(String fileId) throws IOException {
+        Location location = this.index.get(fileId);
+        if (location == null) {
+            return null;
+        }
+        MappedByteBuffer mapped = location.segment.mapped;
+        if (mapped == null) {
+            return Payload.of(location.segment.path, location.offset, location.length);
+        }
+        ByteBuffer slice = mapped.duplicate();
+        slice.position((int) location.offset).limit((int) (location.offset + location.length));
+        return Payload.of(slice);
+    }
+
+    @Override
+    public boolean delete(String fileId) throws IOException {
+        long appended;
+        this.appendLock.lock();
+        try {
+            Location location = this.index.get(fileId);
+            if (location == null) {
+                return false;
+            }
+            append(DELETE, fileId, location.fileName, null);
+            this.index.remove(fileId);
+            release(location);
+            appended = this.appendedBytes;
+        } finally {
+            this.appendLock.unlock();
+        }
+        sync(appended);
+        return true;
+    }
+
+    @Override
+    public Map<String, String> list() {
+        Map<String, String> fileNames = new HashMap<>();
+        for (Map.Entry<String, Location> entry : this.index.entrySet()) {
+            fileNames.put(entry.getKey(), entry.getValue().fileName);
+        }
+        return Collections.unmodifiableMap(fileNames);
+    }
+
+    @Override
+    public long bytesStored() {
+        long bytes = 0;
+        for (Location location : this.index.values()) {
+            bytes += location.length;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return The number of segment files on disk, including retired segments not yet deleted
+     */
+    int segmentCount() {
+        return this.segments.size();
+    }
+
+    /**
+     * Appends a record to the active segment, starting a new segment first if it is full. Called with the append
+     * lock held.
+     *
+     * @return The location of the record's payload
+     */
+    private Location append(byte type, String fileId, String fileName, Payload payload) throws IOException {
+        if (this.active.size >= this.segmentSize) {
+            roll();
+        }
+        Segment segment = this.active;
+        long payloadLength = (payload != null) ? payload.length() : 0;
+        ByteBuffer prefix = encodePrefix(type, fileId, fileName, payloadLength);
+        long start = segment.size;
+        try {
+            segment.channel.position(start);
+            while (prefix.hasRemaining()) {
+                segment.channel.write(prefix);
+            }
+            long payloadOffset = segment.channel.position();
+            if (payload != null) {
+                payload.writeTo(segment.channel);
+            }
+            segment.size = segment.channel.position();
+            this.appendedBytes += segment.size - start;
+            return new Location(segment, payloadOffset, payloadLength, fileName);
+        } catch (IOException e) {
+            // Don't leave a partial record behind for the next append to follow
+            segment.channel.truncate(start);
+            throw e;
+        }
+    }
+
+    private static ByteBuffer encodePrefix(byte type, String fileId, String fileName, long payloadLength)
+            throws IOException {
+        ByteArrayOutputStream byteOutStream = new ByteArrayOutputStream();
+        DataOutputStream dataOutStream = new DataOutputStream(byteOutStream);
+        dataOutStream.writeByte(type);
+        dataOutStream.writeUTF(fileId);
+        dataOutStream.writeUTF(fileName);
+        dataOutStream.writeLong(payloadLength);
+        dataOutStream.flush();
+        byte[] header = byteOutStream.toByteArray();
+        ByteBuffer prefix = ByteBuffer.allocate(RECORD_PREFIX_SIZE + header.length);
+        prefix.putInt(RECORD_MAGIC);
+        prefix.putInt(header.length);
+        prefix.put(header);
+        prefix.flip();
+        return prefix;
+    }
+
+    /**
+     * Reads the record starting at a position in a segment.
+     *
+     * @return The record, or null if there is no complete record at the position
+     */
+    private static Record readRecord(FileChannel channel, long position, long size) throws IOException {
+        if (size - position < RECORD_PREFIX_SIZE) {
+            return null;
+        }
+        ByteBuffer prefix = ByteBuffer.allocate(RECORD_PREFIX_SIZE);
+        readFully(channel, prefix, position);
+        int headerLength = prefix.getInt(4);
+        if (prefix.getInt(0) != RECORD_MAGIC || headerLength <= 0 ||
+                size - position - RECORD_PREFIX_SIZE < headerLength) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(headerLength);
+        readFully(channel, header, position + RECORD_PREFIX_SIZE);
+        DataInputStream dataInputStream = new DataInputStream(new ByteArrayInputStream(header.array()));
+        byte type = dataInputStream.readByte();
+        String fileId = dataInputStream.readUTF();
+        String fileName = dataInputStream.readUTF();
+        long payloadLength = dataInputStream.readLong();
+        long payloadOffset = position + RECORD_PREFIX_SIZE + headerLength;
+        if ((type != PUT && type != DELETE) || payloadLength < 0 || size - payloadOffset < payloadLength) {
+            return null;
+        }
+        return new Record(position, type, fileId, fileName, payloadOffset, payloadLength);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1) {
+                throw new IOException("Unexpected end of segment");
+            }
+        }
+    }
+
+    /**
+     * Seals the active segment, forcing it to disk, and starts a new one. Called with the append lock held.
+     */
+    private void roll() throws IOException {
+        Segment sealed = this.active;
+        sealed.channel.force(false);
+        sealed.mapped = map(sealed.channel, sealed.size);
+        sealed.channel.close();
+        sealed.channel = null;
+        this.active = openSegment(sealed.id + 1);
+        log.info("Sealed segment {} ({} bytes), started segment {}", sealed.id, sealed.size, this.active.id);
+    }
+
+    /**
+     * Maps a sealed segment read-only; the mapping stays valid after the channel is closed, and after the segment
+     * is deleted.
+     *
+     * @return The mapped segment, or null if it is too large for a single mapping
+     */
+    private static MappedByteBuffer map(FileChannel channel, long size) throws IOException {
+        return (size <= Integer.MAX_VALUE) ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : null;
+    }
+
+    private Segment openSegment(long id) throws IOException {
+        Segment segment = new Segment(id, this.directory.resolve(String.format("segment-%08d.log", id)));
+        segment.channel = FileChannel.open(segment.path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        segment.size = segment.channel.size();
+        this.segments.put(id, segment);
+        return segment;
+    }
+
+    /**
+     * Makes every record appended up to a point durable. Writers arriving while the log is being forced wait for
+     * that force to finish, then find their records already covered, or force once for all of them.
+     *
+     * @param upTo Value of appendedBytes after the caller's record was appended
+     */
+    private void sync(long upTo) throws IOException {
+        if (this.syncedBytes >= upTo) {
+            return;
+        }
+        this.syncLock.lock();
+        try {
+            if (this.syncedBytes >= upTo) {
+                return;
+            }
+            // Everything appended so far is either in the active segment, or in one sealed (and forced) since
+            long covered = this.appendedBytes;
+            FileChannel channel = this.active.channel;
+            if (channel != null) {
+                channel.force(false);
+            }
+            this.syncedBytes = Math.max(this.syncedBytes, covered);
+        } finally {
+            this.syncLock.unlock();
+        }
+    }
+
+    private static void release(Location location) {
+        if (location != null) {
+            location.segment.liveBytes.addAndGet(-location.length);
+        }
+    }
+
+    /**
+     * Rebuilds the index by replaying every segment in order, truncating any torn record at the end of a segment.
+     */
+    private void recover() throws IOException {
+        ConcurrentSkipListMap<Long, Path> found = new ConcurrentSkipListMap<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(this.directory, "segment-*.log")) {
+            for (Path path : paths) {
+                Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    found.put(Long.parseLong(matcher.group(1)), path);
+                }
+            }
+        }
+
+        for (Map.Entry<Long, Path> entry : found.entrySet()) {
+            Segment segment = new Segment(entry.getKey(), entry.getValue());
+            try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                long size = channel.size();
+                long position = 0;
+                Record record;
+                while ((record = readRecord(channel, position, size)) != null) {
+                    if (record.type == PUT) {
+                        Location location = new Location(segment, record.payloadOffset, record.payloadLength,
+                                record.fileName);
+                        segment.liveBytes.addAndGet(record.payloadLength);
+                        release(this.index.put(record.fileId, location));
+                    } else {
+                        release(this.index.remove(record.fileId));
+                    }
+                    position = record.end();
+                }
+                if (position < size) {
+                    log.warn("Truncating torn record at {} of {} ({} bytes)", position, segment.path, size - position);
+                    channel.truncate(position);
+                    channel.force(false);
+                }
+                segment.size = position;
+                segment.mapped = map(channel, position);
+            }
+            this.segments.put(segment.id, segment);
+        }
+
+        Map.Entry<Long, Segment> last = this.segments.lastEntry();
+        if (last != null && last.getValue().size < this.segmentSize) {
+            Segment reopened = openSegment(last.getKey());
+            reopened.liveBytes.set(last.getValue().liveBytes.get());
+            // Locations recovered from the last segment keep referring to its previous Segment object
+            this.segments.put(last.getKey(), reopened);
+            for (Map.Entry<String, Location> entry : this.index.entrySet()) {
+                Location location = entry.getValue();
+                if (location.segment == last.getValue()) {
+                    entry.setValue(new Location(reopened, location.offset, location.length, location.fileName));
+                }
+            }
+            this.active = reopened;
+        } else {
+            this.active = openSegment((last != null) ? last.getKey() + 1 : 1);
+        }
+        log.info("Recovered {} objects from {} segments in {}", this.index.size(), found.size(), this.directory);
+    }
+
+    /**
+     * Deletes retired segments whose grace period is over, then compacts the sealed segment with the least live
+     * data, if little enough of it is live.
+     *
+     * @return True if a segment was compacted, false otherwise
+     * @throws IOException If unable to read the segment, or append its live records
+     */
+    boolean compact() throws IOException {
+        long now = System.currentTimeMillis();
+        Segment candidate = null;
+        double candidateLiveRatio = this.compactionThreshold;
+        for (Segment segment : this.segments.values()) {
+            if (segment.isRetired()) {
+                if (now - segment.retiredAtMillis >= this.retiredSegmentGraceMillis) {
+                    Files.deleteIfExists(segment.path);
+                    this.segments.remove(segment.id);
+                    log.info("Deleted retired segment {}", segment.id);
+                }
+            } else if (segment != this.active && segment.size > 0) {
+                double liveRatio = (double) segment.liveBytes.get() / segment.size;
+                if (liveRatio < candidateLiveRatio) {
+                    candidate = segment;
+                    candidateLiveRatio = liveRatio;
+                }
+            }
+        }
+        if (candidate == null) {
+            return false;
+        }
+        compact(candidate);
+        return true;
+    }
+
+    /**
+     * Copies the live records of a sealed segment to the active segment, then retires it.
+     * A delete record is copied as well while an older segment is still on disk, since that segment may hold a
+     * put it overrides; without it, replaying the log would bring the deleted object back.
+     */
+    private void compact(Segment segment) throws IOException {
+        log.info("Compacting segment {} ({} of {} bytes live)", segment.id, segment.liveBytes.get(), segment.size);
+        long copied = 0;
+        try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+            long position = 0;
+            Record record;
+            while ((record = readRecord(channel, position, segment.size)) != null) {
+                position = record.end();
+                this.appendLock.lock();
+                try {
+                    if (record.type == PUT) {
+                        Location current = this.index.get(record.fileId);
+                        if (current != null && current.segment == segment && current.offset == record.payloadOffset) {
+                            Location moved = append(PUT, record.fileId, record.fileName,
+                                    Payload.of(segment.path, record.payloadOffset, record.payloadLength));
+                            moved.segment.liveBytes.addAndGet(moved.length);
+                            this.index.put(record.fileId, moved);
+                            release(current);
+                            copied++;
+                        }
+                    } else if (!this.index.containsKey(record.fileId) && hasOlderSegment(segment)) {
+                        append(DELETE, record.fileId, record.fileName, null);
+                    }
+                } finally {
+                    this.appendLock.unlock();
+                }
+            }
+        }
+        sync(this.appendedBytes);
+        segment.retiredAtMillis = System.currentTimeMillis();
+        log.info("Retired segment {}, moved {} objects", segment.id, copied);
+    }
+
+    private boolean hasOlderSegment(Segment segment) {
+        return this.segments.lowerKey(segment.id) != null;
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException e) {
+            log.error("Unable to compact segments in {}: {}", this.directory, e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.compactor.shutdownNow();
+        this.appendLock.lock();
+        try {
+            if (this.active.channel != null) {
+                this.active.channel.force(false);
+                this.active.channel.close();
+                this.active.channel = null;
+            }
+        } finally {
+            this.appendLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.chord.storage;
+
+import org.chord.messaging.Payload;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Where a Peer keeps the content of the files it stores. Objects are keyed by their file id (16-bit digest); the
+ * file name is kept alongside, so that the objects can be listed again after a restart.
+ * Implementations are safe for concurrent use.
+ */
+public interface StorageEngine extends AutoCloseable {
+
+    /**
+     * Stores an object, replacing any object with the same file id. Returns once the object is durable.
+     *
+     * @param fileId   16-bit file digest
+     * @param fileName Name the file was stored under by its client
+     * @param payload  Content of the object
+     * @throws IOException If unable to write the object
+     */
+    void put(String fileId, String fileName, Payload payload) throws IOException;
+
+    /**
+     * Stores an object whose content is in a temporary file, i.e. one received by a chunked transfer. The temporary
+     * file is consumed: it is moved or deleted by the time this returns successfully.
+     *
+     * @param fileId   16-bit file digest
+     * @param fileName Name the file was stored under by its client
+     * @param tempFile Content of the object
+     * @throws IOException If unable to write the object
+     */
+    void put(String fileId, String fileName, Path tempFile) throws IOException;
+
+    /**
+     * @param fileId 16-bit file digest
+     * @return The content of the object, which is not read until the Payload is written; null if there is none
+     * @throws IOException If unable to locate the object
+     */
+    Payload get(String fileId) throws IOException;
+
+    /**
+     * @param fileId 16-bit file digest
+     * @return True if an object was deleted, false if there was none
+     * @throws IOException If unable to delete the object
+     */
+    boolean delete(String fileId) throws IOException;
+
+    /**
+     * @return fileId, fileName of every object stored, i.e. to rebuild the index of a restarted Peer
+     */
+    Map<String, String> list();
+
+    /**
+     * @return The total length of the objects stored, i.e. to compare the load of Peers
+     */
+    long bytesStored();
+
+    @Override
+    void close() throws IOException;
+}
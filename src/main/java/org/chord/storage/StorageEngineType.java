@@ -0,0 +1,39 @@
+package org.chord.storage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Which StorageEngine a Peer stores files with; selected at startup.
+ * - SEGMENT: objects are appended to a log of large segment files, see SegmentStorageEngine.
+ * - FILE: each object is written to its own file, named by its client, see FileStorageEngine.
+ */
+public enum StorageEngineType {
+    SEGMENT, FILE;
+
+    /**
+     * Converts a command-line value to a StorageEngineType, ignoring case.
+     *
+     * @param value i.e. "segment" or "file"
+     * @return The matching StorageEngineType
+     * @throws IllegalArgumentException If value does not name a StorageEngineType
+     */
+    public static StorageEngineType fromString(String value) {
+        return StorageEngineType.valueOf(value.trim().toUpperCase());
+    }
+
+    /**
+     * Opens a StorageEngine of this type.
+     *
+     * @param directory Directory the engine keeps its files in
+     * @return The opened StorageEngine, with any objects it already holds
+     * @throws IOException If unable to open or recover the engine
+     */
+    public StorageEngine open(Path directory) throws IOException {
+        switch (this) {
+            case FILE: return new FileStorageEngine(directory);
+            case SEGMENT: return new SegmentStorageEngine(directory);
+            default: throw new IllegalStateException("Unknown storage engine " + this);
+        }
+    }
+}
@@ -1,21 +1,37 @@
 package org.chord.storedata;
 
 import org.chord.messaging.*;
+import org.chord.networking.ChunkedFileSender;
 import org.chord.networking.Client;
 import org.chord.networking.Node;
 import org.chord.peer.Identifier;
+import org.chord.peer.LookupCache;
+import org.chord.peer.Replicator;
+import org.chord.peer.SuccessorLookup;
 import org.chord.util.Constants;
-import org.chord.util.FileUtil;
 import org.chord.util.HashUtil;
 import org.chord.util.Host;
 import org.chord.util.InteractiveCommandParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.DataInputStream;
+import java.io.File;
 import java.io.IOException;
-import java.net.Socket;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class StoreData extends Node {
     private static final Logger log = LoggerFactory.getLogger(StoreData.class);
@@ -26,12 +42,17 @@ public class StoreData extends Node {
     // Hostname of the StoreData node
     public String hostname;
 
+    // The intervals of the ring the peers own, as found by our lookups. We aren't told of peers joining or leaving,
+    // so an interval is only invalidated once its peer fails a request or rejects a file it doesn't own
+    private final LookupCache lookupCache;
+
     private InteractiveCommandParser commandParser;
 
     public StoreData(String discoveryNodeHostname, int discoveryNodePort) {
         this.discoveryNodeHostname = discoveryNodeHostname;
         this.discoveryNodePort = discoveryNodePort;
         this.hostname = Host.getHostname();
+        this.lookupCache = new LookupCache(Constants.Peer.LOOKUP_CACHE_CAPACITY);
         commandParser = new InteractiveCommandParser(this);
     }
 
@@ -45,58 +66,45 @@ public class StoreData extends Node {
 
     public void addFile(String filePath) {
         log.info("add-file {}", filePath);
-        // read file as bytes
-        byte[] fileBytes;
+        // Calculate 16-bit hash 'k', streaming the file rather than reading it into memory
+        String fileId;
+        Payload payload;
         try {
-            fileBytes = FileUtil.readFileAsBytes(filePath);
+            fileId = HashUtil.hashFile(Paths.get(filePath));
+            payload = Payload.of(Paths.get(filePath));
         } catch (IOException e) {
             log.warn("Error reading file {}", filePath);
             log.error(e.getLocalizedMessage());
             return;
         }
-
-        // Calculate 16-bit hash 'k'
-        String fileId = HashUtil.hashFile(fileBytes);
         log.info("Identifier for file '{}': {}", filePath, fileId);
 
         // Extract fileName of filePath
         String fileName = Paths.get(filePath).getFileName().toString();
 
-        // Retrieve random peer information from discovery node
-        GetRandomPeerRequest grpRequest = new GetRandomPeerRequest(Host.getHostname(), Host.getIpAddress());
         try {
-            Socket clientSocket = Client.sendMessage(this.discoveryNodeHostname, this.discoveryNodePort, grpRequest);
-            // send getRandomPeerRequest, wait for response
-            DataInputStream dataInputStream = new DataInputStream(clientSocket.getInputStream());
-            GetRandomPeerResponse grpResponse = (GetRandomPeerResponse) MessageFactory.getInstance().createMessage(dataInputStream);
-            dataInputStream.close();
-            clientSocket.close(); // done talking to discovery node
-
-            // Lookup(k) to find the most appropriate peer to store the file, wait for response
-            Identifier randomPeerId = grpResponse.getPeerId();
-            FindSuccessorRequest fsRequest = new FindSuccessorRequest(
-                    Host.getHostname(),
-                    Host.getIpAddress(),
-                    fileId
-            );
-
-            log.info("Sending FindSuccessorRequest for file id {} to peer {}: {}",  fileId, grpResponse.getPeerId(), fsRequest);
-            clientSocket = Client.sendMessage(randomPeerId.getHostname(), Constants.Peer.PORT, fsRequest);
-            dataInputStream = new DataInputStream(clientSocket.getInputStream());
-            PeerIdentifierMessage pimResponse = (PeerIdentifierMessage) MessageFactory.getInstance().createMessage(dataInputStream);
-            dataInputStream.close();
-            clientSocket.close();
-
-            Identifier successor = pimResponse.getPeerId();
-
-            log.info("Successor of file id {}: {}", fileId, successor);
-            StoreFileRequest sfRequest = new StoreFileRequest(
-                    Host.getHostname(), Host.getIpAddress(), fileId, fileName, fileBytes);
-            clientSocket = Client.sendMessage(successor.getHostname(), Constants.Peer.PORT, sfRequest);
-            dataInputStream = new DataInputStream(clientSocket.getInputStream());
-            StoreFileResponse sfResponse = (StoreFileResponse) MessageFactory.getInstance().createMessage(dataInputStream);
-            dataInputStream.close();
-            clientSocket.close();
+            // Lookup(k) to find the most appropriate peer to store the file, from the cache if we can
+            Identifier successor = this.lookupCache.get(fileId);
+            boolean cached = successor != null;
+            if (!cached) {
+                successor = lookUpSuccessor(fileId);
+            }
+
+            log.info("Successor of file id {}{}: {}", fileId, cached ? " (cached)" : "", successor);
+            StoreFileResponse sfResponse;
+            try {
+                sfResponse = storeOn(successor, fileId, fileName, payload);
+            } catch (IOException e) {
+                if (!cached) {
+                    throw e;
+                }
+                // The cached interval is stale: a peer joined inside it, or its peer left or failed
+                log.warn("Unable to store file id {} on {}, its cached successor, looking it up again: {}", fileId,
+                        successor.getHostname(), e.getLocalizedMessage());
+                this.lookupCache.invalidate(successor);
+                successor = lookUpSuccessor(fileId);
+                sfResponse = storeOn(successor, fileId, fileName, payload);
+            }
 
             log.info("File '{}' with id {} successfully stored on Peer {}",
                     sfResponse.fileName, sfResponse.fileId, sfResponse.hostname);
@@ -105,4 +113,319 @@ public class StoreData extends Node {
             log.error(e.getLocalizedMessage());
         }
     }
+
+    /**
+     * Sends a file to the peer we found to be its successor, in a single StoreFileRequest or as a chunked transfer.
+     *
+     * @throws IOException If the peer can't be reached, fails to store the file, or doesn't own its id
+     */
+    private StoreFileResponse storeOn(Identifier successor, String fileId, String fileName, Payload payload)
+            throws IOException {
+        if (ChunkedFileSender.isChunked(payload.length())) {
+            return ChunkedFileSender.send(successor.getHostname(), successor.getPort(), fileId, fileName,
+                    payload.getPath());
+        }
+        StoreFileRequest sfRequest = new StoreFileRequest(
+                Host.getHostname(), Host.getIpAddress(), fileId, fileName, payload);
+        Message response = Client.sendTransfer(successor.getHostname(), successor.getPort(), sfRequest,
+                payload.length());
+        if (!(response instanceof StoreFileResponse)) {
+            throw new IOException(String.format("Peer %s refused file '%s' with id %s: %s", successor.getHostname(),
+                    fileName, fileId, response));
+        }
+        return (StoreFileResponse) response;
+    }
+
+    /**
+     * Looks up the successor of an id through the ring, starting at a random peer, and caches the interval it owns.
+     *
+     * @throws IOException If unable to reach the discovery node, or the lookup fails
+     */
+    private Identifier lookUpSuccessor(String fileId) throws IOException {
+        Identifier randomPeerId = getRandomPeer();
+        log.info("Looking up successor of file id {}, starting at peer {}", fileId, randomPeerId);
+        return SuccessorLookup.findSuccessor(randomPeerId, fileId, this.lookupCache);
+    }
+
+    /**
+     * Retrieves a stored file: looks up the successor of its id, as for add-file, then asks one of the peers holding
+     * a copy of the file for it. The copy is read from the primary peer or one of its replicas, picked at random so
+     * that reads of hot files are spread over all of them, falling back on the others if it can't serve the file.
+     * If none of them has it and the successor came from the cache, it is looked up again once, in case the cached
+     * interval is stale.
+     *
+     * @param fileId    16-bit file digest, as logged when the file was stored
+     * @param outputDir Directory to write the file to, under the name it was stored with
+     */
+    public void getFile(String fileId, String outputDir) {
+        log.info("get-file {}", fileId);
+        if (!HashUtil.isIdValid(fileId)) {
+            System.out.printf("Invalid file id '%s'\n", fileId);
+            return;
+        }
+
+        try {
+            Identifier successor = this.lookupCache.get(fileId);
+            boolean cached = successor != null;
+            if (!cached) {
+                successor = lookUpSuccessor(fileId);
+            }
+
+            log.info("Successor of file id {}{}: {}", fileId, cached ? " (cached)" : "", successor);
+            if (retrieveFromHolders(successor, fileId, outputDir)) {
+                return;
+            }
+            if (cached) {
+                log.info("File id {} not found from its cached successor {}, looking it up again", fileId,
+                        successor.getHostname());
+                this.lookupCache.invalidate(successor);
+                successor = lookUpSuccessor(fileId);
+                if (retrieveFromHolders(successor, fileId, outputDir)) {
+                    return;
+                }
+            }
+            System.out.printf("No file with id %s is stored on Peer %s or its replicas\n", fileId,
+                    successor.getHostname());
+
+        } catch (IOException e) {
+            log.error(e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Reads a file from one of the peers holding a copy of it, starting at a random one, into outputDir.
+     *
+     * @param successor Primary peer of the file
+     * @return True if the file was retrieved, false if none of the holders could serve it
+     * @throws IOException If unable to write the file to outputDir
+     */
+    private boolean retrieveFromHolders(Identifier successor, String fileId, String outputDir) throws IOException {
+        List<Identifier> holders = getHolders(successor);
+        int first = ThreadLocalRandom.current().nextInt(holders.size());
+        for (int i = 0; i < holders.size(); i++) {
+            Identifier holder = holders.get((first + i) % holders.size());
+            RetrieveFileResponse rfResponse = retrieveFrom(holder, fileId, 0);
+            if (rfResponse == null) {
+                continue;
+            }
+
+            Path outputPath = Paths.get(outputDir, rfResponse.fileName);
+            if (!writeFrom(holder, rfResponse, outputPath)) {
+                Files.deleteIfExists(outputPath);
+                continue;
+            }
+            System.out.printf("Retrieved '%s' with id %s (%d bytes) from Peer %s to %s\n", rfResponse.fileName,
+                    fileId, rfResponse.fileLength, holder.getHostname(), outputPath);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param successor Primary peer of a file
+     * @return The peers holding a copy of the file: the primary, followed by its replicas
+     */
+    private List<Identifier> getHolders(Identifier successor) {
+        List<Identifier> holders = new ArrayList<>();
+        holders.add(successor);
+        try {
+            GetSuccessorListRequest gslRequest = new GetSuccessorListRequest(Host.getHostname(), Host.getIpAddress());
+            Message response = Client.sendRpc(successor.getHostname(), successor.getPort(), gslRequest);
+            if (response instanceof SuccessorListResponse) {
+                holders.addAll(Replicator.replicasOf(((SuccessorListResponse) response).successors));
+            }
+        } catch (IOException e) {
+            log.warn("Unable to get successor list of {}, reading from it alone: {}", successor.getHostname(),
+                    e.getLocalizedMessage());
+        }
+        return holders;
+    }
+
+    /**
+     * Writes a file to outputPath chunk by chunk: the first chunk, as already read from the holder, then the
+     * following ones, read from the same holder in turn.
+     *
+     * @param first The first chunk of the file
+     * @return False if the holder failed to serve a chunk
+     * @throws IOException If unable to write the file
+     */
+    private boolean writeFrom(Identifier holder, RetrieveFileResponse first, Path outputPath) throws IOException {
+        try (OutputStream outputStream = Files.newOutputStream(outputPath)) {
+            RetrieveFileResponse chunk = first;
+            long written = 0;
+            while (true) {
+                chunk.payload.writeTo(outputStream);
+                written += chunk.payload.length();
+                if (written >= first.fileLength) {
+                    return true;
+                }
+                chunk = retrieveFrom(holder, first.fileId, written);
+                if (chunk == null || chunk.payload.length() == 0) {
+                    log.warn("Peer {} stopped serving file with id {} after {} of {} bytes", holder.getHostname(),
+                            first.fileId, written, first.fileLength);
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param offset Position in the file to read from
+     * @return The file from offset on, at most a chunk of it, as read from the holder, or null if the holder doesn't
+     *         have it or couldn't be reached
+     */
+    private RetrieveFileResponse retrieveFrom(Identifier holder, String fileId, long offset) {
+        try {
+            RetrieveFileRequest rfRequest = new RetrieveFileRequest(Host.getHostname(), Host.getIpAddress(), fileId,
+                    offset);
+            Message response = Client.sendTransfer(holder.getHostname(), holder.getPort(), rfRequest,
+                    Constants.FileTransfer.CHUNK_SIZE);
+            if (!(response instanceof RetrieveFileResponse)) {
+                log.warn("Peer {} was unable to read file with id {}", holder.getHostname(), fileId);
+                return null;
+            }
+            RetrieveFileResponse rfResponse = (RetrieveFileResponse) response;
+            if (!rfResponse.found) {
+                log.info("No file with id {} is stored on Peer {}", fileId, holder.getHostname());
+                return null;
+            }
+            return rfResponse;
+        } catch (IOException e) {
+            log.warn("Unable to retrieve file with id {} from {}: {}", fileId, holder.getHostname(),
+                    e.getLocalizedMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores every regular file in a directory, in a few round trips instead of three per file:
+     * 1. One GetRandomPeerRequest to the discovery node, for an entry peer.
+     * 2. One FindSuccessorsRequest to the entry peer, for the successors of the file ids that aren't in our
+     *    LookupCache. Both are skipped if every id is. A file refused by its cached successor counts as a failure,
+     *    and the stale interval is dropped.
+     * 3. The StoreFileRequests, pipelined over pooled connections with up to
+     *    Constants.StoreData.MAX_IN_FLIGHT_STORES awaiting their response at once.
+     *    Files too large for a single frame are sent one at a time as chunked transfers instead.
+     *
+     * @param dirPath Path of the directory to store
+     */
+    public void addDirectory(String dirPath) {
+        log.info("add-dir {}", dirPath);
+        File[] files = new File(dirPath).listFiles(File::isFile);
+        if (files == null) {
+            log.warn("Unable to list files of directory {}", dirPath);
+            return;
+        }
+
+        // Hash every file first, so they can all be looked up at once
+        Map<File, String> fileIds = new LinkedHashMap<>();
+        for (File file : files) {
+            try {
+                fileIds.put(file, HashUtil.hashFile(file.toPath()));
+            } catch (IOException e) {
+                log.warn("Error reading file {}: {}", file, e.getLocalizedMessage());
+            }
+        }
+        if (fileIds.isEmpty()) {
+            log.info("No files to store in {}", dirPath);
+            return;
+        }
+
+        Map<String, Identifier> successors = new HashMap<>();
+        Set<String> uncached = new HashSet<>();
+        for (String fileId : fileIds.values()) {
+            Identifier cachedSuccessor = this.lookupCache.get(fileId);
+            if (cachedSuccessor != null) {
+                successors.put(fileId, cachedSuccessor);
+            } else {
+                uncached.add(fileId);
+            }
+        }
+        if (!uncached.isEmpty()) {
+            try {
+                Identifier randomPeerId = getRandomPeer();
+                log.info("Looking up successors of {} file ids ({} cached), starting at peer {}", uncached.size(),
+                        successors.size(), randomPeerId);
+                successors.putAll(SuccessorLookup.findSuccessors(randomPeerId, uncached));
+            } catch (IOException e) {
+                log.error("Unable to look up successors of the files in {}: {}", dirPath, e.getLocalizedMessage());
+                return;
+            }
+        }
+
+        Semaphore inFlight = new Semaphore(Constants.StoreData.MAX_IN_FLIGHT_STORES);
+        List<CompletableFuture<Message>> stores = new ArrayList<>();
+        AtomicInteger failures = new AtomicInteger();
+        for (Map.Entry<File, String> entry : fileIds.entrySet()) {
+            File file = entry.getKey();
+            String fileId = entry.getValue();
+            Identifier successor = successors.get(fileId);
+            if (successor == null) {
+                log.error("No successor found for file '{}' with id {}", file, fileId);
+                failures.incrementAndGet();
+                continue;
+            }
+
+            try {
+                Payload payload = Payload.of(file.toPath());
+                if (ChunkedFileSender.isChunked(payload.length())) {
+                    StoreFileResponse sfResponse = ChunkedFileSender.send(successor.getHostname(),
+                            successor.getPort(), fileId, file.getName(), file.toPath());
+                    log.info("File '{}' with id {} successfully stored on Peer {}", file.getName(), fileId,
+                            sfResponse.getHostname());
+                    continue;
+                }
+                StoreFileRequest sfRequest = new StoreFileRequest(Host.getHostname(), Host.getIpAddress(), fileId,
+                        file.getName(), payload);
+                inFlight.acquire();
+                CompletableFuture<Message> store = Client.sendTransferAsync(successor.getHostname(),
+                        successor.getPort(), sfRequest, payload.length());
+                store.whenComplete((response, error) -> {
+                    inFlight.release();
+                    if (error != null || !(response instanceof StoreFileResponse)) {
+                        log.error("Unable to store file '{}' on {}: {}", file, successor.getHostname(),
+                                (error != null) ? Client.asIOException(error).getMessage() : response);
+                        failures.incrementAndGet();
+                        if (!uncached.contains(fileId)) {
+                            this.lookupCache.invalidate(successor);
+                        }
+                    } else {
+                        log.info("File '{}' with id {} successfully stored on Peer {}", file.getName(), fileId,
+                                response.getHostname());
+                    }
+                });
+                stores.add(store);
+            } catch (IOException e) {
+                log.error("Unable to store file '{}': {}", file, e.getLocalizedMessage());
+                failures.incrementAndGet();
+                if (!uncached.contains(fileId)) {
+                    this.lookupCache.invalidate(successor);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Interrupted while storing the files in {}", dirPath);
+                return;
+            }
+        }
+
+        CompletableFuture.allOf(stores.toArray(new CompletableFuture<?>[0])).exceptionally(error -> null).join();
+        log.info("Stored {} of {} files from {}", fileIds.size() - failures.get(), fileIds.size(), dirPath);
+    }
+
+    public void printLookupCacheStats() {
+        System.out.printf("Lookup cache on %s: %s\n", Host.getHostname(), lookupCache.stats());
+    }
+
+    /**
+     * Asks the discovery node for a random peer, to use as an entry point to the ring.
+     *
+     * @return The Identifier of a random peer
+     * @throws IOException If unable to reach the discovery node
+     */
+    private Identifier getRandomPeer() throws IOException {
+        GetRandomPeerRequest grpRequest = new GetRandomPeerRequest(Host.getHostname(), Host.getIpAddress());
+        GetRandomPeerResponse grpResponse = (GetRandomPeerResponse)
+                Client.sendRequest(this.discoveryNodeHostname, this.discoveryNodePort, grpRequest);
+        return grpResponse.getPeerId();
+    }
 }
@@ -2,20 +2,127 @@ package org.chord.util;
 
 public class Constants {
 
+    // Width of ids in bits unless configured otherwise; every node of a ring must use the same, see RingKey
     public static final int ID_SIZE_BITS = 16;
-    public static final int MAX_ID = (int) (Math.pow(2, ID_SIZE_BITS) - 1); // i.e. 2^16 - 1 = 65535
-    public static final int FINGER_TABLE_SIZE = ID_SIZE_BITS;
+    // Widest ids: a whole SHA-1 digest
+    public static final int MAX_ID_SIZE_BITS = 160;
+
+    public static class Networking {
+        // Pooled connections with no requests in flight are closed after being idle this long
+        public static final long IDLE_TIMEOUT_MILLIS = 60_000;
+        public static final long EVICTION_INTERVAL_MILLIS = 15_000;
+
+        // Pending connections the OS queues for a ServerSocket before refusing new ones
+        public static final int ACCEPT_BACKLOG = 128;
+
+        // ServerMode.NIO: selector threads, and the bounded pool requests are executed on
+        public static final int IO_THREADS = 2;
+        public static final int WORKER_THREADS = 32;
+        public static final int WORKER_QUEUE_SIZE = 1024;
+
+        // Direct buffer each Connection reuses for the length, request id and message bytes of a Frame
+        public static final int FRAME_HEADER_BUFFER_SIZE = 16 * 1024;
+
+        // Longest frame length read from the wire: a chunk of file content, and the message it comes with; frames
+        // claiming more are rejected before anything is allocated for them
+        public static final int MAX_FRAME_LENGTH = FileTransfer.CHUNK_SIZE + 64 * 1024;
+
+        // FailureDetector: adaptive connect and request timeouts, before the first sample and their bounds after
+        public static final long RPC_INITIAL_TIMEOUT_MILLIS = 1_000;
+        public static final long RPC_MIN_TIMEOUT_MILLIS = 100;
+        public static final long RPC_MAX_TIMEOUT_MILLIS = 10_000;
+        // A destination is suspected after this many consecutive failures, until this long after the last one
+        public static final int SUSPECT_AFTER_FAILURES = 2;
+        public static final long SUSPICION_TIMEOUT_MILLIS = 30_000;
+    }
 
     public static class DiscoveryNode {
         public static final int PORT = 9000;
+
+        // Shards of the registry of peers, each locked on its own by registrations and exits; see PeerRegistry
+        public static final int REGISTRY_SHARDS = 16;
     }
 
     public static class Peer {
         public static final int PORT = 9001;
         public static final String DATA_DIR = "/tmp";
+
+        // Attempts per hop beyond the first, each with the FailureDetector's timeout; a lookup may take up to twice
+        // the id width in hops, and stabilization gives up on a whole lookup after LOOKUP_TIMEOUT_MILLIS
+        public static final int LOOKUP_HOP_RETRIES = 2;
+        public static final long LOOKUP_TIMEOUT_MILLIS = 5_000;
+        // Most ids in a single FindSuccessorsRequest, which keeps the frame of its response small
+        public static final int LOOKUP_BATCH_SIZE = 1024;
+
+        // Peers kept per finger table entry: its successor, and alternatives in the same interval of the ring, any of
+        // which a lookup may be routed through; the one with the lowest round-trip time is
+        public static final int FINGER_CANDIDATES = 3;
+
+        // Most ring intervals a LookupCache holds: one per peer answers every lookup in a ring of that many peers
+        public static final int LOOKUP_CACHE_CAPACITY = 1024;
+
+        // Files moved to a new predecessor: transfers awaiting acknowledgement at once, and files deleted per batch
+        public static final int MAX_IN_FLIGHT_MIGRATIONS = 16;
+        public static final int MIGRATION_BATCH_SIZE = 64;
+        // A migration is given up on, keeping every file not yet acknowledged, once no transfer is for this long
+        public static final long MIGRATION_ACK_TIMEOUT_MILLIS = 30_000;
+
+        // Every file is stored on this many peers: its successor, and the next peers on the ring
+        public static final int REPLICATION_FACTOR = 3;
+        // Peers kept in a successor list; at least REPLICATION_FACTOR - 1 are walked regardless
+        public static final int SUCCESSOR_LIST_SIZE = 4;
+        // A store fails unless a majority of the copies are stored within this long
+        public static final long REPLICATION_TIMEOUT_MILLIS = 10_000;
+
+        // Stabilization: time between rounds; peers have the FailureDetector's timeout to answer
+        public static final long STABILIZE_INTERVAL_MILLIS = 1_000;
+
+        // Rebalancing: time between rounds of load gossip, 0 to never rebalance. Load heard of is forgotten after
+        // LOAD_STATS_TTL_ROUNDS rounds, and a host skips REBALANCE_COOLDOWN_ROUNDS rounds after moving a virtual node
+        public static final long REBALANCE_INTERVAL_MILLIS = 10_000;
+        public static final int LOAD_STATS_TTL_ROUNDS = 3;
+        public static final int REBALANCE_COOLDOWN_ROUNDS = 3;
+        // A peer is overloaded above this multiple of the mean load of the ring, and underloaded below this one
+        public static final double OVERLOAD_FACTOR = 1.5;
+        public static final double UNDERLOAD_FACTOR = 0.75;
+        // Request rates are left out of the load while the mean request rate of the ring is lower, per second
+        public static final double MIN_LOAD_REQUEST_RATE = 1.0;
     }
 
     public static class StoreData {
         public static final int PORT = 9002;
+
+        // add-dir: StoreFileRequests that may await their response at once
+        public static final int MAX_IN_FLIGHT_STORES = 32;
+    }
+
+    public static class FileTransfer {
+        // Files larger than a chunk are sent as a chunked transfer rather than in a single frame
+        public static final int CHUNK_SIZE = 1024 * 1024;
+
+        // Chunks awaiting their acknowledgement at once; bounds the memory of a transfer on both sides
+        public static final int MAX_IN_FLIGHT_CHUNKS = 8;
+
+        // Receivers discard transfers that have not made progress for this long
+        public static final long IDLE_TIMEOUT_MILLIS = 60_000;
+
+        // A request for file content is answered within the FailureDetector's timeout, plus this long per chunk of it
+        public static final long CHUNK_TIMEOUT_MILLIS = 10_000;
+    }
+
+    public static class Storage {
+        // StorageEngineType.SEGMENT: the active segment is sealed once it grows past this size
+        public static final long SEGMENT_SIZE = 64L * 1024 * 1024;
+
+        // Sealed segments are compacted once less than this fraction of them is live
+        public static final double COMPACTION_THRESHOLD = 0.5;
+        public static final long COMPACTION_INTERVAL_MILLIS = 30_000;
+
+        // Compacted segments are kept this long, so that objects being read from them stay readable
+        public static final long RETIRED_SEGMENT_GRACE_MILLIS = 60_000;
+
+        // Peers cache the content of hot objects up to this many bytes in total; larger objects are never cached
+        public static final long CACHE_CAPACITY_BYTES = 64L * 1024 * 1024;
+        public static final long CACHE_MAX_OBJECT_BYTES = FileTransfer.CHUNK_SIZE;
     }
 }
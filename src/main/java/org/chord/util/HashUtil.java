@@ -3,6 +3,10 @@ package org.chord.util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -10,17 +14,17 @@ public class HashUtil {
     private static final Logger log = LoggerFactory.getLogger(HashUtil.class);
 
     /**
-     * Determines if a specified ID is less than or equal
-     * to the maximum ID allowed in the system.
+     * Determines if a specified ID is hex and fits in the
+     * configured width of the ring, see RingKey.
      * @param id
      * @return
      */
     public static boolean isIdValid(String id) {
-        return Constants.MAX_ID >= hexToInt(id);
+        return RingKey.isValid(id);
     }
 
     /**
-     * Calculates the 16-bit digest for a given array of bytes
+     * Calculates the digest for a given array of bytes, truncated to the width of the ring
      * Returns the hex representation of the digest
      * @param fileBytes
      * @return
@@ -35,9 +39,30 @@ public class HashUtil {
         } catch (NoSuchAlgorithmException e) {
             log.error(e.getLocalizedMessage());
         }
+        return RingKey.fromDigest(hash).toHex();
+    }
 
-        // TODO: find a better way to calculate a 16-bit hash
-        return bytesToHex(hash).substring(0, 4);
+    /**
+     * Calculates the digest for the content of a file, reading it through a small buffer rather than whole
+     * Returns the hex representation of the digest
+     * @param path File to digest
+     * @return The same digest hashFile() returns for the file's bytes
+     * @throws IOException If unable to read the file
+     */
+    public static String hashFile(Path path) throws IOException {
+        byte[] hash = null;
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                md.update(buffer, 0, read);
+            }
+            hash = md.digest();
+        } catch (NoSuchAlgorithmException e) {
+            log.error(e.getLocalizedMessage());
+        }
+        return RingKey.fromDigest(hash).toHex();
     }
 
     /**
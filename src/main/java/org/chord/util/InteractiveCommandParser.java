@@ -3,10 +3,12 @@ package org.chord.util;
 import org.chord.discovery.DiscoveryNode;
 import org.chord.networking.Node;
 import org.chord.peer.Peer;
+import org.chord.peer.VirtualNodes;
 import org.chord.storedata.StoreData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.Scanner;
 
 public class InteractiveCommandParser extends Thread {
@@ -28,7 +30,7 @@ public class InteractiveCommandParser extends Thread {
         acceptingCommands = true;
         if (node instanceof DiscoveryNode) {
             mode = Mode.Discovery;
-        } else if (node instanceof Peer) {
+        } else if (node instanceof Peer || node instanceof VirtualNodes) {
             mode = Mode.Peer;
         } else if (node instanceof StoreData) {
             mode = Mode.StoreData;
@@ -63,7 +65,15 @@ public class InteractiveCommandParser extends Thread {
         StoreData storeData = (StoreData) node;
         while (acceptingCommands) {
             nextCommand = scanner.nextLine().trim();
-            if (nextCommand.contains("add-file")) {
+            if (nextCommand.startsWith("add-dir")) {
+                // example: add-dir test-data
+                String[] args = nextCommand.split("\\s+");
+                if (args.length == 2) {
+                    storeData.addDirectory(args[1]);
+                } else {
+                    System.out.println("Invalid parameters. Enter 'add-dir <dir-path>'");
+                }
+            } else if (nextCommand.contains("add-file")) {
                 // example: add-file test.txt
                 String[] args = nextCommand.split("\\s+");
                 if (args.length == 2) {
@@ -71,8 +81,16 @@ public class InteractiveCommandParser extends Thread {
                 } else {
                     System.out.println("Invalid parameters. Enter 'add-file <file-path>'");
                 }
-            } else if (nextCommand.equals("get-file")) {
-                // TODO: implement file look up
+            } else if (nextCommand.startsWith("get-file")) {
+                // example: get-file 1714 downloads
+                String[] args = nextCommand.split("\\s+");
+                if (args.length == 2 || args.length == 3) {
+                    storeData.getFile(args[1], (args.length == 3) ? args[2] : ".");
+                } else {
+                    System.out.println("Invalid parameters. Enter 'get-file <file-id> [output-dir]'");
+                }
+            } else if (nextCommand.equals("get-lookup-cache")) {
+                storeData.printLookupCacheStats();
             } else if (nextCommand.equals("get-host")) {
                 storeData.printHost();
             } else if (nextCommand.equals("")) {
@@ -91,29 +109,48 @@ public class InteractiveCommandParser extends Thread {
         String help = "Peer Usage:\n" +
                 "\tget-host                : Print hostname\n" +
                 "\tadd-file <filename>     : Add new file\n" +
+                "\tadd-dir <dir-path>      : Add every file in a directory\n" +
+                "\tget-file <file-id> [output-dir] : Retrieve a file into output-dir (default: .)\n" +
+                "\tget-lookup-cache        : Print hit rate and hops saved of the cache of lookup results\n" +
+                "\tget-load                : Print the load of every peer heard of, relative to the mean\n" +
                 "\t\n";
         System.out.println(help);
     }
 
     private void parsePeerCommands() {
         String nextCommand;
-        Peer peer = (Peer) node;
+        // Commands apply to every virtual node the JVM runs, in turn
+        List<Peer> peers = (node instanceof VirtualNodes) ? ((VirtualNodes) node).getPeers() : List.of((Peer) node);
         while (acceptingCommands) {
             nextCommand = scanner.nextLine().trim();
             if (nextCommand.equals("get-ft")) {
-                peer.printFingerTable();
+                peers.forEach(Peer::printFingerTable);
             } else if (nextCommand.equals("get-files")) {
-                peer.printFiles();
+                peers.forEach(Peer::printFiles);
+            } else if (nextCommand.equals("get-cache")) {
+                peers.forEach(Peer::printCacheStats);
+            } else if (nextCommand.equals("get-failures")) {
+                peers.get(0).printFailureDetectorStats(); // shared by the virtual nodes
+            } else if (nextCommand.equals("get-lookup-cache")) {
+                peers.forEach(Peer::printLookupCacheStats);
             } else if (nextCommand.equals("get-host")) {
-                peer.printHost();
+                peers.get(0).printHost();
             } else if (nextCommand.equals("get-id")) {
-                peer.printId();
+                peers.forEach(Peer::printId);
             } else if (nextCommand.equals("get-successor") || nextCommand.equals("get-s")) {
-                peer.printSuccessor();
+                peers.forEach(Peer::printSuccessor);
+            } else if (nextCommand.equals("get-successor-list")) {
+                peers.forEach(Peer::printSuccessorList);
             } else if (nextCommand.equals("get-predecessor") || nextCommand.equals("get-p")) {
-                peer.printPredecessor();
+                peers.forEach(Peer::printPredecessor);
+            } else if (nextCommand.equals("get-load")) {
+                peers.get(0).printLoad(); // the load of the ring as heard of by gossip
             } else if (nextCommand.equals("exit")) {
-                peer.leaveNetwork();
+                if (node instanceof VirtualNodes) {
+                    ((VirtualNodes) node).leaveNetwork();
+                } else {
+                    peers.forEach(Peer::leaveNetwork);
+                }
             } else if (nextCommand.equals("")) {
                 continue;
             } else if (nextCommand.equals("help")) {
@@ -129,12 +166,17 @@ public class InteractiveCommandParser extends Thread {
     private void printPeerUsage() {
         String help = "Peer Usage:\n" +
                 "\tget-host                : Print hostname\n" +
-                "\tget-id                  : Print this Peer's ID\n" +
+                "\tget-id                  : Print this Peer's ID, one per virtual node\n" +
                 "\tget-ft                  : Print Finger Table\n" +
                 "\tget-predecessor | get-p : Print Predecessor\n" +
                 "\tget-successor | get-s   : Print Successor\n" +
+                "\tget-successor-list      : Print the next peers on the ring, which hold the replicas of our files\n" +
                 "\tget-files               : Print files stored on this Peer\n" +
-                "\texit                    : Leave network\n" +
+                "\tget-cache               : Print hit rate and evictions of the cache of hot files\n" +
+                "\tget-failures            : Print round-trip times, timeouts and suspected peers\n" +
+                "\tget-lookup-cache        : Print hit rate and hops saved of the cache of lookup results\n" +
+                "\tget-load                : Print the load of every peer heard of, relative to the mean\n" +
+                "\texit                    : Leave network, handing off our files to our successor\n" +
                 "\t\n";
         System.out.println(help);
     }
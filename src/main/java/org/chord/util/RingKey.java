@@ -0,0 +1,241 @@
+package org.chord.util;
+
+/**
+ * Position in the ring of identifiers: an unsigned integer of bits() bits, up to 160, the width of a SHA-1 digest.
+ * Kept as three 64-bit words rather than as the hex string it is sent as, so that comparisons and the modular
+ * arithmetic of routing never parse or allocate strings. Arithmetic wraps around modulo 2^bits().
+ *
+ * The width is the same for every node of a ring, and is set once at startup with setBits(), before any key is
+ * created; keys created under another width are not to be mixed.
+ */
+public final class RingKey implements Comparable<RingKey> {
+
+    private static volatile int bits = Constants.ID_SIZE_BITS;
+
+    public static final RingKey ZERO = new RingKey(0, 0, 0);
+
+    private final long high; // bits 128 to 159
+    private final long middle; // bits 64 to 127
+    private final long low; // bits 0 to 63
+
+    private RingKey(long high, long middle, long low) {
+        this.high = high;
+        this.middle = middle;
+        this.low = low;
+    }
+
+    /**
+     * Sets the width of the ids of the ring.
+     * @param idBits A multiple of 4, so that ids are a whole number of hex digits, up to MAX_ID_SIZE_BITS
+     */
+    public static void setBits(int idBits) {
+        if (idBits < 4 || idBits > Constants.MAX_ID_SIZE_BITS || idBits % 4 != 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Id width must be a multiple of 4 bits, from 4 to %d, not %d", Constants.MAX_ID_SIZE_BITS, idBits));
+        }
+        bits = idBits;
+    }
+
+    /**
+     * @return The width of the ids of the ring, and so the size of a finger table
+     */
+    public static int bits() {
+        return bits;
+    }
+
+    /**
+     * @return The number of hex digits of an id
+     */
+    public static int hexDigits() {
+        return bits / 4;
+    }
+
+    /**
+     * @param value An unsigned value, truncated to bits()
+     * @return The key of the value
+     */
+    public static RingKey of(long value) {
+        return masked(0, 0, value);
+    }
+
+    /**
+     * @param hex An id of up to hexDigits() hex digits; shorter ids are padded with leading zeros
+     * @return The key of the id
+     * @throws IllegalArgumentException If the id isn't hex, or is too wide for the ring
+     */
+    public static RingKey fromHex(String hex) {
+        int length = hex.length();
+        if (length == 0 || length > hexDigits()) {
+            throw new IllegalArgumentException(String.format("Id '%s' isn't 1 to %d hex digits", hex, hexDigits()));
+        }
+        for (int i = 0; i < length; i++) {
+            if (Character.digit(hex.charAt(i), 16) < 0) {
+                throw new IllegalArgumentException(String.format("Id '%s' isn't hex", hex));
+            }
+        }
+        long low = parseWord(hex, length - 16, length);
+        long middle = parseWord(hex, length - 32, length - 16);
+        long high = parseWord(hex, length - 48, length - 32);
+        return new RingKey(high, middle, low);
+    }
+
+    private static long parseWord(String hex, int from, int to) {
+        from = Math.max(from, 0);
+        return (to <= from) ? 0 : Long.parseUnsignedLong(hex, from, to, 16);
+    }
+
+    /**
+     * @param hex A candidate id
+     * @return True if it is a hex id that fits in the ring
+     */
+    public static boolean isValid(String hex) {
+        try {
+            fromHex(hex);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Truncates a digest to the width of the ring, keeping its most significant bits, so that its first hexDigits()
+     * hex digits are the id.
+     * @param digest A digest at least bits() wide, i.e. SHA-1's
+     * @return The key of the digest
+     */
+    public static RingKey fromDigest(byte[] digest) {
+        long high = 0, middle = 0, low = 0;
+        for (int nibble = 0; nibble < hexDigits(); nibble++) {
+            int value = (digest[nibble / 2] >> ((nibble % 2 == 0) ? 4 : 0)) & 0xf;
+            high = (high << 4) | (middle >>> 60);
+            middle = (middle << 4) | (low >>> 60);
+            low = (low << 4) | value;
+        }
+        return new RingKey(high, middle, low);
+    }
+
+    /**
+     * @param exponent From 0 to bits() - 1
+     * @return 2^exponent
+     */
+    public static RingKey powerOfTwo(int exponent) {
+        if (exponent < 64) {
+            return new RingKey(0, 0, 1L << exponent);
+        } else if (exponent < 128) {
+            return new RingKey(0, 1L << (exponent - 64), 0);
+        }
+        return new RingKey(1L << (exponent - 128), 0, 0);
+    }
+
+    /**
+     * @return (this + other) mod 2^bits()
+     */
+    public RingKey plus(RingKey other) {
+        long low = this.low + other.low;
+        long carry = Long.compareUnsigned(low, this.low) < 0 ? 1 : 0;
+        long middle = this.middle + other.middle;
+        long nextCarry = Long.compareUnsigned(middle, this.middle) < 0 ? 1 : 0;
+        middle += carry;
+        nextCarry |= (carry == 1 && middle == 0) ? 1 : 0;
+        long high = this.high + other.high + nextCarry;
+        return masked(high, middle, low);
+    }
+
+    /**
+     * @return (this - other) mod 2^bits()
+     */
+    public RingKey minus(RingKey other) {
+        long low = this.low - other.low;
+        long borrow = Long.compareUnsigned(this.low, other.low) < 0 ? 1 : 0;
+        long middle = this.middle - other.middle;
+        long nextBorrow = Long.compareUnsigned(this.middle, other.middle) < 0 ? 1 : 0;
+        nextBorrow |= (borrow == 1 && middle == 0) ? 1 : 0;
+        middle -= borrow;
+        long high = this.high - other.high - nextBorrow;
+        return masked(high, middle, low);
+    }
+
+    /**
+     * @param other Another position
+     * @return Clockwise distance from this position to the other
+     */
+    public RingKey distanceTo(RingKey other) {
+        return other.minus(this);
+    }
+
+    /**
+     * Checks if, going clockwise, this position is strictly between start and end. If start == end, every position
+     * but start is.
+     * @param start Beginning of the range, exclusive
+     * @param end   End of the range, exclusive
+     * @return True if this position is in (start, end)
+     */
+    public boolean isBetween(RingKey start, RingKey end) {
+        if (start.compareTo(end) < 0) {
+            return start.compareTo(this) < 0 && this.compareTo(end) < 0;
+        } else {
+            return start.compareTo(this) < 0 || this.compareTo(end) < 0;
+        }
+    }
+
+    /**
+     * @return The id of this position, zero-padded to hexDigits()
+     */
+    public String toHex() {
+        StringBuilder sb = new StringBuilder(48);
+        appendWord(sb, this.high);
+        appendWord(sb, this.middle);
+        appendWord(sb, this.low);
+        return sb.substring(sb.length() - hexDigits());
+    }
+
+    private static void appendWord(StringBuilder sb, long word) {
+        String hex = Long.toHexString(word);
+        for (int i = hex.length(); i < 16; i++) {
+            sb.append('0');
+        }
+        sb.append(hex);
+    }
+
+    private static RingKey masked(long high, long middle, long low) {
+        int width = bits;
+        return new RingKey(high & wordMask(width - 128), middle & wordMask(width - 64), low & wordMask(width));
+    }
+
+    /**
+     * @return A mask of the lowest wordBits bits of a word, all of them past 64, none below 0
+     */
+    private static long wordMask(int wordBits) {
+        if (wordBits <= 0) {
+            return 0;
+        }
+        return (wordBits >= 64) ? -1L : (1L << wordBits) - 1;
+    }
+
+    @Override
+    public int compareTo(RingKey other) {
+        int compared = Long.compareUnsigned(this.high, other.high);
+        if (compared == 0) {
+            compared = Long.compareUnsigned(this.middle, other.middle);
+        }
+        return (compared == 0) ? Long.compareUnsigned(this.low, other.low) : compared;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RingKey)) return false;
+        RingKey other = (RingKey) o;
+        return this.low == other.low && this.middle == other.middle && this.high == other.high;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(this.low) * 961 + Long.hashCode(this.middle) * 31 + Long.hashCode(this.high);
+    }
+
+    @Override
+    public String toString() {
+        return toHex();
+    }
+}
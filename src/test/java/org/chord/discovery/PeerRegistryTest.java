@@ -0,0 +1,158 @@
+package org.chord.discovery;
+
+import org.chord.peer.Identifier;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PeerRegistryTest {
+
+    private final Identifier shark = new Identifier("shark", "1000");
+    private final Identifier tuna = new Identifier("tuna", "4000");
+    private final Identifier bass = new Identifier("bass", "9000");
+
+    @Test
+    public void testRefusesIdCollisions() {
+        PeerRegistry registry = new PeerRegistry(4);
+        assertTrue(registry.put(shark));
+        assertTrue(registry.put(tuna));
+
+        // Another peer at shark's ring position collides, whatever its address
+        Identifier impostor = new Identifier("carp", "1000", 9005);
+        assertTrue(registry.contains(impostor));
+        assertFalse(registry.put(impostor));
+        assertFalse(registry.contains(bass));
+
+        // ...and doesn't unregister shark on leaving
+        assertFalse(registry.remove(impostor));
+        assertEquals(Set.of(shark, tuna), new HashSet<>(registry.list()));
+    }
+
+    @Test
+    public void testRemoveKeepsPeersSampled() {
+        PeerRegistry registry = new PeerRegistry(1); // a single shard, so that removals swap
+        assertNull(registry.getRandomPeer());
+        assertTrue(registry.isEmpty());
+
+        registry.put(shark);
+        registry.put(tuna);
+        registry.put(bass);
+        assertTrue(registry.remove(shark));
+        assertFalse(registry.remove(shark));
+
+        assertEquals(2, registry.size());
+        assertEquals(Set.of(tuna, bass), new HashSet<>(registry.list()));
+        assertTrue(registry.contains(bass));
+        Set<Identifier> sampled = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            sampled.add(registry.getRandomPeer());
+        }
+        assertEquals(Set.of(tuna, bass), sampled);
+
+        // bass was swapped into shark's slot, and is still removed from it
+        assertTrue(registry.remove(bass));
+        assertEquals(List.of(tuna), registry.list());
+        assertTrue(registry.remove(tuna));
+        assertNull(registry.getRandomPeer());
+    }
+
+    @Test
+    public void testSamplesUniformly() {
+        PeerRegistry registry = new PeerRegistry(16);
+        List<Identifier> peers = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Identifier peerId = new Identifier("host" + i, Integer.toHexString(0x1000 + 0x300 * i));
+            peers.add(peerId);
+            registry.put(peerId);
+        }
+
+        Map<Identifier, Integer> counts = new HashMap<>();
+        int samples = 40_000;
+        for (int i = 0; i < samples; i++) {
+            counts.merge(registry.getRandomPeer(), 1, Integer::sum);
+        }
+        assertEquals(peers.size(), counts.size());
+        for (Identifier peerId : peers) {
+            int count = counts.get(peerId);
+            assertTrue(count > 700 && count < 1300, peerId + " sampled " + count + " times of 1000 expected");
+        }
+    }
+
+    /**
+     * Registers and unregisters peers from many threads at once, as a storm of peers joining and leaving would,
+     * while others sample: every registration must be counted once, and every sample be a registered peer.
+     */
+    @Test
+    public void testRegistrationStorm() throws Exception {
+        PeerRegistry registry = new PeerRegistry(4);
+        int threads = 8;
+        int peersPerThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 2);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < peersPerThread; i++) {
+                        Identifier peerId = peer(thread, i);
+                        assertTrue(registry.put(peerId));
+                        if (i % 2 == 1) {
+                            assertTrue(registry.remove(peer(thread, i - 1)));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            List<Future<?>> readers = new ArrayList<>();
+            for (int r = 0; r < 2; r++) {
+                readers.add(executor.submit(() -> {
+                    start.await();
+                    while (!writers.stream().allMatch(Future::isDone)) {
+                        Identifier peerId = registry.getRandomPeer();
+                        assertTrue(peerId == null || peerId.getHostname().startsWith("storm"));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : writers) {
+                future.get();
+            }
+            for (Future<?> future : readers) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<Identifier> registered = registry.list();
+        assertEquals(threads * peersPerThread / 2, registry.size());
+        assertEquals(registry.size(), registered.size());
+        assertEquals(registered.size(), new HashSet<>(registered).size());
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < peersPerThread; i++) {
+                assertEquals(i % 2 == 1, registry.contains(peer(t, i)));
+            }
+        }
+    }
+
+    private static Identifier peer(int thread, int i) {
+        return new Identifier("storm" + thread, Integer.toHexString(0x1000 * (thread + 1) + i));
+    }
+}
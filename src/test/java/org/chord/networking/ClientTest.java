@@ -0,0 +1,138 @@
+package org.chord.networking;
+
+import org.chord.messaging.GetSuccessorRequest;
+import org.chord.messaging.Message;
+import org.chord.messaging.PeerIdentifierMessage;
+import org.chord.peer.Identifier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ClientTest {
+
+    private static final long SLOW_RESPONSE_MILLIS = 500;
+
+    private EchoServer server;
+
+    @BeforeEach
+    public void startServer() {
+        server = new EchoServer();
+        server.launchAsThread();
+    }
+
+    @AfterEach
+    public void stopServer() throws IOException {
+        server.getServerSocket().close();
+        ConnectionPool.getInstance().closeAll();
+    }
+
+    @Test
+    public void testSendRequestAsyncCorrelatesOutOfOrderResponses() throws Exception {
+        CompletableFuture<Message> slow = Client.sendRequestAsync("localhost", server.getPort(),
+                new GetSuccessorRequest("slow", "127.0.0.1"));
+        CompletableFuture<Message> fast = Client.sendRequestAsync("localhost", server.getPort(),
+                new GetSuccessorRequest("fast", "127.0.0.1"));
+
+        assertEquals("fast", ((PeerIdentifierMessage) fast.get(5, TimeUnit.SECONDS)).getPeerId().getHostname());
+        assertFalse(slow.isDone());
+        assertEquals("slow", ((PeerIdentifierMessage) slow.get(5, TimeUnit.SECONDS)).getPeerId().getHostname());
+        assertEquals(1, ConnectionPool.getInstance().size());
+    }
+
+    @Test
+    public void testSendRequestAsyncTimesOut() {
+        CompletableFuture<Message> slow = Client.sendRequestAsync("localhost", server.getPort(),
+                new GetSuccessorRequest("slow", "127.0.0.1"), 100);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> slow.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof TimeoutException);
+        assertThrows(SocketTimeoutException.class, () -> Client.await(slow));
+    }
+
+    @Test
+    public void testSendRequestAsyncFailsWhenUnreachable() throws IOException {
+        // A port nothing listens on: closing the server's socket while its accept thread is blocked may not refuse
+        // connections at once
+        int port;
+        try (ServerSocket unused = new ServerSocket(0)) {
+            port = unused.getLocalPort();
+        }
+
+        CompletableFuture<Message> response = Client.sendRequestAsync("localhost", port,
+                new GetSuccessorRequest("fast", "127.0.0.1"));
+        assertTrue(response.isCompletedExceptionally());
+        assertThrows(IOException.class, () -> Client.await(response));
+        assertEquals(0, ConnectionPool.getInstance().size()); // the failed dial isn't pooled
+    }
+
+    @Test
+    public void testConcurrentCallersShareOneConnection() throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Connection>> connections = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                connections.add(callers.submit(
+                        () -> ConnectionPool.getInstance().getConnection("localhost", server.getPort())));
+            }
+            Connection first = connections.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<Connection> connection : connections) {
+                assertSame(first, connection.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, ConnectionPool.getInstance().size());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    /**
+     * Answers each request with the hostname of its sender, after a delay if the sender is "slow".
+     */
+    private static class EchoServer extends Server {
+
+        EchoServer() {
+            this.bindToPort(0);
+        }
+
+        @Override
+        public Processor createProcessor(Socket clientSocket) {
+            return new Processor() {
+                {
+                    this.socket = clientSocket;
+                }
+
+                @Override
+                public void process(Message message) {
+                    try {
+                        if (message.getHostname().equals("slow")) {
+                            Thread.sleep(SLOW_RESPONSE_MILLIS);
+                        }
+                        sendResponse(message, new PeerIdentifierMessage("echo", "127.0.0.1",
+                                new Identifier(message.getHostname(), "0001")));
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+        }
+    }
+}
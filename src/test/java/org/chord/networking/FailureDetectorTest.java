@@ -0,0 +1,79 @@
+package org.chord.networking;
+
+import org.chord.util.Constants;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FailureDetectorTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private final FailureDetector detector = new FailureDetector(clock::get);
+
+    @Test
+    public void testTimeoutAdaptsToRoundTripTimes() {
+        assertEquals(Constants.Networking.RPC_INITIAL_TIMEOUT_MILLIS, detector.timeoutMillis("shark", 9001));
+
+        // A steady 200 ms: srtt 200, rttvar decays towards 0, so the timeout approaches srtt
+        for (int i = 0; i < 50; i++) {
+            detector.recordSuccess("shark", 9001, 200);
+        }
+        long steady = detector.timeoutMillis("shark", 9001);
+        assertTrue(steady >= 200 && steady < 250, "timeout of a steady peer: " + steady);
+
+        // Jittery round-trip times widen it
+        for (int i = 0; i < 10; i++) {
+            detector.recordSuccess("shark", 9001, (i % 2 == 0) ? 50 : 600);
+        }
+        assertTrue(detector.timeoutMillis("shark", 9001) > steady + 200);
+
+        // A very fast peer still gets the minimum timeout
+        for (int i = 0; i < 50; i++) {
+            detector.recordSuccess("tuna", 9001, 1);
+        }
+        assertEquals(Constants.Networking.RPC_MIN_TIMEOUT_MILLIS, detector.timeoutMillis("tuna", 9001));
+    }
+
+    @Test
+    public void testTimeoutBacksOffWhileFailing() {
+        for (int i = 0; i < 50; i++) {
+            detector.recordSuccess("shark", 9001, 200);
+        }
+        long before = detector.timeoutMillis("shark", 9001);
+
+        detector.recordFailure("shark", 9001);
+        assertEquals(2 * before, detector.timeoutMillis("shark", 9001));
+        for (int i = 0; i < 20; i++) {
+            detector.recordFailure("shark", 9001);
+        }
+        assertEquals(Constants.Networking.RPC_MAX_TIMEOUT_MILLIS, detector.timeoutMillis("shark", 9001));
+
+        detector.recordSuccess("shark", 9001, 200);
+        assertTrue(detector.timeoutMillis("shark", 9001) < 2 * before);
+    }
+
+    @Test
+    public void testSuspicionAfterConsecutiveFailures() {
+        for (int i = 1; i < Constants.Networking.SUSPECT_AFTER_FAILURES; i++) {
+            detector.recordFailure("shark", 9001);
+        }
+        assertFalse(detector.isSuspected("shark", 9001));
+        detector.recordFailure("shark", 9001);
+        assertTrue(detector.isSuspected("shark", 9001));
+        assertFalse(detector.isSuspected("shark", 9002), "suspicion is per destination");
+
+        // Expires, so the peer is tried again...
+        clock.addAndGet(Constants.Networking.SUSPICION_TIMEOUT_MILLIS);
+        assertFalse(detector.isSuspected("shark", 9001));
+
+        // ...and is suspected again at once if it still fails, until it answers
+        detector.recordFailure("shark", 9001);
+        assertTrue(detector.isSuspected("shark", 9001));
+        detector.recordSuccess("shark", 9001, 10);
+        assertFalse(detector.isSuspected("shark", 9001));
+    }
+}
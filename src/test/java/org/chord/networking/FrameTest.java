@@ -0,0 +1,157 @@
+package org.chord.networking;
+
+import org.chord.messaging.Message;
+import org.chord.messaging.Payload;
+import org.chord.messaging.PeerIdentifierMessage;
+import org.chord.messaging.StoreFileRequest;
+import org.chord.peer.Identifier;
+import org.chord.util.Constants;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FrameTest {
+
+    @Test
+    public void testStreamAndChannelFramesAreIdentical() throws IOException {
+        StoreFileRequest request = new StoreFileRequest("host", "127.0.0.1", "1714", "img1.jpg", randomBytes(100_000));
+
+        byte[] streamed = writeToStream(7, request);
+        byte[] gathered = writeToChannel(7, request, 64); // message bytes don't fit in the header buffer
+        byte[] encoded = concatenate(Frame.encode(7, request));
+
+        assertArrayEquals(streamed, gathered);
+        assertArrayEquals(streamed, encoded);
+        assertEquals(request, Frame.read(new DataInputStream(new ByteArrayInputStream(gathered))));
+    }
+
+    @Test
+    public void testFilePayloadIsSentFromDisk() throws IOException {
+        byte[] content = randomBytes(300_000);
+        Path file = Files.createTempFile("frame-test", ".bin");
+        try {
+            Files.write(file, content);
+            StoreFileRequest request = new StoreFileRequest("host", "127.0.0.1", "1714", "img1.jpg", Payload.of(file));
+
+            Message received = Frame.read(new DataInputStream(new ByteArrayInputStream(
+                    writeToChannel(3, request, 16 * 1024))));
+
+            assertEquals(3, received.getRequestId());
+            assertArrayEquals(content, ((StoreFileRequest) received).payload.toByteArray());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testFrameWithoutPayload() throws IOException {
+        PeerIdentifierMessage message = new PeerIdentifierMessage("host", "127.0.0.1", new Identifier("peer", "a3f9"));
+
+        byte[] gathered = writeToChannel(1, message, 16 * 1024);
+
+        assertArrayEquals(writeToStream(1, message), gathered);
+        assertEquals(message, Frame.read(new DataInputStream(new ByteArrayInputStream(gathered))));
+    }
+
+    @Test
+    public void testRejectsOversizedFrames() throws IOException {
+        ByteArrayOutputStream byteOutStream = new ByteArrayOutputStream();
+        DataOutputStream dataOutStream = new DataOutputStream(byteOutStream);
+        dataOutStream.writeInt(Constants.Networking.MAX_FRAME_LENGTH + 1);
+        dataOutStream.writeInt(5);
+        byte[] header = byteOutStream.toByteArray();
+
+        assertThrows(IOException.class, () -> Frame.read(new DataInputStream(new ByteArrayInputStream(header))));
+        assertThrows(IOException.class, () -> Frame.peekFrameSize(ByteBuffer.wrap(header)));
+        assertEquals(Frame.LENGTH_SIZE + Constants.Networking.MAX_FRAME_LENGTH,
+                Frame.peekFrameSize(ByteBuffer.allocate(Frame.LENGTH_SIZE)
+                        .putInt(0, Constants.Networking.MAX_FRAME_LENGTH)));
+    }
+
+    private static byte[] writeToStream(int requestId, Message message) throws IOException {
+        ByteArrayOutputStream byteOutStream = new ByteArrayOutputStream();
+        DataOutputStream dataOutStream = new DataOutputStream(byteOutStream);
+        Frame.write(dataOutStream, requestId, message);
+        dataOutStream.flush();
+        return byteOutStream.toByteArray();
+    }
+
+    private static byte[] writeToChannel(int requestId, Message message, int headerBufferSize) throws IOException {
+        ByteArrayOutputStream byteOutStream = new ByteArrayOutputStream();
+        Frame.write(new GatheringChannel(Channels.newChannel(byteOutStream)),
+                ByteBuffer.allocateDirect(headerBufferSize), requestId, message);
+        return byteOutStream.toByteArray();
+    }
+
+    private static byte[] concatenate(ByteBuffer[] buffers) {
+        ByteArrayOutputStream byteOutStream = new ByteArrayOutputStream();
+        for (ByteBuffer buffer : buffers) {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            byteOutStream.write(bytes, 0, bytes.length);
+        }
+        return byteOutStream.toByteArray();
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Adapts a plain channel for Frame.write(GatheringByteChannel, ...), writing the buffers one after another.
+     */
+    private static class GatheringChannel implements GatheringByteChannel {
+
+        private final WritableByteChannel channel;
+
+        GatheringChannel(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            long written = 0;
+            for (int i = offset; i < offset + length; i++) {
+                written += this.channel.write(srcs[i]);
+            }
+            return written;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) throws IOException {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return this.channel.write(src);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return this.channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.channel.close();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.chord.networking;
+
+import org.chord.messaging.GetSuccessorRequest;
+import org.chord.messaging.Message;
+import org.chord.messaging.PeerIdentifierMessage;
+import org.chord.peer.Identifier;
+import org.chord.util.Constants;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataOutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NioServerTest {
+
+    private static final int REQUESTS = 200;
+    private static final long HANDLER_DELAY_MILLIS = 5;
+
+    /**
+     * Overloads a worker pool of two threads and two queue slots: rejected requests must wait for a free worker,
+     * rather than run on a reactor thread, and all be answered.
+     */
+    @Test
+    public void testOverloadNeverRunsRequestsOnReactorThreads() throws Exception {
+        Set<String> handlerThreads = ConcurrentHashMap.newKeySet();
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(0));
+        NioServer server = new NioServer(serverChannel, channel -> new Processor() {
+            @Override
+            public void process(Message message) {
+                handlerThreads.add(Thread.currentThread().getName());
+                try {
+                    Thread.sleep(HANDLER_DELAY_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                sendResponse(message, new PeerIdentifierMessage("echo", "127.0.0.1",
+                        new Identifier(message.getHostname(), "0001")));
+            }
+        }, 2, 2);
+        Thread acceptor = new Thread(server::acceptConnections, "Acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        int port = ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        Connection first = new Connection("localhost", port);
+        Connection second = new Connection("localhost", port);
+        try {
+            CompletableFuture<?>[] responses = new CompletableFuture<?>[REQUESTS];
+            for (int i = 0; i < REQUESTS; i++) {
+                Connection connection = (i % 2 == 0) ? first : second;
+                responses[i] = connection.request(new GetSuccessorRequest("client" + i, "127.0.0.1"));
+            }
+            CompletableFuture.allOf(responses).get(30, TimeUnit.SECONDS);
+            for (int i = 0; i < REQUESTS; i++) {
+                Message response = (Message) responses[i].get();
+                assertEquals("client" + i, ((PeerIdentifierMessage) response).getPeerId().getHostname());
+            }
+        } finally {
+            first.close();
+            second.close();
+            serverChannel.close();
+        }
+        assertTrue(handlerThreads.stream().allMatch(name -> name.startsWith("Worker Thread")),
+                "Requests ran on " + handlerThreads);
+    }
+
+    /**
+     * A frame claiming more than MAX_FRAME_LENGTH bytes must close the connection, rather than have a buffer of
+     * that size allocated for it.
+     */
+    @Test
+    public void testOversizedFrameClosesConnection() throws Exception {
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(0));
+        NioServer server = new NioServer(serverChannel, channel -> new Processor() {
+            @Override
+            public void process(Message message) {
+            }
+        }, 2, 2);
+        Thread acceptor = new Thread(server::acceptConnections, "Acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        int port = ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setSoTimeout(10_000);
+            DataOutputStream dataOutStream = new DataOutputStream(socket.getOutputStream());
+            dataOutStream.writeInt(Constants.Networking.MAX_FRAME_LENGTH + 1);
+            dataOutStream.writeInt(1);
+            dataOutStream.flush();
+            assertEquals(-1, socket.getInputStream().read());
+        } finally {
+            serverChannel.close();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.chord.networking;
+
+import org.chord.messaging.GetSuccessorRequest;
+import org.chord.messaging.Message;
+import org.chord.messaging.PeerIdentifierMessage;
+import org.chord.peer.Identifier;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares ServerModes under a burst of concurrent requests that each block on a nested forward, like a recursive
+ * FindSuccessorRequest: a front server forwards every request to a back server, which answers after a delay.
+ * Prints the peak platform thread count and the p50/p99 latencies of each mode.
+ */
+public class ServerLoadTest {
+
+    private static final int REQUESTS = 1000;
+    private static final long BACK_SERVER_DELAY_MILLIS = 10;
+
+    @Test
+    public void testServerModesUnderConcurrentForwards() throws Exception {
+        System.out.printf("%-10s %10s %14s %10s %10s%n", "mode", "requests", "peak threads", "p50 ms", "p99 ms");
+        for (ServerMode mode : ServerMode.values()) {
+            long[] result = runLoad(mode);
+            System.out.printf("%-10s %10d %14d %10.1f %10.1f%n", mode, REQUESTS, result[0],
+                    result[1] / 1e6, result[2] / 1e6);
+        }
+        System.out.println("virtual threads supported: " + VirtualThreads.isSupported());
+    }
+
+    /**
+     * @return { peak platform threads, p50 latency nanos, p99 latency nanos }
+     */
+    private long[] runLoad(ServerMode mode) throws Exception {
+        ServerMode previousMode = Server.getDefaultMode();
+        Server.setDefaultMode(mode);
+        Server back = new TestServer(null, 0);
+        Server front = new TestServer("localhost", 0);
+        ((TestServer) front).forwardPort = back.getPort();
+        Server.setDefaultMode(previousMode);
+
+        back.launchAsThread();
+        front.launchAsThread();
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        try {
+            Connection connection = new Connection("localhost", front.getPort());
+            long[] latencies = new long[REQUESTS];
+            CompletableFuture<?>[] responses = new CompletableFuture<?>[REQUESTS];
+            for (int i = 0; i < REQUESTS; i++) {
+                int index = i;
+                long start = System.nanoTime();
+                responses[i] = connection.request(new GetSuccessorRequest("client", "127.0.0.1"))
+                        .thenAccept(response -> latencies[index] = System.nanoTime() - start);
+            }
+            CompletableFuture.allOf(responses).get(1, TimeUnit.MINUTES);
+            connection.close();
+
+            long peakThreads = threads.getPeakThreadCount();
+            Arrays.sort(latencies);
+            assertTrue(latencies[0] > 0, "Every request should have been answered");
+            assertEquals(REQUESTS, Arrays.stream(responses).filter(r -> !r.isCompletedExceptionally()).count());
+            return new long[]{peakThreads, latencies[REQUESTS / 2], latencies[(int) (REQUESTS * 0.99) - 1]};
+        } finally {
+            front.getServerSocket().close();
+            back.getServerSocket().close();
+            ConnectionPool.getInstance().closeAll();
+        }
+    }
+
+    private static class TestServer extends Server {
+
+        private final String forwardHost;
+        private int forwardPort;
+
+        TestServer(String forwardHost, int port) {
+            this.forwardHost = forwardHost;
+            this.bindToPort(port);
+        }
+
+        @Override
+        public Processor createProcessor(Socket clientSocket) {
+            return new Processor() {
+                {
+                    this.socket = clientSocket;
+                }
+
+                @Override
+                public void process(Message message) {
+                    try {
+                        Message response;
+                        if (forwardHost != null) {
+                            GetSuccessorRequest forward = new GetSuccessorRequest("front", "127.0.0.1");
+                            response = Client.sendRequest(forwardHost, forwardPort, forward);
+                            response.marshal(); // received message is not automatically marshaled
+                        } else {
+                            Thread.sleep(BACK_SERVER_DELAY_MILLIS);
+                            response = new PeerIdentifierMessage("back", "127.0.0.1", new Identifier("back", "0001"));
+                        }
+                        sendResponse(message, response);
+                    } catch (IOException | InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.chord.peer;
+
+import org.chord.messaging.FileChunk;
+import org.chord.messaging.FileTransferCommit;
+import org.chord.messaging.FileTransferHeader;
+import org.chord.messaging.Payload;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ChunkedFileReceiverTest {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private Path directory;
+    private ChunkedFileReceiver receiver;
+
+    @BeforeEach
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("chunked-file-receiver-test");
+        receiver = new ChunkedFileReceiver(directory);
+    }
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testChunksReceivedOutOfOrder() throws IOException {
+        byte[] content = randomBytes(3500);
+        receiver.begin(header(1L, content.length));
+        for (int offset : new int[]{3000, 0, 2000, 1000}) {
+            receiver.write(chunk(1L, content, offset));
+        }
+
+        ChunkedFileReceiver.ReceivedFile file = receiver.commit(commit(1L, content));
+
+        assertEquals("img1.jpg", file.fileName);
+        assertArrayEquals(content, Files.readAllBytes(file.tempFile));
+        assertEquals(0, receiver.pendingTransfers());
+    }
+
+    @Test
+    public void testChecksumMismatchDiscardsTransfer() throws IOException {
+        byte[] content = randomBytes(1500);
+        receiver.begin(header(2L, content.length));
+        receiver.write(chunk(2L, content, 0));
+        receiver.write(chunk(2L, content, 1000));
+
+        byte[] corrupted = content.clone();
+        corrupted[0]++;
+        assertThrows(IOException.class, () -> receiver.commit(commit(2L, corrupted)));
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    public void testIncompleteTransferIsRejected() throws IOException {
+        byte[] content = randomBytes(1500);
+        receiver.begin(header(3L, content.length));
+        receiver.write(chunk(3L, content, 0));
+
+        assertThrows(IOException.class, () -> receiver.commit(commit(3L, content)));
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    public void testChunkOutsideFileIsRejected() throws IOException {
+        byte[] content = randomBytes(1500);
+        receiver.begin(header(4L, content.length));
+
+        assertThrows(IOException.class, () -> receiver.write(chunk(4L, randomBytes(3000), 1000)));
+        assertThrows(IOException.class, () -> receiver.write(chunk(4L, content, 0)));
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    public void testIdleTransfersAreDiscarded() throws IOException, InterruptedException {
+        ChunkedFileReceiver impatient = new ChunkedFileReceiver(directory, 10);
+        impatient.begin(header(5L, 100));
+        Thread.sleep(50);
+        impatient.begin(header(6L, 100));
+
+        assertEquals(1, impatient.pendingTransfers());
+        assertEquals(1, countFiles());
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.count();
+        }
+    }
+
+    private static FileTransferHeader header(long transferId, long length) {
+        return new FileTransferHeader("host", "127.0.0.1", transferId, "1714", "img1.jpg", length, CHUNK_SIZE);
+    }
+
+    private static FileChunk chunk(long transferId, byte[] content, int offset) {
+        byte[] chunk = Arrays.copyOfRange(content, offset, Math.min(offset + CHUNK_SIZE, content.length));
+        return new FileChunk("host", "127.0.0.1", transferId, offset, Payload.of(chunk));
+    }
+
+    private static FileTransferCommit commit(long transferId, byte[] content) {
+        CRC32C crc = new CRC32C();
+        crc.update(content);
+        return new FileTransferCommit("host", "127.0.0.1", transferId, crc.getValue());
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
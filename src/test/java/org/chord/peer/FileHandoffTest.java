@@ -0,0 +1,79 @@
+package org.chord.peer;
+
+import org.chord.messaging.Payload;
+import org.chord.storage.FileStorageEngine;
+import org.chord.storage.StorageEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FileHandoffTest {
+
+    private Path directory;
+
+    @BeforeEach
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("file-handoff-test");
+    }
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testArchiveRoundTrip() throws IOException {
+        StorageEngine storage = new FileStorageEngine(Files.createDirectories(directory.resolve("storage")));
+        storage.put("1714", "img1.jpg", Payload.of("first".getBytes(StandardCharsets.UTF_8)));
+        storage.put("a3f9", "empty.txt", Payload.of(new byte[0]));
+        storage.put("ffff", "last.txt", Payload.of("last".getBytes(StandardCharsets.UTF_8)));
+        Map<String, String> files = new LinkedHashMap<>(storage.list());
+        files.put("0001", "deleted.txt"); // listed, but no longer stored
+
+        Path archive = directory.resolve("handoff");
+        assertEquals(3, FileHandoff.write(storage, files, archive));
+
+        Map<String, String> names = new LinkedHashMap<>();
+        Map<String, byte[]> contents = new LinkedHashMap<>();
+        assertEquals(3, FileHandoff.read(archive, (fileId, fileName, content) -> {
+            names.put(fileId, fileName);
+            contents.put(fileId, content.toByteArray());
+        }));
+
+        assertEquals(storage.list(), names);
+        assertArrayEquals("first".getBytes(StandardCharsets.UTF_8), contents.get("1714"));
+        assertArrayEquals(new byte[0], contents.get("a3f9"));
+        assertArrayEquals("last".getBytes(StandardCharsets.UTF_8), contents.get("ffff"));
+    }
+
+    @Test
+    public void testTruncatedArchiveIsRejected() throws IOException {
+        StorageEngine storage = new FileStorageEngine(Files.createDirectories(directory.resolve("storage")));
+        storage.put("1714", "img1.jpg", Payload.of(new byte[100]));
+        Path archive = directory.resolve("handoff");
+        FileHandoff.write(storage, storage.list(), archive);
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        assertThrows(EOFException.class, () -> FileHandoff.read(archive, (fileId, fileName, content) -> { }));
+    }
+}
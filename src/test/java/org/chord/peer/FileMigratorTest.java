@@ -0,0 +1,130 @@
+package org.chord.peer;
+
+import org.chord.util.RingKey;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileMigratorTest {
+
+    @Test
+    public void testSelectFilesToMove() {
+        RingKeyIndex<String> storedFiles = index("1000", "4000", "8000", "8001", "a000");
+
+        // We are 0xa000, our new predecessor 0x8000: we keep (8000, a000]
+        Map<String, String> selected = FileMigrator.selectFilesToMove(storedFiles,
+                RingKey.of(0x8000), RingKey.of(0xa000));
+
+        assertEquals(Set.of("1000", "4000", "8000"), selected.keySet());
+    }
+
+    @Test
+    public void testSelectFilesToMoveWrapsAround() {
+        RingKeyIndex<String> storedFiles = index("0005", "1000", "f000", "f800", "fff0");
+
+        // We are 0x1000, our new predecessor 0xf000: we keep (f000, 1000], which wraps past 0
+        Map<String, String> selected = FileMigrator.selectFilesToMove(storedFiles,
+                RingKey.of(0xf000), RingKey.of(0x1000));
+
+        assertEquals(Set.of("f000"), selected.keySet());
+    }
+
+    @Test
+    public void testOnlyAcknowledgedFilesAreRemovedInBatches() {
+        Map<String, String> files = files("0001", "0002", "0003", "0004", "0005", "0006", "0007");
+        List<Collection<String>> batches = new ArrayList<>();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        FileMigrator migrator = new FileMigrator((target, fileId, fileName) -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            return CompletableFuture.runAsync(() -> {
+                sleep(10);
+                inFlight.decrementAndGet();
+                if (fileId.equals("0004")) {
+                    throw new RuntimeException(new IOException("rejected"));
+                }
+            });
+        }, batch -> {
+            synchronized (batches) {
+                batches.add(new ArrayList<>(batch));
+            }
+        }, 2, 3, 10_000);
+
+        migrator.migrate(files, new Identifier("peer", "8000")).join();
+
+        Set<String> removed = new HashSet<>();
+        for (Collection<String> batch : batches) {
+            assertTrue(batch.size() <= 3 + 2);
+            removed.addAll(batch);
+        }
+        assertEquals(Set.of("0001", "0002", "0003", "0005", "0006", "0007"), removed);
+        assertTrue(maxInFlight.get() <= 2);
+    }
+
+    /**
+     * A target that never acknowledges a transfer, as a hung peer would, must fail the migration once the window
+     * of transfers in flight is stuck, keeping the files it hasn't acknowledged, rather than block later migrations.
+     */
+    @Test
+    public void testStuckTargetFailsTheWindow() {
+        Map<String, String> files = files("0001", "0002", "0003", "0004", "0005", "0006", "0007");
+        Set<String> sent = ConcurrentHashMap.newKeySet();
+        Set<String> removed = ConcurrentHashMap.newKeySet();
+        FileMigrator migrator = new FileMigrator((target, fileId, fileName) -> {
+            sent.add(fileId);
+            return target.getHostname().equals("stuck") && !fileId.equals("0001")
+                    ? new CompletableFuture<>()
+                    : CompletableFuture.completedFuture(null);
+        }, removed::addAll, 2, 3, 200);
+
+        migrator.migrate(files, new Identifier("stuck", "8000")).orTimeout(5, TimeUnit.SECONDS).join();
+        assertEquals(Set.of("0001", "0002", "0003"), sent);
+        assertEquals(Set.of("0001"), removed);
+
+        // The next migration isn't held up by the stuck one
+        migrator.migrate(files("0004", "0005"), new Identifier("peer", "9000")).orTimeout(5, TimeUnit.SECONDS).join();
+        assertEquals(Set.of("0001", "0004", "0005"), removed);
+    }
+
+    @Test
+    public void testNothingMovesWhenAlone() {
+        RingKey us = RingKey.of(0x1000);
+        assertTrue(FileMigrator.selectFilesToMove(index("1000", "f000"), us, us).isEmpty());
+    }
+
+    private static RingKeyIndex<String> index(String... fileIds) {
+        RingKeyIndex<String> index = new RingKeyIndex<>();
+        files(fileIds).forEach(index::put);
+        return index;
+    }
+
+    private static Map<String, String> files(String... fileIds) {
+        Map<String, String> files = new LinkedHashMap<>();
+        for (String fileId : fileIds) {
+            files.put(fileId, "img" + fileId + ".jpg");
+        }
+        return files;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
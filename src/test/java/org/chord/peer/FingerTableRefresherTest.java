@@ -0,0 +1,84 @@
+package org.chord.peer;
+
+import org.chord.util.HashUtil;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FingerTableRefresherTest {
+
+    @Test
+    public void testRefreshFindsTrueSuccessors() {
+        TreeSet<Integer> ring = ringOf(0x1000, 0x4000, 0x8000, 0xc000);
+        AtomicInteger lookups = new AtomicInteger();
+        FingerTable refreshed = refresh(ring, 0x1000, 0x4000, lookups);
+
+        for (int ftIndex = 0; ftIndex < refreshed.size(); ftIndex++) {
+            assertEquals(trueSuccessor(ring, valueOf(refreshed.ringPositionOfIndex(ftIndex).toHex())),
+                    valueOf(refreshed.getPeerIds().get(ftIndex).getId()));
+        }
+        // Indices 0-13 fall to our successor; 0x5000 and 0x9000 have different successors
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void testRefreshCollapsesPositionsWithTheSameSuccessor() {
+        TreeSet<Integer> ring = ringOf(0x1000, 0x4000, 0xf000);
+        AtomicInteger lookups = new AtomicInteger();
+        FingerTable refreshed = refresh(ring, 0x1000, 0x4000, lookups);
+
+        assertEquals(0xf000, valueOf(refreshed.getPeerIds().get(14).getId()));
+        assertEquals(0xf000, valueOf(refreshed.getPeerIds().get(15).getId()));
+        // successor(0x5000) = 0xf000 also answers 0x9000
+        assertEquals(1, lookups.get());
+    }
+
+    @Test
+    public void testRefreshKeepsEntriesWhoseLookupFailed() {
+        Identifier us = peer(0x1000);
+        FingerTable snapshot = new FingerTable(16, us);
+        snapshot.updateWithSuccessor(peer(0x4000));
+        FingerTableRefresher refresher = new FingerTableRefresher((entry, id) ->
+                CompletableFuture.failedFuture(new IOException("unreachable")));
+
+        FingerTable refreshed = refresher.refresh(snapshot, peer(0x4000)).join();
+
+        assertEquals(snapshot, refreshed);
+    }
+
+    private static FingerTable refresh(TreeSet<Integer> ring, int us, int successor, AtomicInteger lookups) {
+        FingerTable snapshot = new FingerTable(16, peer(us));
+        snapshot.updateWithSuccessor(peer(successor));
+        FingerTableRefresher refresher = new FingerTableRefresher((entry, id) -> {
+            lookups.incrementAndGet();
+            return CompletableFuture.supplyAsync(() -> peer(trueSuccessor(ring, valueOf(id))));
+        });
+        return refresher.refresh(snapshot, peer(successor)).join();
+    }
+
+    private static TreeSet<Integer> ringOf(int... peers) {
+        TreeSet<Integer> ring = new TreeSet<>();
+        for (int p : peers) {
+            ring.add(p);
+        }
+        return ring;
+    }
+
+    private static int trueSuccessor(TreeSet<Integer> ring, int k) {
+        Integer successor = ring.ceiling(k);
+        return (successor != null) ? successor : ring.first();
+    }
+
+    private static int valueOf(String id) {
+        return HashUtil.hexToInt(id);
+    }
+
+    private static Identifier peer(int value) {
+        return new Identifier("peer" + value, HashUtil.intToHex(value));
+    }
+}
@@ -1,9 +1,12 @@
 package org.chord.peer;
 
+import org.chord.util.RingKey;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -31,8 +34,8 @@ public class FingerTableTest {
 
         for (int i = 0; i < expectedValues.length; i++) {
             int expected = expectedValues[i];
-            int actual = ft.hopsAwayToDistance(i+1);
-            assertEquals(expected, actual);
+            RingKey actual = ft.hopsAwayToDistance(i+1);
+            assertEquals(RingKey.of(expected), actual);
         }
     }
 
@@ -49,8 +52,8 @@ public class FingerTableTest {
 
         for (int i = 0; i < expectedValues.length; i++) {
             int expected = expectedValues[i];
-            int actual = ft.ringPositionOfIndex(i);
-            assertEquals(expected, actual);
+            RingKey actual = ft.ringPositionOfIndex(i);
+            assertEquals(RingKey.of(expected), actual);
         }
     }
 
@@ -68,6 +71,91 @@ public class FingerTableTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    public void testFingerTableCopyIsIndependent() {
+        Identifier id = new Identifier("shark", "aaaa");
+        FingerTable ft = new FingerTable(16, id);
+        FingerTable copy = ft.copy();
+        copy.updateWithSuccessor(new Identifier("tuna", "b000"));
+
+        assertEquals(id, ft.getPeerIds().get(0));
+        assertEquals(new Identifier("tuna", "b000"), copy.getPeerIds().get(0));
+        assertEquals(ft.ringPositionOfIndex(15), copy.ringPositionOfIndex(15));
+    }
+
+    @Test
+    public void testFingerTableKeyLookupsMatchHexLookups() {
+        FingerTable ft = new FingerTable(16, new Identifier("shark", "1000"));
+        ft.updateWithSuccessor(new Identifier("tuna", "4000"));
+        ft.updateWithSuccessor(new Identifier("bass", "9000"));
+
+        for (String id : new String[]{"1000", "2000", "4000", "5000", "9000", "f000", "0001"}) {
+            RingKey k = RingKey.fromHex(id);
+            assertEquals(ft.knowsFinalSuccessorOf(id), ft.knowsFinalSuccessorOf(k));
+            assertEquals(ft.bestPredecessorOf(id), ft.bestPredecessorOf(k));
+            if (ft.knowsFinalSuccessorOf(k)) {
+                assertEquals(ft.successor(id), ft.successor(k));
+            }
+        }
+        assertEquals(new Identifier("tuna", "4000"), ft.successor("2000"));
+        assertEquals(new Identifier("tuna", "4000"), ft.bestPredecessorOf("5000"));
+    }
+
+    @Test
+    public void testBestPredecessorSkipsAvoidedFingers() {
+        FingerTable ft = new FingerTable(16, new Identifier("shark", "1000"));
+        ft.updateWithSuccessor(new Identifier("tuna", "4000"));
+        ft.updateWithSuccessor(new Identifier("bass", "9000"));
+        RingKey k = RingKey.fromHex("f000");
+
+        assertEquals(new Identifier("bass", "9000"), ft.bestPredecessorOf(k, peerId -> false));
+        assertEquals(new Identifier("tuna", "4000"),
+                ft.bestPredecessorOf(k, peerId -> peerId.getHostname().equals("bass")));
+        // With every finger avoided, fall back to our successor
+        assertEquals(new Identifier("tuna", "4000"), ft.bestPredecessorOf(k, peerId -> true));
+    }
+
+    @Test
+    public void testCandidatesStayWithinTheFingerInterval() {
+        FingerTable ft = new FingerTable(16, new Identifier("shark", "1000"));
+        ft.updateWithSuccessor(new Identifier("tuna", "9400"));
+        // Index 15 covers [9000, 1000): tuna is its successor, and the peers after it in the interval are candidates
+        ft.setCandidates(15, List.of(new Identifier("bass", "c000"), new Identifier("cod", "0800"),
+                new Identifier("eel", "1800"), new Identifier("pike", "a000")));
+
+        assertEquals(List.of(new Identifier("tuna", "9400"), new Identifier("pike", "a000"),
+                new Identifier("bass", "c000")), ft.getCandidates(15));
+
+        // A peer joining before the successor becomes it, and the old successor a candidate
+        ft.updateWithSuccessor(new Identifier("carp", "9100"));
+        assertEquals(List.of(new Identifier("carp", "9100"), new Identifier("tuna", "9400"),
+                new Identifier("pike", "a000")), ft.getCandidates(15));
+
+        ft.replace(new Identifier("tuna", "9400"), new Identifier("pike", "a000"));
+        assertEquals(List.of(new Identifier("carp", "9100"), new Identifier("pike", "a000")), ft.getCandidates(15));
+    }
+
+    @Test
+    public void testBestPredecessorPicksNearestCandidate() {
+        FingerTable ft = new FingerTable(16, new Identifier("shark", "1000"));
+        ft.updateWithSuccessor(new Identifier("tuna", "9400"));
+        ft.setCandidates(15, List.of(new Identifier("pike", "a000"), new Identifier("bass", "c000")));
+        Map<String, Long> rtts = Map.of("tuna", 80L, "pike", 5L, "bass", 1L);
+        ToLongFunction<Identifier> latency = peerId -> rtts.getOrDefault(peerId.getHostname(), Long.MAX_VALUE);
+
+        // bass is nearest, but would overshoot b000
+        assertEquals(new Identifier("pike", "a000"),
+                ft.bestPredecessorOf(RingKey.fromHex("b000"), peerId -> false, latency));
+        assertEquals(new Identifier("bass", "c000"),
+                ft.bestPredecessorOf(RingKey.fromHex("f000"), peerId -> false, latency));
+        assertEquals(new Identifier("tuna", "9400"),
+                ft.bestPredecessorOf(RingKey.fromHex("f000"), peerId -> !peerId.getHostname().equals("tuna"),
+                        latency));
+        // Without round-trip times, the successor of the index is picked, as without candidates
+        assertEquals(new Identifier("tuna", "9400"),
+                ft.bestPredecessorOf(RingKey.fromHex("f000"), peerId -> false, peerId -> Long.MAX_VALUE));
+    }
+
     @Test
     public void testFingerTableGetSuccessorDoesntWrap() {
 //        Identifier id = new Identifier("shark", "2");
@@ -0,0 +1,63 @@
+package org.chord.peer;
+
+import org.chord.messaging.FindSuccessorRequest;
+import org.chord.messaging.Message;
+import org.chord.messaging.PeerIdentifierMessage;
+import org.chord.networking.Frame;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IdentifierTest {
+
+    @Test
+    public void testIdsOfTheSameRingPositionAreEqual() {
+        Identifier typed = new Identifier("shark", "aaa");
+        Identifier padded = new Identifier("shark", "0aaa");
+
+        assertEquals("0aaa", typed.getId());
+        assertEquals(padded, typed);
+        assertEquals(padded.hashCode(), typed.hashCode());
+        assertTrue(Set.of(padded).contains(typed));
+        assertNotEquals(padded, new Identifier("shark", "0aaa", 9002));
+    }
+
+    @Test
+    public void testMalformedWireIdsFailToUnmarshal() throws IOException {
+        // Ids a faulty or foreign peer could send
+        assertThrows(IOException.class, () -> read(new FindSuccessorRequest("shark", "127.0.0.1", "0aaa"), "0aaa",
+                "xaaa"));
+        assertThrows(IOException.class, () -> read(new PeerIdentifierMessage("shark", "127.0.0.1",
+                new Identifier("tuna", "0aaa")), "0aaa", "zzzz"));
+
+        Message intact = read(new FindSuccessorRequest("shark", "127.0.0.1", "0aaa"), "0aaa", "0aaa");
+        assertEquals("0aaa", ((FindSuccessorRequest) intact).getId());
+    }
+
+    /**
+     * Frames a message, replacing an id in its bytes by another of the same length, and reads it back.
+     */
+    private static Message read(Message message, String id, String replacement) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Frame.write(new DataOutputStream(bytes), 1, message);
+        byte[] frame = bytes.toByteArray();
+        byte[] from = id.getBytes();
+        for (int i = 0; i + from.length <= frame.length; i++) {
+            if (new String(frame, i, from.length).equals(id)) {
+                System.arraycopy(replacement.getBytes(), 0, frame, i, from.length);
+                break;
+            }
+        }
+        return Frame.read(new DataInputStream(new ByteArrayInputStream(frame)));
+    }
+}
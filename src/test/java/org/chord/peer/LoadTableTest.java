@@ -0,0 +1,43 @@
+package org.chord.peer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LoadTableTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private final LoadTable table = new LoadTable(30_000, clock::get);
+
+    private final Identifier shark = new Identifier("shark", "1000");
+    private final Identifier tuna = new Identifier("tuna", "4000");
+
+    @Test
+    public void testKeepsMostRecentlyMeasured() {
+        table.merge(List.of(stats(tuna, 10, clock.get()), stats(shark, 20, clock.get() - 5_000)));
+        table.merge(List.of(stats(shark, 30, clock.get() - 10_000), stats(tuna, 40, clock.get() + 1)));
+
+        assertEquals(List.of(stats(shark, 20, 0), stats(tuna, 40, 0)), table.snapshot()); // in ring order
+    }
+
+    @Test
+    public void testForgetsExpiredAndDepartedPeers() {
+        table.merge(List.of(stats(shark, 20, clock.get() - 20_000), stats(tuna, 10, clock.get())));
+
+        clock.addAndGet(15_000);
+        assertEquals(List.of(stats(tuna, 10, 0)), table.snapshot());
+
+        // A peer now at the address of a departed one is kept
+        table.remove(new Identifier("tuna", "5000"));
+        assertEquals(1, table.snapshot().size());
+        table.remove(tuna);
+        assertEquals(List.of(), table.snapshot());
+    }
+
+    private static LoadStats stats(Identifier peerId, int keys, long measuredAtMillis) {
+        return new LoadStats(peerId, keys, 0, 0, "", 1, measuredAtMillis);
+    }
+}
@@ -0,0 +1,100 @@
+package org.chord.peer;
+
+import org.chord.util.RingKey;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class LookupCacheTest {
+
+    private final Identifier shark = new Identifier("shark", "1000");
+    private final Identifier tuna = new Identifier("tuna", "4000");
+    private final Identifier bass = new Identifier("bass", "9000");
+
+    @Test
+    public void testIntervalAnswersEveryIdItContains() {
+        LookupCache cache = new LookupCache(16);
+        assertNull(cache.get("2000"));
+
+        cache.put(shark, tuna, 3); // tuna owns (1000, 4000]
+        assertEquals(tuna, cache.get("1001"));
+        assertEquals(tuna, cache.get("2000"));
+        assertEquals(tuna, cache.get("4000"));
+        assertNull(cache.get("1000"));
+        assertNull(cache.get("4001"));
+
+        LookupCache.Stats stats = cache.stats();
+        assertEquals(3, stats.hits);
+        assertEquals(3, stats.misses);
+        assertEquals(9, stats.hopsSaved);
+        assertEquals(0.5, stats.hitRate());
+    }
+
+    @Test
+    public void testIntervalWrapsAroundTheRing() {
+        LookupCache cache = new LookupCache(16);
+        cache.put(bass, shark, 1); // shark owns (9000, 1000]
+
+        assertEquals(shark, cache.get("ffff"));
+        assertEquals(shark, cache.get("0000"));
+        assertEquals(shark, cache.get("1000"));
+        assertNull(cache.get("9000"));
+        assertNull(cache.get("2000"));
+
+        // A lone peer owns the whole ring
+        cache.put(tuna, tuna, 1);
+        assertEquals(tuna, cache.get("9000"));
+        assertEquals(tuna, cache.get("0000"));
+    }
+
+    @Test
+    public void testOverlappingIntervalReplacesStaleOne() {
+        LookupCache cache = new LookupCache(16);
+        cache.put(shark, bass, 2); // bass owns (1000, 9000]...
+        cache.put(tuna, bass, 2); // ...until tuna joins at 4000
+
+        assertNull(cache.get("2000"));
+        assertEquals(bass, cache.get("5000"));
+
+        cache.put(shark, tuna, 2);
+        assertEquals(tuna, cache.get("2000"));
+        assertEquals(bass, cache.get("5000"));
+        assertEquals(2, cache.stats().entries);
+    }
+
+    @Test
+    public void testInvalidation() {
+        LookupCache cache = new LookupCache(16);
+        cache.put(shark, tuna, 2);
+        cache.put(tuna, bass, 2);
+
+        // A peer joining at 3000 splits tuna's interval
+        cache.invalidate(RingKey.fromHex("3000"));
+        assertNull(cache.get("2000"));
+        assertEquals(bass, cache.get("5000"));
+
+        // bass leaving drops its interval
+        cache.put(shark, tuna, 2);
+        cache.invalidate(bass);
+        assertNull(cache.get("5000"));
+        assertEquals(tuna, cache.get("2000"));
+
+        // shark leaving hands its keys to tuna, so the interval tuna owns is no longer bounded by it
+        cache.invalidate(shark);
+        assertNull(cache.get("2000"));
+        assertEquals(3, cache.stats().invalidations);
+        assertEquals(0, cache.stats().entries);
+    }
+
+    @Test
+    public void testEvictsWhenFull() {
+        LookupCache cache = new LookupCache(2);
+        cache.put(shark, tuna, 1);
+        cache.put(tuna, bass, 1);
+        cache.put(bass, shark, 1);
+
+        assertEquals(2, cache.stats().entries);
+        assertEquals(shark, cache.get("0000"));
+    }
+}
@@ -0,0 +1,248 @@
+package org.chord.peer;
+
+import org.chord.util.Constants;
+import org.chord.util.RingKey;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RebalancerTest {
+
+    private static final double UNDERLOAD = Constants.Peer.UNDERLOAD_FACTOR;
+    private static final double OVERLOAD = Constants.Peer.OVERLOAD_FACTOR;
+
+    private final Identifier shark = new Identifier("shark", "1000");
+    private final Identifier tuna = new Identifier("tuna", "4000");
+    private final Identifier bass = new Identifier("bass", "9000");
+    private final Identifier carp = new Identifier("carp", "c000");
+
+    @Test
+    public void testLightestPeerMovesToSplitOfOverloadedPeer() {
+        List<LoadStats> ring = List.of(stats(shark, 100, "", 1), stats(tuna, 700, "2800", 1),
+                stats(bass, 20, "", 1), stats(carp, 180, "", 1));
+
+        // bass has a fifth of the mean load, and carp can take over its keys
+        Rebalancer.Action action = Rebalancer.plan(List.of(bass), ring, UNDERLOAD, OVERLOAD);
+        assertEquals(Rebalancer.Action.Kind.SPLIT, action.kind);
+        assertEquals(bass, action.peerId);
+        assertEquals("2800", action.splitId);
+
+        // Only bass's host acts on it
+        assertNull(Rebalancer.plan(List.of(shark), ring, UNDERLOAD, OVERLOAD));
+
+        // Nobody moves while no peer is overloaded
+        List<LoadStats> balanced = List.of(stats(shark, 240, "", 1), stats(tuna, 300, "2800", 1),
+                stats(bass, 220, "", 1), stats(carp, 240, "", 1));
+        assertNull(Rebalancer.plan(List.of(bass), balanced, UNDERLOAD, OVERLOAD));
+    }
+
+    @Test
+    public void testMoveNeverOverloadsTheSuccessor() {
+        // shark is the lightest, but its successor tuna is the overloaded peer itself; bass would overload carp
+        List<LoadStats> ring = List.of(stats(shark, 10, "", 1), stats(tuna, 650, "2800", 1),
+                stats(bass, 40, "", 1), stats(carp, 400, "", 1));
+        assertNull(Rebalancer.plan(List.of(shark), ring, UNDERLOAD, OVERLOAD));
+        assertNull(Rebalancer.plan(List.of(bass), ring, UNDERLOAD, OVERLOAD));
+    }
+
+    @Test
+    public void testOverloadedHostShedsItsLightestVirtualNode() {
+        // The shark host runs three virtual nodes, but was started with one: it takes over half the load
+        Identifier shark2 = new Identifier("shark", "6000", 9002);
+        Identifier shark3 = new Identifier("shark", "a000", 9003);
+        List<LoadStats> ring = List.of(stats(shark, 200, "", 1), stats(tuna, 150, "", 1),
+                stats(shark2, 200, "", 1), stats(bass, 150, "", 1), stats(shark3, 50, "", 1),
+                stats(carp, 100, "", 1));
+        List<Identifier> ours = List.of(shark, shark2, shark3);
+
+        Rebalancer.Action action = Rebalancer.plan(ours, ring, UNDERLOAD, OVERLOAD);
+        assertEquals(Rebalancer.Action.Kind.SHED, action.kind);
+        assertEquals(shark3, action.peerId);
+
+        // Started with three, it holds its share
+        List<LoadStats> weighted = new ArrayList<>();
+        for (LoadStats stats : ring) {
+            weighted.add(stats(stats.peerId, stats.keys, "", stats.peerId.getHostname().equals("shark") ? 3 : 1));
+        }
+        assertNull(Rebalancer.plan(ours, weighted, UNDERLOAD, OVERLOAD));
+    }
+
+    @Test
+    public void testFailedMoveKeepsVirtualNode() throws IOException {
+        // A discovery node nothing listens on: the moved virtual node can't join
+        int port;
+        try (ServerSocket unused = new ServerSocket(0)) {
+            port = unused.getLocalPort();
+        }
+        VirtualNodes host = new VirtualNodes("localhost", port, "1000", 1);
+        Peer peer = host.getPeers().get(0);
+        try {
+            host.apply(Rebalancer.Action.split(peer.getIdentifier(), "8000"));
+            assertEquals(List.of(peer), host.getPeers());
+        } finally {
+            peer.close();
+        }
+    }
+
+    /**
+     * Simulates a ring of hosts running virtual nodes over skewed keys: every round, each host plans from the
+     * LoadStats of the whole ring as measured at the start of the round, as gossip would have them, and its move is
+     * applied at once, a join at an id taken being refused as the discovery node would. Rebalancing must converge:
+     * every peer ends up within the overload threshold, and the moves stop.
+     */
+    @Test
+    public void testSimulatedRingConverges() {
+        Random random = new Random(42);
+
+        // Three quarters of the keys fall in an eighth of the ring
+        NavigableMap<RingKey, Long> keys = new TreeMap<>();
+        while (keys.size() < 20_000) {
+            int position = (random.nextInt(4) < 3) ? random.nextInt(1 << 13) : random.nextInt(1 << 16);
+            keys.put(RingKey.of(position), 1024L + random.nextInt(4096));
+        }
+
+        List<SimulatedHost> hosts = new ArrayList<>();
+        List<Identifier> taken = new ArrayList<>();
+        for (int h = 0; h < 12; h++) {
+            SimulatedHost host = new SimulatedHost("host" + h, 1 + h % 3);
+            for (int i = 0; i < host.weight; i++) {
+                host.add(freePosition(random, taken), taken);
+            }
+            hosts.add(host);
+        }
+
+        double initialMax = maxLoad(measure(hosts, keys));
+        assertTrue(initialMax > OVERLOAD, "the simulated ring starts unbalanced: " + initialMax);
+
+        int lastMove = 0;
+        int rounds = 300;
+        for (int round = 1; round <= rounds; round++) {
+            List<LoadStats> ring = measure(hosts, keys);
+            Collections.shuffle(hosts, random);
+            for (SimulatedHost host : hosts) {
+                if (host.cooldownRounds > 0) {
+                    host.cooldownRounds--;
+                    continue;
+                }
+                Rebalancer.Action action = Rebalancer.plan(host.vnodes, ring, UNDERLOAD, OVERLOAD);
+                if (action != null && host.apply(action, taken)) {
+                    host.cooldownRounds = Constants.Peer.REBALANCE_COOLDOWN_ROUNDS;
+                    lastMove = round;
+                }
+            }
+        }
+
+        double finalMax = maxLoad(measure(hosts, keys));
+        assertTrue(finalMax <= OVERLOAD, String.format("max load %.2f -> %.2f", initialMax, finalMax));
+        assertTrue(lastMove < rounds - 50, "moves stopped, the last in round " + lastMove);
+        for (SimulatedHost host : hosts) {
+            assertTrue(!host.vnodes.isEmpty(), host.hostname + " keeps a virtual node");
+        }
+    }
+
+    private static LoadStats stats(Identifier peerId, int keys, String splitId, int hostWeight) {
+        return new LoadStats(peerId, keys, 1024L * keys, 0, splitId, hostWeight, 0);
+    }
+
+    private static RingKey freePosition(Random random, List<Identifier> taken) {
+        while (true) {
+            RingKey position = RingKey.of(random.nextInt(1 << 16));
+            if (taken.stream().noneMatch(peerId -> peerId.key().equals(position))) {
+                return position;
+            }
+        }
+    }
+
+    /**
+     * @return The LoadStats of every virtual node, in ring order, as Peer.measureLoad() would: the keys it owns,
+     *         their total size, a request rate of one per key, and its split id
+     */
+    private static List<LoadStats> measure(List<SimulatedHost> hosts, NavigableMap<RingKey, Long> keys) {
+        List<LoadStats> ring = new ArrayList<>();
+        List<Identifier> peerIds = new ArrayList<>();
+        Map<String, Integer> weights = new TreeMap<>();
+        for (SimulatedHost host : hosts) {
+            peerIds.addAll(host.vnodes);
+            weights.put(host.hostname, host.weight);
+        }
+        peerIds.sort(Comparator.comparing(Identifier::key));
+        for (int i = 0; i < peerIds.size(); i++) {
+            Identifier peerId = peerIds.get(i);
+            RingKey predecessor = peerIds.get((i + peerIds.size() - 1) % peerIds.size()).key();
+            List<RingKey> owned = new ArrayList<>();
+            long bytes = 0;
+            for (Map.Entry<RingKey, Long> key : owned(keys, predecessor, peerId.key()).entrySet()) {
+                owned.add(key.getKey());
+                bytes += key.getValue();
+            }
+            String splitId = (owned.size() < 2) ? "" : owned.get(owned.size() / 2 - 1).toHex();
+            ring.add(new LoadStats(peerId, owned.size(), bytes, owned.size(), splitId,
+                    weights.get(peerId.getHostname()), 0));
+        }
+        return ring;
+    }
+
+    private static NavigableMap<RingKey, Long> owned(NavigableMap<RingKey, Long> keys, RingKey start, RingKey end) {
+        if (start.compareTo(end) < 0) {
+            return keys.subMap(start, false, end, true);
+        }
+        NavigableMap<RingKey, Long> owned = new TreeMap<>(keys.tailMap(start, false));
+        owned.putAll(keys.headMap(end, true));
+        return owned;
+    }
+
+    private static double maxLoad(List<LoadStats> ring) {
+        LoadStats mean = LoadStats.mean(ring);
+        return ring.stream().mapToDouble(stats -> stats.loadRelativeTo(mean)).max().orElse(0);
+    }
+
+    private static class SimulatedHost {
+        final String hostname;
+        final int weight;
+        final List<Identifier> vnodes = new ArrayList<>();
+        int nextPort = Constants.Peer.PORT;
+        int cooldownRounds;
+
+        SimulatedHost(String hostname, int weight) {
+            this.hostname = hostname;
+            this.weight = weight;
+        }
+
+        void add(RingKey position, List<Identifier> taken) {
+            Identifier peerId = new Identifier(this.hostname, position.toHex(), this.nextPort++);
+            this.vnodes.add(peerId);
+            taken.add(peerId);
+        }
+
+        /**
+         * Applies a move as VirtualNodes.apply() does: a join at an id already taken is refused, leaving the host
+         * as it was.
+         * @return True if the move was made
+         */
+        boolean apply(Rebalancer.Action action, List<Identifier> taken) {
+            if (action.kind == Rebalancer.Action.Kind.SPLIT) {
+                RingKey position = RingKey.fromHex(action.splitId);
+                if (taken.stream().anyMatch(peerId -> peerId.key().equals(position))) {
+                    return false;
+                }
+                add(position, taken);
+            }
+            this.vnodes.remove(action.peerId);
+            taken.remove(action.peerId);
+            return true;
+        }
+    }
+}
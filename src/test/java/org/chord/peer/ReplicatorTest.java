@@ -0,0 +1,79 @@
+package org.chord.peer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReplicatorTest {
+
+    private static final List<Identifier> SUCCESSORS = List.of(
+            new Identifier("peer-1", "2000"), new Identifier("peer-2", "4000"),
+            new Identifier("peer-3", "6000"), new Identifier("peer-4", "8000"));
+
+    @Test
+    public void testReplicasOfIsTruncatedToReplicationFactor() {
+        int defaultFactor = Replicator.getReplicationFactor();
+        try {
+            Replicator.setReplicationFactor(3);
+            assertEquals(SUCCESSORS.subList(0, 2), Replicator.replicasOf(SUCCESSORS));
+            assertEquals(SUCCESSORS.subList(0, 1), Replicator.replicasOf(SUCCESSORS.subList(0, 1)));
+
+            Replicator.setReplicationFactor(1);
+            assertTrue(Replicator.replicasOf(SUCCESSORS).isEmpty());
+        } finally {
+            Replicator.setReplicationFactor(defaultFactor);
+        }
+    }
+
+    @Test
+    public void testWriteQuorumIsMajorityOfCopies() {
+        assertEquals(1, Replicator.writeQuorum(1));
+        assertEquals(2, Replicator.writeQuorum(2));
+        assertEquals(2, Replicator.writeQuorum(3));
+        assertEquals(3, Replicator.writeQuorum(4));
+        assertEquals(3, Replicator.writeQuorum(5));
+    }
+
+    @Test
+    public void testQuorumToleratesMinorityOfFailedReplicas() throws Exception {
+        // 5 copies: the primary's and 2 acknowledged replicas are a majority, whatever happens to the other 2
+        CompletableFuture<Void> hung = new CompletableFuture<>();
+        Map<String, CompletableFuture<?>> acks = Map.of(
+                "peer-1", CompletableFuture.completedFuture(null),
+                "peer-2", CompletableFuture.failedFuture(new IOException("unreachable")),
+                "peer-3", hung,
+                "peer-4", CompletableFuture.completedFuture(null));
+        Replicator replicator = new Replicator((replica, fileId, fileName) -> acks.get(replica.getHostname()));
+
+        replicator.replicate("1714", "img1.jpg", SUCCESSORS).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testQuorumFailsOnceMajorityIsUnreachable() {
+        // 3 copies need 1 replica acknowledgement besides the primary's copy; neither replica acknowledges
+        Replicator replicator = new Replicator((replica, fileId, fileName) ->
+                CompletableFuture.failedFuture(new IOException(replica.getHostname() + " rejected " + fileName)));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () ->
+                replicator.replicate("1714", "img1.jpg", SUCCESSORS.subList(0, 2)).get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IOException);
+    }
+
+    @Test
+    public void testNoReplicasCompletesImmediately() {
+        Replicator replicator = new Replicator((replica, fileId, fileName) -> {
+            throw new AssertionError("No replica to send to");
+        });
+
+        assertTrue(replicator.replicate("1714", "img1.jpg", List.of()).isDone());
+    }
+}
@@ -0,0 +1,65 @@
+package org.chord.peer;
+
+import org.chord.util.RingKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RingKeyIndexTest {
+
+    @Test
+    public void testRangeWithinRing() {
+        RingKeyIndex<String> index = indexOf("0001", "1000", "4000", "8000", "ffff");
+
+        assertEquals(List.of("4000", "8000"), keysIn(index, 0x1000, 0x8000));
+        assertEquals(List.of("8000"), keysIn(index, 0x7fff, 0x8000));
+        assertTrue(keysIn(index, 0x1000, 0x3fff).isEmpty());
+    }
+
+    @Test
+    public void testRangeWrapsAround() {
+        RingKeyIndex<String> index = indexOf("0000", "0001", "1000", "8000", "ffff");
+
+        // Clockwise from 0x8000 (exclusive) past 0xffff, back to 0x1000 (inclusive)
+        assertEquals(List.of("ffff", "0000", "0001", "1000"), keysIn(index, 0x8000, 0x1000));
+    }
+
+    @Test
+    public void testRangeOfWholeRing() {
+        RingKeyIndex<String> index = indexOf("0001", "1000", "8000");
+
+        assertEquals(List.of("8000", "0001", "1000"), keysIn(index, 0x4000, 0x4000));
+        assertEquals(List.of("0001", "1000", "8000"), keysIn(index, 0x8000, 0x8000));
+    }
+
+    @Test
+    public void testPutGetRemove() {
+        RingKeyIndex<String> index = indexOf("1714", "608c");
+
+        assertEquals("img1714.jpg", index.get("1714"));
+        assertTrue(index.containsKey("608c"));
+        assertEquals("img608c.jpg", index.remove("608c"));
+        assertFalse(index.containsKey("608c"));
+        assertNull(index.get("608c"));
+        assertEquals(1, index.size());
+        assertEquals(List.of("1714"), new ArrayList<>(index.asMap().keySet()));
+    }
+
+    private static RingKeyIndex<String> indexOf(String... keys) {
+        RingKeyIndex<String> index = new RingKeyIndex<>();
+        for (String key : keys) {
+            index.put(key, "img" + key + ".jpg");
+        }
+        return index;
+    }
+
+    private static List<String> keysIn(RingKeyIndex<String> index, int start, int end) {
+        return new ArrayList<>(index.range(RingKey.of(start), RingKey.of(end)).keySet());
+    }
+}
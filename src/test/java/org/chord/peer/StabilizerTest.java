@@ -0,0 +1,181 @@
+package org.chord.peer;
+
+import org.chord.storage.FileStorageEngine;
+import org.chord.util.RingKey;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class StabilizerTest {
+
+    private Path directory;
+
+    // Ring of in-memory Peers by id; the stabilization requests between them are method calls
+    private final Map<String, Peer> peers = new LinkedHashMap<>();
+    private final Map<String, Stabilizer> stabilizers = new LinkedHashMap<>();
+    private final Set<String> failed = new HashSet<>();
+
+    @BeforeEach
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("stabilizer-test");
+    }
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testRingConvergesAfterJoins() throws IOException {
+        // Each peer joins knowing only its successor, as found by its lookup; nobody is notified
+        for (String id : List.of("1000", "5000", "9000", "3000", "7000")) {
+            addPeer(id).setSuccessor(liveSuccessorOf(RingKey.fromHex(id).plus(RingKey.of(1))));
+        }
+
+        runRounds(RingKey.bits() + 2);
+
+        assertRingIsConsistent();
+    }
+
+    @Test
+    public void testFailedSuccessorIsReplacedFromSuccessorList() throws IOException {
+        for (String id : List.of("1000", "3000", "5000", "7000", "9000")) {
+            addPeer(id).setSuccessor(liveSuccessorOf(RingKey.fromHex(id).plus(RingKey.of(1))));
+        }
+        runRounds(RingKey.bits() + 2);
+
+        this.failed.add("5000");
+        this.stabilizers.get("3000").stabilize();
+
+        // Failed over in a single round, without any lookup
+        Peer peer3000 = this.peers.get("3000");
+        assertEquals("7000", peer3000.getSuccessor().id);
+        assertFalse(peer3000.getSuccessorList().contains(new Identifier("peer-5000", "5000")));
+        assertFalse(peer3000.getFingerTable().getPeerIds().contains(new Identifier("peer-5000", "5000")));
+
+        runRounds(RingKey.bits() + 2);
+
+        assertRingIsConsistent();
+    }
+
+    @Test
+    public void testSuccessorListOfStopsAtUs() {
+        Identifier us = new Identifier("peer-1000", "1000");
+        Identifier successor = new Identifier("peer-3000", "3000");
+        List<Identifier> theirs = List.of(new Identifier("peer-5000", "5000"), us, successor);
+
+        assertEquals(List.of(successor, theirs.get(0)), Stabilizer.successorListOf(us, successor, theirs, 4));
+        assertEquals(List.of(successor), Stabilizer.successorListOf(us, successor, theirs, 1));
+    }
+
+    private Peer addPeer(String id) throws IOException {
+        Path storage = Files.createDirectories(this.directory.resolve(id));
+        Peer peer = new Peer("discovery", 9000, new Identifier("peer-" + id, id), new FileStorageEngine(storage));
+        this.peers.put(id, peer);
+        this.stabilizers.put(id, new Stabilizer(peer, new InMemoryRpc(), 1000));
+        return peer;
+    }
+
+    private void runRounds(int rounds) {
+        for (int round = 0; round < rounds; round++) {
+            for (Map.Entry<String, Stabilizer> stabilizer : this.stabilizers.entrySet()) {
+                if (!this.failed.contains(stabilizer.getKey())) {
+                    stabilizer.getValue().round();
+                }
+            }
+        }
+    }
+
+    private List<Identifier> livePeers() {
+        List<Identifier> live = new ArrayList<>();
+        for (Peer peer : this.peers.values()) {
+            if (!this.failed.contains(peer.getIdentifier().id)) {
+                live.add(peer.getIdentifier());
+            }
+        }
+        live.sort(Comparator.comparing(Identifier::key));
+        return live;
+    }
+
+    private Identifier liveSuccessorOf(RingKey k) {
+        List<Identifier> live = livePeers();
+        for (Identifier identifier : live) {
+            if (identifier.key().compareTo(k) >= 0) {
+                return identifier;
+            }
+        }
+        return live.get(0);
+    }
+
+    private void assertRingIsConsistent() {
+        List<Identifier> live = livePeers();
+        for (int i = 0; i < live.size(); i++) {
+            Peer peer = this.peers.get(live.get(i).id);
+            Identifier next = live.get((i + 1) % live.size());
+            Identifier previous = live.get((i + live.size() - 1) % live.size());
+            assertEquals(next, peer.getSuccessor(), "successor of " + live.get(i).id);
+            assertEquals(previous, peer.getPredecessor(), "predecessor of " + live.get(i).id);
+
+            List<Identifier> expectedList = new ArrayList<>();
+            for (int j = 1; j < live.size() && expectedList.size() < Peer.successorListSize(); j++) {
+                expectedList.add(live.get((i + j) % live.size()));
+            }
+            assertEquals(expectedList, peer.getSuccessorList(), "successor list of " + live.get(i).id);
+
+            FingerTable fingerTable = peer.getFingerTable();
+            for (int ftIndex = 0; ftIndex < fingerTable.size(); ftIndex++) {
+                assertEquals(liveSuccessorOf(fingerTable.ringPositionOfIndex(ftIndex)),
+                        fingerTable.getPeerIds().get(ftIndex), "finger " + ftIndex + " of " + live.get(i).id);
+            }
+        }
+    }
+
+    private class InMemoryRpc implements Stabilizer.StabilizationRpc {
+
+        private <T> CompletableFuture<T> call(Identifier peer, Function<Peer, T> request) {
+            if (failed.contains(peer.id)) {
+                return CompletableFuture.failedFuture(new IOException(peer.hostname + " is unreachable"));
+            }
+            return CompletableFuture.completedFuture(request.apply(peers.get(peer.id)));
+        }
+
+        @Override
+        public CompletableFuture<Identifier> getPredecessor(Identifier peer) {
+            return call(peer, Peer::getPredecessor);
+        }
+
+        @Override
+        public CompletableFuture<List<Identifier>> getSuccessorList(Identifier peer) {
+            return call(peer, Peer::getSuccessorList);
+        }
+
+        @Override
+        public CompletableFuture<?> notifyPredecessor(Identifier peer, Identifier candidate) {
+            return call(peer, target -> target.notifyPredecessor(candidate));
+        }
+
+        @Override
+        public CompletableFuture<Identifier> findSuccessor(Identifier entry, String id) {
+            return call(entry, target -> liveSuccessorOf(RingKey.fromHex(id)));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.chord.peer;
+
+import org.chord.networking.ConnectionPool;
+import org.chord.networking.FailureDetector;
+import org.chord.util.Constants;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SuccessorLookupTest {
+
+    /**
+     * A batched lookup whose entry peer accepts the connection but never answers, as a hung peer would, must fail
+     * once every hop a lookup may take has had the FailureDetector's timeout, and count as a failure of the peer.
+     */
+    @Test
+    public void testBatchedLookupFailsOnHungPeer() throws Exception {
+        assertLookupFailsOnHungPeer(entry -> SuccessorLookup.findSuccessors(entry, List.of("2000", "9000")));
+    }
+
+    /**
+     * The same holds for the lookup of a single id, forwarded along the ring by the entry peer.
+     */
+    @Test
+    public void testRecursiveLookupFailsOnHungPeer() throws Exception {
+        LookupMode mode = SuccessorLookup.getDefaultMode();
+        SuccessorLookup.setDefaultMode(LookupMode.RECURSIVE);
+        try {
+            assertLookupFailsOnHungPeer(entry -> SuccessorLookup.findSuccessor(entry, "2000"));
+        } finally {
+            SuccessorLookup.setDefaultMode(mode);
+        }
+    }
+
+    private static void assertLookupFailsOnHungPeer(Lookup lookup) throws Exception {
+        List<Socket> accepted = new ArrayList<>();
+        try (ServerSocket hung = new ServerSocket(0)) {
+            Thread acceptor = new Thread(() -> {
+                try {
+                    while (true) {
+                        accepted.add(hung.accept()); // and never read from it
+                    }
+                } catch (IOException e) {
+                    // closed
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            // A peer that answered quickly so far gets the minimum timeout for each hop
+            FailureDetector detector = FailureDetector.getInstance();
+            for (int i = 0; i < 50; i++) {
+                detector.recordSuccess("localhost", hung.getLocalPort(), 1);
+            }
+            Identifier entry = new Identifier("localhost", "1000", hung.getLocalPort());
+
+            long start = System.currentTimeMillis();
+            assertThrows(SocketTimeoutException.class, () -> lookup.run(entry));
+            long elapsed = System.currentTimeMillis() - start;
+            long bound = Constants.Networking.RPC_MIN_TIMEOUT_MILLIS * SuccessorLookup.maxLookupHops();
+            assertTrue(elapsed < 2 * bound, "failed after " + elapsed + " ms");
+            assertTrue(detector.timeoutMillis("localhost", hung.getLocalPort())
+                    > Constants.Networking.RPC_MIN_TIMEOUT_MILLIS, "the failure backs off the peer's timeout");
+        } finally {
+            for (Socket socket : accepted) {
+                socket.close();
+            }
+            ConnectionPool.getInstance().closeAll();
+        }
+    }
+
+    private interface Lookup {
+        void run(Identifier entry) throws IOException;
+    }
+}
@@ -0,0 +1,56 @@
+package org.chord.storage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ObjectCacheTest {
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        ObjectCache cache = new ObjectCache(300, 100);
+        cache.put("1000", new byte[100], cache.stamp());
+        cache.put("2000", new byte[100], cache.stamp());
+        cache.put("3000", new byte[100], cache.stamp());
+        assertNotNull(cache.get("1000")); // 2000 is now the least recently used
+
+        cache.put("4000", new byte[100], cache.stamp());
+
+        assertNull(cache.get("2000"));
+        assertNotNull(cache.get("1000"));
+        ObjectCache.Stats stats = cache.stats();
+        assertEquals(1, stats.evictions);
+        assertEquals(3, stats.entries);
+        assertEquals(300, stats.sizeBytes);
+        assertEquals(2, stats.hits);
+        assertEquals(1, stats.misses);
+    }
+
+    @Test
+    public void testLargeObjectsAreNotCached() {
+        ObjectCache cache = new ObjectCache(1000, 100);
+
+        assertFalse(cache.admits(101));
+        cache.put("1000", new byte[101], cache.stamp());
+
+        assertNull(cache.get("1000"));
+        assertEquals(0, cache.stats().sizeBytes);
+    }
+
+    @Test
+    public void testContentReadBeforeInvalidationIsNotCached() {
+        ObjectCache cache = new ObjectCache(1000, 100);
+        cache.put("1000", new byte[]{1}, cache.stamp());
+
+        long stamp = cache.stamp();
+        byte[] stale = {1}; // read from storage just before a store replaced the file
+        cache.invalidate("1000");
+        cache.put("1000", stale, stamp);
+
+        assertNull(cache.get("1000"));
+        assertEquals(0.0, cache.stats().hitRate());
+    }
+}
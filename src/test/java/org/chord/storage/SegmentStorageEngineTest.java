@@ -0,0 +1,170 @@
+package org.chord.storage;
+
+import org.chord.messaging.Payload;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SegmentStorageEngineTest {
+
+    private Path directory;
+
+    @BeforeEach
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("segment-storage-engine-test");
+    }
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testPutOverwriteAndDelete() throws IOException {
+        try (SegmentStorageEngine storage = open(1024 * 1024)) {
+            storage.put("1000", "img1.jpg", content("first"));
+            storage.put("2000", "img2.jpg", content("second"));
+            storage.put("1000", "img1.jpg", content("replaced"));
+
+            assertArrayEquals(bytes("replaced"), storage.get("1000").toByteArray());
+            assertTrue(storage.delete("2000"));
+            assertFalse(storage.delete("2000"));
+            assertNull(storage.get("2000"));
+            assertEquals(Map.of("1000", "img1.jpg"), storage.list());
+        }
+    }
+
+    @Test
+    public void testIndexIsRecoveredAfterReopening() throws IOException {
+        try (SegmentStorageEngine storage = open(100)) { // a few records per segment
+            for (int i = 0; i < 10; i++) {
+                storage.put("000" + i, "img" + i + ".jpg", content("content of " + i));
+            }
+            storage.delete("0003");
+            storage.put("0005", "img5.jpg", content("replaced"));
+            assertTrue(storage.segmentCount() > 1);
+        }
+
+        try (SegmentStorageEngine storage = open(100)) {
+            assertEquals(9, storage.list().size());
+            assertNull(storage.get("0003"));
+            assertArrayEquals(bytes("replaced"), storage.get("0005").toByteArray());
+            assertArrayEquals(bytes("content of 9"), storage.get("0009").toByteArray());
+
+            // Appends continue after the recovered records
+            storage.put("000a", "img10.jpg", content("content of 10"));
+            assertArrayEquals(bytes("content of 8"), storage.get("0008").toByteArray());
+        }
+    }
+
+    @Test
+    public void testSealedSegmentsAreReadFromMapping() throws IOException {
+        try (SegmentStorageEngine storage = open(100)) {
+            storage.put("1000", "img1.jpg", content("sealed soon"));
+            storage.put("2000", "img2.jpg", content("x".repeat(100))); // fills the first segment
+            storage.put("3000", "img3.jpg", content("active"));
+
+            Payload sealed = storage.get("1000");
+            assertFalse(sealed.isFile());
+            assertTrue(sealed.toByteBuffer().isDirect());
+            assertArrayEquals(bytes("sealed soon"), sealed.toByteArray());
+            assertArrayEquals(bytes("ealed"), sealed.slice(1, 5).toByteArray());
+            assertTrue(storage.get("3000").isFile());
+        }
+    }
+
+    @Test
+    public void testTornRecordIsTruncated() throws IOException {
+        try (SegmentStorageEngine storage = open(1024 * 1024)) {
+            storage.put("1000", "img1.jpg", content("first"));
+            storage.put("2000", "img2.jpg", content("second"));
+        }
+        // A crash while appending the second record left only part of it
+        Path segment = directory.resolve("segment-00000001.log");
+        long size = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        try (SegmentStorageEngine storage = open(1024 * 1024)) {
+            assertEquals(Map.of("1000", "img1.jpg"), storage.list());
+            storage.put("3000", "img3.jpg", content("third"));
+        }
+        try (SegmentStorageEngine storage = open(1024 * 1024)) {
+            assertEquals(Map.of("1000", "img1.jpg", "3000", "img3.jpg"), storage.list());
+            assertArrayEquals(bytes("third"), storage.get("3000").toByteArray());
+        }
+    }
+
+    @Test
+    public void testCompactionKeepsLiveObjectsAndDeletes() throws IOException {
+        try (SegmentStorageEngine storage = open(200)) {
+            storage.put("1000", "img1.jpg", content("kept"));
+            storage.put("2000", "img2.jpg", content("deleted"));
+            for (int i = 0; i < 10; i++) {
+                storage.put("3000", "img3.jpg", content("overwritten " + i));
+            }
+            storage.delete("2000");
+            Payload beforeCompaction = storage.get("1000");
+
+            while (storage.compact()) {
+                // Compacts every sealed segment that is mostly dead
+            }
+            assertArrayEquals(bytes("kept"), beforeCompaction.toByteArray()); // retired, not yet deleted
+            assertArrayEquals(bytes("kept"), storage.get("1000").toByteArray());
+            assertArrayEquals(bytes("overwritten 9"), storage.get("3000").toByteArray());
+        }
+
+        try (SegmentStorageEngine storage = open(200)) {
+            assertEquals(Map.of("1000", "img1.jpg", "3000", "img3.jpg"), storage.list());
+            assertArrayEquals(bytes("kept"), storage.get("1000").toByteArray());
+        }
+    }
+
+    @Test
+    public void testRetiredSegmentsAreDeletedAfterGracePeriod() throws IOException {
+        try (SegmentStorageEngine storage = new SegmentStorageEngine(directory, 100, 0.5, 0, 0)) {
+            for (int i = 0; i < 10; i++) {
+                storage.put("1000", "img1.jpg", content("overwritten " + i));
+            }
+            int segments = storage.segmentCount();
+            while (storage.compact()) {
+                // Compacts every sealed segment that is mostly dead
+            }
+            storage.compact(); // deletes the segments retired by the last pass
+
+            assertTrue(storage.segmentCount() < segments);
+            assertArrayEquals(bytes("overwritten 9"), storage.get("1000").toByteArray());
+        }
+    }
+
+    private SegmentStorageEngine open(long segmentSize) throws IOException {
+        return new SegmentStorageEngine(directory, segmentSize, 0.5, 60_000, 0);
+    }
+
+    private static Payload content(String content) {
+        return Payload.of(bytes(content));
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
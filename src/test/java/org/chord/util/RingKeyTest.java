@@ -0,0 +1,88 @@
+package org.chord.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RingKeyTest {
+
+    @AfterEach
+    public void restoreDefaultWidth() {
+        RingKey.setBits(Constants.ID_SIZE_BITS);
+    }
+
+    @Test
+    public void testHexRoundTrip() {
+        assertEquals("00ab", RingKey.fromHex("ab").toHex());
+        assertEquals(RingKey.of(0xd92f), RingKey.fromHex("d92f"));
+
+        RingKey.setBits(160);
+        String id = "0123456789abcdef0123456789abcdef01234567";
+        assertEquals(id, RingKey.fromHex(id).toHex());
+        assertEquals(40, RingKey.fromHex("1").toHex().length());
+        assertFalse(RingKey.isValid(id + "8"));
+        assertFalse(RingKey.isValid("12g4"));
+        assertFalse(RingKey.isValid(""));
+    }
+
+    @Test
+    public void testArithmeticWrapsAround() {
+        assertEquals(RingKey.ZERO, RingKey.fromHex("ffff").plus(RingKey.of(1)));
+        assertEquals(RingKey.fromHex("ffff"), RingKey.ZERO.minus(RingKey.of(1)));
+        assertEquals(RingKey.of(0x2000), RingKey.fromHex("f000").distanceTo(RingKey.fromHex("1000")));
+
+        // Carries and borrows cross every word
+        RingKey.setBits(160);
+        RingKey top = RingKey.fromHex("ffffffffffffffffffffffffffffffffffffffff");
+        assertEquals(RingKey.ZERO, top.plus(RingKey.of(1)));
+        assertEquals(top, RingKey.ZERO.minus(RingKey.of(1)));
+        assertEquals(RingKey.fromHex("10000000000000000"), RingKey.fromHex("ffffffffffffffff").plus(RingKey.of(1)));
+        assertEquals(RingKey.powerOfTwo(128), RingKey.powerOfTwo(127).plus(RingKey.powerOfTwo(127)));
+        assertEquals(RingKey.powerOfTwo(159), RingKey.ZERO.minus(RingKey.powerOfTwo(159)));
+    }
+
+    @Test
+    public void testIsBetween() {
+        RingKey start = RingKey.fromHex("f000");
+        RingKey end = RingKey.fromHex("1000");
+
+        assertTrue(RingKey.fromHex("ffff").isBetween(start, end));
+        assertTrue(RingKey.ZERO.isBetween(start, end));
+        assertFalse(start.isBetween(start, end));
+        assertFalse(end.isBetween(start, end));
+        assertFalse(RingKey.fromHex("8000").isBetween(start, end));
+        assertTrue(RingKey.fromHex("8000").isBetween(end, start));
+        // An empty range start == end covers every position but start
+        assertTrue(RingKey.fromHex("8000").isBetween(start, start));
+    }
+
+    @Test
+    public void testDigestKeepsLeadingHexDigits() throws NoSuchAlgorithmException {
+        byte[] digest = MessageDigest.getInstance("SHA-1").digest("img1714.jpg".getBytes());
+        String hex = HashUtil.bytesToHex(digest);
+
+        assertEquals(hex.substring(0, 4), RingKey.fromDigest(digest).toHex());
+        RingKey.setBits(64);
+        assertEquals(hex.substring(0, 16), RingKey.fromDigest(digest).toHex());
+        RingKey.setBits(160);
+        assertEquals(hex, RingKey.fromDigest(digest).toHex());
+        assertEquals(hex, HashUtil.hashFile("img1714.jpg".getBytes()));
+    }
+
+    @Test
+    public void testWidthMustBeWholeHexDigits() {
+        assertThrows(IllegalArgumentException.class, () -> RingKey.setBits(0));
+        assertThrows(IllegalArgumentException.class, () -> RingKey.setBits(18));
+        assertThrows(IllegalArgumentException.class, () -> RingKey.setBits(164));
+        RingKey.setBits(32);
+        assertEquals(32, RingKey.bits());
+        assertEquals(8, RingKey.hexDigits());
+    }
+}